@@ -2,17 +2,34 @@ package course_management_swing_ui;
 
 import course_management_swing_ui.controllers.BaseController;
 import course_management_swing_ui.controllers.MainController;
+import course_management_swing_ui.repositories.ChangeWatcher;
+import course_management_swing_ui.repositories.DbContextSnapshot;
+import course_management_swing_ui.repositories.db.BackupScheduler;
+import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.Dialect;
+import course_management_swing_ui.repositories.db.PerformanceProfile;
+import course_management_swing_ui.util.ThreadPool;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
 import course_management_swing_ui.views.ViewManager;
 import course_management_swing_ui.views.MainWindowView;
 
+import java.nio.file.Path;
+import java.sql.SQLException;
+
 /**
- * Requires jdk >= 11
+ * Requires jdk >= 21
  * @overview
  *  Represents a standard desktop GUI
  *
  * @author Phan Quang Tuan
  */
 public class CourseManProg {
+    private static final String DB_PROFILE_ARG = "--db-profile=";
+    private static final String DB_DIALECT_ARG = "--db-dialect=";
+    private static final String BACKUP_EVERY_ARG = "--backup-every=";
+    private static final String BACKUP_DIR_ARG = "--backup-dir=";
+    private static final String BACKUP_KEEP_ARG = "--backup-keep=";
+    private static final String THREAD_MODE_ARG = "--thread-mode=";
     private MainController c;
     private MainWindowView g;
 
@@ -39,16 +56,74 @@ public class CourseManProg {
     }
 
     /**
-     * Requires jdk >= 11
+     * Requires jdk >= 21
      * The run method
      * @effects
+     *  select the database dialect given by <tt>--db-dialect=&lt;sqlite|h2|h2-mem|memory&gt;</tt> (if any)
+     *  select the database profile given by <tt>--db-profile=&lt;durable|balanced|bulk-load&gt;</tt> (if any)
+     *  run the database calls on the threads given by <tt>--thread-mode=&lt;platform|virtual&gt;</tt> (if any, see
+     *  ThreadPool)
+     *  open the database and migrate its schema, or exit if it cannot be done
+     *  schedule a snapshot of the SQLite database every <tt>--backup-every=&lt;minutes&gt;</tt> (if any), into
+     *  <tt>--backup-dir=&lt;dir&gt;</tt> (default: backups), keeping the newest <tt>--backup-keep=&lt;n&gt;</tt> ones
+     *  fill DbContext from DbContextSnapshot.FILE in the background, if it is up to date
      *  create an instance of <tt>CourseManProg</tt>
+     *  watch the database for the changes of the other instances (see ChangeWatcher), if it outlives the application
      */
     public static void main(String[] args) {
+        long backupEvery = 0;
+        Path backupDir = Path.of("backups");
+        int backupKeep = BackupScheduler.DEFAULT_KEEP;
+        for (String arg : args) {
+            try {
+                if (arg.startsWith(DB_DIALECT_ARG)) {
+                    try {
+                        DbConnect.setDialect(Dialect.of(arg.substring(DB_DIALECT_ARG.length())));
+                    } catch (InvalidArgumentException e) {
+                        System.err.println(e.getMessage() + ", fall back to: " + DbConnect.getDialect());
+                    }
+                } else if (arg.startsWith(THREAD_MODE_ARG)) {
+                    // read when ThreadPool is first used, which is after the arguments
+                    System.setProperty(ThreadPool.MODE_PROPERTY, arg.substring(THREAD_MODE_ARG.length()));
+                } else if (arg.startsWith(DB_PROFILE_ARG)) {
+                    DbConnect.setProfile(PerformanceProfile.of(arg.substring(DB_PROFILE_ARG.length())));
+                } else if (arg.startsWith(BACKUP_EVERY_ARG)) {
+                    backupEvery = Long.parseLong(arg.substring(BACKUP_EVERY_ARG.length()));
+                } else if (arg.startsWith(BACKUP_DIR_ARG)) {
+                    backupDir = Path.of(arg.substring(BACKUP_DIR_ARG.length()));
+                } else if (arg.startsWith(BACKUP_KEEP_ARG)) {
+                    backupKeep = Integer.parseInt(arg.substring(BACKUP_KEEP_ARG.length()));
+                }
+            } catch (InvalidArgumentException e) {
+                System.err.println(e.getMessage() + ", fall back to: " + DbConnect.getProfile());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid argument: " + arg);
+            }
+        }
+        // nothing can run on a database whose schema has not been migrated
+        try {
+            DbConnect.open();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            javax.swing.JOptionPane.showMessageDialog(null, "Cannot open the database: " + e.getMessage(),
+                    "Error", javax.swing.JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+
+        if (backupEvery > 0 && backupKeep > 0 && DbConnect.getDialect() == Dialect.SQLITE) {
+            BackupScheduler.getInstance().start(backupDir, backupEvery, backupKeep);
+        }
+
+        // while the window is being built, so that the views need not fetch every table when they are first opened
+        DbContextSnapshot.loadAsync(DbContextSnapshot.FILE);
+
         javax.swing.SwingUtilities.invokeLater(() -> {
             ViewManager.setUpDarkTheme();
             CourseManProg app = new CourseManProg();
             app.display();
+            if (DbConnect.getDialect().isPersistent()) {
+                ChangeWatcher.getInstance().start(BaseController::syncExternalChanges);
+            }
         });
     }
 }
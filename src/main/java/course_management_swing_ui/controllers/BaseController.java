@@ -1,11 +1,27 @@
 package course_management_swing_ui.controllers;
 
+import course_management_swing_ui.repositories.ChangeSync;
+import course_management_swing_ui.repositories.ChangeWatcher;
+import course_management_swing_ui.repositories.db.DbSchema;
 import course_management_swing_ui.util.EnumUtil;
+import course_management_swing_ui.util.ThreadPool;
+import course_management_swing_ui.util.entitiesMappers.EnrollmentMapper;
 import course_management_swing_ui.views.View;
+import course_management_swing_ui.views.ViewManager;
+import course_management_swing_ui.views.enrollment.AssessmentReportView;
+import course_management_swing_ui.views.enrollment.InitialReportView;
+import course_management_swing_ui.views.module.ListModuleView;
+import course_management_swing_ui.views.student.ListStudentView;
 
+import javax.swing.*;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -71,4 +87,175 @@ public abstract class BaseController extends WindowAdapter implements ActionList
             v.notifyDataChanged();
         });
     }
+
+    /**
+     * Bring DbContext up to date with the changes made since the last fetch (see ChangeSync), and update the Dto(s)
+     * of the pages that show them.
+     * @modifies DbContext, the Dto(s) of the controllers
+     * @effects <pre>
+     *      applyChanges(), on ThreadPool.loader: a reload of the tables is chained after the sync instead of being
+     *      waited for there (see ThreadPool)
+     *      Reset the views of the other controllers of cause
+     *      The future completes exceptionally if the tables had to be read again and could not be
+     * </pre>
+     */
+    public static CompletableFuture<Void> syncChanges(EnumUtil.Controller cause) {
+        return CompletableFuture.supplyAsync(() -> ChangeSync.getInstance().sync(), ThreadPool.loader)
+                .thenCompose(result -> result.needsReload()
+                        ? reload()
+                        : CompletableFuture.runAsync(() -> applyChangedRows(result), ThreadPool.loader))
+                .thenRun(() -> resetOtherControllerViews(cause));
+    }
+
+    /**
+     * The ChangeWatcher.Listener of the application: another instance has changed the database.
+     * @modifies DbContext, the Dto(s) of the controllers
+     * @effects <pre>
+     *      applyChanges()
+     *      Notify the list and report views of the changed tables; the forms being filled in are left as they are
+     *      If the tables had to be read again and could not be, throw IllegalStateException: ChangeWatcher calls this
+     *      again at its next poll
+     * </pre>
+     */
+    public static void syncExternalChanges() {
+        ChangeSync.Result result = applyChanges();
+        boolean all = result.needsReload();
+        List<Class<?>> types = new ArrayList<>();
+        if (all || result.isChanged(DbSchema.StudentTable.NAME)) {
+            types.add(ListStudentView.class);
+        }
+        if (all || result.isChanged(DbSchema.ModuleTable.NAME)) {
+            types.add(ListModuleView.class);
+        }
+        if (all || !types.isEmpty() || result.isChanged(DbSchema.EnrollmentTable.NAME)) {
+            types.add(InitialReportView.class);
+            types.add(AssessmentReportView.class);
+        }
+        if (!types.isEmpty()) {
+            notifyViews(types.toArray(new Class<?>[0]));
+        }
+    }
+
+    /**
+     * @modifies DbContext, the Dto(s) of the controllers
+     * @effects <pre>
+     *      Apply the changed rows to DbContext, or read all tables again if ChangeSync cannot (see EnrollmentController.fetchData)
+     *      Map the changed students and modules into the enrollments
+     *      Reload the pages of the changed tables (the enrollment pages show students and modules too)
+     *      Return what has changed
+     *      If the tables cannot be read again
+     *          throw IllegalStateException: DbContext is not up to date, and the next call tries the reload again (see
+     *          ChangeSync.isStale)
+     * </pre>
+     */
+    private static ChangeSync.Result applyChanges() {
+        ChangeSync.Result result = ChangeSync.getInstance().sync();
+        if (result.needsReload()) {
+            try {
+                reload().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while reading the tables again", e);
+            } catch (ExecutionException e) {
+                throw (IllegalStateException) e.getCause();
+            }
+            return result;
+        }
+        applyChangedRows(result);
+        return result;
+    }
+
+    /**
+     * @modifies DbContext, the Dto(s) of the controllers
+     * @effects <pre>
+     *      Read all tables again (see EnrollmentController.fetchData)
+     *      If they cannot be read again
+     *          the future completes with IllegalStateException
+     * </pre>
+     */
+    private static CompletableFuture<Void> reload() {
+        return EnrollmentController.fetchData().handle((v, e) -> {
+            if (e != null) {
+                throw new IllegalStateException("failed to read the tables again, DbContext is out of date",
+                        e instanceof CompletionException ? e.getCause() : e);
+            }
+            // a table whose read has failed inside fetchData is still stale
+            if (ChangeSync.getInstance().isStale()) {
+                throw new IllegalStateException("failed to read some tables again, DbContext is out of date");
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @requires !result.needsReload()
+     * @modifies DbContext, the Dto(s) of the controllers
+     * @effects <pre>
+     *      Map the changed students and modules into the enrollments
+     *      Reload the pages of the changed tables (the enrollment pages show students and modules too)
+     * </pre>
+     */
+    private static void applyChangedRows(ChangeSync.Result result) {
+        boolean students = result.isChanged(DbSchema.StudentTable.NAME);
+        boolean modules = result.isChanged(DbSchema.ModuleTable.NAME);
+        boolean enrollments = result.isChanged(DbSchema.EnrollmentTable.NAME);
+        if (students) {
+            EnrollmentMapper.getInstance().mapStudent();
+            StudentController.loadPage();
+        }
+        if (modules) {
+            EnrollmentMapper.getInstance().mapModule();
+            ModuleController.loadPage();
+        }
+        if (students || modules || enrollments) {
+            EnrollmentController.loadPage();
+        }
+    }
+
+    /**
+     * @effects notify the views in ViewManager.viewMap that are instances of types, on the event dispatch thread
+     */
+    static void notifyViews(Class<?>... types) {
+        SwingUtilities.invokeLater(() -> {
+            for (View v : ViewManager.viewMap.values()) {
+                for (Class<?> type : types) {
+                    if (type.isInstance(v)) {
+                        v.notifyDataChanged();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @effects the user is back: look for the changes of the other instances at once, see ChangeWatcher.wakeUp
+     */
+    @Override
+    public void windowActivated(WindowEvent e) {
+        ChangeWatcher.getInstance().wakeUp();
+    }
+
+    /**
+     * @effects return the sequence number of the latest change (see ChangeSync.currentSeq), or -1 if it cannot be read,
+     * so that the next sync reads every change that is left
+     */
+    static long currentSeq() {
+        try {
+            return ChangeSync.getInstance().currentSeq();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * @effects record that table has been read whole into DbContext from seq on, see ChangeSync.loaded; nothing is
+     * recorded if seq is unknown (see currentSeq), as the database could not be read: the table is read again at the
+     * next sync if it is stale
+     */
+    static void loaded(String table, long seq) {
+        if (seq >= 0) {
+            ChangeSync.getInstance().loaded(table, seq);
+        }
+    }
 }
@@ -3,11 +3,18 @@ package course_management_swing_ui.controllers;
 import course_management_swing_ui.models.Enrollment;
 import course_management_swing_ui.models.Module;
 import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.DbContextSnapshot;
+import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.repositories.dao.RowStream;
 import course_management_swing_ui.services.EnrollmentService;
 import course_management_swing_ui.services.ModuleService;
 import course_management_swing_ui.services.StudentService;
+import course_management_swing_ui.services.UnitOfWork;
 import course_management_swing_ui.util.EnumUtil;
+import course_management_swing_ui.util.Pager;
+import course_management_swing_ui.util.ThreadPool;
 import course_management_swing_ui.util.dto.DtoGenerator;
+import course_management_swing_ui.util.entitiesMappers.EnrollmentMapper;
 import course_management_swing_ui.views.View;
 import course_management_swing_ui.views.ViewManager;
 import course_management_swing_ui.views.enrollment.AssessmentReportView;
@@ -21,8 +28,11 @@ import java.awt.event.WindowEvent;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 import static course_management_swing_ui.repositories.DbContext.enrollmentDbContext;
+import static course_management_swing_ui.repositories.DbContext.moduleDbContext;
+import static course_management_swing_ui.repositories.DbContext.studentDbContext;
 
 /**
  * @author Phan Quang Tuan
@@ -39,6 +49,8 @@ public class EnrollmentController extends BaseController {
     private final static EnrollmentService enrollmentService = new EnrollmentService();
     public final static Vector<Vector<?>> dtoIR = new Vector<>();
     public final static Vector<Vector<?>> dtoAR = new Vector<>();
+    // shared by InitialReportView and AssessmentReportView
+    public final static Pager<Integer> pager = new Pager<>();
 
     public EnrollmentController() {
         super();
@@ -84,6 +96,10 @@ public class EnrollmentController extends BaseController {
      *      - fetch new data
      *      - notify InitialReportView that data changed
      *      - uncheck all selected items
+     *  < Prev / Next >:
+     *      - move the pager to the previous / next page
+     *      - read that page only
+     *      - notify InitialReportView and AssessmentReportView that data changed
      *  Refresh Data
      *      - fetch new data
      *  Close
@@ -102,7 +118,7 @@ public class EnrollmentController extends BaseController {
                 case "Add":
                     Student student = studentService.findById(Integer.valueOf(v.getSid().substring(1)));
                     Module module = moduleService.findById(v.getmCode());
-                    addEnrollment(enrollmentDbContext.size() + 1, student, module, Double.parseDouble(v.getTxtIm().getText()), Double.parseDouble(v.getTxtEm().getText()));
+                    addEnrollment(student, module, Double.parseDouble(v.getTxtIm().getText()), Double.parseDouble(v.getTxtEm().getText()));
                     v.disposeGUI();
                     break;
                 default:
@@ -119,7 +135,9 @@ public class EnrollmentController extends BaseController {
                         EnrollmentController ec = new EnrollmentController();
                         BaseController.controllers.add(ec);
                         try {
-                            EnrollmentController.fetchData().get();
+                            if (!DbContextSnapshot.awaitLoad()) {
+                                EnrollmentController.fetchData().get();
+                            }
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -148,14 +166,14 @@ public class EnrollmentController extends BaseController {
                                 enrollments.add(enrollmentService.findById(id));
                             }
                         }
-                        if (enrollments.size() == enrollmentDbContext.size()) {
+                        if (pager.isSinglePage() && enrollments.size() == tblEnrollments.getRowCount()) {
                             enrollmentService.deleteAll();
                         } else {
                             deleteEnrollment(enrollments);
                         }
 
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -176,34 +194,52 @@ public class EnrollmentController extends BaseController {
                     //      then create new Enrollment object with the Constructor annotated with @Safe
                     int editResult = JOptionPane.showConfirmDialog(gui, "Update all the selected rows?", "Update confirmation", JOptionPane.OK_CANCEL_OPTION);
                     if (editResult == JOptionPane.YES_OPTION) {
-                        List<Enrollment> enrollments = new ArrayList<>();
+                        // the edited names by student and by module, and the student and module of each enrollment
+                        Map<Integer, String> studentNames = new LinkedHashMap<>();
+                        Map<String, String> moduleNames = new LinkedHashMap<>();
+                        Map<Integer, Integer> studentIds = new LinkedHashMap<>();
+                        Map<Integer, String> moduleCodes = new LinkedHashMap<>();
                         DefaultTableModel tm = (DefaultTableModel) tblEnrollments.getModel();
                         for (int i = tblEnrollments.getRowCount() - 1; i >= 0; i--) {
                             boolean edit = (boolean) tm.getValueAt(i, 5);
                             if (edit) {
                                 int id = (int) tm.getValueAt(i, 0);
                                 int sid = Integer.parseInt(((String) tm.getValueAt(i, 1)).substring(1));
-                                String sName = (String) tm.getValueAt(i, 2);
                                 String mCode = (String) tm.getValueAt(i, 3);
-                                String mName = (String) tm.getValueAt(i, 4);
-                                Enrollment enrollment = enrollmentService.findById(id);
-                                double im = enrollment.getInternalMark(), em = enrollment.getExaminationMark();
-                                Student student = studentService.findById(sid);
-                                student.setName(sName);
-                                studentService.update(student);
-                                Module module = moduleService.findById(mCode);
-                                module.setName(mName);
-                                moduleService.update(module);
-                                enrollment.setStudent(student);
-                                enrollment.setModule(module);
-                                enrollment.setInternalMark(im);
-                                enrollment.setExaminationMark(em);
-                                enrollments.add(enrollment);
+                                studentNames.put(sid, (String) tm.getValueAt(i, 2));
+                                moduleNames.put(mCode, (String) tm.getValueAt(i, 4));
+                                studentIds.put(id, sid);
+                                moduleCodes.put(id, mCode);
+                            }
+                        }
+                        // every read and write of the rows in one transaction: one read and one update per table
+                        UnitOfWork uow = null;
+                        if (!studentIds.isEmpty()) {
+                            uow = UnitOfWork.execute(w -> {
+                                w.students().findById(studentNames.keySet());
+                                w.modules().findById(moduleNames.keySet());
+                                for (Map.Entry<Integer, String> entry : studentNames.entrySet()) {
+                                    Student student = w.students().findById(entry.getKey());
+                                    if (student != null) {
+                                        student.setName(entry.getValue());
+                                        w.students().update(student);
+                                    }
+                                }
+                                for (Map.Entry<String, String> entry : moduleNames.entrySet()) {
+                                    Module module = w.modules().findById(entry.getKey());
+                                    if (module != null) {
+                                        module.setName(entry.getValue());
+                                        w.modules().update(module);
+                                    }
+                                }
+                                updateEnrollments(w, studentIds, moduleCodes, null, null);
+                            });
+                            if (uow != null) {
+                                showConflicts(uow);
                             }
                         }
-                        updateEnrollment(enrollments);
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -211,6 +247,18 @@ public class EnrollmentController extends BaseController {
                         setCheckAll(false);
                     }
                     break;
+                case "< Prev":
+                case "Next >":
+                    if (command.equals("Next >") ? pager.next() : pager.previous()) {
+                        try {
+                            fetchPage().get();
+                        } catch (InterruptedException | ExecutionException ex) {
+                            ex.printStackTrace();
+                        }
+                        notifyReportViews();
+                        setCheckAll(false);
+                    }
+                    break;
                 case "Refresh Data":
                     try {
                         fetchData().get();
@@ -238,7 +286,9 @@ public class EnrollmentController extends BaseController {
                         EnrollmentController sc = new EnrollmentController();
                         BaseController.controllers.add(sc);
                         try {
-                            EnrollmentController.fetchData().get();
+                            if (!DbContextSnapshot.awaitLoad()) {
+                                EnrollmentController.fetchData().get();
+                            }
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -267,14 +317,14 @@ public class EnrollmentController extends BaseController {
                                 enrollments.add(enrollmentService.findById(id));
                             }
                         }
-                        if (enrollments.size() == enrollmentDbContext.size()) {
+                        if (pager.isSinglePage() && enrollments.size() == tblEnrollments.getRowCount()) {
                             enrollmentService.deleteAll();
                         } else {
                             deleteEnrollment(enrollments);
                         }
 
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -286,30 +336,31 @@ public class EnrollmentController extends BaseController {
                 case "Update":
                     int editResult = JOptionPane.showConfirmDialog(gui, "Update all the selected rows?", "Update confirmation", JOptionPane.OK_CANCEL_OPTION);
                     if (editResult == JOptionPane.YES_OPTION) {
-                        List<Enrollment> enrollments = new ArrayList<>();
+                        Map<Integer, Integer> studentIds = new LinkedHashMap<>();
+                        Map<Integer, String> moduleCodes = new LinkedHashMap<>();
+                        Map<Integer, Double> internalMarks = new HashMap<>();
+                        Map<Integer, Double> examinationMarks = new HashMap<>();
                         DefaultTableModel tm = (DefaultTableModel) tblEnrollments.getModel();
                         for (int i = tblEnrollments.getRowCount() - 1; i >= 0; i--) {
                             boolean edit = (boolean) tm.getValueAt(i, 6);
                             if (edit) {
                                 int id = (int) tm.getValueAt(i, 0);
-                                int sid = Integer.parseInt(((String) tm.getValueAt(i, 1)).substring(1));
-                                String mCode = (String) tm.getValueAt(i, 2);
                                 Object imO = tm.getValueAt(i, 3), emO = tm.getValueAt(i, 4);
-                                double im = imO instanceof String ? Double.parseDouble((String) imO) : (double) imO;
-                                double em = emO instanceof String ? Double.parseDouble((String) emO) : (double) emO;
-                                Enrollment enrollment = enrollmentService.findById(id);
-                                Student student = studentService.findById(sid);
-                                Module module = moduleService.findById(mCode);
-                                enrollment.setStudent(student);
-                                enrollment.setModule(module);
-                                enrollment.setInternalMark(im);
-                                enrollment.setExaminationMark(em);
-                                enrollments.add(enrollment);
+                                studentIds.put(id, Integer.parseInt(((String) tm.getValueAt(i, 1)).substring(1)));
+                                moduleCodes.put(id, (String) tm.getValueAt(i, 2));
+                                internalMarks.put(id, imO instanceof String ? Double.parseDouble((String) imO) : (double) imO);
+                                examinationMarks.put(id, emO instanceof String ? Double.parseDouble((String) emO) : (double) emO);
+                            }
+                        }
+                        UnitOfWork uow = null;
+                        if (!studentIds.isEmpty()) {
+                            uow = UnitOfWork.execute(w -> updateEnrollments(w, studentIds, moduleCodes, internalMarks, examinationMarks));
+                            if (uow != null) {
+                                showConflicts(uow);
                             }
                         }
-                        updateEnrollment(enrollments);
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -317,6 +368,18 @@ public class EnrollmentController extends BaseController {
                         setCheckAll(false);
                     }
                     break;
+                case "< Prev":
+                case "Next >":
+                    if (command.equals("Next >") ? pager.next() : pager.previous()) {
+                        try {
+                            fetchPage().get();
+                        } catch (InterruptedException | ExecutionException ex) {
+                            ex.printStackTrace();
+                        }
+                        notifyReportViews();
+                        setCheckAll(false);
+                    }
+                    break;
                 case "Refresh Data":
                     try {
                         fetchData().get();
@@ -339,16 +402,17 @@ public class EnrollmentController extends BaseController {
     /**
      * @modifies DbContext.enrollmentDbContext, ViewManager.viewMap
      * @effects <pre>
-     *     - add to the database the new enrollment which made of id, student, module, im , em
+     *     - add to the database the new enrollment which made of student, module, im , em, whose id is given by the
+     *       database
      *     - fetch new data
      *     - notify the corresponding views in ViewManager.viewMap
      * </pre>
      */
-    private void addEnrollment(int id, Student student, Module module, double im, double em) {
-        if (Enrollment.validateId(id) && Enrollment.validateStudent(student) && Enrollment.validateModule(module) && Enrollment.validateMark(im) && Enrollment.validateMark(em)) {
+    private void addEnrollment(Student student, Module module, double im, double em) {
+        if (Enrollment.validateStudent(student) && Enrollment.validateModule(module) && Enrollment.validateMark(im) && Enrollment.validateMark(em)) {
             try {
-                enrollmentService.add(new Enrollment(id, student, module, im, em));
-                fetchData().get();
+                enrollmentService.add(student, module, im, em);
+                fetchChanges().get();
                 Optional<View> opt1 = ViewManager.viewMap.values().stream().filter(m -> m instanceof InitialReportView).findFirst();
                 Optional<View> opt2 = ViewManager.viewMap.values().stream().filter(m -> m instanceof AssessmentReportView).findFirst();
                 if (opt1.isPresent()) {
@@ -375,14 +439,99 @@ public class EnrollmentController extends BaseController {
     }
 
     /**
-     * @effects execute update of all Enrollment in enrollments
+     * @requires studentIds and moduleCodes have the same keys /\ internalMarks and examinationMarks are both null or
+     * have the same keys as studentIds
+     * @modifies uow
+     * @effects <pre>
+     *     read the enrollments of the keys of studentIds, their students and their modules, three reads in all
+     *     for each of those enrollments, set its student, its module and (if given) its marks, and register its update
+     *     an enrollment whose student or module cannot be found is left as it is
+     * </pre>
      */
-    private void updateEnrollment(List<Enrollment> enrollments) {
-        if (enrollments != null && enrollments.size() > 0) {
-            enrollmentService.update(enrollments);
+    private static void updateEnrollments(UnitOfWork uow, Map<Integer, Integer> studentIds, Map<Integer, String> moduleCodes,
+                                          Map<Integer, Double> internalMarks, Map<Integer, Double> examinationMarks) throws Exception {
+        uow.students().findById(new HashSet<>(studentIds.values()));
+        uow.modules().findById(new HashSet<>(moduleCodes.values()));
+        for (Enrollment enrollment : uow.enrollments().findById(studentIds.keySet())) {
+            int id = enrollment.getId();
+            Student student = uow.students().findById(studentIds.get(id));
+            Module module = uow.modules().findById(moduleCodes.get(id));
+            if (student == null || module == null) {
+                continue;
+            }
+            enrollment.setStudent(student);
+            enrollment.setModule(module);
+            if (internalMarks != null) {
+                enrollment.setInternalMark(internalMarks.get(id));
+                enrollment.setExaminationMark(examinationMarks.get(id));
+            }
+            uow.enrollments().update(enrollment);
         }
     }
 
+    /**
+     * @requires uow has been committed
+     * @effects show the students, modules and enrollments whose update uow has left out, because someone else has
+     * changed or deleted them meanwhile (see UnitOfWork.Entities.getConflicts); they are shown as they are now
+     */
+    private void showConflicts(UnitOfWork uow) {
+        StringJoiner keys = new StringJoiner(", ");
+        uow.students().getConflicts().forEach(id -> keys.add("S" + id));
+        uow.modules().getConflicts().forEach(keys::add);
+        uow.enrollments().getConflicts().forEach(id -> keys.add("enrollment " + id));
+        if (keys.length() > 0) {
+            JOptionPane.showMessageDialog(view.getGui(), "Changed or deleted by someone else meanwhile, not updated: " + keys
+                    + "\nTheir current values have been reloaded.", "Update conflict", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * Read the current page of the pager, without reading the whole enrollment table.
+     * @modifies DbContext (Student, Module), this.dtoIR, this.dtoAR, this.pager
+     * @effects <pre>
+     *      If DbContext has no student or no module yet, fetch them (the report views pick them in combo boxes)
+     *      Read the rows of the current page with enrollmentService.page(...) (keyset pagination)
+     *      If the page is empty but is not the first one (its rows have been deleted), move to the previous page
+     *      Update this.dtoIR and this.dtoAR with the rows of the page
+     *      The page is read once the students and the modules are, without waiting for them on ThreadPool.loader
+     * </pre>
+     */
+    public static CompletableFuture<Void> fetchPage() {
+        return CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<Void> studentTask = studentDbContext.isEmpty() ? StudentController.fetchData2() : CompletableFuture.completedFuture(null);
+            CompletableFuture<Void> moduleTask = moduleDbContext.isEmpty() ? ModuleController.fetchData2() : CompletableFuture.completedFuture(null);
+            return CompletableFuture.allOf(studentTask, moduleTask);
+        }, ThreadPool.loader).thenCompose(tasks -> tasks.exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        })).thenRunAsync(EnrollmentController::loadPage, ThreadPool.loader);
+    }
+
+    /**
+     * @modifies this.dtoIR, this.dtoAR, this.pager
+     * @effects see fetchPage()
+     */
+    static void loadPage() {
+        List<Enrollment> enrollments = pager.accept(enrollmentService.page(pager.getAfterKey(), pager.getLimit(), pager.getSortOrder()), Enrollment::getId);
+        while (enrollments.isEmpty() && pager.previous()) {
+            enrollments = pager.accept(enrollmentService.page(pager.getAfterKey(), pager.getLimit(), pager.getSortOrder()), Enrollment::getId);
+        }
+        dtoIR.clear();
+        dtoIR.addAll(DtoGenerator.getDto_initialReport(enrollments));
+        dtoAR.clear();
+        dtoAR.addAll(DtoGenerator.getDto_assessmentReport(enrollments));
+    }
+
+    /**
+     * @effects notify InitialReportView and AssessmentReportView, if they exist, that data changed
+     */
+    private void notifyReportViews() {
+        Optional<View> opt1 = ViewManager.viewMap.values().stream().filter(m -> m instanceof InitialReportView).findFirst();
+        Optional<View> opt2 = ViewManager.viewMap.values().stream().filter(m -> m instanceof AssessmentReportView).findFirst();
+        opt1.ifPresent(View::notifyDataChanged);
+        opt2.ifPresent(View::notifyDataChanged);
+    }
+
     /**
      * Get data from the DbContext. More specifically, get all enrollments and save it to enrollmentDbContext.
      * @modifies DbContext
@@ -391,33 +540,43 @@ public class EnrollmentController extends BaseController {
      *      StudentController.fetchData(); -> get all students
      *      ModuleController.fetchData();  -> get all module
      *      Then process to add all the correspond Enrollment(s) to DbContext.enrollmentRepository
-     *      Update new data to Dto(s)
+     *      Update the Dto(s) with the current page
+     *      The enrollments are read once the students and the modules are, without waiting for them on ThreadPool.loader
      * </pre>
      */
     public static CompletableFuture<Void> fetchData() {
-        return CompletableFuture.runAsync(() -> {
+        return CompletableFuture.supplyAsync(() -> {
             System.out.println("----------------------------");
+            long seq = currentSeq();
             enrollmentDbContext.clear();
 
             CompletableFuture<Void> studentTask = StudentController.fetchData2();
             CompletableFuture<Void> moduleTask = ModuleController.fetchData2();
-            try {
-                CompletableFuture.allOf(studentTask, moduleTask).get();
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+            return CompletableFuture.allOf(studentTask, moduleTask).handle((v, e) -> {
+                if (e != null) {
+                    e.printStackTrace();
+                }
+                return seq;
+            });
+        }, ThreadPool.loader).thenCompose(tasks -> tasks).thenAcceptAsync(seq -> {
+            try (Stream<Enrollment> rows = enrollmentService.stream(RowStream.DEFAULT_FETCH_SIZE)) {
+                rows.forEach(enrollmentDbContext::add);
             }
-            enrollmentDbContext.addAll(enrollmentService.findAll());
+            loaded(DbSchema.EnrollmentTable.NAME, seq);
 
-            dtoIR.clear();
-            dtoIR.addAll(DtoGenerator.getDto_initialReport(enrollmentDbContext));
-
-            dtoAR.clear();
-            dtoAR.addAll(DtoGenerator.getDto_assessmentReport(enrollmentDbContext));
+            loadPage();
             System.out.println("fetched new data from the database for: Enrollment");
             System.out.println("----------------------------");
 
             resetOtherControllerViews(EnumUtil.Controller.EnrollmentController);
-        });
+        }, ThreadPool.loader);
+    }
+
+    /**
+     * Bring DbContext and the pages up to date with the rows changed since the last fetch, see BaseController.syncChanges
+     */
+    public static CompletableFuture<Void> fetchChanges() {
+        return syncChanges(EnumUtil.Controller.EnrollmentController);
     }
 
     /**
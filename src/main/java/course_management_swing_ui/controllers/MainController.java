@@ -1,6 +1,21 @@
 package course_management_swing_ui.controllers;
 
+import course_management_swing_ui.repositories.ChangeWatcher;
+import course_management_swing_ui.repositories.DbContextSnapshot;
+import course_management_swing_ui.repositories.dao.DaoMetrics;
+import course_management_swing_ui.repositories.dao.SlowQueryLog;
+import course_management_swing_ui.repositories.db.BackupScheduler;
+import course_management_swing_ui.repositories.db.DbBackup;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.services.exports.ExportFormat;
+import course_management_swing_ui.services.exports.ExportListener;
+import course_management_swing_ui.services.exports.ExportService;
+import course_management_swing_ui.services.imports.ImportMode;
+import course_management_swing_ui.services.imports.ImportReport;
+import course_management_swing_ui.services.imports.ImportService;
 import course_management_swing_ui.util.ThreadPool;
+import course_management_swing_ui.views.ProgressDialog;
+import course_management_swing_ui.views.View;
 import course_management_swing_ui.views.ViewManager;
 import course_management_swing_ui.views.enrollment.AssessmentReportView;
 import course_management_swing_ui.views.enrollment.InitialReportView;
@@ -10,8 +25,18 @@ import course_management_swing_ui.views.module.ListModuleView;
 import course_management_swing_ui.views.student.NewStudentView;
 import course_management_swing_ui.views.student.ListStudentView;
 
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.WindowEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author Phan Quang Tuan
@@ -22,22 +47,32 @@ import java.awt.event.WindowEvent;
  * @Object AF(c) = { views }
  */
 public class MainController extends BaseController {
+    private final ImportService importService = new ImportService();
+    private final ExportService exportService = new ExportService();
 
     /**
      * @effects <pre>
      * Handle the following cases:
      * File
+     *    Import students... – This menu item imports a CSV file of students (id, name, dob, address, email).
+     *    Import modules... – This menu item imports a CSV file of modules (code, name, semester, credits, module_type, department).
+     *    Import enrollments... – This menu item imports a CSV file of enrolments (id, student_id, module_code, internal_mark, examination_mark).
+     *    Export students... / Export modules... / Export initial report... / Export assessment report... – These menu
+     *    items stream a table or a report from the database to a CSV or JSON file (gzip-compressed if its name ends with .gz).
+     *    Back up database... – This menu item copies the database to a file while the program keeps running, then verifies the copy.
+     *    Database statistics... – This menu item shows the calls, rows and latency percentiles of every DAO operation so far,
+     *    and the statements that have been slow (see SlowQueryLog).
      *    Exit – terminates the program.
      * Student
      *    New student – This menu item opens a window for user to add a new student.
-     *    List students – This menu item opens a window which displays a table of students.
+     *    List students – This menu item opens a window which displays a table of students, one page at a time.
      * Module
      *    New module – This menu item opens a window for user to add a new module.
-     *    List modules – This menu item opens a window which displays a table of modules.
+     *    List modules – This menu item opens a window which displays a table of modules, one page at a time.
      * Enrolment
      *    New enrolment – This menu item opens a window for user to enrol a Student into a Module. There should be two drop-down boxes for selecting Student and Module respectively.
-     *    Initial report – This menu item opens a window which displays a tabular list of enrolments without grades.
-     *    Assessment report – This menu item opens a window which displays a tabular list of enrolments with grades.
+     *    Initial report – This menu item opens a window which displays a tabular list of enrolments without grades, one page at a time.
+     *    Assessment report – This menu item opens a window which displays a tabular list of enrolments with grades, one page at a time.
      *
      * </pre>
      */
@@ -46,6 +81,23 @@ public class MainController extends BaseController {
         String cmd = e.getActionCommand();
         try {
             switch (cmd) {
+                case "Import students...":
+                case "Import modules...":
+                case "Import enrollments...":
+                    importFile(cmd);
+                    break;
+                case "Export students...":
+                case "Export modules...":
+                case "Export initial report...":
+                case "Export assessment report...":
+                    exportFile(cmd);
+                    break;
+                case "Back up database...":
+                    backupDatabase();
+                    break;
+                case "Database statistics...":
+                    showStatistics();
+                    break;
                 case "Exit":
                     shutDown();
                     break;
@@ -54,7 +106,9 @@ public class MainController extends BaseController {
                     if (addGui == null) {
                         StudentController studentCtrl = new StudentController();
                         BaseController.controllers.add(studentCtrl);
-                        StudentController.fetchData().get();
+                        if (!DbContextSnapshot.awaitLoad()) {
+                            StudentController.fetchData().get();
+                        }
                         addGui = NewStudentView.getInstance(view.getGui(), studentCtrl);
                         studentCtrl.setGui(addGui);
                         ViewManager.viewMap.put(addGui.hashCode(), addGui);
@@ -66,12 +120,12 @@ public class MainController extends BaseController {
                     if (listGui == null) {
                         StudentController listStudentCtrl = new StudentController();
                         BaseController.controllers.add(listStudentCtrl);
-                        StudentController.fetchData().get();
+                        StudentController.fetchPage().get();
                         listGui = ListStudentView.getInstance(listStudentCtrl, view.getGui());
                         listStudentCtrl.setGui(listGui);
                         ViewManager.viewMap.put(listGui.hashCode(), listGui);
                     } else {
-                        StudentController.fetchData().get();
+                        StudentController.fetchPage().get();
                         listGui.notifyDataChanged();
                     }
                     listGui.display();
@@ -81,7 +135,9 @@ public class MainController extends BaseController {
                     if (amv == null) {
                         ModuleController moduleCtrl = new ModuleController();
                         BaseController.controllers.add(moduleCtrl);
-                        ModuleController.fetchData().get();
+                        if (!DbContextSnapshot.awaitLoad()) {
+                            ModuleController.fetchData().get();
+                        }
                         amv = NewModuleView.getInstance(view.getGui(), moduleCtrl);
                         moduleCtrl.setGui(amv);
                         ViewManager.viewMap.put(amv.hashCode(), amv);
@@ -93,12 +149,12 @@ public class MainController extends BaseController {
                     if (lmv == null) {
                         ModuleController moduleCtrl = new ModuleController();
                         BaseController.controllers.add(moduleCtrl);
-                        ModuleController.fetchData().get();
+                        ModuleController.fetchPage().get();
                         lmv = ListModuleView.getInstance(moduleCtrl, view.getGui());
                         moduleCtrl.setGui(lmv);
                         ViewManager.viewMap.put(lmv.hashCode(), lmv);
                     } else {
-                        ModuleController.fetchData().get();
+                        ModuleController.fetchPage().get();
                         lmv.notifyDataChanged();
                     }
                     lmv.display();
@@ -108,7 +164,9 @@ public class MainController extends BaseController {
                     if (emv == null) {
                         EnrollmentController emvCtrl = new EnrollmentController();
                         BaseController.controllers.add(emvCtrl);
-                        EnrollmentController.fetchData().get();
+                        if (!DbContextSnapshot.awaitLoad()) {
+                            EnrollmentController.fetchData().get();
+                        }
                         emv = NewEnrollmentView.getInstance(view.getGui(), emvCtrl);
                         emvCtrl.setGui(emv);
                         ViewManager.viewMap.put(emv.hashCode(), emv);
@@ -120,12 +178,12 @@ public class MainController extends BaseController {
                     if (irv == null) {
                         EnrollmentController irvCtrl = new EnrollmentController();
                         BaseController.controllers.add(irvCtrl);
-                        EnrollmentController.fetchData().get();
+                        EnrollmentController.fetchPage().get();
                         irv = InitialReportView.getInstance(irvCtrl, view.getGui());
                         irvCtrl.setGui(irv);
                         ViewManager.viewMap.put(irv.hashCode(), irv);
                     } else {
-                        EnrollmentController.fetchData().get();
+                        EnrollmentController.fetchPage().get();
                         irv.notifyDataChanged();
                     }
                     irv.display();
@@ -135,12 +193,12 @@ public class MainController extends BaseController {
                     if (arv == null) {
                         EnrollmentController arvCtrl = new EnrollmentController();
                         BaseController.controllers.add(arvCtrl);
-                        EnrollmentController.fetchData().get();
+                        EnrollmentController.fetchPage().get();
                         arv = AssessmentReportView.getInstance(arvCtrl, view.getGui());
                         arvCtrl.setGui(arv);
                         ViewManager.viewMap.put(arv.hashCode(), arv);
                     } else {
-                        EnrollmentController.fetchData().get();
+                        EnrollmentController.fetchPage().get();
                         arv.notifyDataChanged();
                     }
                     arv.display();
@@ -153,6 +211,239 @@ public class MainController extends BaseController {
         }
     }
 
+    /**
+     * @requires cmd is one of the import menu items
+     * @modifies the database, DbContext, ViewManager.viewMap
+     * @effects <pre>
+     *     ask for a CSV file and whether existing rows are updated (UPSERT) or rejected (INSERT)
+     *     in the background:
+     *       import the file with importService
+     *       if rows were rejected, write them next to the file, as <file>.rejected.csv
+     *       fetch new data and notify the corresponding views in ViewManager.viewMap
+     *       show the ImportReport, or the reason why the file cannot be imported
+     * </pre>
+     */
+    private void importFile(String cmd) {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        if (chooser.showOpenDialog(view.getGui()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+        int choice = JOptionPane.showConfirmDialog(view.getGui(),
+                "Update the rows that are in the database already?\n(No: they are rejected)", "Import",
+                JOptionPane.YES_NO_CANCEL_OPTION);
+        if (choice != JOptionPane.YES_OPTION && choice != JOptionPane.NO_OPTION) {
+            return;
+        }
+        ImportMode mode = choice == JOptionPane.YES_OPTION ? ImportMode.UPSERT : ImportMode.INSERT;
+
+        // not on ThreadPool.cpu, which parses the rows
+        inBackground(() -> {
+            try {
+                ImportReport report;
+                switch (cmd) {
+                    case "Import students...":
+                        report = importService.importStudents(path, mode);
+                        StudentController.fetchData().get();
+                        notifyViews(ListStudentView.class);
+                        break;
+                    case "Import modules...":
+                        report = importService.importModules(path, mode);
+                        ModuleController.fetchData().get();
+                        notifyViews(ListModuleView.class);
+                        break;
+                    default:
+                        report = importService.importEnrollments(path, mode);
+                        EnrollmentController.fetchData().get();
+                        notifyViews(InitialReportView.class, AssessmentReportView.class);
+                        break;
+                }
+                System.out.println(report);
+                // a large change: the next launch should not find the snapshot out of date
+                DbContextSnapshot.writeAsync(DbContextSnapshot.FILE);
+
+                String message = report.toString();
+                if (report.getRejectedCount() > 0) {
+                    Path rejected = path.resolveSibling(path.getFileName() + ".rejected.csv");
+                    report.writeRejectedRows(rejected);
+                    message += "\nThe rejected rows are in " + rejected;
+                }
+                String summary = message;
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(view.getGui(), summary, "Import",
+                        JOptionPane.INFORMATION_MESSAGE));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(view.getGui(), ex.getMessage(),
+                        "Failed to import " + path.getFileName(), JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * @requires cmd is one of the export menu items
+     * @modifies the chosen file
+     * @effects <pre>
+     *     ask for a file, whose name gives the format: .csv, .json, and .gz for gzip (.csv if it has no extension)
+     *     in the background, with a ProgressDialog that shows the progress and can cancel it:
+     *       export the table or the report with exportService
+     *       show how many rows were written, or the reason why the export failed
+     * </pre>
+     */
+    private void exportFile(String cmd) {
+        JFileChooser chooser = new JFileChooser(".");
+        FileNameExtensionFilter csv = new FileNameExtensionFilter("CSV files (*.csv, *.csv.gz)", "csv", "gz");
+        FileNameExtensionFilter json = new FileNameExtensionFilter("JSON files (*.json, *.json.gz)", "json", "gz");
+        chooser.addChoosableFileFilter(csv);
+        chooser.addChoosableFileFilter(json);
+        chooser.setFileFilter(csv);
+        if (chooser.showSaveDialog(view.getGui()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path chosen = chooser.getSelectedFile().toPath();
+        String name = chosen.getFileName().toString().toLowerCase();
+        ExportFormat format = chooser.getFileFilter() == json ? ExportFormat.JSON : ExportFormat.CSV;
+        Path path = name.endsWith(".csv") || name.endsWith(".json") || name.endsWith(ExportFormat.GZIP_EXTENSION)
+                ? chosen
+                : chosen.resolveSibling(chosen.getFileName() + format.getExtension());
+
+        ProgressDialog progress = new ProgressDialog(view.getGui(), "Exporting " + path.getFileName());
+        ExportListener listener = new ExportListener() {
+            @Override
+            public void onProgress(long rows, long total) {
+                progress.setProgress(rows, total);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return progress.isCancelled();
+            }
+        };
+        progress.display();
+
+        // a lazy stream of rows holds a read connection until it is closed: read it off the Swing thread
+        inBackground(() -> {
+            try {
+                long start = System.nanoTime();
+                long rows;
+                switch (cmd) {
+                    case "Export students...":
+                        rows = exportService.exportStudents(path, listener);
+                        break;
+                    case "Export modules...":
+                        rows = exportService.exportModules(path, listener);
+                        break;
+                    case "Export initial report...":
+                        rows = exportService.exportInitialReport(path, listener);
+                        break;
+                    default:
+                        rows = exportService.exportAssessmentReport(path, listener);
+                        break;
+                }
+                String message = String.format("%d rows exported to %s in %.2f s", rows, path, (System.nanoTime() - start) / 1e9);
+                System.out.println(message);
+                progress.close();
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(view.getGui(), message, "Export",
+                        JOptionPane.INFORMATION_MESSAGE));
+            } catch (CancellationException ex) {
+                progress.close();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                progress.close();
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(view.getGui(), ex.getMessage(),
+                        "Failed to export " + path.getFileName(), JOptionPane.ERROR_MESSAGE));
+            }
+        }, progress::close);
+    }
+
+    /**
+     * @modifies the chosen file
+     * @effects <pre>
+     *     ask for a file, named database-yyyyMMdd-HHmmss.sqlite3 by default
+     *     on the backup thread, with a ProgressDialog that shows the pages copied:
+     *       copy the database to the file with DbBackup, while it stays online
+     *       show the verified copy, or the reason why the backup failed
+     * </pre>
+     */
+    private void backupDatabase() {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setFileFilter(new FileNameExtensionFilter("SQLite databases (*.sqlite3)", "sqlite3"));
+        chooser.setSelectedFile(new File(BackupScheduler.PREFIX
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + BackupScheduler.SUFFIX));
+        if (chooser.showSaveDialog(view.getGui()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+
+        ProgressDialog progress = new ProgressDialog(view.getGui(), "Backing up to " + path.getFileName(), "pages", false);
+        progress.display();
+        inBackground(() -> {
+            try {
+                DbBackup.Result result = BackupScheduler.getInstance().backup(path, progress::setProgress).get();
+                System.out.println("database backup: " + result);
+                progress.close();
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(view.getGui(),
+                        "Backed up and verified:\n" + result, "Backup", JOptionPane.INFORMATION_MESSAGE));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                progress.close();
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(view.getGui(), cause.getMessage(),
+                        "Failed to back up the database", JOptionPane.ERROR_MESSAGE));
+            }
+        }, progress::close);
+    }
+
+    /**
+     * @effects <pre>
+     *     show DaoMetrics.report(), SlowQueryLog.report() and ThreadPool.report() in a dialog
+     *     if Reset is clicked: reset all three
+     * </pre>
+     */
+    private void showStatistics() {
+        JTextArea text = new JTextArea(DaoMetrics.getInstance().report() + System.lineSeparator()
+                + SlowQueryLog.getInstance().report() + System.lineSeparator() + ThreadPool.report());
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        text.setEditable(false);
+        JScrollPane scroll = new JScrollPane(text);
+        scroll.setPreferredSize(new Dimension(900, 400));
+        Object[] options = {"Close", "Reset"};
+        int choice = JOptionPane.showOptionDialog(view.getGui(), scroll, "Database statistics",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+        if (choice == 1) {
+            DaoMetrics.getInstance().reset();
+            SlowQueryLog.getInstance().reset();
+            ThreadPool.reset();
+        }
+    }
+
+    /**
+     * @requires task != null /\ onRejected != null
+     * @effects <pre>
+     *     run task on ThreadPool.maintenance
+     *     if ThreadPool.maintenance is full
+     *       run onRejected and tell the user to try again later
+     * </pre>
+     */
+    private void inBackground(Runnable task, Runnable onRejected) {
+        try {
+            CompletableFuture.runAsync(task, ThreadPool.maintenance);
+        } catch (RejectedExecutionException e) {
+            onRejected.run();
+            JOptionPane.showMessageDialog(view.getGui(), "Too many tasks are running in the background, try again later.",
+                    "Busy", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * @requires task != null
+     * @effects same as inBackground(task, nothing)
+     */
+    private void inBackground(Runnable task) {
+        inBackground(task, () -> {
+        });
+    }
+
     @Override
     public void windowClosing(WindowEvent e) {
         shutDown();
@@ -160,13 +451,28 @@ public class MainController extends BaseController {
 
     /**
      * Shut down this application.
-     * @effects shutdown <tt>gui</tt> and exit.
+     * @effects shutdown <tt>gui</tt>, print the statistics of the DAO(s) and of the executors and exit.
      */
     private void shutDown() {
         view.shutDown();
 
-        // turn off services
-        ThreadPool.executor.shutdown();
+        // turn off services; the writes still queued need ThreadPool.dbIo, which stops last
+        ChangeWatcher.getInstance().shutdown(5000);
+        BackupScheduler.getInstance().shutdown(5000);
+        WriteQueue.getInstance().shutdown(5000);
+
+        // once every write is committed: save the DbContext of the next launch, unless the snapshot is up to date already
+        try {
+            DbContextSnapshot.write(DbContextSnapshot.FILE);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        ThreadPool.shutdown(5000);
+        SlowQueryLog.getInstance().shutdown(2000);
+        System.out.print(DaoMetrics.getInstance().report());
+        System.out.print(SlowQueryLog.getInstance().report());
+        System.out.print(ThreadPool.report());
 
         // exit program
         System.exit(0);
@@ -1,13 +1,20 @@
 package course_management_swing_ui.controllers;
 
 import course_management_swing_ui.factories.ModuleFactory;
-import course_management_swing_ui.models.CompulsoryModule;
 import course_management_swing_ui.models.ElectiveModule;
 import course_management_swing_ui.models.Module;
+import course_management_swing_ui.repositories.DbContextSnapshot;
+import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.repositories.dao.RowStream;
 import course_management_swing_ui.services.ModuleService;
+import course_management_swing_ui.services.UnitOfWork;
 import course_management_swing_ui.util.EnumUtil;
+import course_management_swing_ui.util.Pager;
+import course_management_swing_ui.util.ThreadPool;
 import course_management_swing_ui.util.dto.DtoGenerator;
 import course_management_swing_ui.util.entitiesMappers.EnrollmentMapper;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
 import course_management_swing_ui.views.View;
 import course_management_swing_ui.views.ViewManager;
 import course_management_swing_ui.views.module.NewModuleView;
@@ -20,6 +27,7 @@ import java.awt.event.WindowEvent;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 import static course_management_swing_ui.repositories.DbContext.enrollmentDbContext;
 import static course_management_swing_ui.repositories.DbContext.moduleDbContext;
@@ -36,6 +44,7 @@ import static course_management_swing_ui.repositories.DbContext.moduleDbContext;
 public class ModuleController extends BaseController {
     private final static ModuleService moduleService = new ModuleService();
     public final static Vector<Vector<?>> dto = new Vector<>();
+    public final static Pager<String> pager = new Pager<>();
 
     public ModuleController() {
         super();
@@ -79,6 +88,10 @@ public class ModuleController extends BaseController {
      *      - fetch new data
      *      - notify ListModuleView that data changed
      *      - uncheck all selected items
+     *  < Prev / Next >:
+     *      - move the pager to the previous / next page
+     *      - read that page only
+     *      - notify ListModuleView that data changed
      *  Refresh Data
      *      - fetch new data
      *  Close
@@ -118,7 +131,9 @@ public class ModuleController extends BaseController {
                         ModuleController mc = new ModuleController();
                         BaseController.controllers.add(mc);
                         try {
-                            ModuleController.fetchData().get();
+                            if (!DbContextSnapshot.awaitLoad()) {
+                                ModuleController.fetchData().get();
+                            }
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -147,14 +162,14 @@ public class ModuleController extends BaseController {
                                 modules.add(moduleService.findById(code));
                             }
                         }
-                        if (modules.size() == moduleDbContext.size()) {
+                        if (pager.isSinglePage() && modules.size() == tblModules.getRowCount()) {
                             moduleService.deleteAll();
                         } else {
                             deleteModule(modules);
                         }
 
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -175,41 +190,48 @@ public class ModuleController extends BaseController {
                     //      then create new Module object with the Constructor annotated with @Safe
                     int editResult = JOptionPane.showConfirmDialog(gui, "Update all the selected rows?", "Update confirmation", JOptionPane.OK_CANCEL_OPTION);
                     if (editResult == JOptionPane.YES_OPTION) {
-                        List<Module> modules = new ArrayList<>();
+                        // the edited rows by code: name, credits, module type, department
+                        Map<String, Object[]> rows = new LinkedHashMap<>();
                         DefaultTableModel tm = (DefaultTableModel) tblModules.getModel();
                         for (int i = tblModules.getRowCount() - 1; i >= 0; i--) {
                             boolean edit = (boolean) tm.getValueAt(i, 6);
                             if (edit) {
                                 String code = (String) tm.getValueAt(i, 0);
-                                String name = (String) tm.getValueAt(i, 1);
                                 //int semester = (int) tm.getValueAt(i, 2);
                                 Object creditObject = tm.getValueAt(i, 3);
                                 int credits = creditObject instanceof Integer ? (int) creditObject : Integer.parseInt((String) creditObject);
-                                Module.ModuleType mt = (Module.ModuleType) tm.getValueAt(i, 4);
-                                //moduleDbContext.removeIf(m -> m.getCode().equals(code)); // remove here because module can be switched between two types  // bug fixed 27/06/23
-
-                                if (mt == Module.ModuleType.ELECTIVE) {
-                                    String department = (String) tm.getValueAt(i, 5);
-                                    // not generating Module.code -> it's safe
-                                    //Module m = new ElectiveModule(code, name, semester, credits, department);
-                                    // but still not clear suffix -> not safe
-                                    ElectiveModule m = (ElectiveModule) moduleService.findById(code);
-                                    m.setName(name);
-                                    m.setCredits(credits);
-                                    m.setDepartment(department);
-                                    modules.add(m);
-                                } else {
-                                    //Module m = new CompulsoryModule(code, name, semester, credits);
-                                    CompulsoryModule m = (CompulsoryModule) moduleService.findById(code);
-                                    m.setName(name);
-                                    m.setCredits(credits);
-                                    modules.add(m);
+                                rows.put(code, new Object[]{tm.getValueAt(i, 1), credits, tm.getValueAt(i, 4), tm.getValueAt(i, 5)});
+                            }
+                        }
+                        // one read and one update in one transaction
+                        UnitOfWork uow = null;
+                        if (!rows.isEmpty()) {
+                            uow = UnitOfWork.execute(w -> {
+                                for (Module m : w.modules().findById(rows.keySet())) {
+                                    Module updated = updateModule(m, rows.get(m.getCode()));
+                                    if (updated != null) {
+                                        w.modules().update(updated);
+                                    }
                                 }
+                            });
+                            if (uow != null) {
+                                showConflicts(uow.modules().getConflicts());
                             }
                         }
-                        updateModule(modules);
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
+                        } catch (InterruptedException | ExecutionException ex) {
+                            ex.printStackTrace();
+                        }
+                        v.notifyDataChanged();
+                        setCheckAll(false);
+                    }
+                    break;
+                case "< Prev":
+                case "Next >":
+                    if (command.equals("Next >") ? pager.next() : pager.previous()) {
+                        try {
+                            fetchPage().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -248,7 +270,7 @@ public class ModuleController extends BaseController {
         if (Module.validateName(name) && Module.validateSemester(semester) && Module.validateCredits(credits) && Module.validateModuleType(mt)) {
             try {
                 moduleService.add(ModuleFactory.getInstance().createModule(name, semester, credits, mt, department));
-                fetchData().get();
+                fetchChanges().get();
                 Optional<View> opt = ViewManager.viewMap.values().stream().filter(m -> m instanceof ListModuleView).findFirst();
                 if (opt.isPresent()) {
                     ListModuleView v = (ListModuleView) opt.get();
@@ -276,56 +298,132 @@ public class ModuleController extends BaseController {
 
 
     /**
-     * @effects execute update of all Module in modules
+     * @requires row is the edited name, credits, module type and department of m
+     * @effects <pre>
+     *     if the module type of row is the one of m
+     *       set the name, the credits (and the department of an elective module) of m and return m
+     *     else
+     *       return a new module of that type with the code and the version of m (see ModuleFactory.retype), which
+     *       replaces m when it is updated, or null if it cannot be created
+     * </pre>
      */
-    private void updateModule(List<Module> modules) {
-        if (modules != null && modules.size() > 0) {
-            moduleService.update(modules);
+    private static Module updateModule(Module m, Object[] row) {
+        String name = (String) row[0];
+        int credits = (int) row[1];
+        Module.ModuleType mt = (Module.ModuleType) row[2];
+        String department = (String) row[3];
+        if (m.getModuleType() != mt) {
+            // switched between COMPULSORY and ELECTIVE: the module of the new type updates the row of the same code
+            try {
+                return ModuleFactory.getInstance().retype(m, name, credits, mt, department);
+            } catch (NotPossibleException | InvalidArgumentException ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        } else if (mt == Module.ModuleType.ELECTIVE) {
+            ElectiveModule em = (ElectiveModule) m;
+            em.setName(name);
+            em.setCredits(credits);
+            em.setDepartment(department);
+            return em;
+        } else {
+            m.setName(name);
+            m.setCredits(credits);
+            return m;
+        }
+    }
+
+    /**
+     * @requires conflicts are the keys of the modules whose update has been left out (see UnitOfWork.Entities.getConflicts)
+     * @effects show the modules that someone else has changed or deleted meanwhile, which are shown as they are now
+     */
+    private void showConflicts(List<String> conflicts) {
+        if (!conflicts.isEmpty()) {
+            StringJoiner keys = new StringJoiner(", ");
+            conflicts.forEach(keys::add);
+            JOptionPane.showMessageDialog(view.getGui(), "Changed or deleted by someone else meanwhile, not updated: " + keys
+                    + "\nTheir current values have been reloaded.", "Update conflict", JOptionPane.WARNING_MESSAGE);
         }
     }
 
+    /**
+     * Read the current page of the pager, without touching DbContext.
+     * @modifies this.dto, this.pager
+     * @effects <pre>
+     *      Read the rows of the current page with moduleService.page(...) (keyset pagination)
+     *      If the page is empty but is not the first one (its rows have been deleted), move to the previous page
+     *      Update this.dto with the rows of the page
+     * </pre>
+     */
+    public static CompletableFuture<Void> fetchPage() {
+        return CompletableFuture.runAsync(ModuleController::loadPage, ThreadPool.loader);
+    }
+
+    /**
+     * @modifies this.dto, this.pager
+     * @effects see fetchPage()
+     */
+    static void loadPage() {
+        List<Module> modules = pager.accept(moduleService.page(pager.getAfterKey(), pager.getLimit(), pager.getSortOrder()), Module::getCode);
+        while (modules.isEmpty() && pager.previous()) {
+            modules = pager.accept(moduleService.page(pager.getAfterKey(), pager.getLimit(), pager.getSortOrder()), Module::getCode);
+        }
+        dto.clear();
+        dto.addAll(DtoGenerator.getDto_module(modules));
+    }
+
     /**
      * Get data from the DbContext. More specifically, get all Module and save it to moduleDbContext.
      * @modifies DbContext.moduleDbContext
      * @effects <pre>
      *      Clear old data from DbContext (Module only)
      *      Then process to add all the correspond Module(s) to DbContext.moduleDbContext
-     *      Update new data to this.dto
+     *      Update this.dto with the current page
      * </pre>
      */
     public static CompletableFuture<Void> fetchData() {
         return CompletableFuture.runAsync(() -> {
+            long seq = currentSeq();
             resetModuleIdCount();
             moduleDbContext.clear();
-            moduleDbContext.addAll(moduleService.findAll());
+            try (Stream<Module> rows = moduleService.stream(RowStream.DEFAULT_FETCH_SIZE)) {
+                rows.forEach(moduleDbContext::add);
+            }
+            loaded(DbSchema.ModuleTable.NAME, seq);
 
-            dto.clear();
-            dto.addAll(DtoGenerator.getDto_module(moduleDbContext));
+            loadPage();
             System.out.println("fetched new data from the database for: Module");
 
             EnrollmentMapper.getInstance().mapModule();
-            EnrollmentController.dtoIR.clear();
-            EnrollmentController.dtoIR.addAll(DtoGenerator.getDto_initialReport(enrollmentDbContext));
-            EnrollmentController.dtoAR.clear();
-            EnrollmentController.dtoAR.addAll(DtoGenerator.getDto_assessmentReport(enrollmentDbContext));
+            EnrollmentController.loadPage();
             resetOtherControllerViews(EnumUtil.Controller.ModuleController);
-        });
+        }, ThreadPool.loader);
+    }
+
+    /**
+     * Bring DbContext and the pages up to date with the rows changed since the last fetch, see BaseController.syncChanges
+     */
+    public static CompletableFuture<Void> fetchChanges() {
+        return syncChanges(EnumUtil.Controller.ModuleController);
     }
 
     public static CompletableFuture<Void> fetchData2() {
         return CompletableFuture.runAsync(() -> {
+            long seq = currentSeq();
             resetModuleIdCount();
             moduleDbContext.clear();
-            moduleDbContext.addAll(moduleService.findAll());
+            try (Stream<Module> rows = moduleService.stream(RowStream.DEFAULT_FETCH_SIZE)) {
+                rows.forEach(moduleDbContext::add);
+            }
+            loaded(DbSchema.ModuleTable.NAME, seq);
 
-            dto.clear();
-            dto.addAll(DtoGenerator.getDto_module(moduleDbContext));
+            loadPage();
             System.out.println("fetched new data from the database for: Module");
-        });
+        }, ThreadPool.loader);
     }
 
     /**
-     * @effects delete all suffixes stored in the static HashMap called Module.suffixes
+     * @effects delete all suffixes stored in the static map called Module.suffixes
      */
     private static void resetModuleIdCount() {
         Module.suffixes.clear();
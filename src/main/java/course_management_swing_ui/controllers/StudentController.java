@@ -1,7 +1,13 @@
 package course_management_swing_ui.controllers;
 
+import course_management_swing_ui.repositories.DbContextSnapshot;
+import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.repositories.dao.RowStream;
 import course_management_swing_ui.services.StudentService;
+import course_management_swing_ui.services.UnitOfWork;
 import course_management_swing_ui.util.EnumUtil;
+import course_management_swing_ui.util.Pager;
+import course_management_swing_ui.util.ThreadPool;
 import course_management_swing_ui.util.dto.*;
 import course_management_swing_ui.models.Student;
 import course_management_swing_ui.util.entitiesMappers.EnrollmentMapper;
@@ -16,11 +22,15 @@ import java.awt.event.ActionEvent;
 import java.awt.event.WindowEvent;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.StringJoiner;
 import java.util.Vector;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 import static course_management_swing_ui.repositories.DbContext.enrollmentDbContext;
 import static course_management_swing_ui.repositories.DbContext.studentDbContext;
@@ -37,6 +47,7 @@ import static course_management_swing_ui.repositories.DbContext.studentDbContext
 public class StudentController extends BaseController {
     private final static StudentService studentService = new StudentService();
     public final static Vector<Vector<?>> dto = new Vector<>();
+    public final static Pager<Integer> pager = new Pager<>();
 
     public StudentController() {
         super();
@@ -80,6 +91,10 @@ public class StudentController extends BaseController {
      *      - fetch new data
      *      - notify ListStudentView that data changed
      *      - uncheck all selected items
+     *  < Prev / Next >:
+     *      - move the pager to the previous / next page
+     *      - read that page only
+     *      - notify ListStudentView that data changed
      *  Refresh Data
      *      - fetch new data
      *  Close
@@ -114,7 +129,9 @@ public class StudentController extends BaseController {
                         StudentController sc = new StudentController();
                         BaseController.controllers.add(sc);
                         try {
-                            fetchData().get();
+                            if (!DbContextSnapshot.awaitLoad()) {
+                                fetchData().get();
+                            }
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -142,14 +159,14 @@ public class StudentController extends BaseController {
                                 students.add(studentService.findById(Integer.valueOf(id.substring(1))));
                             }
                         }
-                        if (students.size() == studentDbContext.size()) {
+                        if (pager.isSinglePage() && students.size() == tblStudents.getRowCount()) {
                             studentService.deleteAll();
                         } else {
                             deleteStudent(students);
                         }
 
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -171,28 +188,49 @@ public class StudentController extends BaseController {
                     //      then create new Student object with the Constructor annotated with @Safe
                     int editResult = JOptionPane.showConfirmDialog(gui, "Update all the selected rows?", "Update confirmation", JOptionPane.OK_CANCEL_OPTION);
                     if (editResult == JOptionPane.YES_OPTION) {
-                        List<Student> students = new ArrayList<>();
+                        // the edited rows by id: name, dob, address, email
+                        Map<Integer, Object[]> rows = new LinkedHashMap<>();
                         DefaultTableModel tm = (DefaultTableModel) tblStudents.getModel();
                         for (int i = tblStudents.getRowCount() - 1; i >= 0; i--) {
                             boolean edit = (boolean) tm.getValueAt(i, 5);
                             if (edit) {
                                 int id = Integer.parseInt(((String) tm.getValueAt(i, 0)).substring(1));
-                                String name = (String) tm.getValueAt(i, 1);
                                 Object dobO = tm.getValueAt(i, 2);
                                 LocalDate dob = dobO instanceof String ? LocalDate.parse((String) dobO) : (LocalDate) dobO;
-                                String address = (String) tm.getValueAt(i, 3);
-                                String email = (String) tm.getValueAt(i, 4);
-                                Student student = studentService.findById(id);
-                                student.setName(name);
-                                student.setDob(dob);
-                                student.setAddress(address);
-                                student.setEmail(email);
-                                students.add(student);
+                                rows.put(id, new Object[]{tm.getValueAt(i, 1), dob, tm.getValueAt(i, 3), tm.getValueAt(i, 4)});
+                            }
+                        }
+                        // one read and one update in one transaction
+                        UnitOfWork uow = null;
+                        if (!rows.isEmpty()) {
+                            uow = UnitOfWork.execute(w -> {
+                                for (Student student : w.students().findById(rows.keySet())) {
+                                    Object[] row = rows.get(student.getNumericalId());
+                                    student.setName((String) row[0]);
+                                    student.setDob((LocalDate) row[1]);
+                                    student.setAddress((String) row[2]);
+                                    student.setEmail((String) row[3]);
+                                    w.students().update(student);
+                                }
+                            });
+                            if (uow != null) {
+                                showConflicts(uow.students().getConflicts());
                             }
                         }
-                        updateStudent(students);
                         try {
-                            fetchData().get();
+                            fetchChanges().get();
+                        } catch (InterruptedException | ExecutionException ex) {
+                            ex.printStackTrace();
+                        }
+                        v.notifyDataChanged();
+                        setCheckAll(false);
+                    }
+                    break;
+                case "< Prev":
+                case "Next >":
+                    if (command.equals("Next >") ? pager.next() : pager.previous()) {
+                        try {
+                            fetchPage().get();
                         } catch (InterruptedException | ExecutionException ex) {
                             ex.printStackTrace();
                         }
@@ -228,7 +266,7 @@ public class StudentController extends BaseController {
     private boolean addStudent(String name, String dob, String address, String email) {
         try {
             studentService.add(new Student(name, LocalDate.parse(dob), address, email));
-            fetchData().get();
+            fetchChanges().get();
             Optional<View> opt = ViewManager.viewMap.values().stream().filter(m -> m instanceof ListStudentView).findFirst();
             if (opt.isPresent()) {
                 ListStudentView v = (ListStudentView) opt.get();
@@ -253,52 +291,92 @@ public class StudentController extends BaseController {
     }
 
     /**
-     * @effects execute update of all Student in student
+     * @requires conflicts are the keys of the students whose update has been left out (see UnitOfWork.Entities.getConflicts)
+     * @effects show the students that someone else has changed or deleted meanwhile, which are shown as they are now
      */
-    private void updateStudent(List<Student> students) {
-        if (students != null && students.size() > 0) {
-            studentService.update(students);
+    private void showConflicts(List<Integer> conflicts) {
+        if (!conflicts.isEmpty()) {
+            StringJoiner keys = new StringJoiner(", ");
+            conflicts.forEach(id -> keys.add("S" + id));
+            JOptionPane.showMessageDialog(view.getGui(), "Changed or deleted by someone else meanwhile, not updated: " + keys
+                    + "\nTheir current values have been reloaded.", "Update conflict", JOptionPane.WARNING_MESSAGE);
         }
     }
 
+    /**
+     * Read the current page of the pager, without touching DbContext.
+     * @modifies this.dto, this.pager
+     * @effects <pre>
+     *      Read the rows of the current page with studentService.page(...) (keyset pagination)
+     *      If the page is empty but is not the first one (its rows have been deleted), move to the previous page
+     *      Update this.dto with the rows of the page
+     * </pre>
+     */
+    public static CompletableFuture<Void> fetchPage() {
+        return CompletableFuture.runAsync(StudentController::loadPage, ThreadPool.loader);
+    }
+
+    /**
+     * @modifies this.dto, this.pager
+     * @effects see fetchPage()
+     */
+    static void loadPage() {
+        List<Student> students = pager.accept(studentService.page(pager.getAfterKey(), pager.getLimit(), pager.getSortOrder()), Student::getNumericalId);
+        while (students.isEmpty() && pager.previous()) {
+            students = pager.accept(studentService.page(pager.getAfterKey(), pager.getLimit(), pager.getSortOrder()), Student::getNumericalId);
+        }
+        dto.clear();
+        dto.addAll(DtoGenerator.getDto(students));
+    }
+
     /**
      * Get data from the DbContext. More specifically, get all Student and save it to studentDbContext.
      * @modifies DbContext.studentDbContext
      * @effects <pre>
      *      Clear old data from DbContext (Student only)
      *      Then process to add all the correspond Student(s) to DbContext.studentDbContext
-     *      Update new data to this.dto
+     *      Update this.dto with the current page
      * </pre>
      */
     public static CompletableFuture<Void> fetchData() {
         return CompletableFuture.runAsync(() -> {
+            long seq = currentSeq();
             resetStudentIdCount();
             studentDbContext.clear();
-            studentDbContext.addAll(studentService.findAll());
+            try (Stream<Student> rows = studentService.stream(RowStream.DEFAULT_FETCH_SIZE)) {
+                rows.forEach(studentDbContext::add);
+            }
+            loaded(DbSchema.StudentTable.NAME, seq);
 
-            dto.clear();
-            dto.addAll(DtoGenerator.getDto(studentDbContext));
+            loadPage();
             System.out.println("fetched new data from the database for: Student");
 
             EnrollmentMapper.getInstance().mapStudent();
-            EnrollmentController.dtoIR.clear();
-            EnrollmentController.dtoIR.addAll(DtoGenerator.getDto_initialReport(enrollmentDbContext));
-            EnrollmentController.dtoAR.clear();
-            EnrollmentController.dtoAR.addAll(DtoGenerator.getDto_assessmentReport(enrollmentDbContext));
+            EnrollmentController.loadPage();
             resetOtherControllerViews(EnumUtil.Controller.StudentController);
-        });
+        }, ThreadPool.loader);
+    }
+
+    /**
+     * Bring DbContext and the pages up to date with the rows changed since the last fetch, see BaseController.syncChanges
+     */
+    public static CompletableFuture<Void> fetchChanges() {
+        return syncChanges(EnumUtil.Controller.StudentController);
     }
 
     public static CompletableFuture<Void> fetchData2() {
         return CompletableFuture.runAsync(() -> {
+            long seq = currentSeq();
             resetStudentIdCount();
             studentDbContext.clear();
-            studentDbContext.addAll(studentService.findAll());
+            try (Stream<Student> rows = studentService.stream(RowStream.DEFAULT_FETCH_SIZE)) {
+                rows.forEach(studentDbContext::add);
+            }
+            loaded(DbSchema.StudentTable.NAME, seq);
 
-            dto.clear();
-            dto.addAll(DtoGenerator.getDto(studentDbContext));
+            loadPage();
             System.out.println("fetched new data from the database for: Student");
-        });
+        }, ThreadPool.loader);
     }
 
     /**
@@ -9,7 +9,7 @@ import course_management_swing_ui.util.exceptions.NotPossibleException;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.1
  * @Overview A class implements factories pattern, A kind of creational design pattern that provides an interface for
  * creating Module objects in a superclass, but allows subclasses to alter the type of objects that will be created,
  * which is either COMPULSORY or ELECTIVE
@@ -72,4 +72,23 @@ public class ModuleFactory {
                 throw new InvalidArgumentException("Unsupported module type!");
         }
     }
+
+    /**
+     * @requires m != null
+     * @effects <pre>
+     * return a new Module of moduleType with the code, the semester and the version of m, that replaces m when it is
+     * updated. Module.suffixes is left as it is: the code stays the one of m
+     * </pre>
+     */
+    @Safe
+    public Module retype(Module m, String name, int credits, Module.ModuleType moduleType, String department) throws NotPossibleException, InvalidArgumentException {
+        switch (moduleType) {
+            case COMPULSORY:
+                return new CompulsoryModule(m, name, credits);
+            case ELECTIVE:
+                return new ElectiveModule(m, name, credits, department);
+            default:
+                throw new InvalidArgumentException("Unsupported module type!");
+        }
+    }
 }
@@ -28,4 +28,17 @@ public class CompulsoryModule extends Module {
     public CompulsoryModule(String code, String name, int semester, int credits) throws NotPossibleException {
         super(code, name, semester, credits, ModuleType.COMPULSORY);
     }
+
+    /**
+     * @requires m != null
+     * @effects <pre>
+     * if rep_invariant are satisfied
+     * 	initialize this as < m.code, name, m.semester, COMPULSORY> with the version of m, which replaces m
+     * else
+     * 	throw NotPossibleException</pre>
+     */
+    @Safe
+    public CompulsoryModule(Module m, String name, int credits) throws NotPossibleException {
+        super(m, name, credits, ModuleType.COMPULSORY);
+    }
 }
@@ -37,6 +37,20 @@ public class ElectiveModule extends Module {
         this.department = department;
     }
 
+    /**
+     * @requires m != null
+     * @effects <pre>
+     * if rep_invariant are satisfied
+     * 	initialize this as < m.code, name, m.semester, ELECTIVE, department> with the version of m, which replaces m
+     * else
+     * 	throw NotPossibleException</pre>
+     */
+    @Safe
+    public ElectiveModule(Module m, String name, int credits, String department) throws NotPossibleException {
+        super(m, name, credits, ModuleType.ELECTIVE);
+        this.department = department;
+    }
+
     /**
      * @effects return department
      */
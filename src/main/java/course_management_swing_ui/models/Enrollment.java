@@ -10,7 +10,7 @@ import java.util.Objects;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.1
  * @Overview Entity that represents the act of a Student officially joining a Module
  * @attributes <pre>
  *  id                  int
@@ -43,6 +43,8 @@ public class Enrollment implements Cloneable {
     private double aggregatedMark;  // derived attribute
     @DisplayInTable
     private char finalGrade;
+    // the version of the row it was read from (see DAO.update), not an attribute of the enrollment
+    private int version;
 
     public Enrollment(int id, Student student, Module module, double internalMark, double examinationMark) throws NotPossibleException {
         if (!validateId(id)) {
@@ -247,6 +249,22 @@ public class Enrollment implements Cloneable {
     }
 
 
+    /**
+     * @effects return version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @requires version >= 0
+     * @modifies this
+     * @effects this.version = version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public static boolean validateFinalGrade(char finalGrade) {
         List<Character> gradeList = new ArrayList<>();
         Field[] fields = Grade.class.getFields();
@@ -303,6 +321,7 @@ public class Enrollment implements Cloneable {
         e.internalMark = internalMark;
         e.examinationMark = examinationMark;
         e.finalGrade = finalGrade;
+        e.version = version;
         return e;
     }
 
@@ -5,6 +5,8 @@ import course_management_swing_ui.util.dto.*;
 import course_management_swing_ui.util.exceptions.NotPossibleException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * @Overview A class represents a unit that can form part of a course of study, especially at a college or university.
@@ -23,7 +25,7 @@ import java.util.*;
  *  semester >= 1 /\
  *  credits >= 0 /\
  *  moduleType != null
- * @version 1.0
+ * @version 1.3
  * @author Phan Quang Tuan
  */
 public abstract class Module implements Cloneable {
@@ -37,10 +39,13 @@ public abstract class Module implements Cloneable {
     private int credits;
     @DisplayInTable
     private ModuleType moduleType;
+    // the version of the row it was read from (see DAO.update), not an attribute of the module
+    private int version;
 
     // key = suffix formed by the semester and the number of modules sharing that same semester.
     // value = dummy object (to guarantee the key is unique)
-    public final static HashMap<String, Object> suffixes = new HashMap<>();
+    // concurrent: the modules are loaded and written off the event dispatch thread
+    public final static Map<String, Object> suffixes = new ConcurrentHashMap<>();
     private final static String PREFIX = "M";
 
     /**
@@ -105,18 +110,15 @@ public abstract class Module implements Cloneable {
      */
     private String calculateCode() {
         int i = 1;
-        String suffix = null;
-        Object o = new Object();
+        String suffix = semester + String.format("%02d", i);
 
-        while (o != null) {
-            suffix = semester + String.format("%02d", i);
-            o = suffixes.get(suffix);
+        // claim the suffix and the check in one step, so that two modules created at once cannot share it
+        while (suffixes.putIfAbsent(suffix, new Object()) != null) {
             i += 1;
+            suffix = semester + String.format("%02d", i);
         }
 
-        // coming out from the loop means that the suffix is unique now
-        // Then put it into this.suffixes
-        suffixes.put(suffix, new Object());
+        // coming out from the loop means that the suffix is unique now, and in this.suffixes
         return PREFIX + suffix;
     }
 
@@ -146,7 +148,7 @@ public abstract class Module implements Cloneable {
             throw new NotPossibleException(this.getClass().getSimpleName() + ": Init: Invalid moduleType: \"" + moduleType + "\"");
         }
 
-        if (suffixes.get(code.substring(1)) != null) {
+        if (suffixes.putIfAbsent(code.substring(1), new Object()) != null) {
             throw new NotPossibleException(this.getClass().getSimpleName() + ": Init: Invalid code: \"" + code + "\"");
         }
 
@@ -155,8 +157,37 @@ public abstract class Module implements Cloneable {
         this.semester = semester;
         this.moduleType = moduleType;
         this.credits = credits;
+    }
+
+    /**
+     * @requires m != null
+     * @effects <pre>
+     * if rep_invariant are satisfied
+     * 	initialize this as < m.code, name, m.semester, credits, moduleType > with the version of m, which replaces m:
+     * 	the code of m stays in suffixes
+     * else
+     * 	throw NotPossibleException</pre>
+     */
+    @Safe
+    protected Module(Module m, String name, int credits, ModuleType moduleType) throws NotPossibleException {
+        if (!validateName(name)) {
+            throw new NotPossibleException(this.getClass().getSimpleName() + ": Init: Invalid name: \"" + name + "\"");
+        }
+
+        if (!validateCredits(credits)) {
+            throw new NotPossibleException(this.getClass().getSimpleName() + ": Init: Invalid credits: \"" + credits + "\"");
+        }
+
+        if (!validateModuleType(moduleType)) {
+            throw new NotPossibleException(this.getClass().getSimpleName() + ": Init: Invalid moduleType: \"" + moduleType + "\"");
+        }
 
-        suffixes.put(code.substring(1), new Object());
+        this.code = m.code;
+        this.name = name;
+        this.semester = m.semester;
+        this.moduleType = moduleType;
+        this.credits = credits;
+        this.version = m.version;
     }
 
     /**
@@ -175,8 +206,11 @@ public abstract class Module implements Cloneable {
     // case: code = M1100
     private final static String regex03 = "^M[1-9]{2,}[0-9]+$";
 
+    // compiled once: every Module and every Enrollment created is validated with it
+    private final static Pattern CODE_PATTERN = Pattern.compile(regex01 + "|" + regex02 + "|" + regex03);
+
     public static boolean validateCode(String code) {
-        return code != null && code.matches(regex01 + "|" + regex02 + "|" + regex03);
+        return code != null && CODE_PATTERN.matcher(code).matches();
     }
 
     /**
@@ -267,6 +301,22 @@ public abstract class Module implements Cloneable {
         return moduleType != null;
     }
 
+    /**
+     * @effects return version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @requires version >= 0
+     * @modifies this
+     * @effects this.version = version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      * A self-validation method.
      * @effects <pre>
@@ -307,6 +357,7 @@ public abstract class Module implements Cloneable {
         m.semester = semester;
         m.credits = credits;
         m.moduleType = moduleType;
+        m.version = version;
         return m;
     }
 
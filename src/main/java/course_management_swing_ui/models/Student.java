@@ -8,6 +8,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 /**
  * Requires JDK >= 11
@@ -29,12 +30,15 @@ import java.util.Objects;
  *  address != null /\
  *  email != null /\ email.matches("^[\w-\.]+@([\w-]+\.)+[\w-]{2,4}$")
  *
- * @version 1.0
+ * @version 1.2
  * @author Phan Quang Tuan
  */
 public class Student implements Cloneable, Comparable<Student> {
     private static final int DEFAULT_YEAR_COUNT = 2022;
     public static final List<Integer> idCount = new ArrayList<>();
+    // compiled once: every Student and every Enrollment created is validated with them
+    private static final Pattern ID_PATTERN = Pattern.compile("^S[0-9]{4,}$");
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$");
 
     @DisplayInTable
     private String id;
@@ -46,6 +50,8 @@ public class Student implements Cloneable, Comparable<Student> {
     private String address;
     @DisplayInTable
     private String email;
+    // the version of the row it was read from (see DAO.update), not an attribute of the student
+    private int version;
 
     /**
      * @modifies idCount
@@ -151,7 +157,7 @@ public class Student implements Cloneable, Comparable<Student> {
      * </pre>
      */
     public static boolean validateId(String id) {
-        return id != null && id.matches("^S[0-9]{4,}$") && Integer.parseInt(id.substring(1)) >= DEFAULT_YEAR_COUNT;
+        return id != null && ID_PATTERN.matcher(id).matches() && Integer.parseInt(id.substring(1)) >= DEFAULT_YEAR_COUNT;
     }
 
     /**
@@ -291,7 +297,23 @@ public class Student implements Cloneable, Comparable<Student> {
      * </pre>
      */
     public static boolean validateEmail(String email) {
-        return email != null && email.matches("^[\\w-\\.]+@([\\w-]+\\.)+[\\w-]{2,4}$");
+        return email != null && EMAIL_PATTERN.matcher(email).matches();
+    }
+
+    /**
+     * @effects return version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @requires version >= 0
+     * @modifies this
+     * @effects this.version = version
+     */
+    public void setVersion(int version) {
+        this.version = version;
     }
 
     /**
@@ -331,9 +353,11 @@ public class Student implements Cloneable, Comparable<Student> {
         }
         s.id = id;
         s.name = name;
-        s.dob = LocalDate.parse(dob.toString());
+        // LocalDate is immutable, the copy can share it
+        s.dob = dob;
         s.address = address;
         s.email = email;
+        s.version = version;
         return s;
     }
 
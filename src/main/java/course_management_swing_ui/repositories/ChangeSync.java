@@ -0,0 +1,254 @@
+package course_management_swing_ui.repositories;
+
+import course_management_swing_ui.repositories.dao.Change;
+import course_management_swing_ui.repositories.dao.ChangeLogDAO;
+import course_management_swing_ui.repositories.dao.DaoFactory;
+import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview Brings DbContext up to date with the change log (see DbSchema.ChangeLogTable) instead of reading its tables
+ * again: sync() reads the changes made since the last sequence number it has seen for each table, and reads again only
+ * the rows they name (see Repository.refresh). A sync costs as much as the changes, not as the tables.
+ * <pre>
+ *     - a table is synced once it has been loaded into DbContext (see loaded): a full read records the sequence number
+ *       it started at, so that the next sync applies the changes it may have missed (a change applied twice does no
+ *       harm, as a row is read again whole)
+ *     - the changes of a table that is not loaded are only reported (Result.isChanged); a table that the first sync
+ *       has never seen is reported as changed, as there is no telling what has changed before
+ *     - when there are more than MAX_CHANGES changes, or some of them have been pruned, reading the tables again is
+ *       cheaper or the only way: the sync reports it (Result.needsReload) and leaves DbContext as it is
+ *     - from then on the loaded tables are stale: every sync reports the reload again, and applies nothing, until each
+ *       of them has been read again (see loaded). A reload that has failed is thus retried by the next sync
+ *     - once the log holds more than twice RETENTION changes, the oldest ones are pruned, keeping the last RETENTION
+ * </pre>
+ * <pre>
+ *  Usage:
+ *      long seq = ChangeSync.getInstance().currentSeq();
+ *      ... read the whole student table into DbContext ...
+ *      ChangeSync.getInstance().loaded(DbSchema.StudentTable.NAME, seq);
+ *      ...
+ *      ChangeSync.Result result = ChangeSync.getInstance().sync();
+ * </pre>
+ */
+public final class ChangeSync {
+    public static final int MAX_CHANGES = 10_000;
+    public static final long RETENTION = 100_000;
+    private static final List<String> TABLES = List.of(DbSchema.StudentTable.NAME, DbSchema.ModuleTable.NAME,
+            DbSchema.EnrollmentTable.NAME);
+    private static final ChangeSync instance = new ChangeSync();
+
+    private final ChangeLogDAO changeLogDAO = DaoFactory.createChangeLogDAO();
+    private final StudentRepository studentRepository = new StudentRepository();
+    private final ModuleRepository moduleRepository = new ModuleRepository();
+    private final EnrollmentRepository enrollmentRepository = new EnrollmentRepository();
+
+    // the sequence number up to which the changes of each table have been seen, and the tables loaded into DbContext
+    private final Map<String, Long> seqs = new HashMap<>();
+    private final Set<String> loadedTables = new HashSet<>();
+    // the loaded tables that must be read again whole before any change can be applied to them
+    private final Set<String> staleTables = new HashSet<>();
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview The outcome of a sync: the tables that have changed, and whether DbContext must be read again.
+     */
+    public static final class Result {
+        private final Set<String> changed = new HashSet<>();
+        private boolean reload;
+
+        /**
+         * @effects return true if rows of table have changed since the last sync (and have been applied to DbContext if
+         * table is loaded)
+         */
+        public boolean isChanged(String table) {
+            return changed.contains(table);
+        }
+
+        /**
+         * @effects return true if the changes could not be applied, and DbContext must be read again
+         */
+        public boolean needsReload() {
+            return reload;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{changed=" + changed + ", reload=" + reload + "}";
+        }
+    }
+
+    private ChangeSync() {
+    }
+
+    public static ChangeSync getInstance() {
+        return instance;
+    }
+
+    /**
+     * @effects return the sequence number of the latest change, or 0 if there is none
+     */
+    public long currentSeq() throws SQLException {
+        try (Connection conn = DbConnect.getReadConnection()) {
+            return currentSeq(conn);
+        }
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed
+     * @effects same as currentSeq(), on conn (e.g. in the read transaction of a full read)
+     */
+    public long currentSeq(Connection conn) throws SQLException {
+        return changeLogDAO.latestSeq(conn);
+    }
+
+    /**
+     * @requires table is a data table of DbSchema /\ the whole table has been read into DbContext, by a read that
+     * started when seq was the current sequence number
+     * @modifies this
+     * @effects sync table from seq on
+     */
+    public synchronized void loaded(String table, long seq) {
+        seqs.put(table, seq);
+        loadedTables.add(table);
+        staleTables.remove(table);
+    }
+
+    /**
+     * @effects return true if a reload reported by sync has not been made yet, i.e. a loaded table has not been read
+     * again since (see loaded)
+     */
+    public synchronized boolean isStale() {
+        return !staleTables.isEmpty();
+    }
+
+    /**
+     * @modifies this, DbContext, the change log
+     * @effects <pre>
+     *     read the changes since the last sync in one read transaction, and apply those of the loaded tables to
+     *     DbContext, students first, then modules, then enrollments
+     *     return what has changed (see Result)
+     *     if the changes cannot be read or applied, or a reload is pending (see isStale)
+     *       print the cause (if any) and return a Result that needs a reload, and mark the loaded tables stale
+     * </pre>
+     */
+    public synchronized Result sync() {
+        Result result = new Result();
+        try (Connection conn = DbConnect.getReadConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                sync(conn, result);
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | NotPossibleException | ExecutionException e) {
+            e.printStackTrace();
+            result.reload = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.reload = true;
+        }
+        if (result.reload) {
+            staleTables.addAll(loadedTables);
+        }
+        return result;
+    }
+
+    private void sync(Connection conn, Result result) throws SQLException, NotPossibleException, ExecutionException, InterruptedException {
+        if (!staleTables.isEmpty()) {
+            // the last reload has not been made, or has failed: it is asked for again
+            result.reload = true;
+            result.changed.addAll(staleTables);
+            return;
+        }
+        long latest = changeLogDAO.latestSeq(conn);
+        // a table that has never been seen starts now: what has changed before is unknown
+        for (String table : TABLES) {
+            if (!seqs.containsKey(table)) {
+                seqs.put(table, latest);
+                result.changed.add(table);
+            }
+        }
+        long from = Collections.min(seqs.values());
+        if (from >= latest) {
+            return;
+        }
+
+        long oldest = changeLogDAO.oldestSeq(conn);
+        List<Change> changes = oldest > from + 1 ? null : changeLogDAO.readSince(from, MAX_CHANGES + 1, conn);
+        if (changes == null || changes.size() > MAX_CHANGES) {
+            // pruned or too many: the caller reads the tables again, and records where (see loaded)
+            result.reload = true;
+            for (String table : TABLES) {
+                if (seqs.get(table) < latest) {
+                    result.changed.add(table);
+                }
+                if (!loadedTables.contains(table)) {
+                    seqs.put(table, latest);
+                }
+            }
+            return;
+        }
+
+        Map<String, Set<String>> keys = new HashMap<>();
+        for (Change c : changes) {
+            if (c.getSeq() > seqs.get(c.getTable())) {
+                keys.computeIfAbsent(c.getTable(), t -> new LinkedHashSet<>()).add(c.getKey());
+            }
+        }
+        Set<String> students = keys.getOrDefault(DbSchema.StudentTable.NAME, Collections.emptySet());
+        Set<String> modules = keys.getOrDefault(DbSchema.ModuleTable.NAME, Collections.emptySet());
+        Set<String> enrollments = keys.getOrDefault(DbSchema.EnrollmentTable.NAME, Collections.emptySet());
+        if (!students.isEmpty() && loadedTables.contains(DbSchema.StudentTable.NAME)) {
+            studentRepository.refresh(toInts(students), conn).get();
+        }
+        if (!modules.isEmpty() && loadedTables.contains(DbSchema.ModuleTable.NAME)) {
+            moduleRepository.refresh(new ArrayList<>(modules), conn).get();
+        }
+        if (!enrollments.isEmpty() && loadedTables.contains(DbSchema.EnrollmentTable.NAME)) {
+            enrollmentRepository.refresh(toInts(enrollments), conn).get();
+        }
+        result.changed.addAll(keys.keySet());
+
+        long upTo = changes.isEmpty() ? latest : Math.max(latest, changes.get(changes.size() - 1).getSeq());
+        TABLES.forEach(t -> seqs.put(t, upTo));
+        if (upTo - oldest > 2 * RETENTION) {
+            prune(upTo - RETENTION);
+        }
+    }
+
+    /**
+     * @modifies the change log
+     * @effects delete the changes up to seq, on the writer thread of WriteQueue, without waiting for it
+     */
+    private void prune(long seq) {
+        WriteQueue.getInstance().submit(conn -> changeLogDAO.prune(seq, conn))
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return null;
+                });
+    }
+
+    private static List<Integer> toInts(Set<String> keys) {
+        return keys.stream().map(Integer::valueOf).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,217 @@
+package course_management_swing_ui.repositories;
+
+import course_management_swing_ui.repositories.db.DbConnect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview Notices the changes committed to the database by other connections, e.g. by another instance of the
+ * application on the same database.sqlite3, and tells its Listener, on a background thread ("db-watcher"). It polls a
+ * version of the data on a connection of its own, kept from the read pool of DbConnect:
+ * <pre>
+ *     sqlite       PRAGMA data_version, see Dialect.dataVersion: a few microseconds, no table is read
+ *     the others   the sequence number of the latest change, see ChangeSync.currentSeq
+ * </pre>
+ * The listener is only called when the version has changed. While nothing changes, the delay between two polls
+ * doubles from MIN_DELAY_MILLIS up to MAX_DELAY_MILLIS; a change, or wakeUp (e.g. when a window of the application is
+ * activated), brings it back to MIN_DELAY_MILLIS. The commits of WriteQueue change the version too: the listener is
+ * expected to find out what has changed (see ChangeSync.sync), which costs nothing when it already knows. A listener
+ * that throws is called again at the next poll, whether the version changes or not.
+ * <pre>
+ *  Usage:
+ *      ChangeWatcher.getInstance().start(() -&gt; ChangeSync.getInstance().sync());
+ *      ...
+ *      ChangeWatcher.getInstance().shutdown(5000);
+ * </pre>
+ */
+public final class ChangeWatcher {
+    public static final long MIN_DELAY_MILLIS = 500;
+    public static final long MAX_DELAY_MILLIS = 16_000;
+
+    private static final ChangeWatcher instance = new ChangeWatcher();
+
+    private final ScheduledExecutorService executor;
+    private Listener listener;
+    private ScheduledFuture<?> scheduled;
+    // the number of the scheduled poll: a poll that wakeUp has replaced does nothing
+    private long generation;
+    private long delay = MIN_DELAY_MILLIS;
+    // owned by the watcher thread
+    private Connection conn;
+    private long version = -1;
+    private boolean retry;
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview Told by ChangeWatcher that the database has been changed by another connection.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the watcher thread, which does not poll again before it returns.
+         */
+        void dataChanged();
+    }
+
+    private ChangeWatcher() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static ChangeWatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * @requires listener != null
+     * @modifies this
+     * @effects start polling, at once, and tell listener about every change from then on; do nothing if this has been
+     * started already
+     */
+    public synchronized void start(Listener listener) {
+        if (this.listener != null) {
+            return;
+        }
+        this.listener = listener;
+        delay = MIN_DELAY_MILLIS;
+        schedule(0);
+    }
+
+    /**
+     * @modifies this
+     * @effects if this has been started and has backed off, poll at once and go back to MIN_DELAY_MILLIS
+     */
+    public synchronized void wakeUp() {
+        if (listener == null || delay == MIN_DELAY_MILLIS || executor.isShutdown()) {
+            return;
+        }
+        delay = MIN_DELAY_MILLIS;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            schedule(0);
+        }
+    }
+
+    /**
+     * @modifies this
+     * @effects stop polling and give the connection back to the pool, after the poll that is running (if any) or at
+     * most timeoutMillis
+     */
+    public void shutdown(long timeoutMillis) {
+        synchronized (this) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+        if (!executor.isShutdown()) {
+            executor.execute(this::close);
+            executor.shutdown();
+        }
+        try {
+            executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @modifies this
+     * @effects <pre>
+     *     read the version of the data; the first read only records it
+     *     if it has changed since the last poll, or the listener has failed at the last poll
+     *       tell the listener, and poll again after MIN_DELAY_MILLIS
+     *       if the listener fails, print the cause and back off as if nothing had changed
+     *     else
+     *       poll again after twice the last delay, at most MAX_DELAY_MILLIS
+     *     if the version cannot be read
+     *       print the cause, open a new connection at the next poll and poll again after MAX_DELAY_MILLIS
+     * </pre>
+     */
+    private void poll(long gen) {
+        synchronized (this) {
+            if (gen != generation || scheduled == null) {
+                return;
+            }
+        }
+        boolean changed = false;
+        boolean failed = false;
+        try {
+            long v = readVersion();
+            changed = version >= 0 && v != version;
+            version = v;
+            if (changed || retry) {
+                retry = false;
+                listener.dataChanged();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            close();
+            failed = true;
+        } catch (RuntimeException e) {
+            // a failing listener must not stop the polls, and does not know what it has missed
+            e.printStackTrace();
+            retry = true;
+            changed = false;
+        }
+
+        synchronized (this) {
+            if (gen != generation || scheduled == null) {
+                return;
+            }
+            delay = failed ? MAX_DELAY_MILLIS : changed ? MIN_DELAY_MILLIS : Math.min(delay * 2, MAX_DELAY_MILLIS);
+            schedule(delay);
+        }
+    }
+
+    /**
+     * @requires the lock of this is held
+     * @modifies this
+     * @effects schedule the next poll after delayMillis, in place of the one that is scheduled (if any)
+     */
+    private void schedule(long delayMillis) {
+        long gen = ++generation;
+        if (!executor.isShutdown()) {
+            scheduled = executor.schedule(() -> poll(gen), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @modifies this.conn
+     * @effects return the version of the data, read on this.conn, which is opened first if needed
+     */
+    private long readVersion() throws SQLException {
+        if (conn == null) {
+            conn = DbConnect.getReadConnection();
+        }
+        long v = DbConnect.getDialect().dataVersion(conn);
+        return v >= 0 ? v : ChangeSync.getInstance().currentSeq(conn);
+    }
+
+    /**
+     * @modifies this.conn
+     * @effects close this.conn, if it is open, and forget its version: the next one is not comparable
+     */
+    private void close() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            conn = null;
+            version = -1;
+        }
+    }
+}
@@ -5,11 +5,18 @@ import course_management_swing_ui.models.Module;
 import course_management_swing_ui.models.Student;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.2
  * @Overview A Db context is similar to persistence context, which is a set of entity instances in which for any
  * persistent entity identity there is a unique entity instance. Within the persistence context, the entity instances
  * and their lifecycle are managed. The EntityManager API is used to create and remove persistent entity instances, to
@@ -19,4 +26,33 @@ public interface DbContext {
     List<Enrollment> enrollmentDbContext = new ArrayList<>();
     List<Student> studentDbContext = new ArrayList<>();
     List<Module> moduleDbContext = new ArrayList<>();
+
+    /**
+     * @requires context is one of the lists of DbContext /\ objs have just been read from the database for keys
+     * @modifies context
+     * @effects replace each object of context whose key is in keys with the object of objs of that key, in place, or
+     * remove it if objs has none (its row no longer exists). The objects of objs that context does not have (new rows)
+     * are added at its end.
+     */
+    static <T, K> void merge(List<T> context, Collection<K> keys, List<T> objs, Function<T, K> keyOf) {
+        Set<K> stale = new HashSet<>(keys);
+        Map<K, T> fresh = new HashMap<>();
+        for (T obj : objs) {
+            fresh.put(keyOf.apply(obj), obj);
+        }
+        ListIterator<T> it = context.listIterator();
+        while (it.hasNext()) {
+            K key = keyOf.apply(it.next());
+            if (stale.contains(key)) {
+                T obj = fresh.get(key);
+                if (obj == null) {
+                    it.remove();
+                } else {
+                    it.set(obj);
+                    fresh.remove(key);
+                }
+            }
+        }
+        context.addAll(fresh.values());
+    }
 }
@@ -0,0 +1,549 @@
+package course_management_swing_ui.repositories;
+
+import course_management_swing_ui.factories.ModuleFactory;
+import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.repositories.db.Dialect;
+import course_management_swing_ui.repositories.db.SchemaMigrator;
+import course_management_swing_ui.util.ThreadPool;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.4
+ * @Overview A copy of the contents of DbContext in a compact binary file, so that the next launch can fill DbContext
+ * without reading and mapping every row of the database again (warm start).
+ * <pre>
+ *  The file:
+ *      header        magic, FORMAT_VERSION, dialect, schema version, data stamp, number of students, modules and
+ *                    enrollments
+ *      students      id, version, dob (epoch day), name, address, email
+ *      modules       code, name, semester, credits, version, module type, department (or null)
+ *      enrollments   id, index of its student, index of its module, internal mark, examination mark, version
+ *  where a String is its length in bytes (-1 for null) followed by its bytes in UTF-8, and the indexes refer to the
+ *  order of the students and modules in the file.
+ * </pre>
+ * The file is written from one read transaction, together with the data stamp (see DbSchema.DataStampTable) of that
+ * transaction. It is loaded through a memory-mapped file, and used only if the schema version, the data stamp and the
+ * row counts of the database are still the ones of the file: otherwise DbContext is filled by the controllers, as
+ * before. A DbContext that has been loaded is then synced from the sequence number of the change log read with the
+ * data stamp (see ChangeSync). The dialect (a hash of its name) tells the database of the file apart, as every persistent Dialect keeps its
+ * own database; a dialect that is not persistent has no snapshot, as its database starts empty.
+ */
+public final class DbContextSnapshot {
+    public static final Path FILE = Path.of("database.snapshot");
+    public static final int FORMAT_VERSION = 3;
+
+    private static final int MAGIC = 0x434D5344;   // "CMSD"
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 4 + 4 + 4;
+    private static final int ENROLLMENT_BYTES = 4 + 4 + 4 + 8 + 8 + 4;
+    // the smallest slice of enrollments worth a task of its own
+    private static final int MIN_SLICE = 16384;
+
+    private static final String STUDENTS_STMT = "SELECT "
+            + DbSchema.StudentTable.Cols.ID + ", "
+            + DbSchema.StudentTable.Cols.NAME + ", "
+            + DbSchema.StudentTable.Cols.DOB + ", "
+            + DbSchema.StudentTable.Cols.ADDRESS + ", "
+            + DbSchema.StudentTable.Cols.EMAIL + ", "
+            + DbSchema.StudentTable.Cols.VERSION
+            + " FROM " + DbSchema.StudentTable.NAME;
+    private static final String MODULES_STMT = "SELECT "
+            + DbSchema.ModuleTable.Cols.CODE + ", "
+            + DbSchema.ModuleTable.Cols.NAME + ", "
+            + DbSchema.ModuleTable.Cols.SEMESTER + ", "
+            + DbSchema.ModuleTable.Cols.CREDITS + ", "
+            + DbSchema.ModuleTable.Cols.MODULE_TYPE + ", "
+            + DbSchema.ModuleTable.Cols.DEPARTMENT + ", "
+            + DbSchema.ModuleTable.Cols.VERSION
+            + " FROM " + DbSchema.ModuleTable.NAME;
+    private static final String ENROLLMENTS_STMT = "SELECT "
+            + DbSchema.EnrollmentTable.Cols.ID + ", "
+            + DbSchema.EnrollmentTable.Cols.STUDENT_ID + ", "
+            + DbSchema.EnrollmentTable.Cols.MODULE_CODE + ", "
+            + DbSchema.EnrollmentTable.Cols.INTERNAL_MARK + ", "
+            + DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK + ", "
+            + DbSchema.EnrollmentTable.Cols.VERSION
+            + " FROM " + DbSchema.EnrollmentTable.NAME
+            + " ORDER BY " + DbSchema.EnrollmentTable.Cols.ID;
+
+    // the load started by loadAsync, if any
+    private static volatile CompletableFuture<Boolean> loading = CompletableFuture.completedFuture(false);
+
+    private DbContextSnapshot() {
+    }
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.1
+     * @Overview The header of a snapshot file.
+     */
+    private static final class Header {
+        final int dialect;
+        final int schemaVersion;
+        final long stamp;
+        final int students;
+        final int modules;
+        final int enrollments;
+
+        Header(int dialect, int schemaVersion, long stamp, int students, int modules, int enrollments) {
+            this.dialect = dialect;
+            this.schemaVersion = schemaVersion;
+            this.stamp = stamp;
+            this.students = students;
+            this.modules = modules;
+            this.enrollments = enrollments;
+        }
+
+        /**
+         * @effects return the Header read from buf, or null if buf does not start with the header of this format
+         */
+        static Header read(ByteBuffer buf) {
+            if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            return new Header(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), buf.getInt(), buf.getInt());
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(dialect);
+            out.writeInt(schemaVersion);
+            out.writeLong(stamp);
+            out.writeInt(students);
+            out.writeInt(modules);
+            out.writeInt(enrollments);
+        }
+
+        boolean matches(Header other) {
+            return dialect == other.dialect && schemaVersion == other.schemaVersion && stamp == other.stamp
+                    && students == other.students && modules == other.modules && enrollments == other.enrollments;
+        }
+
+        @Override
+        public String toString() {
+            return "dialect " + dialect + ", schema " + schemaVersion + ", stamp " + stamp + ", " + students
+                    + " students, " + modules + " modules, " + enrollments + " enrollments";
+        }
+    }
+
+    /**
+     * @requires file != null
+     * @modifies file
+     * @effects <pre>
+     *     if the Dialect is not persistent or file is the snapshot of the current contents of the database already
+     *       return false
+     *     else
+     *       write the snapshot of the database to file (see DbContextSnapshot), through file.tmp so that file is never
+     *       a partial snapshot, and return true
+     * </pre>
+     */
+    public static synchronized boolean write(Path file) throws SQLException, IOException {
+        if (!DbConnect.getDialect().isPersistent()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Connection conn = DbConnect.getReadConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // the first read opens the transaction of the snapshot
+                Header header = readHeader(conn);
+                Header existing = readHeader(file);
+                if (existing != null && existing.matches(header)) {
+                    return false;
+                }
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+                        FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)),
+                        1 << 16))) {
+                    header.write(out);
+                    writeRows(conn, out, header);
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("DbContext snapshot written to " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @requires file != null
+     * @effects run write(file) on ThreadPool.maintenance and return its future, where a failure, or a rejection by a
+     * full ThreadPool.maintenance, is printed and gives false
+     */
+    public static CompletableFuture<Boolean> writeAsync(Path file) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return write(file);
+                } catch (SQLException | IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }, ThreadPool.maintenance);
+        } catch (RejectedExecutionException e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * @requires file != null /\ the caller is not a thread of ThreadPool.cpu
+     * @modifies DbContext, Student.idCount, Module.suffixes
+     * @effects <pre>
+     *     if the Dialect is persistent /\ file is a snapshot of the current contents of the database
+     *       replace the contents of DbContext with the ones of file, the ids in Student.idCount and the suffixes in
+     *       Module.suffixes with the ones of the students and modules of file, and sync them from now on (see
+     *       ChangeSync.loaded)
+     *       return true
+     *     else
+     *       leave DbContext as it is, return false
+     * </pre>
+     */
+    public static boolean load(Path file) throws SQLException, IOException {
+        if (!DbConnect.getDialect().isPersistent() || !Files.isRegularFile(file)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Header header = Header.read(buf);
+            if (header == null) {
+                System.out.println("DbContext snapshot " + file + " has an unknown format, ignored");
+                return false;
+            }
+            Header current;
+            long seq;
+            try (Connection conn = DbConnect.getReadConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    current = readHeader(conn);
+                    seq = ChangeSync.getInstance().currentSeq(conn);
+                } finally {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            }
+            if (!header.matches(current)) {
+                System.out.println("DbContext snapshot " + file + " is out of date (" + header + " instead of " + current + "), ignored");
+                return false;
+            }
+
+            try {
+                readRows(buf, header);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                e.printStackTrace();
+                System.out.println("DbContext snapshot " + file + " is corrupt, ignored");
+                return false;
+            }
+            ChangeSync.getInstance().loaded(DbSchema.StudentTable.NAME, seq);
+            ChangeSync.getInstance().loaded(DbSchema.ModuleTable.NAME, seq);
+            ChangeSync.getInstance().loaded(DbSchema.EnrollmentTable.NAME, seq);
+            System.out.println("DbContext loaded from snapshot " + file + " (" + header + ") in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        }
+    }
+
+    /**
+     * @requires file != null /\ no view has been created yet
+     * @effects run load(file) on a thread of its own ("dbcontext-snapshot", as load uses ThreadPool.cpu), where a
+     * failure is printed and gives false. awaitLoad() waits for it.
+     */
+    public static void loadAsync(Path file) {
+        loading = CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(file);
+            } catch (SQLException | IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }, r -> {
+            Thread t = new Thread(r, "dbcontext-snapshot");
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    /**
+     * @effects wait for the load started by loadAsync (if any), then return true if it filled DbContext, i.e. if
+     * DbContext does not need to be fetched from the database
+     */
+    public static boolean awaitLoad() {
+        return loading.join();
+    }
+
+    /**
+     * @requires conn is in a read transaction
+     * @effects return the header of the snapshot of the database of conn
+     */
+    private static Header readHeader(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            long stamp;
+            try (ResultSet rs = st.executeQuery(DbSchema.READ_DATA_STAMP_STMT)) {
+                stamp = rs.next() ? rs.getLong(1) : -1;
+            }
+            return new Header(DbConnect.getDialect().getName().hashCode(), SchemaMigrator.currentVersion(conn), stamp,
+                    count(st, DbSchema.StudentTable.NAME), count(st, DbSchema.ModuleTable.NAME), count(st, DbSchema.EnrollmentTable.NAME));
+        }
+    }
+
+    private static int count(Statement st, String table) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @effects return the header of the snapshot file, or null if there is none or it has another format
+     */
+    private static Header readHeader(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES);
+            while (buf.hasRemaining() && channel.read(buf) >= 0) ;
+            buf.flip();
+            return Header.read(buf);
+        }
+    }
+
+    /**
+     * @requires conn is in the read transaction of header
+     * @modifies out
+     * @effects write the students, modules and enrollments of the database of conn to out
+     */
+    private static void writeRows(Connection conn, DataOutputStream out, Header header) throws SQLException, IOException {
+        Map<Integer, Integer> studentIndexes = new HashMap<>(header.students * 2);
+        Map<String, Integer> moduleIndexes = new HashMap<>(header.modules * 2);
+        Dialect dialect = DbConnect.getDialect();
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery(STUDENTS_STMT)) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    studentIndexes.put(id, studentIndexes.size());
+                    out.writeInt(id);
+                    out.writeInt(rs.getInt(6));
+                    out.writeLong(dialect.getDate(rs, 3).toEpochDay());
+                    writeString(out, rs.getString(2));
+                    writeString(out, rs.getString(4));
+                    writeString(out, rs.getString(5));
+                }
+            }
+            try (ResultSet rs = st.executeQuery(MODULES_STMT)) {
+                while (rs.next()) {
+                    String code = rs.getString(1);
+                    moduleIndexes.put(code, moduleIndexes.size());
+                    writeString(out, code);
+                    writeString(out, rs.getString(2));
+                    out.writeInt(rs.getInt(3));
+                    out.writeInt(rs.getInt(4));
+                    out.writeInt(rs.getInt(7));
+                    writeString(out, rs.getString(5));
+                    writeString(out, rs.getString(6));
+                }
+            }
+            try (ResultSet rs = st.executeQuery(ENROLLMENTS_STMT)) {
+                while (rs.next()) {
+                    out.writeInt(rs.getInt(1));
+                    // the foreign keys are enforced, hence every enrollment has its student and its module
+                    out.writeInt(studentIndexes.get(rs.getInt(2)));
+                    out.writeInt(moduleIndexes.get(rs.getString(3)));
+                    out.writeDouble(rs.getDouble(4));
+                    out.writeDouble(rs.getDouble(5));
+                    out.writeInt(rs.getInt(6));
+                }
+            }
+        }
+    }
+
+    /**
+     * @requires buf is positioned after header
+     * @modifies DbContext, Student.idCount, Module.suffixes
+     * @effects create the students, modules and enrollments of buf and replace the contents of DbContext with them. As
+     * when they are read from the database, the ones that are not valid are printed and skipped.
+     */
+    private static void readRows(ByteBuffer buf, Header header) throws IOException {
+        byte[] scratch = new byte[256];
+
+        List<Student> students = new ArrayList<>(header.students);
+        for (int i = 0; i < header.students; i++) {
+            int id = buf.getInt();
+            int version = buf.getInt();
+            LocalDate dob = LocalDate.ofEpochDay(buf.getLong());
+            String name = readString(buf, scratch), address = readString(buf, scratch), email = readString(buf, scratch);
+            try {
+                Student student = new Student(id, name, dob, address, email);
+                student.setVersion(version);
+                students.add(student);
+            } catch (NotPossibleException e) {
+                e.printStackTrace();
+                students.add(null);
+            }
+        }
+
+        Module.suffixes.clear();
+        List<Module> modules = new ArrayList<>(header.modules);
+        String elective = Module.ModuleType.ELECTIVE.toString();
+        for (int i = 0; i < header.modules; i++) {
+            String code = readString(buf, scratch);
+            String name = readString(buf, scratch);
+            int semester = buf.getInt();
+            int credits = buf.getInt();
+            int version = buf.getInt();
+            String type = readString(buf, scratch);
+            String department = readString(buf, scratch);
+            Module.suffixes.remove(code.substring(1));
+            try {
+                Module module = elective.equals(type)
+                        ? ModuleFactory.getInstance().createModule(code, name, semester, credits, Module.ModuleType.ELECTIVE, department)
+                        : ModuleFactory.getInstance().createModule(code, name, semester, credits);
+                module.setVersion(version);
+                modules.add(module);
+            } catch (InvalidArgumentException | NotPossibleException e) {
+                e.printStackTrace();
+                modules.add(null);
+            }
+        }
+
+        // the enrollments have a fixed size, hence they are created in parallel slices, like the rows of CsvImporter
+        int base = buf.position();
+        if (buf.limit() - base < (long) header.enrollments * ENROLLMENT_BYTES) {
+            throw new BufferUnderflowException();
+        }
+        int n = header.enrollments;
+        int slices = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), n / MIN_SLICE));
+        List<Callable<List<Enrollment>>> tasks = new ArrayList<>(slices);
+        for (int s = 0; s < slices; s++) {
+            int from = (int) ((long) n * s / slices), to = (int) ((long) n * (s + 1) / slices);
+            tasks.add(() -> readEnrollments(buf, base, from, to, students, modules));
+        }
+        List<Enrollment> enrollments = new ArrayList<>(n);
+        try {
+            if (slices == 1) {
+                enrollments.addAll(tasks.get(0).call());
+            } else {
+                for (Future<List<Enrollment>> f : ThreadPool.cpu.invokeAll(tasks)) {
+                    enrollments.addAll(f.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("snapshot load interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (Exception e) {
+            // only from the task called on this thread, which throws no checked exception
+            throw new IOException(e);
+        }
+        buf.position(base + n * ENROLLMENT_BYTES);
+
+        students.removeIf(Objects::isNull);
+        modules.removeIf(Objects::isNull);
+        Student.idCount.clear();
+        students.forEach(s -> Student.idCount.add(s.getNumericalId()));
+        DbContext.studentDbContext.clear();
+        DbContext.studentDbContext.addAll(students);
+        DbContext.moduleDbContext.clear();
+        DbContext.moduleDbContext.addAll(modules);
+        DbContext.enrollmentDbContext.clear();
+        DbContext.enrollmentDbContext.addAll(enrollments);
+    }
+
+    /**
+     * @requires the enrollments of buf start at base
+     * @effects return the enrollments from (inclusive) to (exclusive) of buf, skipping the ones that are not valid. buf
+     * is read with absolute gets only, so the slices can be read by several threads at a time.
+     */
+    private static List<Enrollment> readEnrollments(ByteBuffer buf, int base, int from, int to, List<Student> students, List<Module> modules) {
+        List<Enrollment> enrollments = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int at = base + i * ENROLLMENT_BYTES;
+            Student student = students.get(buf.getInt(at + 4));
+            Module module = modules.get(buf.getInt(at + 8));
+            if (student == null || module == null) {
+                continue;
+            }
+            try {
+                Enrollment enrollment = new Enrollment(buf.getInt(at), student, module, buf.getDouble(at + 12), buf.getDouble(at + 20));
+                enrollment.setVersion(buf.getInt(at + 28));
+                enrollments.add(enrollment);
+            } catch (NotPossibleException e) {
+                e.printStackTrace();
+            }
+        }
+        return enrollments;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @modifies buf, scratch
+     * @effects return the next String of buf, reading its bytes through scratch if they fit in it
+     */
+    private static String readString(ByteBuffer buf, byte[] scratch) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buf.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -1,10 +1,9 @@
 package course_management_swing_ui.repositories;
 
 import course_management_swing_ui.models.Enrollment;
-import course_management_swing_ui.models.Module;
-import course_management_swing_ui.models.Student;
 import course_management_swing_ui.repositories.dao.*;
-import course_management_swing_ui.repositories.dao.EnrollmentDAOImpl;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.ThreadPool;
 import course_management_swing_ui.util.exceptions.DuplicateEntityException;
 import course_management_swing_ui.util.exceptions.NotPossibleException;
 
@@ -12,21 +11,18 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static course_management_swing_ui.repositories.DbContext.*;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.3
+ * @version 1.15
  * @Overview Implementation of Repository for Enrollment.
  */
 public class EnrollmentRepository implements Repository<Enrollment, Integer> {
-    private final EnrollmentDAOImpl enrollmentDAO = new EnrollmentDAOImpl();
-    private final StudentDAOImpl studentDao = new StudentDAOImpl();
-    private final ModuleDAOImpl moduleDAO = new ModuleDAOImpl();
+    private final EnrollmentDAO enrollmentDAO = DaoFactory.createEnrollmentDAO();
 
     /**
      * @requires obj!=null /\ conn != null /\ conn is not closed
@@ -40,14 +36,14 @@ public class EnrollmentRepository implements Repository<Enrollment, Integer> {
             try {
                 Optional<Enrollment> opt = DbContext.enrollmentDbContext.stream().filter(e -> e.getId() == obj.getId()).findFirst();
                 if (opt.isEmpty()) {
-                    enrollmentDAO.create(obj, conn);
+                    enrollmentDAO.create(EnrollmentRow.of(obj), conn);
                 } else {
                     throw new DuplicateEntityException("found " + obj + "in DbContext.enrollmentDbContext");
                 }
             } catch (SQLException | DuplicateEntityException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -68,21 +64,21 @@ public class EnrollmentRepository implements Repository<Enrollment, Integer> {
                         throw new DuplicateEntityException("found " + m + "in DbContext.enrollmentDbContext");
                     }
                 }
-                enrollmentDAO.create(objs, conn);
+                enrollmentDAO.create(objs.stream().map(EnrollmentRow::of).collect(Collectors.toList()), conn);
             } catch (SQLException | DuplicateEntityException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires id is in the database /\ conn != null /\ conn is not closed
      * @effects <pre>
-     *     get Student s from DbContext.studentDbContext, otherwise read it from the database
-     *     get Module m from DbContext.moduleDbContext, otherwise read it from the database
-     *     create and return new Enrollment that has s and m,
-     *     and it also contains id from the first row of the list returned from DAO.read(id)
+     *     read the row of id joined with its student and its module, in one query
+     *     get Student s from DbContext.studentDbContext, otherwise create it from the joined row
+     *     get Module m from DbContext.moduleDbContext, otherwise create it from the joined row
+     *     create and return new Enrollment that has s and m
      * </pre>
      */
     @Override
@@ -90,35 +86,23 @@ public class EnrollmentRepository implements Repository<Enrollment, Integer> {
         CompletableFuture<Enrollment> future = new CompletableFuture<>();
         CompletableFuture.supplyAsync(() -> {
             try {
-                List<?> enrollmentData = enrollmentDAO.read(id, conn);
-                int student_id = (int) enrollmentData.get(1);
-                Optional<Student> optS = studentDbContext.stream().filter(s -> s.getNumericalId() == student_id).findFirst();
-                Student s = optS.isPresent() ? optS.get() : studentDao.read(student_id, conn);
-
-                String module_code = (String) enrollmentData.get(2);
-                Optional<Module> optM = moduleDbContext.stream().filter(m -> m.getCode().equals(module_code)).findFirst();
-                Module m = optM.isPresent() ? optM.get() : moduleDAO.read(module_code, conn);
-                try {
-                    return new Enrollment(id, s, m, (double) enrollmentData.get(3), (double) enrollmentData.get(4));
-                } catch (NotPossibleException e) {
-                    e.printStackTrace();
-                }
+                return enrollmentDAO.readJoined(id, newIdentityMap(), conn);
             } catch (SQLException | NotPossibleException e) {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires ids!=null /\ every id in ids is in the database /\ conn != null /\ conn is not closed
      * @effects <pre>
-     *  for every id in ids
-     *     get Student s from DbContext.studentDbContext, otherwise read it from the database
-     *     get Module m from DbContext.moduleDbContext, otherwise read it from the database
-     *     create and add to the result list: new Enrollment that has s and m,
-     *     and it also contains id from the first row of the list returned from DAO.read(id)
+     *  read the rows of ids joined with their students and modules, i.e. JOIN ... WHERE e.id IN (...)
+     *  for every row
+     *     create and add to the result list: new Enrollment that has its Student and its Module, where every Student and
+     *     every Module is taken from DbContext or created once
+     *  the result list is in the order of ids
      * </pre>
      */
     @Override
@@ -126,102 +110,170 @@ public class EnrollmentRepository implements Repository<Enrollment, Integer> {
         CompletableFuture<List<Enrollment>> future = new CompletableFuture<>();
         CompletableFuture.supplyAsync(() -> {
             try {
-                List<Enrollment> enrollments = new ArrayList<>();
-                List<CompletableFuture<Enrollment>> tasks = new ArrayList<>();
-                for (Integer id : ids) {
-                    tasks.add(findById(id, conn));
-                }
-                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get();
-                for (CompletableFuture<Enrollment> task : tasks) {
-                    enrollments.add(task.get());
-                }
-                return enrollments;
-            } catch (SQLException | NotPossibleException | ExecutionException | InterruptedException e) {
+                return enrollmentDAO.readJoined(ids, newIdentityMap(), conn);
+            } catch (SQLException | NotPossibleException e) {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @effects <pre>
-     *  for every id in DbContext.enrollmentDbContext
-     *     get Student s from DbContext.studentDbContext, otherwise read it from the database
-     *     get Module m from DbContext.moduleDbContext, otherwise read it from the database
-     *     create and add to the result list: new Enrollment that has s and m,
-     *     and it also contains id from the first row of the list returned from DAO.read(id)
+     *  read every enrollment joined with its student and its module, in a single scan that does not need
+     *  DbContext.studentDbContext and DbContext.moduleDbContext to be loaded first
+     *  for every row
+     *     create and add to the result list: new Enrollment that has its Student and its Module, where every Student and
+     *     every Module is taken from DbContext or created once
      * </pre>
      */
     @Override
     public CompletableFuture<List<Enrollment>> findAll(Connection conn) throws SQLException, NotPossibleException {
         CompletableFuture<List<Enrollment>> future = new CompletableFuture<>();
         CompletableFuture.supplyAsync(() -> {
-            Map<Integer, Student> studentMap = studentDbContext.stream()
-                    .collect(Collectors.toMap(Student::getNumericalId, Function.identity()));
-            Map<String, Module> moduleMap = moduleDbContext.stream()
-                    .collect(Collectors.toMap(Module::getCode, Function.identity()));
-
             try {
-                List<Enrollment> enrollments = new ArrayList<>();
-                List<?> allEnrollmentData = enrollmentDAO.all(conn);
-                for (Object enrollmentData : allEnrollmentData) {
-                    List<?> o = (List<?>) enrollmentData;
-                    int id = (int) o.get(0);
-                    int student_id = (int) o.get(1);
-                    Student s = studentMap.get(student_id);
-                    if (s == null) s = studentDao.read(student_id, conn);
+                return enrollmentDAO.allJoined(newIdentityMap(), conn);
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
 
-                    String module_code = (String) o.get(2);
-                    Module m = moduleMap.get(module_code);
-                    if (m == null) m = moduleDAO.read(module_code, conn);
-                    try {
-                        if (s != null && m != null) {
-                            enrollments.add(new Enrollment(id, s, m, (double) o.get(3), (double) o.get(4)));
-                        }
-                    } catch (NotPossibleException e) {
-                        e.printStackTrace();
-                    }
-                }
-                return enrollments;
+    /**
+     * @requires conn != null /\ conn is not closed /\ fetchSize >= 0
+     * @effects return a lazy Stream over enrollmentDAO.streamJoined(conn, fetchSize), where every joined row is turned
+     * into an Enrollment only when it is consumed. A row whose Enrollment cannot be created is skipped.
+     */
+    @Override
+    public Stream<Enrollment> stream(Connection conn, int fetchSize) throws SQLException {
+        return enrollmentDAO.streamJoined(newIdentityMap(), conn, fetchSize);
+    }
+
+    /**
+     * @requires limit > 0 /\ order != null /\ conn != null /\ conn is not closed
+     * @effects return the Enrollment(s) of enrollmentDAO.pageJoined(afterKey, limit, order, conn), i.e. a page of
+     * enrollments read with their students and modules in one query
+     */
+    @Override
+    public CompletableFuture<List<Enrollment>> page(Integer afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Enrollment>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return enrollmentDAO.pageJoined(afterKey, limit, order, newIdentityMap(), conn);
             } catch (SQLException | NotPossibleException e) {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires obj!=null /\ obj is in DbContext /\ conn != null /\ conn is not closed
+     * @modifies obj
+     * @effects update the row of obj with enrollmentDAO.update and increment the version of obj once it has been
+     * committed, see Repository.update
      */
     @Override
     public CompletableFuture<Void> update(Enrollment obj, Connection conn) throws SQLException {
         CompletableFuture<Void> future = new CompletableFuture<>();
         CompletableFuture.runAsync(() -> {
             try {
-                enrollmentDAO.update(obj, conn);
+                enrollmentDAO.update(EnrollmentRow.of(obj), conn);
+                // only once committed: a row rolled back keeps the version of obj
+                WriteQueue.getInstance().afterCommit(conn, () -> obj.setVersion(obj.getVersion() + 1));
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires objs!=null /\ objs is in DbContext /\ conn != null /\ conn is not closed
+     * @modifies objs
+     * @effects update the rows of objs with enrollmentDAO.update, increment the version of every obj that is UPDATED
+     * once committed and return the outcome of every obj, see Repository.update
      */
     @Override
-    public CompletableFuture<Void> update(Collection<Enrollment> objs, Connection conn) throws SQLException {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        CompletableFuture.runAsync(() -> {
-            Collection<Object> enrollments = new ArrayList<>(objs);
+    public CompletableFuture<BulkWriteResult> update(Collection<Enrollment> objs, Connection conn) throws SQLException {
+        CompletableFuture<BulkWriteResult> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                List<Enrollment> list = new ArrayList<>(objs);
+                BulkWriteResult result = enrollmentDAO.update(list.stream().map(EnrollmentRow::of).collect(Collectors.toList()), conn);
+                List<Enrollment> updated = new ArrayList<>();
+                for (int i : result.indexesOf(BulkWriteResult.Outcome.UPDATED)) {
+                    updated.add(list.get(i));
+                }
+                WriteQueue.getInstance().afterCommit(conn, () -> updated.forEach(o -> o.setVersion(o.getVersion() + 1)));
+                return result;
+            } catch (SQLException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires ids!=null /\ conn != null /\ conn is not closed
+     * @effects read the rows of ids joined with their students and modules, which are created anew too, without looking into DbContext, see Repository.read
+     */
+    @Override
+    public CompletableFuture<List<Enrollment>> read(Collection<Integer> ids, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Enrollment>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return enrollmentDAO.readJoined(ids, new IdentityMap(), conn);
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires ids!=null /\ conn != null /\ conn is not closed
+     * @modifies DbContext.enrollmentDbContext
+     * @effects read the rows of ids joined with their students and modules, as findById(Collection) does, and put them
+     * into DbContext.enrollmentDbContext in place of the objects of the same keys, or at its end for the new ones, see Repository.refresh
+     */
+    @Override
+    public CompletableFuture<List<Enrollment>> refresh(Collection<Integer> ids, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Enrollment>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
             try {
-                enrollmentDAO.update(enrollments, conn);
+                List<Enrollment> objs = enrollmentDAO.readJoined(ids, newIdentityMap(), conn);
+                DbContext.merge(enrollmentDbContext, ids, objs, Enrollment::getId);
+                return objs;
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires objs!=null /\ conn != null /\ conn is not closed
+     * @effects insert or update every obj of objs with enrollmentDAO.upsert, see DAO.upsert
+     */
+    @Override
+    public CompletableFuture<BulkWriteResult> upsert(Collection<Enrollment> objs, Connection conn) throws SQLException {
+        CompletableFuture<BulkWriteResult> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return enrollmentDAO.upsert(objs.stream().map(EnrollmentRow::of).collect(Collectors.toList()), conn);
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -237,7 +289,7 @@ public class EnrollmentRepository implements Repository<Enrollment, Integer> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -254,7 +306,7 @@ public class EnrollmentRepository implements Repository<Enrollment, Integer> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -267,7 +319,65 @@ public class EnrollmentRepository implements Repository<Enrollment, Integer> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires conn is the connection of the writer thread of WriteQueue, on which the new enrollment is added
+     * @effects return the id of a new enrollment: one more than the highest id in the database, not in DbContext, which
+     * may be behind it. No other enrollment can be added between this read and the addition, which are made by the same
+     * writer in the same transaction
+     */
+    public CompletableFuture<Integer> nextId(Connection conn) throws SQLException {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return enrollmentDAO.maxId(conn) + 1;
+            } catch (SQLException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
+
+    /**
+     * @requires studentIds != null /\ conn != null /\ conn is not closed
+     * @effects delete every enrollment of the students of studentIds from the database
+     */
+    public CompletableFuture<Void> deleteByStudent(Collection<Integer> studentIds, Connection conn) throws SQLException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            try {
+                enrollmentDAO.deleteByStudent(studentIds, conn);
+            } catch (SQLException e) {
+                future.completeExceptionally(e);
+            }
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires moduleCodes != null /\ conn != null /\ conn is not closed
+     * @effects delete every enrollment in the modules of moduleCodes from the database
+     */
+    public CompletableFuture<Void> deleteByModule(Collection<String> moduleCodes, Connection conn) throws SQLException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            try {
+                enrollmentDAO.deleteByModule(moduleCodes, conn);
+            } catch (SQLException e) {
+                future.completeExceptionally(e);
+            }
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @effects return a new IdentityMap seeded with DbContext.studentDbContext and DbContext.moduleDbContext
+     */
+    private IdentityMap newIdentityMap() {
+        return new IdentityMap(studentDbContext, moduleDbContext);
+    }
 }
@@ -1,7 +1,12 @@
 package course_management_swing_ui.repositories;
 
 import course_management_swing_ui.models.Module;
-import course_management_swing_ui.repositories.dao.ModuleDAOImpl;
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.DAO;
+import course_management_swing_ui.repositories.dao.DaoFactory;
+import course_management_swing_ui.repositories.dao.SortOrder;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.ThreadPool;
 import course_management_swing_ui.util.exceptions.DuplicateEntityException;
 import course_management_swing_ui.util.exceptions.NotPossibleException;
 
@@ -9,21 +14,23 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static course_management_swing_ui.repositories.DbContext.moduleDbContext;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.3
+ * @version 1.12
  * @Overview Implementation of Repository for Module.
  */
 public class ModuleRepository implements Repository<Module, String> {
-    private final ModuleDAOImpl moduleDAO = new ModuleDAOImpl();
+    private final DAO<Module, String> moduleDAO = DaoFactory.createModuleDAO();
 
     /**
      * @requires obj!=null /\ conn != null /\ conn is not closed
@@ -44,7 +51,7 @@ public class ModuleRepository implements Repository<Module, String> {
             } catch (SQLException | DuplicateEntityException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -69,7 +76,7 @@ public class ModuleRepository implements Repository<Module, String> {
             } catch (SQLException | DuplicateEntityException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -97,33 +104,43 @@ public class ModuleRepository implements Repository<Module, String> {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires codes!=null /\ codes is in the database /\ conn != null /\ conn is not closed
+     * @effects <pre>
+     *     take the Module objects of codes from DbContext.moduleDbContext
+     *     read all the others with one moduleDAO.read(Collection), i.e. WHERE code IN (...)
+     *     return them in the order of codes
+     * </pre>
      */
     @Override
     public CompletableFuture<List<Module>> findById(Collection<String> codes, Connection conn) throws SQLException, NotPossibleException {
         CompletableFuture<List<Module>> future = new CompletableFuture<>();
         CompletableFuture.supplyAsync(() -> {
             try {
-                List<Module> modules = new ArrayList<>();
-                List<CompletableFuture<Module>> tasks = new ArrayList<>();
-                for (String code : codes) {
-                    tasks.add(findById(code, conn));
+                Map<String, Module> found = new HashMap<>();
+                for (Module m : moduleDbContext) {
+                    found.put(m.getCode(), m);
                 }
-                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get();
-                for (CompletableFuture<Module> task : tasks) {
-                    modules.add(task.get());
+                List<String> missing = codes.stream().filter(code -> !found.containsKey(code)).collect(Collectors.toList());
+                if (!missing.isEmpty()) {
+                    for (Module m : moduleDAO.read(missing, conn)) {
+                        found.put(m.getCode(), m);
+                    }
+                }
+                List<Module> modules = new ArrayList<>(codes.size());
+                for (String code : codes) {
+                    modules.add(found.get(code));
                 }
                 return modules;
-            } catch (SQLException | NotPossibleException | ExecutionException | InterruptedException e) {
+            } catch (SQLException | NotPossibleException e) {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -137,12 +154,42 @@ public class ModuleRepository implements Repository<Module, String> {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ fetchSize >= 0
+     * @effects return moduleDAO.stream(conn, fetchSize)
+     */
+    @Override
+    public Stream<Module> stream(Connection conn, int fetchSize) throws SQLException {
+        return moduleDAO.stream(conn, fetchSize);
+    }
+
+    /**
+     * @requires limit > 0 /\ order != null /\ conn != null /\ conn is not closed
+     * @effects return moduleDAO.page(afterKey, limit, order, conn)
+     */
+    @Override
+    public CompletableFuture<List<Module>> page(String afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Module>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return moduleDAO.page(afterKey, limit, order, conn);
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires obj!=null /\ obj is in DbContext /\ conn != null /\ conn is not closed
+     * @modifies obj
+     * @effects update the row of obj with moduleDAO.update and increment the version of obj once it has been
+     * committed, see Repository.update
      */
     @Override
     public CompletableFuture<Void> update(Module obj, Connection conn) throws SQLException {
@@ -150,26 +197,97 @@ public class ModuleRepository implements Repository<Module, String> {
         CompletableFuture.runAsync(() -> {
             try {
                 moduleDAO.update(obj, conn);
+                // only once committed: a row rolled back keeps the version of obj
+                WriteQueue.getInstance().afterCommit(conn, () -> obj.setVersion(obj.getVersion() + 1));
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires objs!=null /\ objs is in DbContext /\ conn != null /\ conn is not closed
+     * @modifies objs
+     * @effects update the rows of objs with moduleDAO.update, increment the version of every obj that is UPDATED
+     * once committed and return the outcome of every obj, see Repository.update
      */
     @Override
-    public CompletableFuture<Void> update(Collection<Module> objs, Connection conn) throws SQLException {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        CompletableFuture.runAsync(() -> {
+    public CompletableFuture<BulkWriteResult> update(Collection<Module> objs, Connection conn) throws SQLException {
+        CompletableFuture<BulkWriteResult> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
             try {
-                moduleDAO.update(objs, conn);
+                List<Module> list = new ArrayList<>(objs);
+                BulkWriteResult result = moduleDAO.update(list, conn);
+                List<Module> updated = new ArrayList<>();
+                for (int i : result.indexesOf(BulkWriteResult.Outcome.UPDATED)) {
+                    updated.add(list.get(i));
+                }
+                WriteQueue.getInstance().afterCommit(conn, () -> updated.forEach(o -> o.setVersion(o.getVersion() + 1)));
+                return result;
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires ids!=null /\ conn != null /\ conn is not closed
+     * @effects read the rows of ids with moduleDAO.read(Collection), without looking into DbContext, see Repository.read
+     */
+    @Override
+    public CompletableFuture<List<Module>> read(Collection<String> ids, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Module>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return moduleDAO.read(ids, conn);
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires ids!=null /\ conn != null /\ conn is not closed
+     * @modifies DbContext.moduleDbContext
+     * @effects read the rows of ids with moduleDAO.read(Collection) and put them into DbContext.moduleDbContext in place of
+     * the objects of the same keys, or at its end for the new ones, see Repository.refresh
+     */
+    @Override
+    public CompletableFuture<List<Module>> refresh(Collection<String> ids, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Module>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                List<Module> objs = moduleDAO.read(ids, conn);
+                DbContext.merge(moduleDbContext, ids, objs, Module::getCode);
+                return objs;
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires objs!=null /\ conn != null /\ conn is not closed
+     * @effects insert or update every obj of objs with moduleDAO.upsert, see DAO.upsert
+     */
+    @Override
+    public CompletableFuture<BulkWriteResult> upsert(Collection<Module> objs, Connection conn) throws SQLException {
+        CompletableFuture<BulkWriteResult> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return moduleDAO.upsert(objs, conn);
+            } catch (SQLException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -185,7 +303,7 @@ public class ModuleRepository implements Repository<Module, String> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -202,7 +320,7 @@ public class ModuleRepository implements Repository<Module, String> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -215,7 +333,7 @@ public class ModuleRepository implements Repository<Module, String> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 }
@@ -1,5 +1,7 @@
 package course_management_swing_ui.repositories;
 
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.SortOrder;
 import course_management_swing_ui.util.exceptions.DuplicateEntityException;
 import course_management_swing_ui.util.exceptions.NotPossibleException;
 
@@ -8,10 +10,11 @@ import java.sql.SQLException;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.3
+ * @version 1.9
  * @Overview A class that mediates between the domain and data mapping layers using a collection-like interface for
  * accessing domain objects. This will offer you a more sophisticated interface than the plain DAO. In other words, a
  * repositories functions similarly to a DAO in that it handles data and conceals inquiries. However, it is at a higher
@@ -49,16 +52,56 @@ public interface Repository<T, K> {
     CompletableFuture<List<T>> findAll(Connection conn) throws SQLException, NotPossibleException;
 
     /**
-     * update the row that share the primary key with obj
+     * return a lazy Stream of all objects of T, read from the database with the fetch size hint fetchSize. The
+     * returned Stream must be closed before conn.
+     * @requires conn != null /\ conn is not closed /\ fetchSize >= 0
+     */
+    Stream<T> stream(Connection conn, int fetchSize) throws SQLException;
+
+    /**
+     * return the page of at most limit objects of T whose keys come right after afterKey in order (the first page if
+     * afterKey is null)
+     * @requires limit > 0 /\ order != null /\ conn != null /\ conn is not closed
+     */
+    CompletableFuture<List<T>> page(K afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException;
+
+    /**
+     * update the row that share the primary key with obj if it still has the version of obj, then increment the version
+     * of obj once the update has been committed (see WriteQueue.afterCommit); otherwise complete exceptionally with
+     * StaleObjectException (see DAO.update)
      * @requires obj != null /\ conn != null /\ conn is not closed
      */
     CompletableFuture<Void> update(T obj, Connection conn) throws SQLException;
 
     /**
-     * update all rows that share the primary key with each obj in objs
+     * update all rows that share the primary key with each obj in objs as update(T) does, then return the outcome of
+     * each obj: UPDATED, or CONFLICT if its row has been changed or deleted by someone else since obj was read
      * @requires obj != null /\ conn != null /\ conn is not closed
      */
-    CompletableFuture<Void> update(Collection<T> objs, Connection conn) throws SQLException;
+    CompletableFuture<BulkWriteResult> update(Collection<T> objs, Connection conn) throws SQLException;
+
+    /**
+     * insert each obj in objs, or update its row if it shares the primary key with a row already, then return the
+     * outcome of each obj
+     * @requires objs != null /\ conn != null /\ conn is not closed
+     */
+    CompletableFuture<BulkWriteResult> upsert(Collection<T> objs, Connection conn) throws SQLException;
+
+    /**
+     * read the objects of ids from the database, not from DbContext, as new objects that share nothing with DbContext:
+     * they can be changed without changing DbContext (see UnitOfWork). The ids that have no row are skipped
+     * @requires ids != null /\ conn != null /\ conn is not closed
+     */
+    CompletableFuture<List<T>> read(Collection<K> ids, Connection conn) throws SQLException, NotPossibleException;
+
+    /**
+     * read the objects of ids from the database, not from DbContext, and put them into DbContext in place of the
+     * objects of the same keys, or at its end for the new ones; the objects of the ids that no longer have a row are
+     * removed (see DbContext.merge). It brings DbContext up to date with the rows changed since it has been read (see
+     * ChangeSync) without reading the whole table again. Return the objects that have been read
+     * @requires ids != null /\ conn != null /\ conn is not closed
+     */
+    CompletableFuture<List<T>> refresh(Collection<K> ids, Connection conn) throws SQLException, NotPossibleException;
 
     /**
      * delete the row that share the primary key with obj
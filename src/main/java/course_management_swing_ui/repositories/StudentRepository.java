@@ -1,7 +1,12 @@
 package course_management_swing_ui.repositories;
 
 import course_management_swing_ui.models.Student;
-import course_management_swing_ui.repositories.dao.StudentDAOImpl;
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.DAO;
+import course_management_swing_ui.repositories.dao.DaoFactory;
+import course_management_swing_ui.repositories.dao.SortOrder;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.ThreadPool;
 import course_management_swing_ui.util.exceptions.DuplicateEntityException;
 import course_management_swing_ui.util.exceptions.NotPossibleException;
 
@@ -9,21 +14,23 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static course_management_swing_ui.repositories.DbContext.studentDbContext;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.3
+ * @version 1.12
  * @Overview Implementation of Repository for Student.
  */
 public class StudentRepository implements Repository<Student, Integer> {
-    private final StudentDAOImpl studentDAO = new StudentDAOImpl();
+    private final DAO<Student, Integer> studentDAO = DaoFactory.createStudentDAO();
 
     /**
      * @requires obj!=null /\ conn != null /\ conn is not closed
@@ -44,7 +51,7 @@ public class StudentRepository implements Repository<Student, Integer> {
             } catch (SQLException | DuplicateEntityException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -69,7 +76,7 @@ public class StudentRepository implements Repository<Student, Integer> {
             } catch (SQLException | DuplicateEntityException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -97,33 +104,43 @@ public class StudentRepository implements Repository<Student, Integer> {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires all id in ids are in the database /\ conn != null /\ conn is not closed
+     * @effects <pre>
+     *     take the Student objects of ids from DbContext.studentDbContext
+     *     read all the others with one studentDAO.read(Collection), i.e. WHERE id IN (...)
+     *     return them in the order of ids
+     * </pre>
      */
     @Override
     public CompletableFuture<List<Student>> findById(Collection<Integer> ids, Connection conn) throws SQLException, NotPossibleException {
         CompletableFuture<List<Student>> future = new CompletableFuture<>();
         CompletableFuture.supplyAsync(() -> {
             try {
-                List<Student> students = new ArrayList<>();
-                List<CompletableFuture<Student>> tasks = new ArrayList<>();
-                for (Integer id : ids) {
-                    tasks.add(findById(id, conn));
+                Map<Integer, Student> found = new HashMap<>();
+                for (Student s : studentDbContext) {
+                    found.put(s.getNumericalId(), s);
                 }
-                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get();
-                for (CompletableFuture<Student> task : tasks) {
-                    students.add(task.get());
+                List<Integer> missing = ids.stream().filter(id -> !found.containsKey(id)).collect(Collectors.toList());
+                if (!missing.isEmpty()) {
+                    for (Student s : studentDAO.read(missing, conn)) {
+                        found.put(s.getNumericalId(), s);
+                    }
+                }
+                List<Student> students = new ArrayList<>(ids.size());
+                for (Integer id : ids) {
+                    students.add(found.get(id));
                 }
                 return students;
-            } catch (SQLException | NotPossibleException | ExecutionException | InterruptedException e) {
+            } catch (SQLException | NotPossibleException e) {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -137,12 +154,42 @@ public class StudentRepository implements Repository<Student, Integer> {
                 future.completeExceptionally(e);
             }
             return null;
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ fetchSize >= 0
+     * @effects return studentDAO.stream(conn, fetchSize)
+     */
+    @Override
+    public Stream<Student> stream(Connection conn, int fetchSize) throws SQLException {
+        return studentDAO.stream(conn, fetchSize);
+    }
+
+    /**
+     * @requires limit > 0 /\ order != null /\ conn != null /\ conn is not closed
+     * @effects return studentDAO.page(afterKey, limit, order, conn)
+     */
+    @Override
+    public CompletableFuture<List<Student>> page(Integer afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Student>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return studentDAO.page(afterKey, limit, order, conn);
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires obj!=null /\ obj is in DbContext /\ conn != null /\ conn is not closed
+     * @modifies obj
+     * @effects update the row of obj with studentDAO.update and increment the version of obj once it has been
+     * committed, see Repository.update
      */
     @Override
     public CompletableFuture<Void> update(Student obj, Connection conn) throws SQLException {
@@ -150,26 +197,97 @@ public class StudentRepository implements Repository<Student, Integer> {
         CompletableFuture.runAsync(() -> {
             try {
                 studentDAO.update(obj, conn);
+                // only once committed: a row rolled back keeps the version of obj
+                WriteQueue.getInstance().afterCommit(conn, () -> obj.setVersion(obj.getVersion() + 1));
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
     /**
      * @requires obj!=null /\ obj is in DbContext /\ conn != null /\ conn is not closed
+     * @modifies objs
+     * @effects update the rows of objs with studentDAO.update, increment the version of every obj that is UPDATED
+     * once committed and return the outcome of every obj, see Repository.update
      */
     @Override
-    public CompletableFuture<Void> update(Collection<Student> objs, Connection conn) throws SQLException {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        CompletableFuture.runAsync(() -> {
+    public CompletableFuture<BulkWriteResult> update(Collection<Student> objs, Connection conn) throws SQLException {
+        CompletableFuture<BulkWriteResult> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
             try {
-                studentDAO.update(objs, conn);
+                List<Student> list = new ArrayList<>(objs);
+                BulkWriteResult result = studentDAO.update(list, conn);
+                List<Student> updated = new ArrayList<>();
+                for (int i : result.indexesOf(BulkWriteResult.Outcome.UPDATED)) {
+                    updated.add(list.get(i));
+                }
+                WriteQueue.getInstance().afterCommit(conn, () -> updated.forEach(o -> o.setVersion(o.getVersion() + 1)));
+                return result;
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires ids!=null /\ conn != null /\ conn is not closed
+     * @effects read the rows of ids with studentDAO.read(Collection), without looking into DbContext, see Repository.read
+     */
+    @Override
+    public CompletableFuture<List<Student>> read(Collection<Integer> ids, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Student>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return studentDAO.read(ids, conn);
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires ids!=null /\ conn != null /\ conn is not closed
+     * @modifies DbContext.studentDbContext
+     * @effects read the rows of ids with studentDAO.read(Collection) and put them into DbContext.studentDbContext in place of
+     * the objects of the same keys, or at its end for the new ones, see Repository.refresh
+     */
+    @Override
+    public CompletableFuture<List<Student>> refresh(Collection<Integer> ids, Connection conn) throws SQLException, NotPossibleException {
+        CompletableFuture<List<Student>> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                List<Student> objs = studentDAO.read(ids, conn);
+                DbContext.merge(studentDbContext, ids, objs, Student::getNumericalId);
+                return objs;
+            } catch (SQLException | NotPossibleException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
+        return future;
+    }
+
+    /**
+     * @requires objs!=null /\ conn != null /\ conn is not closed
+     * @effects insert or update every obj of objs with studentDAO.upsert, see DAO.upsert
+     */
+    @Override
+    public CompletableFuture<BulkWriteResult> upsert(Collection<Student> objs, Connection conn) throws SQLException {
+        CompletableFuture<BulkWriteResult> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return studentDAO.upsert(objs, conn);
+            } catch (SQLException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -185,7 +303,7 @@ public class StudentRepository implements Repository<Student, Integer> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -202,7 +320,7 @@ public class StudentRepository implements Repository<Student, Integer> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 
@@ -215,7 +333,7 @@ public class StudentRepository implements Repository<Student, Integer> {
             } catch (SQLException e) {
                 future.completeExceptionally(e);
             }
-        }).thenAccept(future::complete);
+        }, ThreadPool.dbIo).thenAccept(future::complete);
         return future;
     }
 }
@@ -0,0 +1,99 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Set-based lookup of many rows by their primary key, used by DAO.read(Collection). Instead of one query per
+ * key, the keys are sent in chunks of <tt>SELECT ... WHERE key IN (?, ?, ...)</tt>.
+ * <p>
+ * The size of a chunk is rounded up to a power of two (the last key is repeated to fill it), so only a handful of
+ * different IN statements exist and all of them stay in StatementCache. No chunk has more than MAX_CHUNK_SIZE keys,
+ * which is below the host-parameter limit of every SQLite build (SQLITE_MAX_VARIABLE_NUMBER is 999 before 3.32).
+ */
+public final class BulkRead {
+    public static final int MAX_HOST_PARAMETERS = 999;
+    public static final int MAX_CHUNK_SIZE = 512;
+
+    // key = selectWhereKey + chunk size
+    private static final Map<String, String> statements = new ConcurrentHashMap<>();
+
+    private BulkRead() {
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ selectWhereKey is a SELECT that ends with the key column, e.g.
+     * "SELECT * FROM student WHERE id" /\ keys != null
+     * @effects <pre>
+     *     read every row whose key is in keys, in ceil(|distinct keys| / MAX_CHUNK_SIZE) queries
+     *     return the mapped rows in the order of keys. A key without row is skipped.
+     * </pre>
+     */
+    public static <K, T> List<T> read(Connection conn, String selectWhereKey, Collection<K> keys,
+                                      RowMapper<T> mapper, Function<T, K> keyOf) throws SQLException, NotPossibleException {
+        List<K> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        Map<K, T> rows = new HashMap<>(distinct.size() * 2);
+
+        for (int from = 0; from < distinct.size(); from += MAX_CHUNK_SIZE) {
+            List<K> chunk = distinct.subList(from, Math.min(from + MAX_CHUNK_SIZE, distinct.size()));
+            int size = chunkSize(chunk.size());
+            try (CachedStatement cs = StatementCache.prepare(conn, inStatement(selectWhereKey, size))) {
+                PreparedStatement ps = cs.get();
+                for (int i = 0; i < size; i++) {
+                    ps.setObject(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        T row = mapper.map(rs);
+                        if (row != null) {
+                            rows.put(keyOf.apply(row), row);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<T> result = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            T row = rows.get(key);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @effects return the smallest power of two that is >= n
+     */
+    static int chunkSize(int n) {
+        int size = 1;
+        while (size < n) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * @requires 1 <= size <= MAX_HOST_PARAMETERS
+     * @effects return selectWhereKey + " IN (?, ?, ...)" with size placeholders
+     */
+    static String inStatement(String selectWhereKey, int size) {
+        return statements.computeIfAbsent(selectWhereKey + size, k -> {
+            StringJoiner placeholders = new StringJoiner(", ", selectWhereKey + " IN (", ")");
+            for (int i = 0; i < size; i++) {
+                placeholders.add("?");
+            }
+            return placeholders.toString();
+        });
+    }
+}
@@ -0,0 +1,292 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.Dialect;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.3
+ * @Overview Set-based writes of many rows, used by DAO.create(Collection), DAO.update(Collection), DAO.createEach and
+ * DAO.upsert. Instead of one statement per row (a JDBC batch is still executed one statement at a time by sqlite-jdbc),
+ * the rows are sent in chunks of multi-row statements:
+ * <pre>
+ *     insert:  INSERT INTO t (k, a, b) VALUES (?, ?, ?), (?, ?, ?), ...
+ *     update:  the multi-row update of the dialect, e.g. UPDATE t SET ... FROM (VALUES (?, ?, ?, ?), ...) with SQLite
+ *     upsert:  the multi-row upsert of the dialect, e.g. INSERT ... ON CONFLICT (k) DO UPDATE SET ... with SQLite
+ * </pre>
+ * Every update and upsert increments the version of the rows it changes. update only changes the rows that still
+ * have the version of their object, and reports the others as CONFLICT (optimistic concurrency, see DAO.update).
+ * A chunk never has more than BulkRead.MAX_HOST_PARAMETERS parameters. Full chunks have the same size, and the rest is
+ * split into power-of-two chunks, so only a handful of different statements exist and all of them stay in
+ * StatementCache.
+ * <p>
+ * insertEach and upsert report the outcome of every row (see BulkWriteResult). If a chunk fails, e.g. because one of
+ * its rows violates a constraint, the database rolls back that statement only, and its rows are written again one by one so
+ * that only the faulty rows fail.
+ */
+public final class BulkWrite {
+    // key = kind + table + rows per statement
+    private static final Map<String, String> statements = new ConcurrentHashMap<>();
+
+    private BulkWrite() {
+    }
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview How the objects of T are written to a table: its columns, the first of which is the primary key, its
+     * version column, the key and the version of an object and the binder of its columns.
+     */
+    public static final class Table<T, K> {
+        private final String name;
+        private final String[] columns;
+        private final String version;
+        private final Function<T, K> keyOf;
+        private final ToIntFunction<T> versionOf;
+        private final RowBinder<T> binder;
+
+        /**
+         * @requires name != null /\ columns.length >= 2 /\ columns[0] is the primary key of name /\ version is the
+         * version column of name, not in columns /\ binder sets the columns in the order of columns
+         */
+        public Table(String name, String[] columns, String version, Function<T, K> keyOf, ToIntFunction<T> versionOf,
+                     RowBinder<T> binder) {
+            this.name = name;
+            this.columns = columns.clone();
+            this.version = version;
+            this.keyOf = keyOf;
+            this.versionOf = versionOf;
+            this.binder = binder;
+        }
+
+        /**
+         * @effects return the maximum number of rows in one statement, an update having one more parameter per row
+         */
+        int rowsPerStatement() {
+            return BulkRead.MAX_HOST_PARAMETERS / (columns.length + 1);
+        }
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ table != null /\ objs != null
+     * @modifies the database
+     * @effects insert every object of objs with multi-row INSERT statements. If a statement fails, throw its
+     * SQLException: the rows of the previous statements are inserted, those of the failed one are not.
+     */
+    public static <T> void insert(Connection conn, Table<T, ?> table, Collection<T> objs) throws SQLException {
+        List<T> rows = new ArrayList<>(objs);
+        for (int[] chunk : chunks(rows.size(), table.rowsPerStatement())) {
+            execute(conn, table, rows, chunk[0], chunk[1], insertStatement(table, chunk[1] - chunk[0]), false);
+        }
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ table != null /\ objs != null
+     * @modifies the database
+     * @effects <pre>
+     *     update the row of every object of objs that still has the version of the object, and increment its version,
+     *     with multi-row update statements
+     *     return the outcome of every object, in the order of objs: UPDATED, or CONFLICT if its row has another
+     *     version or no longer exists
+     *     if a statement fails, throw its SQLException
+     * </pre>
+     */
+    public static <T> BulkWriteResult update(Connection conn, Table<T, ?> table, Collection<T> objs) throws SQLException {
+        List<T> rows = new ArrayList<>(objs);
+        BulkWriteResult result = new BulkWriteResult(rows.size());
+        for (int[] chunk : chunks(rows.size(), table.rowsPerStatement())) {
+            int from = chunk[0], to = chunk[1];
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                if (execute(conn, table, rows, from, to, updateStatement(table, to - from), true) == to - from) {
+                    for (int i = from; i < to; i++) {
+                        result.set(i, BulkWriteResult.Outcome.UPDATED);
+                    }
+                    continue;
+                }
+                // some rows are in conflict, but the count does not tell which: the chunk is undone, then made again
+                // one row at a time. Conflicts are rare, so the common case stays one statement per chunk.
+                conn.rollback(savepoint);
+            } finally {
+                conn.releaseSavepoint(savepoint);
+            }
+            for (int i = from; i < to; i++) {
+                boolean updated = execute(conn, table, rows, i, i + 1, updateStatement(table, 1), true) == 1;
+                result.set(i, updated ? BulkWriteResult.Outcome.UPDATED : BulkWriteResult.Outcome.CONFLICT);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ table != null /\ objs != null
+     * @modifies the database
+     * @effects <pre>
+     *     insert every object of objs that can be inserted, with multi-row INSERT statements
+     *     return the outcome of every object, in the order of objs: INSERTED, or FAILED (with its SQLException) if it
+     *     could not be inserted, e.g. because its key is in the table already
+     *     throw SQLException only if the database itself cannot be used
+     * </pre>
+     */
+    public static <T> BulkWriteResult insertEach(Connection conn, Table<T, ?> table, Collection<T> objs) throws SQLException {
+        return writeEach(conn, table, objs, false);
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ table != null /\ objs != null
+     * @modifies the database
+     * @effects <pre>
+     *     insert every object of objs, or update its row (whatever its version) if there is one already,
+     *     with multi-row upsert statements
+     *     return the outcome of every object, in the order of objs:
+     *       INSERTED if it had no row, UPDATED if it had one (or if an earlier object of objs has the same key),
+     *       FAILED (with its SQLException) if it could not be written
+     *     throw SQLException only if the database itself cannot be used
+     * </pre>
+     */
+    public static <T> BulkWriteResult upsert(Connection conn, Table<T, ?> table, Collection<T> objs) throws SQLException {
+        return writeEach(conn, table, objs, true);
+    }
+
+    /**
+     * @modifies the database
+     * @effects see insertEach (upsert = false) and upsert (upsert = true)
+     */
+    private static <T> BulkWriteResult writeEach(Connection conn, Table<T, ?> table, Collection<T> objs, boolean upsert) throws SQLException {
+        List<T> rows = new ArrayList<>(objs);
+        BulkWriteResult result = new BulkWriteResult(rows.size());
+        Set<String> written = new HashSet<>();
+        for (int[] chunk : chunks(rows.size(), table.rowsPerStatement())) {
+            int from = chunk[0], to = chunk[1];
+            Set<String> existing = upsert ? existingKeys(conn, table, rows.subList(from, to)) : Collections.emptySet();
+            try {
+                execute(conn, table, rows, from, to, upsert ? upsertStatement(table, to - from) : insertStatement(table, to - from), false);
+                for (int i = from; i < to; i++) {
+                    setOutcome(result, i, table.keyOf.apply(rows.get(i)), existing, written);
+                }
+            } catch (SQLException chunkError) {
+                // one by one, so that the rows that can be written are
+                for (int i = from; i < to; i++) {
+                    try {
+                        execute(conn, table, rows, i, i + 1, upsert ? upsertStatement(table, 1) : insertStatement(table, 1), false);
+                        setOutcome(result, i, table.keyOf.apply(rows.get(i)), existing, written);
+                    } catch (SQLException rowError) {
+                        result.fail(i, rowError);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @modifies result, written
+     * @effects set the outcome of the row at index, which has just been written, and remember its key
+     */
+    private static void setOutcome(BulkWriteResult result, int index, Object key, Set<String> existing, Set<String> written) {
+        String k = String.valueOf(key);
+        result.set(index, existing.contains(k) || !written.add(k) ? BulkWriteResult.Outcome.UPDATED : BulkWriteResult.Outcome.INSERTED);
+    }
+
+    /**
+     * @effects return the keys of rows that are in the table already, as strings
+     */
+    private static <T> Set<String> existingKeys(Connection conn, Table<T, ?> table, List<T> rows) throws SQLException {
+        // compared as strings: the affinity of the key column converts them back in the IN (...)
+        List<String> keys = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            keys.add(String.valueOf(table.keyOf.apply(row)));
+        }
+        String select = "SELECT " + table.columns[0] + " FROM " + table.name + " WHERE " + table.columns[0];
+        try {
+            return new HashSet<>(BulkRead.read(conn, select, keys, rs -> rs.getString(1), Function.identity()));
+        } catch (NotPossibleException e) {
+            // the mapper only reads a string
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * @modifies the database
+     * @effects bind rows[from..to) to sql, each followed by its version if versioned, execute it and return the number
+     * of rows it changed
+     */
+    private static <T> int execute(Connection conn, Table<T, ?> table, List<T> rows, int from, int to, String sql, boolean versioned) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, sql)) {
+            PreparedStatement ps = cs.get();
+            int offset = 0;
+            for (int i = from; i < to; i++) {
+                T row = rows.get(i);
+                table.binder.bind(ps, offset, row);
+                offset += table.columns.length;
+                if (versioned) {
+                    ps.setInt(++offset, table.versionOf.applyAsInt(row));
+                }
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * @requires n >= 0 /\ max > 0
+     * @effects return the [from, to) ranges that split n rows into chunks of max rows, then chunks of decreasing powers
+     * of two
+     */
+    static List<int[]> chunks(int n, int max) {
+        List<int[]> chunks = new ArrayList<>();
+        int from = 0;
+        while (n - from >= max) {
+            chunks.add(new int[]{from, from + max});
+            from += max;
+        }
+        for (int size = Integer.highestOneBit(Math.max(n - from, 1)); size > 0; size >>= 1) {
+            if (n - from >= size) {
+                chunks.add(new int[]{from, from + size});
+                from += size;
+            }
+        }
+        return chunks;
+    }
+
+    private static String insertStatement(Table<?, ?> table, int rows) {
+        return statements.computeIfAbsent("insert." + table.name + "." + rows, k ->
+                "INSERT INTO " + table.name + " (" + String.join(", ", table.columns) + ") VALUES " + values(table.columns.length, rows));
+    }
+
+    private static String upsertStatement(Table<?, ?> table, int rows) {
+        Dialect dialect = DbConnect.getDialect();
+        return statements.computeIfAbsent("upsert." + dialect.getName() + "." + table.name + "." + rows, k ->
+                dialect.upsertStatement(table.name, table.columns, table.version, values(table.columns.length, rows)));
+    }
+
+    private static String updateStatement(Table<?, ?> table, int rows) {
+        Dialect dialect = DbConnect.getDialect();
+        return statements.computeIfAbsent("update." + dialect.getName() + "." + table.name + "." + rows, k ->
+                dialect.updateStatement(table.name, table.columns, table.version, values(table.columns.length + 1, rows)));
+    }
+
+    /**
+     * @effects return "(?, ?, ...), (?, ?, ...), ..." for rows rows of params parameters
+     */
+    private static String values(int params, int rows) {
+        StringJoiner row = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < params; i++) {
+            row.add("?");
+        }
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < rows; i++) {
+            values.add(row.toString());
+        }
+        return values.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview The outcome of every row of a bulk write (DAO.createEach, DAO.upsert, DAO.update(Collection)), in the order
+ * of the rows that were given. A row that failed also keeps the SQLException that made it fail. A row in CONFLICT was
+ * not updated because it has been changed or deleted by someone else since it was read (see DAO.update): it is not a
+ * failure, the write goes on without it.
+ */
+public class BulkWriteResult {
+    public enum Outcome {
+        INSERTED, UPDATED, CONFLICT, FAILED
+    }
+
+    private final Outcome[] outcomes;
+    private final Map<Integer, SQLException> errors = new TreeMap<>();
+
+    /**
+     * @requires size >= 0
+     * @effects initialize this for size rows, none of them written yet
+     */
+    public BulkWriteResult(int size) {
+        outcomes = new Outcome[size];
+    }
+
+    /**
+     * @requires 0 <= index < size() /\ outcome != FAILED
+     * @modifies this
+     */
+    void set(int index, Outcome outcome) {
+        outcomes[index] = outcome;
+    }
+
+    /**
+     * @requires 0 <= index < size() /\ error != null
+     * @modifies this
+     */
+    void fail(int index, SQLException error) {
+        outcomes[index] = Outcome.FAILED;
+        errors.put(index, error);
+    }
+
+    /**
+     * @requires 0 <= index < size()
+     * @effects return the outcome of the row at index
+     */
+    public Outcome getOutcome(int index) {
+        return outcomes[index];
+    }
+
+    /**
+     * @requires 0 <= index < size()
+     * @effects return the cause of the failure of the row at index, or null if it did not fail
+     */
+    public SQLException getError(int index) {
+        return errors.get(index);
+    }
+
+    /**
+     * @effects return the index of every failed row
+     */
+    public Set<Integer> getFailedIndexes() {
+        return Collections.unmodifiableSet(errors.keySet());
+    }
+
+    /**
+     * @effects return the index of every row whose outcome is outcome, in ascending order
+     */
+    public List<Integer> indexesOf(Outcome outcome) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == outcome) indexes.add(i);
+        }
+        return indexes;
+    }
+
+    public int count(Outcome outcome) {
+        int n = 0;
+        for (Outcome o : outcomes) {
+            if (o == outcome) n++;
+        }
+        return n;
+    }
+
+    public int size() {
+        return outcomes.length;
+    }
+
+    public boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkWriteResult{" +
+                "inserted=" + count(Outcome.INSERTED) +
+                ", updated=" + count(Outcome.UPDATED) +
+                ", conflicts=" + count(Outcome.CONFLICT) +
+                ", failed=" + count(Outcome.FAILED) +
+                '}';
+    }
+}
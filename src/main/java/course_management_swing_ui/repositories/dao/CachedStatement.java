@@ -0,0 +1,53 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.sql.PreparedStatement;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A prepared statement lent by StatementCache. It must be used in a try-with-resources block: closing it
+ * does not close the statement but gives it back to the cache of its connection.
+ */
+public final class CachedStatement implements AutoCloseable {
+    private final StatementCache owner;
+    private final StatementCache.ConnectionCache cache;
+    private final String sql;
+    private PreparedStatement ps;
+
+    CachedStatement(StatementCache owner, StatementCache.ConnectionCache cache, String sql, PreparedStatement ps) {
+        this.owner = owner;
+        this.cache = cache;
+        this.sql = sql;
+        this.ps = ps;
+    }
+
+    /**
+     * @requires this is not closed
+     * @effects return the lent statement
+     */
+    public PreparedStatement get() {
+        if (ps == null) {
+            throw new IllegalStateException("statement has already been returned to the cache: " + sql);
+        }
+        return ps;
+    }
+
+    /**
+     * @effects return the SQL of this statement
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @modifies this
+     * @effects give the statement back to the cache. Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (ps != null) {
+            owner.release(cache, sql, ps);
+            ps = null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package course_management_swing_ui.repositories.dao;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview An entry of the change log (see DbSchema.ChangeLogTable): the row of key in table has been inserted,
+ * updated or deleted by the change of sequence number seq. The key is kept as text, as the log holds the keys of every
+ * table.
+ */
+public final class Change {
+    public enum Op {
+        INSERT, UPDATE, DELETE;
+
+        /**
+         * @effects return the Op whose first letter is code (as stored in the log)
+         */
+        public static Op of(String code) {
+            switch (code) {
+                case "I":
+                    return INSERT;
+                case "U":
+                    return UPDATE;
+                default:
+                    return DELETE;
+            }
+        }
+    }
+
+    private final long seq;
+    private final String table;
+    private final String key;
+    private final Op op;
+
+    public Change(long seq, String table, String key, Op op) {
+        this.seq = seq;
+        this.table = table;
+        this.key = key;
+        this.op = op;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    @Override
+    public String toString() {
+        return "Change{" +
+                "seq=" + seq +
+                ", table='" + table + '\'' +
+                ", key='" + key + '\'' +
+                ", op=" + op +
+                '}';
+    }
+}
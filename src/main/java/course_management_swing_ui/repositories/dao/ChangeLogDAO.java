@@ -0,0 +1,39 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The DAO of the change log, which every insert, update and delete of a data table appends to (see
+ * DbSchema.ChangeLogTable). A sequence number is never reused, but there may be gaps between two of them (a rolled back
+ * change), and the oldest entries are pruned.
+ */
+public interface ChangeLogDAO {
+    /**
+     * @requires conn != null /\ conn is not closed
+     * @effects return the sequence number of the latest change, or 0 if the log is empty
+     */
+    long latestSeq(Connection conn) throws SQLException;
+
+    /**
+     * @requires conn != null /\ conn is not closed
+     * @effects return the sequence number of the oldest change that is still logged, or 0 if the log is empty
+     */
+    long oldestSeq(Connection conn) throws SQLException;
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ limit > 0
+     * @effects return at most limit changes whose sequence number is greater than seq, in order of sequence number
+     */
+    List<Change> readSince(long seq, int limit, Connection conn) throws SQLException;
+
+    /**
+     * @requires conn != null /\ conn is not closed
+     * @modifies the change log
+     * @effects delete the changes whose sequence number is not greater than seq, return how many
+     */
+    int prune(long seq, Connection conn) throws SQLException;
+}
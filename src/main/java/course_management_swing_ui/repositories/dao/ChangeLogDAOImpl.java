@@ -0,0 +1,73 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.repositories.db.DbSchema;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Implementation of ChangeLogDAO on the change_log table, which the triggers of DbSchema fill. The changes are
+ * read in order of seq, their primary key.
+ */
+public class ChangeLogDAOImpl implements ChangeLogDAO {
+    public static final String LATEST_SEQ_STMT = "SELECT COALESCE(MAX(" + DbSchema.ChangeLogTable.Cols.SEQ + "), 0) FROM " + DbSchema.ChangeLogTable.NAME;
+    public static final String OLDEST_SEQ_STMT = "SELECT COALESCE(MIN(" + DbSchema.ChangeLogTable.Cols.SEQ + "), 0) FROM " + DbSchema.ChangeLogTable.NAME;
+    public static final String READ_SINCE_STMT = "SELECT "
+            + DbSchema.ChangeLogTable.Cols.SEQ + ", "
+            + DbSchema.ChangeLogTable.Cols.TABLE_NAME + ", "
+            + DbSchema.ChangeLogTable.Cols.ROW_KEY + ", "
+            + DbSchema.ChangeLogTable.Cols.OP
+            + " FROM " + DbSchema.ChangeLogTable.NAME
+            + " WHERE " + DbSchema.ChangeLogTable.Cols.SEQ + " > ?"
+            + " ORDER BY " + DbSchema.ChangeLogTable.Cols.SEQ + " LIMIT ?";
+    public static final String PRUNE_STMT = "DELETE FROM " + DbSchema.ChangeLogTable.NAME + " WHERE " + DbSchema.ChangeLogTable.Cols.SEQ + " <= ?";
+
+    @Override
+    public long latestSeq(Connection conn) throws SQLException {
+        return readSeq(LATEST_SEQ_STMT, conn);
+    }
+
+    @Override
+    public long oldestSeq(Connection conn) throws SQLException {
+        return readSeq(OLDEST_SEQ_STMT, conn);
+    }
+
+    @Override
+    public List<Change> readSince(long seq, int limit, Connection conn) throws SQLException {
+        List<Change> changes = new ArrayList<>();
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_SINCE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setLong(1, seq);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new Change(rs.getLong(1), rs.getString(2), rs.getString(3), Change.Op.of(rs.getString(4))));
+                }
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public int prune(long seq, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, PRUNE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setLong(1, seq);
+            return ps.executeUpdate();
+        }
+    }
+
+    private static long readSeq(String stmt, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, stmt)) {
+            try (ResultSet rs = cs.get().executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The position of every column of a result set by its label (the alias if there is one), read once from
+ * its ResultSetMetaData. Labels are compared ignoring case, like ResultSet.getXXX(String) does.
+ */
+public final class ColumnIndex {
+    private final Map<String, Integer> positions;
+
+    private ColumnIndex(Map<String, Integer> positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * @requires metaData != null
+     * @effects return the ColumnIndex of the columns described by metaData. If two columns have the same label, the
+     * first one wins, as with ResultSet.findColumn.
+     */
+    public static ColumnIndex of(ResultSetMetaData metaData) throws SQLException {
+        int count = metaData.getColumnCount();
+        Map<String, Integer> positions = new HashMap<>(count * 2);
+        for (int i = 1; i <= count; i++) {
+            positions.putIfAbsent(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        return new ColumnIndex(positions);
+    }
+
+    /**
+     * @effects <pre>
+     *     if there is a column labelled label
+     *       return its position (from 1)
+     *     else
+     *       throw SQLException
+     * </pre>
+     */
+    public int of(String label) throws SQLException {
+        Integer position = positions.get(label.toLowerCase(Locale.ROOT));
+        if (position == null) {
+            throw new SQLException("no column labelled " + label + " in " + positions.keySet());
+        }
+        return position;
+    }
+
+    public int size() {
+        return positions.size();
+    }
+}
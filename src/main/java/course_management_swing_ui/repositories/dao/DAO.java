@@ -6,11 +6,15 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.2
+ * @version 1.7
  * @Overview Interface for generic CRUD operations on a repositories for a specific type.
+ * <p>
+ * Every row has a version, which every update increments. The updates are optimistic: a row is updated only if it
+ * still has the version of the object, i.e. if nobody has changed it since the object was read.
  */
 public interface DAO<T, K> {
     /**
@@ -45,16 +49,52 @@ public interface DAO<T, K> {
     List<T> all(Connection conn) throws SQLException, NotPossibleException;
 
     /**
-     * update the row in the database that contain key of obj
+     * read all rows of entity T in the database lazily, one row at a time, with fetchSize as the fetch size hint. The
+     * returned Stream must be closed.
+     * @requires conn != null /\ conn is not closed /\ fetchSize >= 0
+     */
+    Stream<T> stream(Connection conn, int fetchSize) throws SQLException;
+
+    /**
+     * read the page of at most limit rows whose keys come right after afterKey in order (the first page if afterKey is
+     * null), i.e. keyset pagination on the primary key
+     * @requires limit > 0 /\ order != null /\ conn != null /\ conn is not closed
+     */
+    List<T> page(K afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException;
+
+    /**
+     * return the number of rows in the table
+     * @requires conn != null /\ conn is not closed
+     */
+    long count(Connection conn) throws SQLException;
+
+    /**
+     * update the row in the database that contain key of obj and increment its version, or throw StaleObjectException
+     * if that row does not have the version of obj anymore, or no longer exists. The version of obj is left as it is.
      * @requires obj != null /\ obj.repOK /\ conn != null /\ conn is not closed
      */
     void update(T obj, Connection conn) throws SQLException;
 
     /**
-     * for each element of objs, update the corresponding row in the database
+     * for each element of objs, update the corresponding row in the database as update(T) does, then return the outcome
+     * of each element in the order of objs: UPDATED, or CONFLICT instead of StaleObjectException
+     * @requires objs != null /\ obj.repOK /\ conn != null /\ conn is not closed
+     */
+    BulkWriteResult update(Collection<T> objs, Connection conn) throws SQLException;
+
+    /**
+     * for each element of objs, create a new object in the database if it can be created, then return the outcome of
+     * each element in the order of objs (an element that cannot be created, e.g. a duplicate, fails alone)
+     * @requires objs != null /\ obj.repOK /\ conn != null /\ conn is not closed
+     */
+    BulkWriteResult createEach(Collection<T> objs, Connection conn) throws SQLException;
+
+    /**
+     * for each element of objs, create a new object in the database, or update its row if its key is in the database
+     * already (insert or update) whatever its version, then return the outcome of each element in the order of objs
      * @requires objs != null /\ obj.repOK /\ conn != null /\ conn is not closed
      */
-    void update(Collection<T> objs, Connection conn) throws SQLException;
+    BulkWriteResult upsert(Collection<T> objs, Connection conn) throws SQLException;
 
     /**
      * delete the row in the database that contain key of obj
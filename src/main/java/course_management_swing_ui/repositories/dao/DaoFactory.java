@@ -0,0 +1,60 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.DbSchema;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview Creates the DAOs of the selected Dialect (see DbConnect.getDialect): the SQL DAOs for the dialects that have
+ * SQL, the DAOs of MemoryStore for the memory dialect. Every DAO of a data table is metered (see MeteredDAO).
+ * <pre>
+ *  Usage:
+ *      DAO&lt;Student, Integer&gt; dao = DaoFactory.createStudentDAO();
+ * </pre>
+ */
+public final class DaoFactory {
+    private DaoFactory() {
+    }
+
+    /**
+     * @effects return a new DAO of the students for the selected dialect
+     */
+    public static DAO<Student, Integer> createStudentDAO() {
+        DAO<Student, Integer> dao = DbConnect.getDialect().hasSql()
+                ? new StudentDAOImpl()
+                : new MemoryDAO<>(MemoryStore.getInstance().getStudents());
+        return new MeteredDAO<>(DbSchema.StudentTable.NAME, dao);
+    }
+
+    /**
+     * @effects return a new DAO of the modules for the selected dialect
+     */
+    public static DAO<Module, String> createModuleDAO() {
+        DAO<Module, String> dao = DbConnect.getDialect().hasSql()
+                ? new ModuleDAOImpl()
+                : new MemoryDAO<>(MemoryStore.getInstance().getModules());
+        return new MeteredDAO<>(DbSchema.ModuleTable.NAME, dao);
+    }
+
+    /**
+     * @effects return a new DAO of the enrollments for the selected dialect
+     */
+    public static EnrollmentDAO createEnrollmentDAO() {
+        EnrollmentDAO dao = DbConnect.getDialect().hasSql()
+                ? new EnrollmentDAOImpl()
+                : new MemoryEnrollmentDAO(MemoryStore.getInstance());
+        return new MeteredEnrollmentDAO(dao);
+    }
+
+    /**
+     * @effects return a new DAO of the change log for the selected dialect
+     */
+    public static ChangeLogDAO createChangeLogDAO() {
+        return DbConnect.getDialect().hasSql()
+                ? new ChangeLogDAOImpl()
+                : MemoryStore.getInstance().getChangeLog();
+    }
+}
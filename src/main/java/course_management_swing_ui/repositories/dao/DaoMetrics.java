@@ -0,0 +1,168 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.util.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The statistics of every DAO operation since the start (or the last reset), recorded by MeteredDAO: for each
+ * operation of each table (e.g. "enrollment.read(Collection)"), its calls, its failures, its rows and a LatencyHistogram
+ * of its latency.
+ * <pre>
+ *  Recording never locks: the counters are LongAdder(s), the histograms are lock-free, and an Operation is looked up
+ *  once per MeteredDAO, not once per call.
+ *
+ *  Usage:
+ *      System.out.println(DaoMetrics.getInstance().report());
+ *      DaoMetrics.getInstance().getOperation("enrollment", "all").getValueAtPercentile(99);
+ * </pre>
+ */
+public final class DaoMetrics {
+    private static final DaoMetrics instance = new DaoMetrics();
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    private DaoMetrics() {
+    }
+
+    public static DaoMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview The statistics of one operation of one table. The rows are the ones returned by a read, the ones given
+     * to a write, and the ones written by DAO.createEach and DAO.upsert.
+     */
+    public static final class Operation {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @modifies this
+         * @effects count one call that took nanos and read or wrote rows rows
+         */
+        void record(long nanos, long rows) {
+            calls.increment();
+            this.rows.add(rows);
+            totalNanos.add(nanos);
+            latency.record(nanos);
+        }
+
+        /**
+         * @modifies this
+         * @effects count one call that failed after nanos
+         */
+        void recordError(long nanos) {
+            calls.increment();
+            errors.increment();
+            totalNanos.add(nanos);
+            latency.record(nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * @effects return the mean latency in nanoseconds, or 0 if there is no call
+         */
+        public long getMeanNanos() {
+            long n = calls.sum();
+            return n == 0 ? 0 : totalNanos.sum() / n;
+        }
+
+        /**
+         * @requires 0 < percentile <= 100
+         * @effects return the latency in nanoseconds below which percentile % of the calls are
+         */
+        public long getValueAtPercentile(double percentile) {
+            return latency.getValueAtPercentile(percentile);
+        }
+
+        public long getMaxNanos() {
+            return latency.getMax();
+        }
+
+        void reset() {
+            calls.reset();
+            errors.reset();
+            rows.reset();
+            totalNanos.reset();
+            latency.reset();
+        }
+    }
+
+    /**
+     * @requires table != null /\ operation != null
+     * @effects return the Operation of table named operation, created if it does not exist
+     */
+    public Operation getOperation(String table, String operation) {
+        return operations.computeIfAbsent(table + "." + operation, Operation::new);
+    }
+
+    /**
+     * @effects return every Operation that has been called, in the order of their names
+     */
+    public List<Operation> getOperations() {
+        List<Operation> list = new ArrayList<>();
+        for (Operation op : operations.values()) {
+            if (op.getCalls() > 0) {
+                list.add(op);
+            }
+        }
+        list.sort(Comparator.comparing(Operation::getName));
+        return list;
+    }
+
+    /**
+     * @modifies this
+     * @effects reset the statistics of every Operation
+     */
+    public void reset() {
+        operations.values().forEach(Operation::reset);
+    }
+
+    /**
+     * @effects return the statistics of every Operation that has been called as a table of text, the latencies in
+     * milliseconds
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder(String.format("%-36s %9s %6s %11s %9s %9s %9s %9s %9s%n",
+                "operation", "calls", "errors", "rows", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (Operation op : getOperations()) {
+            sb.append(String.format("%-36s %9d %6d %11d %9.3f %9.3f %9.3f %9.3f %9.3f%n", op.getName(), op.getCalls(),
+                    op.getErrors(), op.getRows(), op.getMeanNanos() / 1e6, op.getValueAtPercentile(50) / 1e6,
+                    op.getValueAtPercentile(99) / 1e6, op.getValueAtPercentile(99.9) / 1e6, op.getMaxNanos() / 1e6));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview The DAO of the enrollments. Besides the EnrollmentRow(s) of DAO, which only hold the keys of the student and
+ * the module, the *Joined methods read the enrollments with their Student and Module at once and build the Enrollment
+ * objects directly. An IdentityMap makes every Student and Module be created once per read.
+ */
+public interface EnrollmentDAO extends DAO<EnrollmentRow, Integer> {
+    /**
+     * @requires key != null /\ identityMap != null /\ conn != null /\ conn is not closed
+     * @modifies identityMap
+     * @effects return the Enrollment whose id is key with its Student and Module, or null if there is no such
+     * enrollment
+     */
+    Enrollment readJoined(Integer key, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException;
+
+    /**
+     * @requires keys != null /\ identityMap != null /\ conn != null /\ conn is not closed
+     * @modifies identityMap
+     * @effects return the Enrollment(s) whose id is in keys with their Student and Module, in the order of keys
+     */
+    List<Enrollment> readJoined(Collection<Integer> keys, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException;
+
+    /**
+     * @requires identityMap != null /\ conn != null /\ conn is not closed
+     * @modifies identityMap
+     * @effects return every Enrollment with its Student and Module in order of id
+     */
+    List<Enrollment> allJoined(IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException;
+
+    /**
+     * @requires identityMap != null /\ conn != null /\ conn is not closed /\ fetchSize >= 0
+     * @modifies identityMap, while the Stream is consumed
+     * @effects same as allJoined, but as a lazy Stream, which must be closed
+     */
+    Stream<Enrollment> streamJoined(IdentityMap identityMap, Connection conn, int fetchSize) throws SQLException;
+
+    /**
+     * @requires identityMap != null /\ limit > 0 /\ order != null /\ conn != null /\ conn is not closed
+     * @modifies identityMap
+     * @effects same as page, but every row is the Enrollment with its Student and Module
+     */
+    List<Enrollment> pageJoined(Integer afterKey, int limit, SortOrder order, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException;
+
+    /**
+     * @requires conn != null /\ conn is not closed
+     * @effects return the highest id of the enrollments, 0 if there is none
+     */
+    int maxId(Connection conn) throws SQLException;
+
+    /**
+     * delete every enrollment of every student whose id is in studentIds
+     * @requires studentIds != null /\ conn != null /\ conn is not closed
+     */
+    void deleteByStudent(Collection<Integer> studentIds, Connection conn) throws SQLException;
+
+    /**
+     * delete every enrollment in every module whose code is in moduleCodes
+     * @requires moduleCodes != null /\ conn != null /\ conn is not closed
+     */
+    void deleteByModule(Collection<String> moduleCodes, Connection conn) throws SQLException;
+}
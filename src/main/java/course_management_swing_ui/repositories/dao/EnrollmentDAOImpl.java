@@ -1,19 +1,32 @@
 package course_management_swing_ui.repositories.dao;
 
 import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
 import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+import course_management_swing_ui.util.exceptions.StaleObjectException;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.2
- * @Overview Implementation of DAO for Enrollment
+ * @version 1.13
+ * @Overview Implementation of EnrollmentDAO in SQL. The *Joined methods read the enrollments with their Student and
+ * Module in one JOIN query: readJoined(Collection) with chunked JOIN ... WHERE e.id IN (...) queries, allJoined in a
+ * single scan.
+ * <p>
+ * Rows are mapped by COMPILER and JOINED_COMPILER, whose column positions are resolved once per statement (see
+ * RowMappers). The updates are checked against the version of the row (see DAO.update).
  */
-public class EnrollmentDAOImpl implements DAO<Object, Integer> {
+public class EnrollmentDAOImpl implements EnrollmentDAO {
+    static final RowMapperCompiler<RowMapper<EnrollmentRow>> COMPILER = EnrollmentDAOImpl::compile;
+    private static final RowMapperCompiler<JoinedRowMapper> JOINED_COMPILER = EnrollmentDAOImpl::compileJoined;
+
     public final static String CREATE_STMT = "INSERT INTO " + DbSchema.EnrollmentTable.NAME + " ("
             + DbSchema.EnrollmentTable.Cols.ID + ", "
             + DbSchema.EnrollmentTable.Cols.STUDENT_ID + ", "
@@ -22,144 +35,360 @@ public class EnrollmentDAOImpl implements DAO<Object, Integer> {
             + DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK
             + ") VALUES (?, ?, ?, ?, ?)";
 
-    public final static String READ_ONE_STMT = "SELECT * FROM " + DbSchema.EnrollmentTable.NAME + " WHERE " + DbSchema.EnrollmentTable.Cols.ID + " = ?";
-    public final static String READ_ALL_STMT = "SELECT * FROM " + DbSchema.EnrollmentTable.NAME;
+    private static final String ROW_COLUMNS = DbSchema.EnrollmentTable.Cols.ID + ", "
+            + DbSchema.EnrollmentTable.Cols.STUDENT_ID + ", "
+            + DbSchema.EnrollmentTable.Cols.MODULE_CODE + ", "
+            + DbSchema.EnrollmentTable.Cols.INTERNAL_MARK + ", "
+            + DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK + ", "
+            + DbSchema.EnrollmentTable.Cols.VERSION;
+
+    public final static String ROW_SELECT = "SELECT " + ROW_COLUMNS + " FROM " + DbSchema.EnrollmentTable.NAME;
+    public final static String READ_ONE_STMT = ROW_SELECT + " WHERE " + DbSchema.EnrollmentTable.Cols.ID + " = ?";
+    public final static String READ_ALL_STMT = ROW_SELECT;
+    public final static String COUNT_STMT = "SELECT COUNT(*) FROM " + DbSchema.EnrollmentTable.NAME;
+    public final static String MAX_ID_STMT = "SELECT COALESCE(MAX(" + DbSchema.EnrollmentTable.Cols.ID + "), 0) FROM " + DbSchema.EnrollmentTable.NAME;
+    // completed with " IN (?, ?, ...)" by BulkRead
+    public final static String READ_MANY_STMT = ROW_SELECT + " WHERE " + DbSchema.EnrollmentTable.Cols.ID;
+
+    // the columns of the enrollment (ROW_COLUMNS) followed by those of its student (s_*) and of its module (m_*).
+    // student_id and module_code are NOT NULL foreign keys, hence LEFT JOIN gives the rows of JOIN, but in the order
+    // it is written: from enrollment, in order of id, to the primary keys of student and module. H2 would otherwise
+    // scan the few modules first and sort every enrollment, even for a page of them.
+    public final static String JOIN_SELECT = "SELECT "
+            + "e." + DbSchema.EnrollmentTable.Cols.ID + ", "
+            + "e." + DbSchema.EnrollmentTable.Cols.STUDENT_ID + ", "
+            + "e." + DbSchema.EnrollmentTable.Cols.MODULE_CODE + ", "
+            + "e." + DbSchema.EnrollmentTable.Cols.INTERNAL_MARK + ", "
+            + "e." + DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK + ", "
+            + "e." + DbSchema.EnrollmentTable.Cols.VERSION + ", "
+            + "s." + DbSchema.StudentTable.Cols.ID + " AS s_" + DbSchema.StudentTable.Cols.ID + ", "
+            + "s." + DbSchema.StudentTable.Cols.NAME + " AS s_" + DbSchema.StudentTable.Cols.NAME + ", "
+            + "s." + DbSchema.StudentTable.Cols.DOB + " AS s_" + DbSchema.StudentTable.Cols.DOB + ", "
+            + "s." + DbSchema.StudentTable.Cols.ADDRESS + " AS s_" + DbSchema.StudentTable.Cols.ADDRESS + ", "
+            + "s." + DbSchema.StudentTable.Cols.EMAIL + " AS s_" + DbSchema.StudentTable.Cols.EMAIL + ", "
+            + "s." + DbSchema.StudentTable.Cols.VERSION + " AS s_" + DbSchema.StudentTable.Cols.VERSION + ", "
+            + "m." + DbSchema.ModuleTable.Cols.CODE + " AS m_" + DbSchema.ModuleTable.Cols.CODE + ", "
+            + "m." + DbSchema.ModuleTable.Cols.NAME + " AS m_" + DbSchema.ModuleTable.Cols.NAME + ", "
+            + "m." + DbSchema.ModuleTable.Cols.SEMESTER + " AS m_" + DbSchema.ModuleTable.Cols.SEMESTER + ", "
+            + "m." + DbSchema.ModuleTable.Cols.CREDITS + " AS m_" + DbSchema.ModuleTable.Cols.CREDITS + ", "
+            + "m." + DbSchema.ModuleTable.Cols.MODULE_TYPE + " AS m_" + DbSchema.ModuleTable.Cols.MODULE_TYPE + ", "
+            + "m." + DbSchema.ModuleTable.Cols.DEPARTMENT + " AS m_" + DbSchema.ModuleTable.Cols.DEPARTMENT + ", "
+            + "m." + DbSchema.ModuleTable.Cols.VERSION + " AS m_" + DbSchema.ModuleTable.Cols.VERSION
+            + " FROM " + DbSchema.EnrollmentTable.NAME + " e"
+            + " LEFT JOIN " + DbSchema.StudentTable.NAME + " s ON s." + DbSchema.StudentTable.Cols.ID + " = e." + DbSchema.EnrollmentTable.Cols.STUDENT_ID
+            + " LEFT JOIN " + DbSchema.ModuleTable.NAME + " m ON m." + DbSchema.ModuleTable.Cols.CODE + " = e." + DbSchema.EnrollmentTable.Cols.MODULE_CODE;
+    public final static String JOIN_KEY = "e." + DbSchema.EnrollmentTable.Cols.ID;
+    public final static String READ_ONE_JOINED_STMT = JOIN_SELECT + " WHERE " + JOIN_KEY + " = ?";
+    public final static String READ_ALL_JOINED_STMT = JOIN_SELECT + " ORDER BY " + JOIN_KEY;
+    // completed with " IN (?, ?, ...)" by BulkRead
+    public final static String READ_MANY_JOINED_STMT = JOIN_SELECT + " WHERE " + JOIN_KEY;
 
     public final static String UPDATE_STMT = "UPDATE " + DbSchema.EnrollmentTable.NAME + " SET "
             + DbSchema.EnrollmentTable.Cols.STUDENT_ID + " = ?, "
             + DbSchema.EnrollmentTable.Cols.MODULE_CODE + " = ?, "
             + DbSchema.EnrollmentTable.Cols.INTERNAL_MARK + " = ?, "
-            + DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK + " = ?"
-            + "WHERE " + DbSchema.EnrollmentTable.Cols.ID + " = ?";
+            + DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK + " = ?, "
+            + DbSchema.EnrollmentTable.Cols.VERSION + " = " + DbSchema.EnrollmentTable.Cols.VERSION + " + 1 "
+            + "WHERE " + DbSchema.EnrollmentTable.Cols.ID + " = ? AND " + DbSchema.EnrollmentTable.Cols.VERSION + " = ?";
 
     public static final String DELETE_ONE_STMT = "DELETE FROM " + DbSchema.EnrollmentTable.NAME + " WHERE " + DbSchema.EnrollmentTable.Cols.ID + " = ?";
     public static final String DELETE_ALL_STMT = "DELETE FROM " + DbSchema.EnrollmentTable.NAME;
+    // index seeks since schema version 3
+    public static final String DELETE_BY_STUDENT_STMT = "DELETE FROM " + DbSchema.EnrollmentTable.NAME + " WHERE " + DbSchema.EnrollmentTable.Cols.STUDENT_ID + " = ?";
+    public static final String DELETE_BY_MODULE_STMT = "DELETE FROM " + DbSchema.EnrollmentTable.NAME + " WHERE " + DbSchema.EnrollmentTable.Cols.MODULE_CODE + " = ?";
+
+    // the columns of CREATE_STMT, written by BulkWrite
+    private static final BulkWrite.Table<EnrollmentRow, Integer> BULK_TABLE = new BulkWrite.Table<>(DbSchema.EnrollmentTable.NAME,
+            new String[]{DbSchema.EnrollmentTable.Cols.ID, DbSchema.EnrollmentTable.Cols.STUDENT_ID, DbSchema.EnrollmentTable.Cols.MODULE_CODE,
+                    DbSchema.EnrollmentTable.Cols.INTERNAL_MARK, DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK},
+            DbSchema.EnrollmentTable.Cols.VERSION, EnrollmentRow::getId, EnrollmentRow::getVersion, (ps, offset, row) -> {
+                ps.setInt(offset + 1, row.getId());
+                ps.setInt(offset + 2, row.getStudentId());
+                ps.setString(offset + 3, row.getModuleCode());
+                ps.setDouble(offset + 4, row.getInternalMark());
+                ps.setDouble(offset + 5, row.getExaminationMark());
+            });
 
     @Override
-    public void create(Object obj, Connection conn) throws SQLException {
-        Enrollment e = (Enrollment) obj;
-        PreparedStatement ps = conn.prepareStatement(CREATE_STMT);
-        ps.setInt(1, e.getId());
-        ps.setInt(2, e.getStudent().getNumericalId());
-        ps.setString(3, e.getModule().getCode());
-        ps.setDouble(4, e.getInternalMark());
-        ps.setDouble(5, e.getExaminationMark());
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
-    }
-
-    @Override
-    public void create(Collection<Object> objs, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(CREATE_STMT);
-        for (Object obj : objs) {
-            Enrollment e = (Enrollment) obj;
-            ps.setInt(1, e.getId());
-            ps.setInt(2, e.getStudent().getNumericalId());
-            ps.setString(3, e.getModule().getCode());
-            ps.setDouble(4, e.getInternalMark());
-            ps.setDouble(5, e.getExaminationMark());
-            ps.addBatch();
+    public void create(EnrollmentRow row, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, CREATE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setInt(1, row.getId());
+            ps.setInt(2, row.getStudentId());
+            ps.setString(3, row.getModuleCode());
+            ps.setDouble(4, row.getInternalMark());
+            ps.setDouble(5, row.getExaminationMark());
+            if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
         }
-        if (ps.executeBatch().length != objs.size()) throw new SQLException("query failed!");
     }
 
     @Override
-    public List<?> read(Integer key, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(READ_ONE_STMT);
-        ps.setInt(1, key);
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) {
-            int id = rs.getInt(DbSchema.EnrollmentTable.Cols.ID);
-            int student_id = rs.getInt(DbSchema.EnrollmentTable.Cols.STUDENT_ID);
-            String module_code = rs.getString(DbSchema.EnrollmentTable.Cols.MODULE_CODE);
-            double im = rs.getDouble(DbSchema.EnrollmentTable.Cols.INTERNAL_MARK);
-            double em = rs.getDouble(DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK);
-            return List.of(id, student_id, module_code, im, em);
+    public void create(Collection<EnrollmentRow> rows, Connection conn) throws SQLException {
+        BulkWrite.insert(conn, BULK_TABLE, rows);
+    }
+
+    @Override
+    public EnrollmentRow read(Integer key, Connection conn) throws SQLException, NotPossibleException {
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setInt(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return RowMappers.forStatement(READ_ONE_STMT, COMPILER).map(rs);
+                }
+            }
         }
         return null;
     }
 
     @Override
-    public List<Object> read(Collection<Integer> keys, Connection conn) throws SQLException {
-        List<Object> enrollments = new ArrayList<>();
-        for (Integer key : keys) {
-            PreparedStatement ps = conn.prepareStatement(READ_ONE_STMT);
-            ps.setInt(1, key);
-            ResultSet rs = ps.executeQuery();
+    public List<EnrollmentRow> read(Collection<Integer> keys, Connection conn) throws SQLException {
+        try {
+            return BulkRead.read(conn, READ_MANY_STMT, keys, RowMappers.forStatement(READ_MANY_STMT, COMPILER), EnrollmentRow::getId);
+        } catch (NotPossibleException e) {
+            // an EnrollmentRow is not a model object
+            throw new SQLException(e);
+        }
+    }
+
+    @Override
+    public List<EnrollmentRow> all(Connection conn) throws SQLException, NotPossibleException {
+        List<EnrollmentRow> rows = new ArrayList<>();
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ALL_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            RowMapper<EnrollmentRow> mapper = RowMappers.forStatement(READ_ALL_STMT, COMPILER);
             while (rs.next()) {
-                int id = rs.getInt(DbSchema.EnrollmentTable.Cols.ID);
-                int student_id = rs.getInt(DbSchema.EnrollmentTable.Cols.STUDENT_ID);
-                String module_code = rs.getString(DbSchema.EnrollmentTable.Cols.MODULE_CODE);
-                double im = rs.getDouble(DbSchema.EnrollmentTable.Cols.INTERNAL_MARK);
-                double em = rs.getDouble(DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK);
-                enrollments.add(List.of(id, student_id, module_code, im, em));
+                rows.add(mapper.map(rs));
             }
         }
-        return enrollments;
+        return rows;
+    }
+
+    @Override
+    public Stream<EnrollmentRow> stream(Connection conn, int fetchSize) throws SQLException {
+        return RowStream.of(conn, READ_ALL_STMT, fetchSize, RowMappers.forStatement(READ_ALL_STMT, COMPILER));
     }
 
     @Override
-    public List<Object> all(Connection conn) throws SQLException {
-        List<Object> enrollments = new ArrayList<>();
-        PreparedStatement ps = conn.prepareStatement(READ_ALL_STMT);
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            int id = rs.getInt(DbSchema.EnrollmentTable.Cols.ID);
-            int student_id = rs.getInt(DbSchema.EnrollmentTable.Cols.STUDENT_ID);
-            String module_code = rs.getString(DbSchema.EnrollmentTable.Cols.MODULE_CODE);
-            double im = rs.getDouble(DbSchema.EnrollmentTable.Cols.INTERNAL_MARK);
-            double em = rs.getDouble(DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK);
-            enrollments.add(List.of(id, student_id, module_code, im, em));
+    public List<EnrollmentRow> page(Integer afterKey, int limit, SortOrder order, Connection conn) throws SQLException {
+        try {
+            return KeysetPage.readSelect(conn, ROW_SELECT, DbSchema.EnrollmentTable.Cols.ID, afterKey, limit, order, RowMappers.forStatement(ROW_SELECT, COMPILER));
+        } catch (NotPossibleException e) {
+            // an EnrollmentRow is not a model object
+            throw new SQLException(e);
+        }
+    }
+
+    @Override
+    public long count(Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, COUNT_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public int maxId(Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, MAX_ID_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public Enrollment readJoined(Integer key, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ONE_JOINED_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setInt(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return joinedMapper(READ_ONE_JOINED_STMT, identityMap).map(rs);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Enrollment> readJoined(Collection<Integer> keys, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        return BulkRead.read(conn, READ_MANY_JOINED_STMT, keys, joinedMapper(READ_MANY_JOINED_STMT, identityMap), Enrollment::getId);
+    }
+
+    @Override
+    public List<Enrollment> allJoined(IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        List<Enrollment> enrollments = new ArrayList<>();
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ALL_JOINED_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            RowMapper<Enrollment> mapper = joinedMapper(READ_ALL_JOINED_STMT, identityMap);
+            while (rs.next()) {
+                Enrollment e = mapper.map(rs);
+                if (e != null) {
+                    enrollments.add(e);
+                }
+            }
         }
         return enrollments;
     }
 
     @Override
-    public void update(Object obj, Connection conn) throws SQLException {
-        Enrollment e = (Enrollment) obj;
-        PreparedStatement ps = conn.prepareStatement(UPDATE_STMT);
-        ps.setInt(1, e.getStudent().getNumericalId());
-        ps.setString(2, e.getModule().getCode());
-        ps.setDouble(3, e.getInternalMark());
-        ps.setDouble(4, e.getExaminationMark());
-        ps.setInt(5, e.getId());
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+    public Stream<Enrollment> streamJoined(IdentityMap identityMap, Connection conn, int fetchSize) throws SQLException {
+        return RowStream.of(conn, READ_ALL_JOINED_STMT, fetchSize, joinedMapper(READ_ALL_JOINED_STMT, identityMap));
+    }
+
+    @Override
+    public List<Enrollment> pageJoined(Integer afterKey, int limit, SortOrder order, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        return KeysetPage.readSelect(conn, JOIN_SELECT, JOIN_KEY, afterKey, limit, order, joinedMapper(JOIN_SELECT, identityMap));
     }
 
     @Override
-    public void update(Collection<Object> objs, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(UPDATE_STMT);
-        for (Object obj : objs) {
-            Enrollment e = (Enrollment) obj;
-            ps.setInt(1, e.getStudent().getNumericalId());
-            ps.setString(2, e.getModule().getCode());
-            ps.setDouble(3, e.getInternalMark());
-            ps.setDouble(4, e.getExaminationMark());
-            ps.setInt(5, e.getId());
-            ps.addBatch();
+    public void update(EnrollmentRow row, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, UPDATE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setInt(1, row.getStudentId());
+            ps.setString(2, row.getModuleCode());
+            ps.setDouble(3, row.getInternalMark());
+            ps.setDouble(4, row.getExaminationMark());
+            ps.setInt(5, row.getId());
+            ps.setInt(6, row.getVersion());
+            if (ps.executeUpdate() != 1) throw new StaleObjectException("enrollment " + row.getId() + " has been changed or deleted by someone else");
         }
-        if (ps.executeBatch().length != objs.size()) throw new SQLException("query failed!");
+    }
+
+    @Override
+    public BulkWriteResult update(Collection<EnrollmentRow> rows, Connection conn) throws SQLException {
+        return BulkWrite.update(conn, BULK_TABLE, rows);
+    }
+
+    @Override
+    public BulkWriteResult createEach(Collection<EnrollmentRow> rows, Connection conn) throws SQLException {
+        return BulkWrite.insertEach(conn, BULK_TABLE, rows);
+    }
+
+    @Override
+    public BulkWriteResult upsert(Collection<EnrollmentRow> rows, Connection conn) throws SQLException {
+        return BulkWrite.upsert(conn, BULK_TABLE, rows);
     }
 
     @Override
     public void delete(Integer key, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ONE_STMT);
-        ps.setInt(1, key);
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setInt(1, key);
+            if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+        }
     }
 
     @Override
     public void delete(Collection<Integer> keys, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ONE_STMT);
-        for (Integer key : keys) {
-            ps.setInt(1, key);
-            ps.addBatch();
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            for (Integer key : keys) {
+                ps.setInt(1, key);
+                ps.addBatch();
+            }
+            if (ps.executeBatch().length != keys.size()) throw new SQLException("query failed!");
+        }
+    }
+
+    @Override
+    public void deleteByStudent(Collection<Integer> studentIds, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_BY_STUDENT_STMT)) {
+            PreparedStatement ps = cs.get();
+            for (Integer studentId : studentIds) {
+                ps.setInt(1, studentId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public void deleteByModule(Collection<String> moduleCodes, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_BY_MODULE_STMT)) {
+            PreparedStatement ps = cs.get();
+            for (String moduleCode : moduleCodes) {
+                ps.setString(1, moduleCode);
+                ps.addBatch();
+            }
+            ps.executeBatch();
         }
-        if (ps.executeBatch().length != keys.size()) throw new SQLException("query failed!");
     }
 
     @Override
     public void clear(Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ALL_STMT);
-        ps.executeUpdate();
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ALL_STMT)) {
+            cs.get().executeUpdate();
+        }
+    }
+
+    /**
+     * @requires columns has the columns of the enrollment table
+     * @effects return the RowMapper that creates the EnrollmentRow of a row laid out as columns
+     */
+    private static RowMapper<EnrollmentRow> compile(ColumnIndex columns) throws SQLException {
+        int id = columns.of(DbSchema.EnrollmentTable.Cols.ID);
+        int studentId = columns.of(DbSchema.EnrollmentTable.Cols.STUDENT_ID);
+        int moduleCode = columns.of(DbSchema.EnrollmentTable.Cols.MODULE_CODE);
+        int internalMark = columns.of(DbSchema.EnrollmentTable.Cols.INTERNAL_MARK);
+        int examinationMark = columns.of(DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK);
+        int version = columns.of(DbSchema.EnrollmentTable.Cols.VERSION);
+        return rs -> new EnrollmentRow(rs.getInt(id), rs.getInt(studentId), rs.getString(moduleCode),
+                rs.getDouble(internalMark), rs.getDouble(examinationMark), rs.getInt(version));
+    }
+
+    /**
+     * The compiled form of a row of JOIN_SELECT, which still needs the IdentityMap of the read.
+     */
+    @FunctionalInterface
+    private interface JoinedRowMapper {
+        Enrollment map(ResultSet rs, IdentityMap identityMap) throws SQLException, NotPossibleException;
+    }
+
+    /**
+     * @requires identityMap != null
+     * @effects return the RowMapper of the rows of sql, a statement based on JOIN_SELECT, that links them through
+     * identityMap
+     */
+    private static RowMapper<Enrollment> joinedMapper(String sql, IdentityMap identityMap) {
+        return RowMappers.forStatement(sql, JOINED_COMPILER, joined -> rs -> joined.map(rs, identityMap));
+    }
+
+    /**
+     * @requires columns are the columns of JOIN_SELECT
+     * @effects <pre>
+     *     return the JoinedRowMapper that, for a row laid out as columns and an IdentityMap,
+     *       gets the Student and the Module of the row from the IdentityMap, otherwise creates them from the s_* and
+     *       m_* columns and puts them into the IdentityMap
+     *       returns the Enrollment of the row, or null if its Module cannot be created
+     * </pre>
+     */
+    private static JoinedRowMapper compileJoined(ColumnIndex columns) throws SQLException {
+        int id = columns.of(DbSchema.EnrollmentTable.Cols.ID);
+        int studentId = columns.of(DbSchema.EnrollmentTable.Cols.STUDENT_ID);
+        int moduleCode = columns.of(DbSchema.EnrollmentTable.Cols.MODULE_CODE);
+        int internalMark = columns.of(DbSchema.EnrollmentTable.Cols.INTERNAL_MARK);
+        int examinationMark = columns.of(DbSchema.EnrollmentTable.Cols.EXAMINATION_MARK);
+        int version = columns.of(DbSchema.EnrollmentTable.Cols.VERSION);
+        RowMapper<Student> studentMapper = StudentDAOImpl.compile(columns, "s_");
+        RowMapper<Module> moduleMapper = ModuleDAOImpl.compile(columns, "m_");
+        return (rs, identityMap) -> {
+            Student s = identityMap.getStudent(rs.getInt(studentId));
+            if (s == null) {
+                s = studentMapper.map(rs);
+                identityMap.putStudent(s);
+            }
+
+            Module m = identityMap.getModule(rs.getString(moduleCode));
+            if (m == null) {
+                m = moduleMapper.map(rs);
+                if (m == null) {
+                    return null;
+                }
+                identityMap.putModule(m);
+            }
+            Enrollment e = new Enrollment(rs.getInt(id), s, m, rs.getDouble(internalMark), rs.getDouble(examinationMark));
+            e.setVersion(rs.getInt(version));
+            return e;
+        };
     }
 }
@@ -0,0 +1,105 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.models.Enrollment;
+
+import java.util.Objects;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview A row of the enrollment table as it is stored: the keys of the student and of the module instead of the
+ * objects. It is what EnrollmentDAOImpl reads and writes; EnrollmentRepository links it to its Student and Module.
+ * <p>
+ * The fields are primitives, so reading a row costs one small object (plus the module code) instead of a List of
+ * boxed values.
+ */
+public final class EnrollmentRow {
+    private final int id;
+    private final int studentId;
+    private final String moduleCode;
+    private final double internalMark;
+    private final double examinationMark;
+    private final int version;
+
+    /**
+     * @effects initialize this as a row of version 0, the version of a new row
+     */
+    public EnrollmentRow(int id, int studentId, String moduleCode, double internalMark, double examinationMark) {
+        this(id, studentId, moduleCode, internalMark, examinationMark, 0);
+    }
+
+    public EnrollmentRow(int id, int studentId, String moduleCode, double internalMark, double examinationMark, int version) {
+        this.id = id;
+        this.studentId = studentId;
+        this.moduleCode = moduleCode;
+        this.internalMark = internalMark;
+        this.examinationMark = examinationMark;
+        this.version = version;
+    }
+
+    /**
+     * @requires e != null
+     * @effects return the row that stores e
+     */
+    public static EnrollmentRow of(Enrollment e) {
+        return new EnrollmentRow(e.getId(), e.getStudent().getNumericalId(), e.getModule().getCode(),
+                e.getInternalMark(), e.getExaminationMark(), e.getVersion());
+    }
+
+    /**
+     * @effects return a copy of this with version
+     */
+    public EnrollmentRow withVersion(int version) {
+        return new EnrollmentRow(id, studentId, moduleCode, internalMark, examinationMark, version);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getStudentId() {
+        return studentId;
+    }
+
+    public String getModuleCode() {
+        return moduleCode;
+    }
+
+    public double getInternalMark() {
+        return internalMark;
+    }
+
+    public double getExaminationMark() {
+        return examinationMark;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EnrollmentRow)) return false;
+        EnrollmentRow that = (EnrollmentRow) o;
+        return id == that.id && studentId == that.studentId && version == that.version && Double.compare(that.internalMark, internalMark) == 0
+                && Double.compare(that.examinationMark, examinationMark) == 0 && Objects.equals(moduleCode, that.moduleCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, studentId, moduleCode, internalMark, examinationMark, version);
+    }
+
+    @Override
+    public String toString() {
+        return "EnrollmentRow{" +
+                "id=" + id +
+                ", studentId=" + studentId +
+                ", moduleCode='" + moduleCode + '\'' +
+                ", internalMark=" + internalMark +
+                ", examinationMark=" + examinationMark +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,74 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The Student and Module instances that have been seen while one read of enrollments is running, by their
+ * primary key. A JOIN of enrollment, student and module repeats the columns of a student on every one of their
+ * enrollments; with an IdentityMap the Student (and the Module) is created from the first of these rows only, and the
+ * following rows reuse it.
+ * <p>
+ * An IdentityMap is seeded with the instances that are already in DbContext and lives as long as the read that uses
+ * it. It is not thread-safe.
+ */
+public class IdentityMap {
+    private final Map<Integer, Student> students;
+    private final Map<String, Module> modules;
+
+    public IdentityMap() {
+        students = new HashMap<>();
+        modules = new HashMap<>();
+    }
+
+    /**
+     * @requires students != null /\ modules != null
+     * @effects initialize this with every Student of students and every Module of modules
+     */
+    public IdentityMap(Collection<Student> students, Collection<Module> modules) {
+        this.students = new HashMap<>(students.size() * 2);
+        this.modules = new HashMap<>(modules.size() * 2);
+        for (Student s : students) {
+            this.students.put(s.getNumericalId(), s);
+        }
+        for (Module m : modules) {
+            this.modules.put(m.getCode(), m);
+        }
+    }
+
+    /**
+     * @effects return the Student whose id is id, or null if it has not been seen
+     */
+    public Student getStudent(int id) {
+        return students.get(id);
+    }
+
+    /**
+     * @requires s != null
+     * @modifies this
+     */
+    public void putStudent(Student s) {
+        students.put(s.getNumericalId(), s);
+    }
+
+    /**
+     * @effects return the Module whose code is code, or null if it has not been seen
+     */
+    public Module getModule(String code) {
+        return modules.get(code);
+    }
+
+    /**
+     * @requires m != null
+     * @modifies this
+     */
+    public void putModule(Module m) {
+        modules.put(m.getCode(), m);
+    }
+}
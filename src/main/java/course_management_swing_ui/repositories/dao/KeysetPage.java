@@ -0,0 +1,85 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview Keyset (seek) pagination, used by DAO.page. A page is the <tt>limit</tt> rows whose key comes right after
+ * the last key of the previous page:
+ * <pre>
+ *     SELECT * FROM table WHERE key > ? ORDER BY key ASC LIMIT ?
+ * </pre>
+ * The primary key index finds the first row of the page directly, so the cost of a page does not depend on how far it
+ * is from the first one, unlike LIMIT ... OFFSET. A page can also be read from a JOIN with readSelect, in which case the
+ * key column is qualified with its table alias (e.g. e.id).
+ */
+public final class KeysetPage {
+    // key = SELECT ... FROM + key column + order + whether there is an afterKey
+    private static final Map<String, String> statements = new ConcurrentHashMap<>();
+
+    private KeysetPage() {
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ limit > 0 /\ order != null
+     * @effects <pre>
+     *     if afterKey == null
+     *       return the first limit rows of table in order of keyColumn
+     *     else
+     *       return the first limit rows of table whose keyColumn comes after afterKey in order of keyColumn
+     *     rows that are mapped to null are skipped
+     * </pre>
+     */
+    public static <K, T> List<T> read(Connection conn, String table, String keyColumn, K afterKey, int limit,
+                                      SortOrder order, RowMapper<T> mapper) throws SQLException, NotPossibleException {
+        return readSelect(conn, "SELECT * FROM " + table, keyColumn, afterKey, limit, order, mapper);
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ select is a SELECT ... FROM ... without WHERE, ORDER BY and LIMIT
+     * /\ keyColumn is a unique column of select /\ limit > 0 /\ order != null
+     * @effects same as read, but the rows are those of select
+     */
+    public static <K, T> List<T> readSelect(Connection conn, String select, String keyColumn, K afterKey, int limit,
+                                            SortOrder order, RowMapper<T> mapper) throws SQLException, NotPossibleException {
+        List<T> rows = new ArrayList<>(limit);
+        try (CachedStatement cs = StatementCache.prepare(conn, statement(select, keyColumn, order, afterKey != null))) {
+            PreparedStatement ps = cs.get();
+            int i = 1;
+            if (afterKey != null) {
+                ps.setObject(i++, afterKey);
+            }
+            ps.setInt(i, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    T row = mapper.map(rs);
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @effects return the SELECT of a page, see the Overview
+     */
+    static String statement(String select, String keyColumn, SortOrder order, boolean after) {
+        return statements.computeIfAbsent(select + "." + keyColumn + "." + order + "." + after, k ->
+                select
+                        + (after ? " WHERE " + keyColumn + " " + order.getAfterOperator() + " ?" : "")
+                        + " ORDER BY " + keyColumn + " " + order
+                        + " LIMIT ?");
+    }
+}
@@ -0,0 +1,73 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.repositories.db.MemoryConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The change log of MemoryStore, and its ChangeLogDAO: every MemoryTable of the store appends the key of the
+ * rows it writes, as the triggers of DbSchema.ChangeLogTable do. An append is undone with the write it logs, which
+ * leaves a gap in the sequence numbers, like a rolled back change of the database.
+ */
+final class MemoryChangeLog implements ChangeLogDAO {
+    private final ConcurrentSkipListMap<Long, Change> changes = new ConcurrentSkipListMap<>();
+    private final AtomicLong seq = new AtomicLong();
+
+    /**
+     * @requires the caller is a Write of tx
+     * @modifies this, tx
+     * @effects log the change op of the row of key in table, and record its undo in tx
+     */
+    void append(MemoryConnection tx, String table, Object key, Change.Op op) {
+        long next = seq.incrementAndGet();
+        changes.put(next, new Change(next, table, String.valueOf(key), op));
+        tx.undo(() -> changes.remove(next));
+    }
+
+    @Override
+    public long latestSeq(Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        Map.Entry<Long, Change> last = changes.lastEntry();
+        return last == null ? 0 : last.getKey();
+    }
+
+    @Override
+    public long oldestSeq(Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        Map.Entry<Long, Change> first = changes.firstEntry();
+        return first == null ? 0 : first.getKey();
+    }
+
+    @Override
+    public List<Change> readSince(long seq, int limit, Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        List<Change> list = new ArrayList<>();
+        for (Change c : changes.tailMap(seq, false).values()) {
+            if (list.size() == limit) {
+                break;
+            }
+            list.add(c);
+        }
+        return list;
+    }
+
+    @Override
+    public int prune(long seq, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        return tx.write(() -> {
+            Map<Long, Change> pruned = changes.headMap(seq, true);
+            List<Change> removed = new ArrayList<>(pruned.values());
+            pruned.clear();
+            tx.undo(() -> removed.forEach(c -> changes.put(c.getSeq(), c)));
+            return removed.size();
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.repositories.db.MemoryConnection;
+import course_management_swing_ui.util.exceptions.StaleObjectException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview Implementation of DAO on a MemoryTable of MemoryStore, for the memory dialect. conn must be a connection of
+ * that dialect (a MemoryConnection): the reads only check it, the writes run through MemoryConnection.write, so that
+ * they take part in its transaction and a failed write changes nothing.
+ * <pre>
+ *  The outcomes are those of the SQL DAOs, e.g. update(T) fails if the row has another version or none, delete(K) if
+ *  there is no such row, delete(Collection) ignores the keys without row, update(Collection), createEach and upsert
+ *  report every row.
+ * </pre>
+ */
+public class MemoryDAO<T, K extends Comparable<K>> implements DAO<T, K> {
+    final MemoryTable<T, K> table;
+
+    /**
+     * @requires table != null
+     */
+    MemoryDAO(MemoryTable<T, K> table) {
+        this.table = table;
+    }
+
+    @Override
+    public void create(T obj, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            table.insert(tx, obj);
+            return null;
+        });
+    }
+
+    @Override
+    public void create(Collection<T> objs, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            for (T obj : objs) {
+                table.insert(tx, obj);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public T read(K key, Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        return table.get(key);
+    }
+
+    @Override
+    public List<T> read(Collection<K> keys, Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        return table.get(keys);
+    }
+
+    @Override
+    public List<T> all(Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        return table.stream().collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<T> stream(Connection conn, int fetchSize) throws SQLException {
+        MemoryConnection.of(conn);
+        return table.stream();
+    }
+
+    @Override
+    public List<T> page(K afterKey, int limit, SortOrder order, Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        return table.page(afterKey, limit, order);
+    }
+
+    @Override
+    public long count(Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        return table.count();
+    }
+
+    @Override
+    public void update(T obj, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            if (!table.update(tx, obj)) {
+                throw new StaleObjectException(table.getName() + " " + table.keyOf(obj) + " has been changed or deleted by someone else");
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public BulkWriteResult update(Collection<T> objs, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        BulkWriteResult result = new BulkWriteResult(objs.size());
+        return tx.write(() -> {
+            int i = 0;
+            for (T obj : objs) {
+                result.set(i++, table.update(tx, obj) ? BulkWriteResult.Outcome.UPDATED : BulkWriteResult.Outcome.CONFLICT);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public BulkWriteResult createEach(Collection<T> objs, Connection conn) throws SQLException {
+        return writeEach(objs, conn, false);
+    }
+
+    @Override
+    public BulkWriteResult upsert(Collection<T> objs, Connection conn) throws SQLException {
+        return writeEach(objs, conn, true);
+    }
+
+    @Override
+    public void delete(K key, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            if (!table.delete(tx, key)) throw new SQLException("query failed!");
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(Collection<K> keys, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            for (K key : keys) {
+                table.delete(tx, key);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void clear(Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            table.clear(tx);
+            return null;
+        });
+    }
+
+    /**
+     * @modifies the table
+     * @effects <pre>
+     *     for each object of objs, in order
+     *       if it has no row: insert it, INSERTED
+     *       else if upsert: update its row whatever its version, UPDATED
+     *       FAILED with the SQLException of its insert or update, which changes nothing
+     *     return the outcome of every object
+     * </pre>
+     */
+    private BulkWriteResult writeEach(Collection<T> objs, Connection conn, boolean upsert) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        BulkWriteResult result = new BulkWriteResult(objs.size());
+        return tx.write(() -> {
+            int i = 0;
+            for (T obj : objs) {
+                try {
+                    if (upsert && table.replace(tx, obj)) {
+                        result.set(i, BulkWriteResult.Outcome.UPDATED);
+                    } else {
+                        table.insert(tx, obj);
+                        result.set(i, BulkWriteResult.Outcome.INSERTED);
+                    }
+                } catch (SQLException e) {
+                    // a constraint is checked before the row is changed
+                    result.fail(i, e);
+                }
+                i++;
+            }
+            return result;
+        });
+    }
+}
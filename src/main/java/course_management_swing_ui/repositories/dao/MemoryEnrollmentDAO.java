@@ -0,0 +1,160 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.db.MemoryConnection;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview Implementation of EnrollmentDAO on MemoryStore. A joined read links every EnrollmentRow to a copy of its
+ * Student and Module, looked up by key, the first time it is met: afterwards the IdentityMap gives it, as in
+ * EnrollmentDAOImpl. The deletions by student and by module use the indexes of MemoryStore.
+ */
+public class MemoryEnrollmentDAO extends MemoryDAO<EnrollmentRow, Integer> implements EnrollmentDAO {
+    private final MemoryStore store;
+
+    /**
+     * @requires store != null
+     */
+    MemoryEnrollmentDAO(MemoryStore store) {
+        super(store.getEnrollments());
+        this.store = store;
+    }
+
+    @Override
+    public int maxId(Connection conn) throws SQLException {
+        MemoryConnection.of(conn);
+        List<EnrollmentRow> last = table.storedPage(null, 1, SortOrder.DESC);
+        return last.isEmpty() ? 0 : table.keyOf(last.get(0));
+    }
+
+    @Override
+    public Enrollment readJoined(Integer key, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        MemoryConnection.of(conn);
+        EnrollmentRow row = table.stored(key);
+        return row == null ? null : join(row, identityMap);
+    }
+
+    @Override
+    public List<Enrollment> readJoined(Collection<Integer> keys, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        MemoryConnection.of(conn);
+        List<Enrollment> enrollments = new ArrayList<>(keys.size());
+        for (Integer key : keys) {
+            EnrollmentRow row = table.stored(key);
+            Enrollment e = row == null ? null : join(row, identityMap);
+            if (e != null) {
+                enrollments.add(e);
+            }
+        }
+        return enrollments;
+    }
+
+    @Override
+    public List<Enrollment> allJoined(IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        MemoryConnection.of(conn);
+        List<Enrollment> enrollments = new ArrayList<>((int) table.count());
+        for (EnrollmentRow row : table.storedRows()) {
+            Enrollment e = join(row, identityMap);
+            if (e != null) {
+                enrollments.add(e);
+            }
+        }
+        return enrollments;
+    }
+
+    @Override
+    public Stream<Enrollment> streamJoined(IdentityMap identityMap, Connection conn, int fetchSize) throws SQLException {
+        MemoryConnection.of(conn);
+        return table.storedRows().stream().map(row -> {
+            try {
+                return join(row, identityMap);
+            } catch (NotPossibleException e) {
+                // skipped, like a row that RowStream cannot map
+                e.printStackTrace();
+                return null;
+            }
+        }).filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<Enrollment> pageJoined(Integer afterKey, int limit, SortOrder order, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        MemoryConnection.of(conn);
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (EnrollmentRow row : table.storedPage(afterKey, limit, order)) {
+            Enrollment e = join(row, identityMap);
+            if (e != null) {
+                enrollments.add(e);
+            }
+        }
+        return enrollments;
+    }
+
+    @Override
+    public void deleteByStudent(Collection<Integer> studentIds, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            for (Integer studentId : studentIds) {
+                for (Integer id : new ArrayList<>(store.enrollmentsOfStudent(studentId))) {
+                    table.delete(tx, id);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteByModule(Collection<String> moduleCodes, Connection conn) throws SQLException {
+        MemoryConnection tx = MemoryConnection.of(conn);
+        tx.write(() -> {
+            for (String moduleCode : moduleCodes) {
+                for (Integer id : new ArrayList<>(store.enrollmentsOfModule(moduleCode))) {
+                    table.delete(tx, id);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @modifies identityMap
+     * @effects <pre>
+     *     get the Student and the Module of row from identityMap, otherwise copy them from MemoryStore and put them into
+     *     identityMap
+     *     return the Enrollment of row, or null if its Student or its Module has been deleted meanwhile (as an inner
+     *     JOIN would skip it)
+     * </pre>
+     */
+    private Enrollment join(EnrollmentRow row, IdentityMap identityMap) throws NotPossibleException {
+        Student s = identityMap.getStudent(row.getStudentId());
+        if (s == null) {
+            s = store.getStudents().get(row.getStudentId());
+            if (s == null) {
+                return null;
+            }
+            identityMap.putStudent(s);
+        }
+
+        Module m = identityMap.getModule(row.getModuleCode());
+        if (m == null) {
+            m = store.getModules().get(row.getModuleCode());
+            if (m == null) {
+                return null;
+            }
+            identityMap.putModule(m);
+        }
+        Enrollment e = new Enrollment(row.getId(), s, m, row.getInternalMark(), row.getExaminationMark());
+        e.setVersion(row.getVersion());
+        return e;
+    }
+}
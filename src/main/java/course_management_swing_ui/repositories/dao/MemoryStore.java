@@ -0,0 +1,152 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.db.DbSchema;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview The data of the memory dialect (see Dialect.MEMORY): the student, module and enrollment tables as
+ * MemoryTable(s), with the constraints of DbSchema:
+ * <pre>
+ *     primary keys                      every table
+ *     foreign keys of the enrollments   an enrollment refers to an existing student and module, and a student or a
+ *                                       module that has enrollments cannot be deleted
+ *     unique (student_id, module_code)  a student enrolls in a module at most once
+ * </pre>
+ * The enrollments are indexed by student and by module (the ids of their enrollments), which serves these constraints
+ * and EnrollmentDAO.deleteByStudent / deleteByModule. Every write of a table is logged in the MemoryChangeLog of the
+ * store, as the triggers of DbSchema.ChangeLogTable log the writes of a database.
+ * <p>
+ * The data lives as long as the JVM. It is read and written by MemoryDAO and MemoryEnrollmentDAO, see DaoFactory.
+ */
+public final class MemoryStore {
+    private static final MemoryStore instance = new MemoryStore();
+
+    private final ConcurrentMap<Integer, Set<Integer>> enrollmentsByStudent = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Integer>> enrollmentsByModule = new ConcurrentHashMap<>();
+    private final MemoryChangeLog changeLog = new MemoryChangeLog();
+
+    private final MemoryTable<Student, Integer> students = new MemoryTable<>(DbSchema.StudentTable.NAME,
+            Student::getNumericalId, Student::clone, Student::getVersion, MemoryStore::withVersion, changeLog) {
+        @Override
+        void check(Student old, Student row) throws SQLException {
+            if (row == null && !enrollmentsOf(enrollmentsByStudent, old.getNumericalId()).isEmpty()) {
+                throw new SQLIntegrityConstraintViolationException("FOREIGN KEY constraint failed: "
+                        + DbSchema.EnrollmentTable.NAME + "." + DbSchema.EnrollmentTable.Cols.STUDENT_ID + " = " + old.getNumericalId());
+            }
+        }
+    };
+
+    private final MemoryTable<Module, String> modules = new MemoryTable<>(DbSchema.ModuleTable.NAME,
+            Module::getCode, Module::clone, Module::getVersion, MemoryStore::withVersion, changeLog) {
+        @Override
+        void check(Module old, Module row) throws SQLException {
+            if (row == null && !enrollmentsOf(enrollmentsByModule, old.getCode()).isEmpty()) {
+                throw new SQLIntegrityConstraintViolationException("FOREIGN KEY constraint failed: "
+                        + DbSchema.EnrollmentTable.NAME + "." + DbSchema.EnrollmentTable.Cols.MODULE_CODE + " = " + old.getCode());
+            }
+        }
+    };
+
+    // an EnrollmentRow is immutable: it needs no copy
+    private final MemoryTable<EnrollmentRow, Integer> enrollments = new MemoryTable<>(DbSchema.EnrollmentTable.NAME,
+            EnrollmentRow::getId, row -> row, EnrollmentRow::getVersion, EnrollmentRow::withVersion, changeLog) {
+        @Override
+        void check(EnrollmentRow old, EnrollmentRow row) throws SQLException {
+            if (row == null) {
+                return;
+            }
+            if (!students.contains(row.getStudentId()) || !modules.contains(row.getModuleCode())) {
+                throw new SQLIntegrityConstraintViolationException("FOREIGN KEY constraint failed: " + row);
+            }
+            for (Integer id : enrollmentsOf(enrollmentsByStudent, row.getStudentId())) {
+                EnrollmentRow other = stored(id);
+                if (id != row.getId() && other != null && other.getModuleCode().equals(row.getModuleCode())) {
+                    throw new SQLIntegrityConstraintViolationException("UNIQUE constraint failed: "
+                            + DbSchema.ENROLLMENT_STUDENT_MODULE_INDEX + " (" + row.getStudentId() + ", " + row.getModuleCode() + ")");
+                }
+            }
+        }
+
+        @Override
+        void index(EnrollmentRow old, EnrollmentRow row) {
+            if (old != null) {
+                unindex(enrollmentsByStudent, old.getStudentId(), old.getId());
+                unindex(enrollmentsByModule, old.getModuleCode(), old.getId());
+            }
+            if (row != null) {
+                enrollmentsByStudent.computeIfAbsent(row.getStudentId(), k -> ConcurrentHashMap.newKeySet()).add(row.getId());
+                enrollmentsByModule.computeIfAbsent(row.getModuleCode(), k -> ConcurrentHashMap.newKeySet()).add(row.getId());
+            }
+        }
+    };
+
+    private MemoryStore() {
+    }
+
+    public static MemoryStore getInstance() {
+        return instance;
+    }
+
+    MemoryTable<Student, Integer> getStudents() {
+        return students;
+    }
+
+    MemoryTable<Module, String> getModules() {
+        return modules;
+    }
+
+    MemoryTable<EnrollmentRow, Integer> getEnrollments() {
+        return enrollments;
+    }
+
+    MemoryChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * @effects return the ids of the enrollments of studentId
+     */
+    Set<Integer> enrollmentsOfStudent(int studentId) {
+        return enrollmentsOf(enrollmentsByStudent, studentId);
+    }
+
+    /**
+     * @effects return the ids of the enrollments in moduleCode
+     */
+    Set<Integer> enrollmentsOfModule(String moduleCode) {
+        return enrollmentsOf(enrollmentsByModule, moduleCode);
+    }
+
+    private static Student withVersion(Student s, int version) {
+        Student copy = s.clone();
+        copy.setVersion(version);
+        return copy;
+    }
+
+    private static Module withVersion(Module m, int version) {
+        Module copy = m.clone();
+        copy.setVersion(version);
+        return copy;
+    }
+
+    private static <K> Set<Integer> enrollmentsOf(ConcurrentMap<K, Set<Integer>> index, K key) {
+        return index.getOrDefault(key, Collections.emptySet());
+    }
+
+    private static <K> void unindex(ConcurrentMap<K, Set<Integer>> index, K key, int id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -0,0 +1,269 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.repositories.db.MemoryConnection;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview A table of MemoryStore: its rows in a ConcurrentSkipListMap ordered by primary key, so that reads never
+ * lock and see the rows in order of key, like a scan of the primary key index.
+ * <pre>
+ *  A row is copied when it is stored and when it is read, so that changing an object never changes the table without
+ *  DAO.update, as with a database. The stored copy has the version of the row: 0 when it is inserted, one more than the
+ *  version it replaces when it is updated (see DAO.update).
+ *
+ *  Every write (insert, update, delete) is made inside MemoryConnection.write:
+ *      - check is called first: it throws the SQLException of a violated constraint, and the table is left as it is
+ *      - then the row is changed, index is called, the key of the row is logged in the MemoryChangeLog of the store,
+ *        and the undo of all three is recorded in the MemoryConnection
+ *  check and index are overridden by MemoryStore for the foreign keys and the indexes of the enrollments.
+ * </pre>
+ */
+class MemoryTable<T, K extends Comparable<K>> {
+    private final String name;
+    private final Function<T, K> keyOf;
+    private final UnaryOperator<T> copy;
+    private final ToIntFunction<T> versionOf;
+    private final BiFunction<T, Integer, T> withVersion;
+    private final MemoryChangeLog changeLog;
+    private final ConcurrentSkipListMap<K, T> rows = new ConcurrentSkipListMap<>();
+    // ConcurrentSkipListMap.size() walks the whole map
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @requires name != null /\ keyOf != null /\ copy != null /\ versionOf != null /\ withVersion returns a copy of a
+     * row with another version /\ changeLog != null
+     */
+    MemoryTable(String name, Function<T, K> keyOf, UnaryOperator<T> copy, ToIntFunction<T> versionOf,
+                BiFunction<T, Integer, T> withVersion, MemoryChangeLog changeLog) {
+        this.name = name;
+        this.keyOf = keyOf;
+        this.copy = copy;
+        this.versionOf = versionOf;
+        this.withVersion = withVersion;
+        this.changeLog = changeLog;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    K keyOf(T row) {
+        return keyOf.apply(row);
+    }
+
+    /**
+     * @effects if the change of old into row breaks a constraint, throw its SQLException. old is null for an insert,
+     * row is null for a delete.
+     */
+    void check(T old, T row) throws SQLException {
+    }
+
+    /**
+     * @effects update the indexes of this table for the change of old into row. old is null for an insert, row is null
+     * for a delete.
+     */
+    void index(T old, T row) {
+    }
+
+    /**
+     * @effects return the stored row of key (not a copy), or null if there is none
+     */
+    T stored(K key) {
+        return rows.get(key);
+    }
+
+    boolean contains(K key) {
+        return rows.containsKey(key);
+    }
+
+    /**
+     * @effects return a copy of the row of key, or null if there is none
+     */
+    T get(K key) {
+        T row = rows.get(key);
+        return row == null ? null : copy.apply(row);
+    }
+
+    /**
+     * @effects return a copy of the row of every key of keys that has one, in the order of keys
+     */
+    List<T> get(Collection<K> keys) {
+        List<T> list = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            T row = get(key);
+            if (row != null) {
+                list.add(row);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @effects return the stored rows (not copies) in order of key, a view that may or may not show the rows written
+     * while it is iterated
+     */
+    Collection<T> storedRows() {
+        return Collections.unmodifiableCollection(rows.values());
+    }
+
+    /**
+     * @effects return a lazy Stream of copies of the rows in order of key. Rows written while it is consumed may or may
+     * not be seen.
+     */
+    Stream<T> stream() {
+        return rows.values().stream().map(copy);
+    }
+
+    /**
+     * @effects return the stored rows (not copies) of the page of at most limit rows whose keys come right after
+     * afterKey in order (the first page if afterKey is null)
+     */
+    List<T> storedPage(K afterKey, int limit, SortOrder order) {
+        NavigableMap<K, T> view = order == SortOrder.ASC ? rows : rows.descendingMap();
+        if (afterKey != null) {
+            view = view.tailMap(afterKey, false);
+        }
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        for (T row : view.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(row);
+        }
+        return page;
+    }
+
+    /**
+     * @effects same as storedPage, but copies of the rows
+     */
+    List<T> page(K afterKey, int limit, SortOrder order) {
+        List<T> page = storedPage(afterKey, limit, order);
+        page.replaceAll(copy);
+        return page;
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    /**
+     * @requires the caller is a Write of tx /\ row != null
+     * @modifies this, tx
+     * @effects store a copy of row, or throw SQLException if its key is in this table already or it breaks a
+     * constraint
+     */
+    void insert(MemoryConnection tx, T row) throws SQLException {
+        if (rows.containsKey(keyOf(row))) {
+            throw new SQLIntegrityConstraintViolationException("UNIQUE constraint failed: " + name + "." + keyOf(row));
+        }
+        write(tx, null, withVersion.apply(row, 0));
+    }
+
+    /**
+     * @requires the caller is a Write of tx /\ row != null
+     * @modifies this, tx
+     * @effects <pre>
+     *     if this table has no row with the key of row, or if that row does not have the version of row
+     *       return false
+     *     else
+     *       replace it with a copy of row of the next version, or throw SQLException if row breaks a constraint
+     *       return true
+     * </pre>
+     */
+    boolean update(MemoryConnection tx, T row) throws SQLException {
+        T old = rows.get(keyOf(row));
+        if (old == null || versionOf.applyAsInt(old) != versionOf.applyAsInt(row)) {
+            return false;
+        }
+        write(tx, old, withVersion.apply(row, versionOf.applyAsInt(old) + 1));
+        return true;
+    }
+
+    /**
+     * @requires the caller is a Write of tx /\ row != null
+     * @modifies this, tx
+     * @effects same as update, whatever the version of the row of the key of row
+     */
+    boolean replace(MemoryConnection tx, T row) throws SQLException {
+        T old = rows.get(keyOf(row));
+        if (old == null) {
+            return false;
+        }
+        write(tx, old, withVersion.apply(row, versionOf.applyAsInt(old) + 1));
+        return true;
+    }
+
+    /**
+     * @requires the caller is a Write of tx /\ key != null
+     * @modifies this, tx
+     * @effects <pre>
+     *     if this table has no row of key
+     *       return false
+     *     else
+     *       remove it, or throw SQLException if that breaks a constraint
+     *       return true
+     * </pre>
+     */
+    boolean delete(MemoryConnection tx, K key) throws SQLException {
+        T old = rows.get(key);
+        if (old == null) {
+            return false;
+        }
+        write(tx, old, null);
+        return true;
+    }
+
+    /**
+     * @requires the caller is a Write of tx
+     * @modifies this, tx
+     * @effects remove every row, or throw SQLException at the first one whose removal breaks a constraint
+     */
+    void clear(MemoryConnection tx) throws SQLException {
+        for (K key : new ArrayList<>(rows.keySet())) {
+            delete(tx, key);
+        }
+    }
+
+    /**
+     * @requires stored is a copy of a row, that nobody else refers to, or null
+     * @modifies this, tx
+     * @effects change old into stored (see check and index), log it, and record the undo of that change in tx
+     */
+    private void write(MemoryConnection tx, T old, T stored) throws SQLException {
+        check(old, stored);
+        put(old, stored);
+        tx.undo(() -> put(stored, old));
+        changeLog.append(tx, name, keyOf(stored != null ? stored : old),
+                old == null ? Change.Op.INSERT : stored == null ? Change.Op.DELETE : Change.Op.UPDATE);
+    }
+
+    /**
+     * @modifies this
+     * @effects replace the stored row before with after, where either may be null
+     */
+    private void put(T before, T after) {
+        if (after != null) {
+            rows.put(keyOf(after), after);
+        } else {
+            rows.remove(keyOf(before));
+        }
+        count.addAndGet((after == null ? 0 : 1) - (before == null ? 0 : 1));
+        index(before, after);
+    }
+}
@@ -0,0 +1,278 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview A DAO that forwards every operation to another DAO, and records its latency, its rows and its failure (if
+ * any) in the DaoMetrics Operation of its table. The Operation(s) are looked up once, in the constructor.
+ * <pre>
+ *  A stream is measured from its opening to its closing, i.e. for as long as it holds its cursor open, and its rows are
+ *  the ones consumed.
+ *
+ *  Usage:
+ *      DAO&lt;Student, Integer&gt; dao = new MeteredDAO&lt;&gt;(DbSchema.StudentTable.NAME, new StudentDAOImpl());
+ * </pre>
+ */
+public class MeteredDAO<T, K> implements DAO<T, K> {
+    private final DAO<T, K> dao;
+
+    private final DaoMetrics.Operation create;
+    private final DaoMetrics.Operation createMany;
+    private final DaoMetrics.Operation read;
+    private final DaoMetrics.Operation readMany;
+    private final DaoMetrics.Operation all;
+    private final DaoMetrics.Operation stream;
+    private final DaoMetrics.Operation page;
+    private final DaoMetrics.Operation count;
+    private final DaoMetrics.Operation update;
+    private final DaoMetrics.Operation updateMany;
+    private final DaoMetrics.Operation createEach;
+    private final DaoMetrics.Operation upsert;
+    private final DaoMetrics.Operation delete;
+    private final DaoMetrics.Operation deleteMany;
+    private final DaoMetrics.Operation clear;
+
+    /**
+     * @requires table != null /\ dao != null
+     * @effects initialise this as the metered dao of table
+     */
+    public MeteredDAO(String table, DAO<T, K> dao) {
+        this.dao = dao;
+        DaoMetrics metrics = DaoMetrics.getInstance();
+        create = metrics.getOperation(table, "create");
+        createMany = metrics.getOperation(table, "create(Collection)");
+        read = metrics.getOperation(table, "read");
+        readMany = metrics.getOperation(table, "read(Collection)");
+        all = metrics.getOperation(table, "all");
+        stream = metrics.getOperation(table, "stream");
+        page = metrics.getOperation(table, "page");
+        count = metrics.getOperation(table, "count");
+        update = metrics.getOperation(table, "update");
+        updateMany = metrics.getOperation(table, "update(Collection)");
+        createEach = metrics.getOperation(table, "createEach");
+        upsert = metrics.getOperation(table, "upsert");
+        delete = metrics.getOperation(table, "delete");
+        deleteMany = metrics.getOperation(table, "delete(Collection)");
+        clear = metrics.getOperation(table, "clear");
+    }
+
+    @Override
+    public void create(T obj, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.create(obj, conn);
+        } catch (Exception e) {
+            create.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        create.record(System.nanoTime() - start, 1);
+    }
+
+    @Override
+    public void create(Collection<T> objs, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.create(objs, conn);
+        } catch (Exception e) {
+            createMany.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        createMany.record(System.nanoTime() - start, objs.size());
+    }
+
+    @Override
+    public T read(K key, Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        T obj;
+        try {
+            obj = dao.read(key, conn);
+        } catch (Exception e) {
+            read.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        read.record(System.nanoTime() - start, obj == null ? 0 : 1);
+        return obj;
+    }
+
+    @Override
+    public List<T> read(Collection<K> keys, Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        List<T> objs;
+        try {
+            objs = dao.read(keys, conn);
+        } catch (Exception e) {
+            readMany.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        readMany.record(System.nanoTime() - start, objs.size());
+        return objs;
+    }
+
+    @Override
+    public List<T> all(Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        List<T> objs;
+        try {
+            objs = dao.all(conn);
+        } catch (Exception e) {
+            all.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        all.record(System.nanoTime() - start, objs.size());
+        return objs;
+    }
+
+    @Override
+    public Stream<T> stream(Connection conn, int fetchSize) throws SQLException {
+        long start = System.nanoTime();
+        Stream<T> objs;
+        try {
+            objs = dao.stream(conn, fetchSize);
+        } catch (Exception e) {
+            stream.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        return measured(objs, stream, start);
+    }
+
+    @Override
+    public List<T> page(K afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        List<T> objs;
+        try {
+            objs = dao.page(afterKey, limit, order, conn);
+        } catch (Exception e) {
+            page.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        page.record(System.nanoTime() - start, objs.size());
+        return objs;
+    }
+
+    @Override
+    public long count(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        long n;
+        try {
+            n = dao.count(conn);
+        } catch (Exception e) {
+            count.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        count.record(System.nanoTime() - start, 1);
+        return n;
+    }
+
+    @Override
+    public void update(T obj, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.update(obj, conn);
+        } catch (Exception e) {
+            update.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        update.record(System.nanoTime() - start, 1);
+    }
+
+    @Override
+    public BulkWriteResult update(Collection<T> objs, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        BulkWriteResult result;
+        try {
+            result = dao.update(objs, conn);
+        } catch (Exception e) {
+            updateMany.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        updateMany.record(System.nanoTime() - start, result.count(BulkWriteResult.Outcome.UPDATED));
+        return result;
+    }
+
+    @Override
+    public BulkWriteResult createEach(Collection<T> objs, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        BulkWriteResult result;
+        try {
+            result = dao.createEach(objs, conn);
+        } catch (Exception e) {
+            createEach.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        createEach.record(System.nanoTime() - start, written(result));
+        return result;
+    }
+
+    @Override
+    public BulkWriteResult upsert(Collection<T> objs, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        BulkWriteResult result;
+        try {
+            result = dao.upsert(objs, conn);
+        } catch (Exception e) {
+            upsert.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        upsert.record(System.nanoTime() - start, written(result));
+        return result;
+    }
+
+    @Override
+    public void delete(K key, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.delete(key, conn);
+        } catch (Exception e) {
+            delete.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        delete.record(System.nanoTime() - start, 1);
+    }
+
+    @Override
+    public void delete(Collection<K> keys, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.delete(keys, conn);
+        } catch (Exception e) {
+            deleteMany.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        deleteMany.record(System.nanoTime() - start, keys.size());
+    }
+
+    @Override
+    public void clear(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.clear(conn);
+        } catch (Exception e) {
+            clear.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        clear.record(System.nanoTime() - start, 0);
+    }
+
+    /**
+     * @effects return objs, which records its lifetime and the number of its rows consumed in op when it is closed
+     */
+    static <E> Stream<E> measured(Stream<E> objs, DaoMetrics.Operation op, long start) {
+        long[] rows = new long[1];
+        return objs.peek(o -> rows[0]++).onClose(() -> op.record(System.nanoTime() - start, rows[0]));
+    }
+
+    /**
+     * @effects return the number of rows that result has inserted or updated
+     */
+    private static long written(BulkWriteResult result) {
+        return result.count(BulkWriteResult.Outcome.INSERTED) + result.count(BulkWriteResult.Outcome.UPDATED);
+    }
+}
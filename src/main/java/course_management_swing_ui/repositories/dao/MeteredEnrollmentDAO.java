@@ -0,0 +1,156 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview The MeteredDAO of an EnrollmentDAO, which also meters the operations that EnrollmentDAO adds to DAO: the
+ * *Joined reads, maxId and the deletions by student and by module.
+ */
+public class MeteredEnrollmentDAO extends MeteredDAO<EnrollmentRow, Integer> implements EnrollmentDAO {
+    private final EnrollmentDAO dao;
+
+    private final DaoMetrics.Operation readJoined;
+    private final DaoMetrics.Operation readManyJoined;
+    private final DaoMetrics.Operation allJoined;
+    private final DaoMetrics.Operation streamJoined;
+    private final DaoMetrics.Operation pageJoined;
+    private final DaoMetrics.Operation maxId;
+    private final DaoMetrics.Operation deleteByStudent;
+    private final DaoMetrics.Operation deleteByModule;
+
+    /**
+     * @requires dao != null
+     * @effects initialise this as the metered dao of the enrollment table
+     */
+    public MeteredEnrollmentDAO(EnrollmentDAO dao) {
+        super(DbSchema.EnrollmentTable.NAME, dao);
+        this.dao = dao;
+        DaoMetrics metrics = DaoMetrics.getInstance();
+        String table = DbSchema.EnrollmentTable.NAME;
+        readJoined = metrics.getOperation(table, "readJoined");
+        readManyJoined = metrics.getOperation(table, "readJoined(Collection)");
+        allJoined = metrics.getOperation(table, "allJoined");
+        streamJoined = metrics.getOperation(table, "streamJoined");
+        pageJoined = metrics.getOperation(table, "pageJoined");
+        maxId = metrics.getOperation(table, "maxId");
+        deleteByStudent = metrics.getOperation(table, "deleteByStudent");
+        deleteByModule = metrics.getOperation(table, "deleteByModule");
+    }
+
+    @Override
+    public Enrollment readJoined(Integer key, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        Enrollment e;
+        try {
+            e = dao.readJoined(key, identityMap, conn);
+        } catch (Exception ex) {
+            readJoined.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        readJoined.record(System.nanoTime() - start, e == null ? 0 : 1);
+        return e;
+    }
+
+    @Override
+    public List<Enrollment> readJoined(Collection<Integer> keys, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        List<Enrollment> enrollments;
+        try {
+            enrollments = dao.readJoined(keys, identityMap, conn);
+        } catch (Exception ex) {
+            readManyJoined.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        readManyJoined.record(System.nanoTime() - start, enrollments.size());
+        return enrollments;
+    }
+
+    @Override
+    public List<Enrollment> allJoined(IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        List<Enrollment> enrollments;
+        try {
+            enrollments = dao.allJoined(identityMap, conn);
+        } catch (Exception ex) {
+            allJoined.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        allJoined.record(System.nanoTime() - start, enrollments.size());
+        return enrollments;
+    }
+
+    @Override
+    public Stream<Enrollment> streamJoined(IdentityMap identityMap, Connection conn, int fetchSize) throws SQLException {
+        long start = System.nanoTime();
+        Stream<Enrollment> enrollments;
+        try {
+            enrollments = dao.streamJoined(identityMap, conn, fetchSize);
+        } catch (Exception ex) {
+            streamJoined.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        return measured(enrollments, streamJoined, start);
+    }
+
+    @Override
+    public List<Enrollment> pageJoined(Integer afterKey, int limit, SortOrder order, IdentityMap identityMap, Connection conn) throws SQLException, NotPossibleException {
+        long start = System.nanoTime();
+        List<Enrollment> enrollments;
+        try {
+            enrollments = dao.pageJoined(afterKey, limit, order, identityMap, conn);
+        } catch (Exception ex) {
+            pageJoined.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        pageJoined.record(System.nanoTime() - start, enrollments.size());
+        return enrollments;
+    }
+
+    @Override
+    public int maxId(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        int id;
+        try {
+            id = dao.maxId(conn);
+        } catch (Exception ex) {
+            maxId.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        maxId.record(System.nanoTime() - start, 1);
+        return id;
+    }
+
+    @Override
+    public void deleteByStudent(Collection<Integer> studentIds, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.deleteByStudent(studentIds, conn);
+        } catch (Exception ex) {
+            deleteByStudent.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        deleteByStudent.record(System.nanoTime() - start, studentIds.size());
+    }
+
+    @Override
+    public void deleteByModule(Collection<String> moduleCodes, Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            dao.deleteByModule(moduleCodes, conn);
+        } catch (Exception ex) {
+            deleteByModule.recordError(System.nanoTime() - start);
+            throw ex;
+        }
+        deleteByModule.record(System.nanoTime() - start, moduleCodes.size());
+    }
+}
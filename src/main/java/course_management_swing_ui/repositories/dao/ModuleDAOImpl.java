@@ -6,18 +6,23 @@ import course_management_swing_ui.models.Module;
 import course_management_swing_ui.repositories.db.DbSchema;
 import course_management_swing_ui.util.exceptions.InvalidArgumentException;
 import course_management_swing_ui.util.exceptions.NotPossibleException;
+import course_management_swing_ui.util.exceptions.StaleObjectException;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.2
- * @Overview Implementation of DAO for Module
+ * @version 1.9
+ * @Overview Implementation of DAO for Module. Rows are mapped by COMPILER, whose column positions are resolved once per
+ * statement (see RowMappers). The updates are checked against the version of the row (see DAO.update).
  */
 public class ModuleDAOImpl implements DAO<Module, String> {
+    static final RowMapperCompiler<RowMapper<Module>> COMPILER = columns -> compile(columns, "");
+
     public final static String CREATE_STMT = "INSERT INTO " + DbSchema.ModuleTable.NAME + " ("
             + DbSchema.ModuleTable.Cols.CODE + ", "
             + DbSchema.ModuleTable.Cols.NAME + ", "
@@ -29,39 +34,43 @@ public class ModuleDAOImpl implements DAO<Module, String> {
 
     public final static String READ_ONE_STMT = "SELECT * FROM " + DbSchema.ModuleTable.NAME + " WHERE " + DbSchema.ModuleTable.Cols.CODE + " = ?";
     public final static String READ_ALL_STMT = "SELECT * FROM " + DbSchema.ModuleTable.NAME;
+    public final static String COUNT_STMT = "SELECT COUNT(*) FROM " + DbSchema.ModuleTable.NAME;
+    // completed with " IN (?, ?, ...)" by BulkRead
+    public final static String READ_MANY_STMT = "SELECT * FROM " + DbSchema.ModuleTable.NAME + " WHERE " + DbSchema.ModuleTable.Cols.CODE;
 
     public final static String UPDATE_STMT = "UPDATE " + DbSchema.ModuleTable.NAME + " SET "
             + DbSchema.ModuleTable.Cols.NAME + " = ?, "
             + DbSchema.ModuleTable.Cols.SEMESTER + " = ?, "
             + DbSchema.ModuleTable.Cols.CREDITS + " = ?, "
             + DbSchema.ModuleTable.Cols.MODULE_TYPE + " = ?, "
-            + DbSchema.ModuleTable.Cols.DEPARTMENT + " = ? "
-            + "WHERE " + DbSchema.ModuleTable.Cols.CODE + " = ?";
+            + DbSchema.ModuleTable.Cols.DEPARTMENT + " = ?, "
+            + DbSchema.ModuleTable.Cols.VERSION + " = " + DbSchema.ModuleTable.Cols.VERSION + " + 1 "
+            + "WHERE " + DbSchema.ModuleTable.Cols.CODE + " = ? AND " + DbSchema.ModuleTable.Cols.VERSION + " = ?";
 
     public static final String DELETE_ONE_STMT = "DELETE FROM " + DbSchema.ModuleTable.NAME + " WHERE " + DbSchema.ModuleTable.Cols.CODE + " = ?";
     public static final String DELETE_ALL_STMT = "DELETE FROM " + DbSchema.ModuleTable.NAME;
 
+    // the columns of CREATE_STMT, written by BulkWrite
+    private static final BulkWrite.Table<Module, String> BULK_TABLE = new BulkWrite.Table<>(DbSchema.ModuleTable.NAME,
+            new String[]{DbSchema.ModuleTable.Cols.CODE, DbSchema.ModuleTable.Cols.NAME, DbSchema.ModuleTable.Cols.SEMESTER,
+                    DbSchema.ModuleTable.Cols.CREDITS, DbSchema.ModuleTable.Cols.MODULE_TYPE, DbSchema.ModuleTable.Cols.DEPARTMENT},
+            DbSchema.ModuleTable.Cols.VERSION, Module::getCode, Module::getVersion, (ps, offset, obj) -> {
+                ps.setString(offset + 1, obj.getCode());
+                ps.setString(offset + 2, obj.getName());
+                ps.setInt(offset + 3, obj.getSemester());
+                ps.setInt(offset + 4, obj.getCredits());
+                ps.setString(offset + 5, obj.getModuleType().toString());
+                if (obj.getModuleType().equals(Module.ModuleType.ELECTIVE)) {
+                    ps.setString(offset + 6, ((ElectiveModule) obj).getDepartment());
+                } else {
+                    ps.setNull(offset + 6, Types.NVARCHAR);
+                }
+            });
 
     @Override
     public void create(Module obj, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(CREATE_STMT);
-        ps.setString(1, obj.getCode());
-        ps.setString(2, obj.getName());
-        ps.setInt(3, obj.getSemester());
-        ps.setInt(4, obj.getCredits());
-        ps.setString(5, obj.getModuleType().toString());
-        if (obj.getModuleType().equals(Module.ModuleType.ELECTIVE)) {
-            ps.setString(6, ((ElectiveModule) obj).getDepartment());
-        } else {
-            ps.setNull(6, Types.NVARCHAR);
-        }
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
-    }
-
-    @Override
-    public void create(Collection<Module> objs, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(CREATE_STMT);
-        for (Module obj : objs) {
+        try (CachedStatement cs = StatementCache.prepare(conn, CREATE_STMT)) {
+            PreparedStatement ps = cs.get();
             ps.setString(1, obj.getCode());
             ps.setString(2, obj.getName());
             ps.setInt(3, obj.getSemester());
@@ -72,30 +81,24 @@ public class ModuleDAOImpl implements DAO<Module, String> {
             } else {
                 ps.setNull(6, Types.NVARCHAR);
             }
-            ps.addBatch();
+            if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
         }
-        if (ps.executeBatch().length != objs.size()) throw new SQLException("query failed!");
+    }
+
+    @Override
+    public void create(Collection<Module> objs, Connection conn) throws SQLException {
+        BulkWrite.insert(conn, BULK_TABLE, objs);
     }
 
     @Override
     public Module read(String key, Connection conn) throws SQLException, NotPossibleException {
-        PreparedStatement ps = conn.prepareStatement(READ_ONE_STMT);
-        ps.setString(1, key);
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) {
-            String name = rs.getString(DbSchema.ModuleTable.Cols.NAME);
-            int semester = rs.getInt(DbSchema.ModuleTable.Cols.SEMESTER);
-            int credits = rs.getInt(DbSchema.ModuleTable.Cols.CREDITS);
-            String mt = rs.getString(DbSchema.ModuleTable.Cols.MODULE_TYPE);
-            if (mt.equals(Module.ModuleType.ELECTIVE.toString())) {
-                String department = rs.getString(DbSchema.ModuleTable.Cols.DEPARTMENT);
-                try {
-                    return ModuleFactory.getInstance().createModule(key, name, semester, credits, Module.ModuleType.ELECTIVE, department);
-                } catch (InvalidArgumentException e) {
-                    e.printStackTrace();
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setString(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return RowMappers.forStatement(READ_ONE_STMT, COMPILER).map(rs);
                 }
-            } else {
-                return ModuleFactory.getInstance().createModule(key, name, semester, credits);
             }
         }
         return null;
@@ -103,77 +106,47 @@ public class ModuleDAOImpl implements DAO<Module, String> {
 
     @Override
     public List<Module> read(Collection<String> keys, Connection conn) throws SQLException, NotPossibleException {
-        List<Module> modules = new ArrayList<>();
-        for (String key : keys) {
-            PreparedStatement ps = conn.prepareStatement(READ_ONE_STMT);
-            ps.setString(1, key);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                String code = rs.getString(DbSchema.ModuleTable.Cols.CODE);
-                String name = rs.getString(DbSchema.ModuleTable.Cols.NAME);
-                int semester = rs.getInt(DbSchema.ModuleTable.Cols.SEMESTER);
-                int credits = rs.getInt(DbSchema.ModuleTable.Cols.CREDITS);
-                String mt = rs.getString(DbSchema.ModuleTable.Cols.MODULE_TYPE);
-                if (mt.equals(Module.ModuleType.ELECTIVE.toString())) {
-                    String department = rs.getString(DbSchema.ModuleTable.Cols.DEPARTMENT);
-                    try {
-                        modules.add(ModuleFactory.getInstance().createModule(code, name, semester, credits, Module.ModuleType.ELECTIVE, department));
-                    } catch (InvalidArgumentException e) {
-                        e.printStackTrace();
-                    }
-                } else {
-                    modules.add(ModuleFactory.getInstance().createModule(code, name, semester, credits));
-                }
-            }
-        }
-        return modules;
+        return BulkRead.read(conn, READ_MANY_STMT, keys, RowMappers.forStatement(READ_MANY_STMT, COMPILER), Module::getCode);
     }
 
     @Override
     public List<Module> all(Connection conn) throws SQLException, NotPossibleException {
         List<Module> modules = new ArrayList<>();
-        PreparedStatement ps = conn.prepareStatement(READ_ALL_STMT);
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            String code = rs.getString(DbSchema.ModuleTable.Cols.CODE);
-            String name = rs.getString(DbSchema.ModuleTable.Cols.NAME);
-            int semester = rs.getInt(DbSchema.ModuleTable.Cols.SEMESTER);
-            int credits = rs.getInt(DbSchema.ModuleTable.Cols.CREDITS);
-            String mt = rs.getString(DbSchema.ModuleTable.Cols.MODULE_TYPE);
-            if (mt.equals(Module.ModuleType.ELECTIVE.toString())) {
-                String department = rs.getString(DbSchema.ModuleTable.Cols.DEPARTMENT);
-                try {
-                    modules.add(ModuleFactory.getInstance().createModule(code, name, semester, credits, Module.ModuleType.ELECTIVE, department));
-                } catch (InvalidArgumentException e) {
-                    e.printStackTrace();
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ALL_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            RowMapper<Module> mapper = RowMappers.forStatement(READ_ALL_STMT, COMPILER);
+            while (rs.next()) {
+                Module m = mapper.map(rs);
+                if (m != null) {
+                    modules.add(m);
                 }
-            } else {
-                modules.add(ModuleFactory.getInstance().createModule(code, name, semester, credits));
             }
         }
         return modules;
     }
 
     @Override
-    public void update(Module obj, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(UPDATE_STMT);
-        ps.setString(1, obj.getName());
-        ps.setInt(2, obj.getSemester());
-        ps.setInt(3, obj.getCredits());
-        ps.setString(4, obj.getModuleType().toString());
-        if (obj.getModuleType().equals(Module.ModuleType.ELECTIVE)) {
-            ps.setString(5, ((ElectiveModule) obj).getDepartment());
-        } else {
-            ps.setNull(5, Types.NVARCHAR);
+    public Stream<Module> stream(Connection conn, int fetchSize) throws SQLException {
+        return RowStream.of(conn, READ_ALL_STMT, fetchSize, RowMappers.forStatement(READ_ALL_STMT, COMPILER));
+    }
+
+    @Override
+    public List<Module> page(String afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException {
+        return KeysetPage.read(conn, DbSchema.ModuleTable.NAME, DbSchema.ModuleTable.Cols.CODE, afterKey, limit, order, RowMappers.forStatement(READ_ALL_STMT, COMPILER));
+    }
+
+    @Override
+    public long count(Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, COUNT_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
         }
-        ps.setString(6, obj.getCode());
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
     }
 
     @Override
-    public void update(Collection<Module> objs, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(UPDATE_STMT);
-        for (Module obj : objs) {
+    public void update(Module obj, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, UPDATE_STMT)) {
+            PreparedStatement ps = cs.get();
             ps.setString(1, obj.getName());
             ps.setInt(2, obj.getSemester());
             ps.setInt(3, obj.getCredits());
@@ -184,31 +157,87 @@ public class ModuleDAOImpl implements DAO<Module, String> {
                 ps.setNull(5, Types.NVARCHAR);
             }
             ps.setString(6, obj.getCode());
-            ps.addBatch();
+            ps.setInt(7, obj.getVersion());
+            if (ps.executeUpdate() != 1) throw new StaleObjectException("module " + obj.getCode() + " has been changed or deleted by someone else");
         }
-        if (ps.executeBatch().length != objs.size()) throw new SQLException("query failed!");
+    }
+
+    @Override
+    public BulkWriteResult update(Collection<Module> objs, Connection conn) throws SQLException {
+        return BulkWrite.update(conn, BULK_TABLE, objs);
+    }
+
+    @Override
+    public BulkWriteResult createEach(Collection<Module> objs, Connection conn) throws SQLException {
+        return BulkWrite.insertEach(conn, BULK_TABLE, objs);
+    }
+
+    @Override
+    public BulkWriteResult upsert(Collection<Module> objs, Connection conn) throws SQLException {
+        return BulkWrite.upsert(conn, BULK_TABLE, objs);
     }
 
     @Override
     public void delete(String key, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ONE_STMT);
-        ps.setString(1, key);
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setString(1, key);
+            if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+        }
     }
 
     @Override
     public void delete(Collection<String> keys, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ONE_STMT);
-        for (String key : keys) {
-            ps.setString(1, key);
-            ps.addBatch();
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            for (String key : keys) {
+                ps.setString(1, key);
+                ps.addBatch();
+            }
+            if (ps.executeBatch().length != keys.size()) throw new SQLException("query failed!");
         }
-        if (ps.executeBatch().length != keys.size()) throw new SQLException("query failed!");
     }
 
     @Override
     public void clear(Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ALL_STMT);
-        ps.executeUpdate();
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ALL_STMT)) {
+            cs.get().executeUpdate();
+        }
+    }
+
+    /**
+     * @requires columns has the columns of the module table, each one labelled prefix + column name (e.g. "m_code" in a
+     * JOIN)
+     * @effects return the RowMapper that creates the Module of a row laid out as columns, or null if its department is
+     * invalid
+     */
+    static RowMapper<Module> compile(ColumnIndex columns, String prefix) throws SQLException {
+        int code = columns.of(prefix + DbSchema.ModuleTable.Cols.CODE);
+        int name = columns.of(prefix + DbSchema.ModuleTable.Cols.NAME);
+        int semester = columns.of(prefix + DbSchema.ModuleTable.Cols.SEMESTER);
+        int credits = columns.of(prefix + DbSchema.ModuleTable.Cols.CREDITS);
+        int moduleType = columns.of(prefix + DbSchema.ModuleTable.Cols.MODULE_TYPE);
+        int department = columns.of(prefix + DbSchema.ModuleTable.Cols.DEPARTMENT);
+        int version = columns.of(prefix + DbSchema.ModuleTable.Cols.VERSION);
+        String elective = Module.ModuleType.ELECTIVE.toString();
+        return rs -> {
+            String c = rs.getString(code);
+            // the row exists, so its code is taken already: reading it again (e.g. another page) must not be refused
+            Module.suffixes.remove(c.substring(1));
+            Module m;
+            if (elective.equals(rs.getString(moduleType))) {
+                try {
+                    m = ModuleFactory.getInstance().createModule(c, rs.getString(name), rs.getInt(semester), rs.getInt(credits),
+                            Module.ModuleType.ELECTIVE, rs.getString(department));
+                } catch (InvalidArgumentException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            } else {
+                m = ModuleFactory.getInstance().createModule(c, rs.getString(name), rs.getInt(semester), rs.getInt(credits));
+            }
+            m.setVersion(rs.getInt(version));
+            return m;
+        };
     }
 }
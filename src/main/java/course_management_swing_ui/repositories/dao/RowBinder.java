@@ -0,0 +1,20 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Sets the columns of one row of T as parameters of a multi-row statement (see BulkWrite).
+ */
+@FunctionalInterface
+public interface RowBinder<T> {
+    /**
+     * @requires ps != null /\ obj != null
+     * @modifies ps
+     * @effects set the parameters offset + 1, offset + 2, ... of ps to the columns of obj, in the order of the columns of
+     * the statement
+     */
+    void bind(PreparedStatement ps, int offset, T obj) throws SQLException;
+}
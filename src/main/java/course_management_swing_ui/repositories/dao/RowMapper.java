@@ -0,0 +1,20 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Maps the current row of a ResultSet to an object of T.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    /**
+     * @requires rs != null /\ rs is positioned on a row
+     * @effects return the object of the current row of rs, or null if the row cannot be mapped
+     */
+    T map(ResultSet rs) throws SQLException, NotPossibleException;
+}
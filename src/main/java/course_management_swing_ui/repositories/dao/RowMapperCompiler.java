@@ -0,0 +1,18 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.sql.SQLException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Turns the column layout of a statement into a mapper M (usually a RowMapper) that only reads columns by
+ * position. The column names are resolved here, once, instead of on every row. See RowMappers.
+ */
+@FunctionalInterface
+public interface RowMapperCompiler<M> {
+    /**
+     * @requires columns != null
+     * @effects return the mapper of the rows laid out as columns, or throw SQLException if a column is missing
+     */
+    M compile(ColumnIndex columns) throws SQLException;
+}
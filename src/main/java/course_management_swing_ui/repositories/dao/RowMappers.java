@@ -0,0 +1,84 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The compiled mappers of every SELECT, by its SQL string. The first time a statement returns a row, its
+ * RowMapperCompiler is run on the ResultSetMetaData and the result is kept; every later row of every later execution
+ * of the statement only does positional getters.
+ * <pre>
+ *  Usage:
+ *      RowMapper<Student> mapper = RowMappers.forStatement(READ_ALL_STMT, StudentDAOImpl.COMPILER);
+ *      while (rs.next()) students.add(mapper.map(rs));
+ * </pre>
+ * A statement that is completed by BulkRead or KeysetPage is cached under the SQL given to them, since all of its
+ * variants have the same columns.
+ */
+public final class RowMappers {
+    // key = SQL of the statement, value = the compiled mapper of its rows
+    private static final Map<String, Object> compiled = new ConcurrentHashMap<>();
+
+    private RowMappers() {
+    }
+
+    /**
+     * @requires sql is always compiled with the same compiler /\ rs is a result of sql
+     * @effects return the mapper of sql, compiled from the metadata of rs the first time
+     */
+    @SuppressWarnings("unchecked")
+    public static <M> M compile(String sql, ResultSet rs, RowMapperCompiler<M> compiler) throws SQLException {
+        Object mapper = compiled.get(sql);
+        if (mapper == null) {
+            mapper = compiler.compile(ColumnIndex.of(rs.getMetaData()));
+            Object previous = compiled.putIfAbsent(sql, mapper);
+            if (previous != null) {
+                mapper = previous;
+            }
+        }
+        return (M) mapper;
+    }
+
+    /**
+     * @requires sql is always compiled with the same compiler
+     * @effects return a RowMapper for the rows of sql that gets the compiled mapper on its first row and then only
+     * delegates to it
+     */
+    public static <T> RowMapper<T> forStatement(String sql, RowMapperCompiler<RowMapper<T>> compiler) {
+        return forStatement(sql, compiler, Function.identity());
+    }
+
+    /**
+     * @requires sql is always compiled with the same compiler
+     * @effects same as forStatement(sql, compiler), for a compiled mapper M that still needs some state of the read
+     * (e.g. an IdentityMap), which bind gives it
+     */
+    public static <M, T> RowMapper<T> forStatement(String sql, RowMapperCompiler<M> compiler, Function<M, RowMapper<T>> bind) {
+        return new RowMapper<T>() {
+            private RowMapper<T> delegate;
+
+            @Override
+            public T map(ResultSet rs) throws SQLException, NotPossibleException {
+                if (delegate == null) {
+                    delegate = bind.apply(compile(sql, rs, compiler));
+                }
+                return delegate.map(rs);
+            }
+        };
+    }
+
+    /**
+     * @modifies RowMappers
+     * @effects forget every compiled mapper, e.g. after the schema changed
+     */
+    public static void clear() {
+        compiled.clear();
+    }
+}
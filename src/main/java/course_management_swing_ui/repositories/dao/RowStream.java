@@ -0,0 +1,83 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+import course_management_swing_ui.util.exceptions.UncheckedSQLException;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A forward-only cursor over the rows of a query, exposed as a lazy Stream. A row is mapped only when the
+ * stream asks for it and is not kept afterwards, so a whole table can be processed with constant memory.
+ * <p>
+ * The stream holds an open ResultSet and a statement of StatementCache, hence it must be closed, e.g. with
+ * try-with-resources. An SQLException that happens while the stream is consumed is thrown as UncheckedSQLException.
+ */
+public final class RowStream {
+    public static final int DEFAULT_FETCH_SIZE = 256;
+
+    private RowStream() {
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ sql is a SELECT without parameters /\ fetchSize >= 0
+     * @effects <pre>
+     *     execute sql with the fetch size hint fetchSize (0 lets the driver decide)
+     *     return a sequential Stream that maps the rows with mapper one by one, skipping the rows mapped to null or
+     *     that cannot be mapped. Closing the stream closes the result set and gives the statement back to the cache.
+     * </pre>
+     */
+    public static <T> Stream<T> of(Connection conn, String sql, int fetchSize, RowMapper<T> mapper) throws SQLException {
+        CachedStatement cs = StatementCache.prepare(conn, sql);
+        ResultSet rs;
+        try {
+            cs.get().setFetchSize(fetchSize);
+            rs = cs.get().executeQuery();
+        } catch (SQLException e) {
+            cs.close();
+            throw e;
+        }
+
+        Spliterator<T> cursor = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    while (rs.next()) {
+                        T row;
+                        try {
+                            row = mapper.map(rs);
+                        } catch (NotPossibleException e) {
+                            e.printStackTrace();
+                            continue;
+                        }
+                        if (row != null) {
+                            action.accept(row);
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(cursor, false).onClose(() -> {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                cs.close();
+            }
+        });
+    }
+}
@@ -0,0 +1,356 @@
+package course_management_swing_ui.repositories.dao;
+
+import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.DbSchema;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview The statements that took at least a threshold to execute (see TracedStatement), written to a rotating log
+ * (slow-queries.0.log is the newest of LOG_FILES files of at most LOG_LIMIT bytes) with:
+ * <pre>
+ *     the SQL constant, the time spent in the driver, the rows read or written
+ *     the bound parameters, in which the personal columns (DbSchema.PERSONAL_COLUMNS) are masked
+ *     the query plan of the dialect, e.g. "SCAN enrollment" (EXPLAIN QUERY PLAN of SQLite) for a full-table scan
+ *     the number of times the statement has been slow so far
+ * </pre>
+ * Recording only counts the statement and queues it: the plan is read on a read connection and the log is written by
+ * a background thread ("slow-query-log"), and slow statements are dropped from the log (not from the counts) when
+ * more than QUEUE_CAPACITY of them are waiting.
+ * <pre>
+ *  The threshold is set with -Dcoursemanprog.db.slowQueryMillis=... (DEFAULT_THRESHOLD_MILLIS by default); a negative
+ *  value disables the log, and the statements are then not traced at all.
+ *
+ *  Usage:
+ *      SlowQueryLog.getInstance().setThresholdMillis(50);
+ *      System.out.println(SlowQueryLog.getInstance().report());
+ * </pre>
+ */
+public final class SlowQueryLog {
+    /**
+     * name of the system property that sets the threshold in milliseconds, e.g. -Dcoursemanprog.db.slowQueryMillis=50
+     */
+    public static final String THRESHOLD_PROPERTY = "coursemanprog.db.slowQueryMillis";
+    public static final long DEFAULT_THRESHOLD_MILLIS = 200;
+
+    public static final String LOG_PATTERN = "slow-queries.%g.log";
+    public static final int LOG_LIMIT = 1024 * 1024;
+    public static final int LOG_FILES = 5;
+    public static final int QUEUE_CAPACITY = 256;
+    public static final int MAX_LOGGED_PARAMS = 20;
+
+    private static final String MASK = "***";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final Pattern INSERT_COLUMNS = Pattern.compile(
+            "^\\s*(?:INSERT|REPLACE)\\s+(?:OR\\s+\\w+\\s+)?INTO\\s+\\w+\\s*\\(([^)]*)\\)\\s*VALUES", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMPARED_COLUMN = Pattern.compile(
+            "(\\w+)\\s*(?:=|==|<>|!=|<=|>=|<|>|\\s(?:NOT\\s+)?LIKE|\\s(?:NOT\\s+)?IN\\s*\\()[\\s?,]*$", Pattern.CASE_INSENSITIVE);
+
+    private static final SlowQueryLog instance = new SlowQueryLog();
+
+    private final boolean enabled;
+    private volatile long thresholdNanos;
+    private final ConcurrentMap<String, Offender> offenders = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor writer;
+    private Logger logger;
+
+    private SlowQueryLog() {
+        long millis = DEFAULT_THRESHOLD_MILLIS;
+        String value = System.getProperty(THRESHOLD_PROPERTY);
+        if (value != null) {
+            try {
+                millis = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid " + THRESHOLD_PROPERTY + ": " + value + ", fall back to: " + millis);
+            }
+        }
+        enabled = millis >= 0;
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+        writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+            Thread t = new Thread(r, "slow-query-log");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public static SlowQueryLog getInstance() {
+        return instance;
+    }
+
+    /**
+     * @Overview A statement that has been slow at least once.
+     */
+    public static final class Offender {
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private volatile long lastRows;
+        private volatile List<String> plan;
+        private volatile String[] paramColumns;
+
+        private Offender(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getLastRows() {
+            return lastRows;
+        }
+
+        /**
+         * @effects return the lines of the query plan of this statement, or null if they have not been read yet
+         */
+        public List<String> getPlan() {
+            return plan;
+        }
+    }
+
+    /**
+     * @effects return true if the statements are traced, i.e. the threshold was not negative at startup
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * @requires millis >= 0
+     * @modifies this
+     * @effects log the statements that take at least millis from now on. Has no effect if this is not enabled.
+     */
+    public void setThresholdMillis(long millis) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @requires sql != null /\ params != null
+     * @modifies this
+     * @effects count one slow execution of sql, which took nanos in the driver and read or wrote rows rows with params
+     * (the first row of a batch of batchRows rows if batchRows > 0), and queue it to be logged
+     */
+    void record(String sql, Object[] params, int batchRows, long rows, long nanos) {
+        Offender offender = offenders.computeIfAbsent(sql, Offender::new);
+        offender.count.increment();
+        offender.maxNanos.accumulate(nanos);
+        offender.lastRows = rows;
+        long count = offender.getCount();
+        LocalDateTime at = LocalDateTime.now();
+        writer.execute(() -> log(offender, count, at, params, batchRows, rows, nanos));
+    }
+
+    /**
+     * @effects return the statements that have been slow, the most frequent first
+     */
+    public List<Offender> getOffenders() {
+        List<Offender> list = new ArrayList<>(offenders.values());
+        list.sort(Comparator.comparingLong(Offender::getCount).reversed().thenComparing(Offender::getSql));
+        return list;
+    }
+
+    /**
+     * @modifies this
+     * @effects forget the statements that have been slow. The log is kept.
+     */
+    public void reset() {
+        offenders.clear();
+    }
+
+    /**
+     * @effects return the statements that have been slow as a table of text, the most frequent first
+     */
+    public String report() {
+        String threshold = enabled ? "threshold " + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + " ms" : "disabled";
+        StringBuilder sb = new StringBuilder(String.format("%9s %9s %11s  %s%n", "slow", "max ms", "last rows",
+                "statement (" + threshold + ")"));
+        for (Offender o : getOffenders()) {
+            sb.append(String.format("%9d %9.3f %11d  %s%n", o.getCount(), o.getMaxNanos() / 1e6, o.getLastRows(),
+                    abbreviate(o.getSql(), 120)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @modifies this
+     * @effects stop logging, and wait up to timeoutMillis for the queued slow executions to be written
+     */
+    public void shutdown(long timeoutMillis) {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @effects write one slow execution of offender to the log, with the plan of its statement (read the first time)
+     */
+    private void log(Offender offender, long count, LocalDateTime at, Object[] params, int batchRows, long rows, long nanos) {
+        if (offender.plan == null) {
+            offender.paramColumns = paramColumns(offender.sql);
+            offender.plan = explain(offender.sql, params);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(at.format(TIMESTAMP)).append(String.format(Locale.ROOT, "  %.3f ms  %d rows  slow #%d%n",
+                nanos / 1e6, rows, count));
+        sb.append("  sql:    ").append(offender.sql).append(System.lineSeparator());
+        sb.append("  params: ").append(formatParams(params, offender.paramColumns));
+        if (batchRows > 1) {
+            sb.append(" (first of a batch of ").append(batchRows).append(" rows)");
+        }
+        sb.append(System.lineSeparator());
+        sb.append("  plan:").append(System.lineSeparator());
+        for (String line : offender.plan) {
+            sb.append("    ").append(line).append(System.lineSeparator());
+        }
+
+        Logger log = getLogger();
+        if (log != null) {
+            log.info(sb.toString());
+        }
+    }
+
+    /**
+     * @effects return the lines of the query plan of sql bound to params, as the dialect explains it (see
+     * Dialect.explain), read on a read connection; or the reason why they cannot be read
+     */
+    private static List<String> explain(String sql, Object[] params) {
+        List<String> lines = new ArrayList<>();
+        try (Connection conn = DbConnect.getReadConnection()) {
+            lines.addAll(DbConnect.getDialect().explain(conn, sql, params));
+        } catch (SQLException e) {
+            lines.add("(no plan: " + e.getMessage() + ")");
+        }
+        if (lines.isEmpty()) {
+            lines.add("(no plan: the statement reads no table)");
+        }
+        return lines;
+    }
+
+    /**
+     * @effects return the column that each parameter of sql is compared with or inserted into, or null where it is
+     * not known (e.g. LIMIT ?)
+     */
+    static String[] paramColumns(String sql) {
+        List<Integer> marks = new ArrayList<>();
+        for (int i = sql.indexOf('?'); i >= 0; i = sql.indexOf('?', i + 1)) {
+            marks.add(i);
+        }
+        String[] columns = new String[marks.size()];
+
+        Matcher insert = INSERT_COLUMNS.matcher(sql);
+        if (insert.find()) {
+            String[] names = insert.group(1).split(",");
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = names[i % names.length].trim();
+            }
+            return columns;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            Matcher compared = COMPARED_COLUMN.matcher(sql.substring(0, marks.get(i)));
+            if (compared.find()) {
+                columns[i] = compared.group(1);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @effects return params as text: the values of the personal columns, and the values that are not numbers of
+     * unknown columns, are masked; at most MAX_LOGGED_PARAMS are shown
+     */
+    private static String formatParams(Object[] params, String[] columns) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < params.length && i < MAX_LOGGED_PARAMS; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            String column = i < columns.length ? columns[i] : null;
+            Object value = params[i];
+            boolean personal = column != null && DbSchema.PERSONAL_COLUMNS.contains(column.toLowerCase(Locale.ROOT));
+            if (value == null) {
+                sb.append("NULL");
+            } else if (personal || (column == null && !(value instanceof Number))) {
+                sb.append(MASK);
+            } else if (value instanceof Number) {
+                sb.append(value);
+            } else {
+                sb.append('\'').append(abbreviate(value.toString(), 40)).append('\'');
+            }
+        }
+        if (params.length > MAX_LOGGED_PARAMS) {
+            sb.append(", ... ").append(params.length - MAX_LOGGED_PARAMS).append(" more");
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String abbreviate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max - 3) + "...";
+    }
+
+    /**
+     * @modifies this, the log files
+     * @effects open the log on the first call, then return it; or null if it cannot be opened
+     */
+    private Logger getLogger() {
+        if (logger == null) {
+            try {
+                FileHandler handler = new FileHandler(LOG_PATTERN, LOG_LIMIT, LOG_FILES, true);
+                handler.setEncoding("UTF-8");
+                handler.setFormatter(new Formatter() {
+                    @Override
+                    public String format(LogRecord record) {
+                        return record.getMessage() + System.lineSeparator();
+                    }
+                });
+                Logger log = Logger.getLogger(SlowQueryLog.class.getName());
+                log.setUseParentHandlers(false);
+                log.setLevel(Level.INFO);
+                log.addHandler(handler);
+                logger = log;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return logger;
+    }
+}
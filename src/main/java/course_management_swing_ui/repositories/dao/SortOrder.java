@@ -0,0 +1,25 @@
+package course_management_swing_ui.repositories.dao;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The order of the primary keys in a page read by DAO.page.
+ */
+public enum SortOrder {
+    ASC(">"),
+    DESC("<");
+
+    // comparison that selects the keys after afterKey in this order
+    private final String after;
+
+    SortOrder(String after) {
+        this.after = after;
+    }
+
+    /**
+     * @effects return "&gt;" for ASC, "&lt;" for DESC
+     */
+    public String getAfterOperator() {
+        return after;
+    }
+}
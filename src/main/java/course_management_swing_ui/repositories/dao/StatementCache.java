@@ -0,0 +1,199 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview A cache of prepared statements bound to each physical connection of the pool and keyed by the SQL
+ * constants of the DAOs. A statement is lent to one caller at a time (see CachedStatement) and goes back to the cache
+ * when that caller closes it, so several threads sharing a pooled connection never bind parameters on the same
+ * statement. Every connection keeps at most MAX_IDLE_PER_CONNECTION idle statements; when it is full, the statements of
+ * the least recently used SQL are closed.
+ * <p>
+ * Statements are prepared on the physical connection rather than on the HikariCP proxy, because the proxy closes every
+ * statement it has created when the connection goes back to the pool.
+ * <p>
+ * If SlowQueryLog is enabled, every statement is prepared as a TracedStatement, which times its executions.
+ */
+public final class StatementCache {
+    public static final int MAX_IDLE_PER_CONNECTION = 32;
+
+    private static final StatementCache instance = new StatementCache();
+
+    private final Map<Connection, ConnectionCache> caches = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private StatementCache() {
+    }
+
+    public static StatementCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ sql != null
+     * @effects return the shortcut of getInstance().acquire(conn, sql)
+     */
+    public static CachedStatement prepare(Connection conn, String sql) throws SQLException {
+        return instance.acquire(conn, sql);
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ sql != null
+     * @modifies this
+     * @effects <pre>
+     *     if there is an idle statement of sql on the physical connection of conn
+     *       count a hit and lend it
+     *     else
+     *       count a miss, prepare a new statement (traced if SlowQueryLog is enabled) and lend it
+     * </pre>
+     */
+    public CachedStatement acquire(Connection conn, String sql) throws SQLException {
+        Connection physical = conn.unwrap(Connection.class);
+        ConnectionCache cache = caches.get(physical);
+        if (cache == null) {
+            removeClosedConnections();
+            cache = caches.computeIfAbsent(physical, ConnectionCache::new);
+        }
+
+        PreparedStatement ps = cache.poll(sql);
+        if (ps != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            ps = physical.prepareStatement(sql);
+            if (SlowQueryLog.getInstance().isEnabled()) {
+                ps = TracedStatement.wrap(ps, sql);
+            }
+        }
+        return new CachedStatement(this, cache, sql, ps);
+    }
+
+    /**
+     * @modifies this
+     * @effects reset ps and give it back to cache, or close it if it cannot be reused
+     */
+    void release(ConnectionCache cache, String sql, PreparedStatement ps) {
+        try {
+            if (ps.isClosed() || cache.connection.isClosed()) {
+                return;
+            }
+            ps.clearParameters();
+            ps.clearBatch();
+            ps.setFetchSize(0);
+            evictions.addAndGet(cache.offer(sql, ps));
+        } catch (SQLException e) {
+            closeQuietly(ps);
+        }
+    }
+
+    /**
+     * @modifies this
+     * @effects forget the caches of connections that have been closed by the pool
+     */
+    private void removeClosedConnections() {
+        caches.entrySet().removeIf(entry -> {
+            try {
+                return entry.getKey().isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @effects return the number of statements that have been reused
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @effects return the number of statements that have been prepared because none was idle
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @effects return the number of statements that have been closed to keep the cache bounded
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", connections=" + caches.size() +
+                '}';
+    }
+
+    static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @Overview The idle statements of one physical connection, ordered from the least to the most recently used SQL.
+     */
+    static final class ConnectionCache {
+        private final Connection connection;
+        private final LinkedHashMap<String, ArrayDeque<PreparedStatement>> idle = new LinkedHashMap<>(16, 0.75f, true);
+        private int idleCount = 0;
+
+        private ConnectionCache(Connection connection) {
+            this.connection = connection;
+        }
+
+        private synchronized PreparedStatement poll(String sql) {
+            ArrayDeque<PreparedStatement> statements = idle.get(sql);
+            if (statements == null || statements.isEmpty()) {
+                return null;
+            }
+            idleCount--;
+            return statements.poll();
+        }
+
+        /**
+         * @effects put ps back, then close the least recently used statements until the cache is bounded again.
+         * Return the number of closed statements.
+         */
+        private synchronized int offer(String sql, PreparedStatement ps) {
+            idle.computeIfAbsent(sql, k -> new ArrayDeque<>()).push(ps);
+            idleCount++;
+
+            int evicted = 0;
+            Iterator<ArrayDeque<PreparedStatement>> it = idle.values().iterator();
+            while (idleCount > MAX_IDLE_PER_CONNECTION && it.hasNext()) {
+                ArrayDeque<PreparedStatement> eldest = it.next();
+                while (idleCount > MAX_IDLE_PER_CONNECTION && !eldest.isEmpty()) {
+                    closeQuietly(eldest.pollLast());
+                    idleCount--;
+                    evicted++;
+                }
+                if (eldest.isEmpty()) {
+                    it.remove();
+                }
+            }
+            return evicted;
+        }
+    }
+}
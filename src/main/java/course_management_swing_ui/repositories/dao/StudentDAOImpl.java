@@ -1,21 +1,28 @@
 package course_management_swing_ui.repositories.dao;
 
 import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.db.DbConnect;
 import course_management_swing_ui.repositories.db.DbSchema;
+import course_management_swing_ui.repositories.db.Dialect;
 import course_management_swing_ui.util.exceptions.NotPossibleException;
+import course_management_swing_ui.util.exceptions.StaleObjectException;
 
 import java.sql.*;
-import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.2
- * @Overview Implementation of DAO for Student
+ * @version 1.10
+ * @Overview Implementation of DAO for Student. Rows are mapped by COMPILER, whose column positions are resolved once per
+ * statement (see RowMappers). The date of birth is bound and read as the dialect stores dates (see Dialect.setDate).
+ * The updates are checked against the version of the row (see DAO.update).
  */
 public class StudentDAOImpl implements DAO<Student, Integer> {
+    static final RowMapperCompiler<RowMapper<Student>> COMPILER = columns -> compile(columns, "");
+
     public final static String CREATE_STMT = "INSERT INTO " + DbSchema.StudentTable.NAME + " ("
             + DbSchema.StudentTable.Cols.ID + ", "
             + DbSchema.StudentTable.Cols.NAME + ", "
@@ -26,141 +33,181 @@ public class StudentDAOImpl implements DAO<Student, Integer> {
 
     public final static String READ_ONE_STMT = "SELECT * FROM " + DbSchema.StudentTable.NAME + " WHERE " + DbSchema.StudentTable.Cols.ID + " = ?";
     public final static String READ_ALL_STMT = "SELECT * FROM " + DbSchema.StudentTable.NAME;
+    public final static String COUNT_STMT = "SELECT COUNT(*) FROM " + DbSchema.StudentTable.NAME;
+    // completed with " IN (?, ?, ...)" by BulkRead
+    public final static String READ_MANY_STMT = "SELECT * FROM " + DbSchema.StudentTable.NAME + " WHERE " + DbSchema.StudentTable.Cols.ID;
 
     public final static String UPDATE_STMT = "UPDATE " + DbSchema.StudentTable.NAME + " SET "
             + DbSchema.StudentTable.Cols.NAME + " = ?, "
             + DbSchema.StudentTable.Cols.DOB + " = ?, "
             + DbSchema.StudentTable.Cols.ADDRESS + " = ?, "
-            + DbSchema.StudentTable.Cols.EMAIL + " = ? "
-            + "WHERE " + DbSchema.StudentTable.Cols.ID + " = ?";
+            + DbSchema.StudentTable.Cols.EMAIL + " = ?, "
+            + DbSchema.StudentTable.Cols.VERSION + " = " + DbSchema.StudentTable.Cols.VERSION + " + 1 "
+            + "WHERE " + DbSchema.StudentTable.Cols.ID + " = ? AND " + DbSchema.StudentTable.Cols.VERSION + " = ?";
 
     public static final String DELETE_ONE_STMT = "DELETE FROM " + DbSchema.StudentTable.NAME + " WHERE " + DbSchema.StudentTable.Cols.ID + " = ?";
     public static final String DELETE_ALL_STMT = "DELETE FROM " + DbSchema.StudentTable.NAME;
 
-    @Override
-    public void create(Student obj, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(CREATE_STMT);
-        ps.setInt(1, obj.getNumericalId());
-        ps.setString(2, obj.getName());
-        ps.setString(3, obj.getDob().toString());
-        ps.setString(4, obj.getAddress());
-        ps.setString(5, obj.getEmail());
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
-    }
+    // the columns of CREATE_STMT, written by BulkWrite
+    private static final BulkWrite.Table<Student, Integer> BULK_TABLE = new BulkWrite.Table<>(DbSchema.StudentTable.NAME,
+            new String[]{DbSchema.StudentTable.Cols.ID, DbSchema.StudentTable.Cols.NAME, DbSchema.StudentTable.Cols.DOB,
+                    DbSchema.StudentTable.Cols.ADDRESS, DbSchema.StudentTable.Cols.EMAIL},
+            DbSchema.StudentTable.Cols.VERSION, Student::getNumericalId, Student::getVersion, (ps, offset, obj) -> {
+                ps.setInt(offset + 1, obj.getNumericalId());
+                ps.setString(offset + 2, obj.getName());
+                DbConnect.getDialect().setDate(ps, offset + 3, obj.getDob());
+                ps.setString(offset + 4, obj.getAddress());
+                ps.setString(offset + 5, obj.getEmail());
+            });
 
     @Override
-    public void create(Collection<Student> objs, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(CREATE_STMT);
-        for (Student obj : objs) {
+    public void create(Student obj, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, CREATE_STMT)) {
+            PreparedStatement ps = cs.get();
             ps.setInt(1, obj.getNumericalId());
             ps.setString(2, obj.getName());
-            ps.setString(3, obj.getDob().toString());
+            DbConnect.getDialect().setDate(ps, 3, obj.getDob());
             ps.setString(4, obj.getAddress());
             ps.setString(5, obj.getEmail());
-            ps.addBatch();
+            if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
         }
-        if (ps.executeBatch().length != objs.size()) throw new SQLException("query failed!");
+    }
+
+    @Override
+    public void create(Collection<Student> objs, Connection conn) throws SQLException {
+        BulkWrite.insert(conn, BULK_TABLE, objs);
     }
 
     @Override
     public Student read(Integer key, Connection conn) throws SQLException, NotPossibleException {
-        PreparedStatement ps = conn.prepareStatement(READ_ONE_STMT);
-        ps.setInt(1, key);
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) {
-            String name = rs.getString(DbSchema.StudentTable.Cols.NAME);
-            String dob = rs.getString(DbSchema.StudentTable.Cols.DOB);
-            String address = rs.getString(DbSchema.StudentTable.Cols.ADDRESS);
-            String email = rs.getString(DbSchema.StudentTable.Cols.EMAIL);
-            return new Student(key, name, LocalDate.parse(dob), address, email);
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setInt(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return RowMappers.forStatement(READ_ONE_STMT, COMPILER).map(rs);
+                }
+            }
         }
         return null;
     }
 
     @Override
     public List<Student> read(Collection<Integer> keys, Connection conn) {
-        List<Student> students = new ArrayList<>();
         try {
-            for (Integer key : keys) {
-                PreparedStatement ps = conn.prepareStatement(READ_ONE_STMT);
-                ps.setInt(1, key);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    int id = rs.getInt(DbSchema.StudentTable.Cols.ID);
-                    String name = rs.getString(DbSchema.StudentTable.Cols.NAME);
-                    String dob = rs.getString(DbSchema.StudentTable.Cols.DOB);
-                    String address = rs.getString(DbSchema.StudentTable.Cols.ADDRESS);
-                    String email = rs.getString(DbSchema.StudentTable.Cols.EMAIL);
-                    students.add(new Student(id, name, LocalDate.parse(dob), address, email));
-                }
-            }
+            return BulkRead.read(conn, READ_MANY_STMT, keys, RowMappers.forStatement(READ_MANY_STMT, COMPILER), Student::getNumericalId);
         } catch (SQLException | NotPossibleException e) {
             e.printStackTrace();
         }
-        return students;
+        return new ArrayList<>();
     }
 
     @Override
     public List<Student> all(Connection conn) throws SQLException, NotPossibleException {
         List<Student> students = new ArrayList<>();
-        PreparedStatement ps = conn.prepareStatement(READ_ALL_STMT);
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            int id = rs.getInt(DbSchema.StudentTable.Cols.ID);
-            String name = rs.getString(DbSchema.StudentTable.Cols.NAME);
-            String dob = rs.getString(DbSchema.StudentTable.Cols.DOB);
-            String address = rs.getString(DbSchema.StudentTable.Cols.ADDRESS);
-            String email = rs.getString(DbSchema.StudentTable.Cols.EMAIL);
-            students.add(new Student(id, name, LocalDate.parse(dob), address, email));
+        try (CachedStatement cs = StatementCache.prepare(conn, READ_ALL_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            RowMapper<Student> mapper = RowMappers.forStatement(READ_ALL_STMT, COMPILER);
+            while (rs.next()) {
+                students.add(mapper.map(rs));
+            }
         }
         return students;
     }
 
     @Override
-    public void update(Student obj, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(UPDATE_STMT);
-        ps.setString(1, obj.getName());
-        ps.setString(2, obj.getDob().toString());
-        ps.setString(3, obj.getAddress());
-        ps.setString(4, obj.getEmail());
-        ps.setInt(5, obj.getNumericalId());
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+    public Stream<Student> stream(Connection conn, int fetchSize) throws SQLException {
+        return RowStream.of(conn, READ_ALL_STMT, fetchSize, RowMappers.forStatement(READ_ALL_STMT, COMPILER));
     }
 
     @Override
-    public void update(Collection<Student> objs, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(UPDATE_STMT);
-        for (Student obj : objs) {
+    public List<Student> page(Integer afterKey, int limit, SortOrder order, Connection conn) throws SQLException, NotPossibleException {
+        return KeysetPage.read(conn, DbSchema.StudentTable.NAME, DbSchema.StudentTable.Cols.ID, afterKey, limit, order, RowMappers.forStatement(READ_ALL_STMT, COMPILER));
+    }
+
+    @Override
+    public long count(Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, COUNT_STMT);
+             ResultSet rs = cs.get().executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public void update(Student obj, Connection conn) throws SQLException {
+        try (CachedStatement cs = StatementCache.prepare(conn, UPDATE_STMT)) {
+            PreparedStatement ps = cs.get();
             ps.setString(1, obj.getName());
-            ps.setString(2, obj.getDob().toString());
+            DbConnect.getDialect().setDate(ps, 2, obj.getDob());
             ps.setString(3, obj.getAddress());
             ps.setString(4, obj.getEmail());
             ps.setInt(5, obj.getNumericalId());
-            ps.addBatch();
+            ps.setInt(6, obj.getVersion());
+            if (ps.executeUpdate() != 1) throw new StaleObjectException("student " + obj.getId() + " has been changed or deleted by someone else");
         }
-        if (ps.executeBatch().length != objs.size()) throw new SQLException("query failed!");
+    }
+
+    @Override
+    public BulkWriteResult update(Collection<Student> objs, Connection conn) throws SQLException {
+        return BulkWrite.update(conn, BULK_TABLE, objs);
+    }
+
+    @Override
+    public BulkWriteResult createEach(Collection<Student> objs, Connection conn) throws SQLException {
+        return BulkWrite.insertEach(conn, BULK_TABLE, objs);
+    }
+
+    @Override
+    public BulkWriteResult upsert(Collection<Student> objs, Connection conn) throws SQLException {
+        return BulkWrite.upsert(conn, BULK_TABLE, objs);
     }
 
     @Override
     public void delete(Integer key, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ONE_STMT);
-        ps.setInt(1, key);
-        if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            ps.setInt(1, key);
+            if (ps.executeUpdate() != 1) throw new SQLException("query failed!");
+        }
     }
 
     @Override
     public void delete(Collection<Integer> keys, Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ONE_STMT);
-        for (Integer key : keys) {
-            ps.setInt(1, key);
-            ps.addBatch();
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ONE_STMT)) {
+            PreparedStatement ps = cs.get();
+            for (Integer key : keys) {
+                ps.setInt(1, key);
+                ps.addBatch();
+            }
+            if (ps.executeBatch().length != keys.size()) throw new SQLException("query failed!");
         }
-        if (ps.executeBatch().length != keys.size()) throw new SQLException("query failed!");
     }
 
     @Override
     public void clear(Connection conn) throws SQLException {
-        PreparedStatement ps = conn.prepareStatement(DELETE_ALL_STMT);
-        ps.executeUpdate();
+        try (CachedStatement cs = StatementCache.prepare(conn, DELETE_ALL_STMT)) {
+            cs.get().executeUpdate();
+        }
+    }
+
+    /**
+     * @requires columns has the columns of the student table, each one labelled prefix + column name (e.g. "s_id" in a
+     * JOIN)
+     * @effects return the RowMapper that creates the Student of a row laid out as columns
+     */
+    static RowMapper<Student> compile(ColumnIndex columns, String prefix) throws SQLException {
+        int id = columns.of(prefix + DbSchema.StudentTable.Cols.ID);
+        int name = columns.of(prefix + DbSchema.StudentTable.Cols.NAME);
+        int dob = columns.of(prefix + DbSchema.StudentTable.Cols.DOB);
+        int address = columns.of(prefix + DbSchema.StudentTable.Cols.ADDRESS);
+        int email = columns.of(prefix + DbSchema.StudentTable.Cols.EMAIL);
+        int version = columns.of(prefix + DbSchema.StudentTable.Cols.VERSION);
+        Dialect dialect = DbConnect.getDialect();
+        return rs -> {
+            Student s = new Student(rs.getInt(id), rs.getString(name), dialect.getDate(rs, dob),
+                    rs.getString(address), rs.getString(email));
+            s.setVersion(rs.getInt(version));
+            return s;
+        };
     }
 }
@@ -0,0 +1,187 @@
+package course_management_swing_ui.repositories.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Times the executions of one prepared statement for SlowQueryLog. It is the handler of a proxy that
+ * forwards every call to the statement of the driver, and also:
+ * <pre>
+ *     set...(index, value, ...)       remembers the value of the parameter
+ *     addBatch()                      remembers the parameters of the first row of the batch
+ *     execute...()                    starts an execution: its time, and its rows if it is an update or a batch
+ *     next() of its result sets       adds its time and counts the row
+ *     the next execute...(), clearParameters(), close()
+ *                                     ends the execution, and gives it to SlowQueryLog if it took at least the threshold
+ * </pre>
+ * The time of an execution is the time spent in the driver only, so a result set that is read slowly by its caller
+ * (e.g. a stream written to a file) does not make its statement slow.
+ * <p>
+ * A statement is used by one caller at a time (see CachedStatement), hence the fields are not synchronized.
+ */
+final class TracedStatement implements InvocationHandler {
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private final PreparedStatement ps;
+    private final String sql;
+    private Object[] params = new Object[8];
+    private int paramCount = 0;
+
+    private Object[] batchParams;
+    private int batchRows = 0;
+
+    private boolean executing = false;
+    private Object[] executedParams;
+    private int executedBatchRows;
+    private long nanos;
+    private long rows;
+
+    private TracedStatement(PreparedStatement ps, String sql) {
+        this.ps = ps;
+        this.sql = sql;
+    }
+
+    /**
+     * @requires ps != null /\ sql is the SQL of ps
+     * @effects return a PreparedStatement that forwards to ps and reports its slow executions to SlowQueryLog
+     */
+    static PreparedStatement wrap(PreparedStatement ps, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new TracedStatement(ps, sql));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.startsWith("execute")) {
+            return execute(method, args);
+        }
+        switch (name) {
+            case "addBatch":
+                if (batchRows++ == 0) {
+                    batchParams = Arrays.copyOf(params, paramCount);
+                }
+                break;
+            case "clearBatch":
+                batchRows = 0;
+                batchParams = null;
+                break;
+            case "clearParameters":
+                finish();
+                Arrays.fill(params, 0, paramCount, null);
+                paramCount = 0;
+                break;
+            case "close":
+                finish();
+                break;
+            default:
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                }
+        }
+        return forward(ps, method, args);
+    }
+
+    /**
+     * @modifies this
+     * @effects end the current execution (if any), then execute method and start a new execution
+     */
+    private Object execute(Method method, Object[] args) throws Throwable {
+        finish();
+        executing = true;
+        executedBatchRows = batchRows;
+        executedParams = batchRows > 0 ? batchParams : paramCount > 0 ? Arrays.copyOf(params, paramCount) : NO_PARAMS;
+        rows = 0;
+        long start = System.nanoTime();
+        try {
+            Object result = forward(ps, method, args);
+            if (result instanceof Integer || result instanceof Long) {
+                rows = Math.max(0, ((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                rows = Arrays.stream((int[]) result).filter(n -> n > 0).asLongStream().sum();
+            } else if (result instanceof long[]) {
+                rows = Arrays.stream((long[]) result).filter(n -> n > 0).sum();
+            } else if (result instanceof ResultSet) {
+                result = Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new TracedResultSet((ResultSet) result));
+            }
+            return result;
+        } finally {
+            nanos = System.nanoTime() - start;
+            if (method.getName().contains("Batch")) {
+                batchRows = 0;
+                batchParams = null;
+            }
+        }
+    }
+
+    /**
+     * @modifies this
+     * @effects end the current execution, if any, and give it to SlowQueryLog if it took at least the threshold
+     */
+    private void finish() {
+        if (!executing) {
+            return;
+        }
+        executing = false;
+        SlowQueryLog log = SlowQueryLog.getInstance();
+        if (nanos >= log.getThresholdNanos()) {
+            log.record(sql, executedParams, executedBatchRows, rows, nanos);
+        }
+        executedParams = null;
+    }
+
+    private void bind(int index, Object value) {
+        if (index < 1) {
+            return;
+        }
+        if (index > params.length) {
+            params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+        }
+        params[index - 1] = value;
+        paramCount = Math.max(paramCount, index);
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @Overview Adds the time and the rows of the next() calls of a result set to the execution of its statement.
+     */
+    private final class TracedResultSet implements InvocationHandler {
+        private final ResultSet rs;
+
+        private TracedResultSet(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("next")) {
+                return forward(rs, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                Object hasRow = forward(rs, method, args);
+                if (Boolean.TRUE.equals(hasRow)) {
+                    rows++;
+                }
+                return hasRow;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package course_management_swing_ui.repositories.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Takes point-in-time snapshots of the database with DbBackup, on a background thread ("db-backup"), either
+ * on demand or every interval. The snapshots of a directory are named database-yyyyMMdd-HHmmss.sqlite3, and only the
+ * newest ones are kept.
+ * <pre>
+ *  Usage:
+ *      BackupScheduler.getInstance().start(Path.of("backups"), 30, 48);   // every 30 minutes, keep 48 snapshots
+ *      BackupScheduler.getInstance().backup(Path.of("copy.sqlite3"), DbBackup.Listener.NONE);   // once, now
+ * </pre>
+ */
+public final class BackupScheduler {
+    public static final String PREFIX = "database-";
+    public static final String SUFFIX = ".sqlite3";
+    public static final int DEFAULT_KEEP = 24;
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final BackupScheduler instance = new BackupScheduler();
+
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> scheduled;
+
+    private BackupScheduler() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-backup");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static BackupScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * @requires dir != null /\ intervalMinutes > 0 /\ keep > 0
+     * @modifies this, dir
+     * @effects replace the current schedule (if any) with: take a snapshot into dir every intervalMinutes minutes,
+     * the first one after intervalMinutes, and keep the newest keep snapshots of dir
+     */
+    public synchronized void start(Path dir, long intervalMinutes, int keep) {
+        stop();
+        scheduled = executor.scheduleWithFixedDelay(() -> {
+            try {
+                DbBackup.Result result = snapshot(dir, keep, DbBackup.Listener.NONE);
+                System.out.println("database snapshot: " + result);
+            } catch (Exception e) {
+                // a failed snapshot must not cancel the next ones
+                e.printStackTrace();
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        System.out.println("database snapshots into " + dir.toAbsolutePath() + " every " + intervalMinutes + " min");
+    }
+
+    /**
+     * @modifies this
+     * @effects cancel the current schedule, if any. A snapshot that is running is finished.
+     */
+    public synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /**
+     * @requires file != null /\ listener != null
+     * @effects run DbBackup.backup(file, listener) on the backup thread, after the snapshot that is running (if any),
+     * and return its future
+     */
+    public Future<DbBackup.Result> backup(Path file, DbBackup.Listener listener) {
+        return executor.submit(() -> DbBackup.backup(file, listener));
+    }
+
+    /**
+     * @requires dir != null /\ keep > 0 /\ listener != null
+     * @modifies dir
+     * @effects take a snapshot into dir now, on the calling thread, then delete the snapshots of dir but the newest keep
+     * ones, and return the Result
+     */
+    public DbBackup.Result snapshot(Path dir, int keep, DbBackup.Listener listener) throws SQLException, IOException {
+        Files.createDirectories(dir);
+        DbBackup.Result result = DbBackup.backup(dir.resolve(PREFIX + LocalDateTime.now().format(TIMESTAMP) + SUFFIX), listener);
+        prune(dir, keep);
+        return result;
+    }
+
+    /**
+     * @modifies this
+     * @effects stop the backup thread, after the snapshot that is running (if any) or at most timeoutMillis
+     */
+    public void shutdown(long timeoutMillis) {
+        stop();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @modifies dir
+     * @effects delete the snapshots of dir but the newest keep ones. The names sort in the order of their timestamps.
+     */
+    private static void prune(Path dir, int keep) throws IOException {
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(dir)) {
+            snapshots = files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+        for (int i = 0; i < snapshots.size() - keep; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+}
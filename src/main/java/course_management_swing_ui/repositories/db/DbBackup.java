@@ -0,0 +1,194 @@
+package course_management_swing_ui.repositories.db;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview Online backup of the database, while the application keeps reading and writing it. It uses the online
+ * backup API of SQLite (sqlite3_backup_step) on a connection of the read pool:
+ * <pre>
+ *     - a read transaction is opened first, so the copy is the snapshot of the database at that point in time. In WAL
+ *       mode a reader never blocks the writer, and the backup is not restarted by the commits made meanwhile
+ *     - the pages are copied PAGES_PER_STEP at a time, to &lt;dest&gt;.part
+ *     - the copy is verified: PRAGMA integrity_check, and the row count of every table is compared with the snapshot
+ *     - &lt;dest&gt;.part is renamed to dest, so dest is never a partial copy
+ * </pre>
+ * Only the SQLite dialect has this API: the backup of another dialect fails.
+ */
+public final class DbBackup {
+    public static final int PAGES_PER_STEP = 256;
+
+    // only if the source is busy, e.g. while the WAL is being recovered
+    private static final int BUSY_SLEEP_MILLIS = 10;
+    private static final int BUSY_RETRIES = 100;
+
+    private DbBackup() {
+    }
+
+    /**
+     * @Overview Follows a backup while it runs, on the thread of the backup.
+     */
+    public interface Listener {
+        Listener NONE = (copied, total) -> {
+        };
+
+        /**
+         * @effects called after every step, with the number of pages copied so far and the number of pages to copy
+         */
+        void onProgress(int copied, int total);
+    }
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview The result of a backup: the file, its size and the verified row count of every table.
+     */
+    public static final class Result {
+        private final Path file;
+        private final long bytes;
+        private final Map<String, Long> rowCounts;
+        private final long elapsedMillis;
+
+        Result(Path file, long bytes, Map<String, Long> rowCounts, long elapsedMillis) {
+            this.file = file;
+            this.bytes = bytes;
+            this.rowCounts = rowCounts;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @effects return the number of rows of every table in the backup, by the name of the table
+         */
+        public Map<String, Long> getRowCounts() {
+            return new LinkedHashMap<>(rowCounts);
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d KB, %s, verified in %d ms", file, bytes / 1024, rowCounts, elapsedMillis);
+        }
+    }
+
+    /**
+     * @requires dest != null /\ the directory of dest exists /\ listener != null
+     * @modifies dest
+     * @effects <pre>
+     *     copy the database to dest while it stays online, then verify the copy (see DbBackup)
+     *     return the Result
+     *     if the Dialect is not Dialect.SQLITE, or the backup fails or the copy is not valid
+     *       delete the partial copy, leave dest as it was
+     *       throw SQLException or IOException
+     * </pre>
+     */
+    public static Result backup(Path dest, Listener listener) throws SQLException, IOException {
+        if (DbConnect.getDialect() != Dialect.SQLITE) {
+            throw new SQLException("online backup is not supported by the " + DbConnect.getDialect() + " dialect");
+        }
+        long start = System.nanoTime();
+        Path part = dest.resolveSibling(dest.getFileName() + ".part");
+        Files.deleteIfExists(part);
+        boolean done = false;
+        try {
+            Map<String, Long> rowCounts;
+            try (Connection conn = DbConnect.getReadConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    // the first read opens the transaction whose snapshot is copied
+                    rowCounts = rowCounts(conn);
+                    int rc = conn.unwrap(SQLiteConnection.class).getDatabase().backup("main", part.toString(),
+                            (remaining, total) -> listener.onProgress(total - remaining, total),
+                            BUSY_SLEEP_MILLIS, BUSY_RETRIES, PAGES_PER_STEP);
+                    if (rc != SQLiteErrorCode.SQLITE_OK.code) {
+                        throw new SQLException("backup to " + part + " failed: " + SQLiteErrorCode.getErrorCode(rc), null, rc);
+                    }
+                } finally {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            }
+
+            verify(part, rowCounts);
+            try {
+                Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING);
+            }
+            done = true;
+            return new Result(dest, Files.size(dest), rowCounts, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            if (!done) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    /**
+     * @effects return the number of rows of every table of the database of conn, in the order of their names
+     */
+    private static Map<String, Long> rowCounts(Connection conn) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%' ORDER BY name")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try (Statement st = conn.createStatement()) {
+            for (String table : tables) {
+                try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM \"" + table + "\"")) {
+                    counts.put(table, rs.next() ? rs.getLong(1) : 0);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @effects throw SQLException if the database at file is not valid, or its row counts are not expected
+     */
+    private static void verify(Path file, Map<String, Long> expected) throws SQLException {
+        try (Connection copy = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            try (Statement st = copy.createStatement();
+                 ResultSet rs = st.executeQuery("PRAGMA integrity_check")) {
+                String result = rs.next() ? rs.getString(1) : null;
+                if (!"ok".equals(result)) {
+                    throw new SQLException("backup " + file + " is corrupt: " + result);
+                }
+            }
+            Map<String, Long> actual = rowCounts(copy);
+            if (!actual.equals(expected)) {
+                throw new SQLException("backup " + file + " has " + actual + " rows instead of " + expected);
+            }
+        }
+    }
+}
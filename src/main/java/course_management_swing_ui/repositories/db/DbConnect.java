@@ -1,43 +1,188 @@
 package course_management_swing_ui.repositories.db;
 
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.3
- * @Overview A class that provides connection to the database
+ * @version 1.8
+ * @Overview A class that provides connection to the database of the selected Dialect (SQLite by default). It owns two
+ * pools, both opened with the PRAGMAs of the selected PerformanceProfile when the dialect is SQLite:
+ * <pre>
+ *     read pool    read-only connections (SQLITE_OPEN_READONLY, query_only with SQLite), sized by the number of cores
+ *     write pool   a small pool of read-write connections, used by WriteQueue
+ * </pre>
+ * The dialect and the profile are selected once, before the first connection is requested.
  */
 public class DbConnect {
-    private static final String DB_URL = "jdbc:sqlite:database.sqlite3";
-    private static final String USERNAME = "root";
-    private static final String PASSWORD = "root";
-    private static final HikariDataSource dataSource;
+    /**
+     * name of the system property that selects the profile, e.g. -Dcoursemanprog.db.profile=bulk-load
+     */
+    public static final String PROFILE_PROPERTY = "coursemanprog.db.profile";
 
-    static {
-        // Create HikariCP configuration
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl(DB_URL);
-        config.setUsername(USERNAME);
-        config.setPassword(PASSWORD);
+    /**
+     * name of the system property that selects the dialect, e.g. -Dcoursemanprog.db.dialect=h2
+     */
+    public static final String DIALECT_PROPERTY = "coursemanprog.db.dialect";
 
-        // Initialize the connection pool
-        dataSource = new HikariDataSource(config);
+    private static PerformanceProfile profile = PerformanceProfile.BALANCED;
+    // read without lock by the DAOs, for every date they bind
+    private static volatile Dialect dialect = Dialect.SQLITE;
+    private static DataSource writeDataSource;
+    private static DataSource readDataSource;
 
-        // set max size of pool = 4
-        dataSource.setMaximumPoolSize(4);
+    static {
+        String name = System.getProperty(PROFILE_PROPERTY);
+        if (name != null) {
+            try {
+                profile = PerformanceProfile.of(name);
+            } catch (InvalidArgumentException e) {
+                System.err.println(e.getMessage() + ", fall back to: " + profile);
+            }
+        }
+        name = System.getProperty(DIALECT_PROPERTY);
+        if (name != null) {
+            try {
+                dialect = Dialect.of(name);
+            } catch (InvalidArgumentException e) {
+                System.err.println(e.getMessage() + ", fall back to: " + dialect);
+            }
+        }
     }
 
     private DbConnect() {
     }
 
     /**
-     * Return a new connection to the database from the connection pool.
+     * @requires the connection pools have not been created yet, i.e. no connection has been requested
+     * @modifies DbConnect.profile
+     * @effects <pre>
+     *     if the pools have not been created
+     *       select p as the profile of every connection in both pools
+     *     else
+     *       throw IllegalStateException
+     * </pre>
+     */
+    public static synchronized void setProfile(PerformanceProfile p) {
+        if (writeDataSource != null) {
+            throw new IllegalStateException("The connection pools have already been created with profile: " + profile);
+        }
+        profile = p;
+    }
+
+    /**
+     * @effects return the selected profile
+     */
+    public static synchronized PerformanceProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @requires the connection pools have not been created yet, i.e. no connection has been requested
+     * @modifies DbConnect.dialect
+     * @effects <pre>
+     *     if the pools have not been created
+     *       select d as the dialect of both pools
+     *     else
+     *       throw IllegalStateException
+     * </pre>
+     */
+    public static synchronized void setDialect(Dialect d) {
+        if (writeDataSource != null) {
+            throw new IllegalStateException("The connection pools have already been created with dialect: " + dialect);
+        }
+        dialect = d;
+    }
+
+    /**
+     * @effects return the selected dialect
+     */
+    public static Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * @modifies DbConnect.writeDataSource, the database schema
+     * @effects <pre>
+     *     create the read-write pool and migrate the schema on the first call, then return the pool
+     *     if the schema cannot be migrated
+     *       close the pool and throw SQLException: the next call tries again
+     * </pre>
+     */
+    private static synchronized DataSource getWriteDataSource() throws SQLException {
+        if (writeDataSource == null) {
+            DataSource dataSource = dialect.createDataSource(profile, false);
+            System.out.println("database dialect: " + dialect + ", profile: " + profile);
+
+            // nothing can read or write before the schema is up to date
+            if (dialect.hasSql()) {
+                try {
+                    SchemaMigrator.migrate(dataSource, dialect.getMigrations());
+                } catch (SQLException e) {
+                    close(dataSource);
+                    throw e;
+                }
+            }
+            writeDataSource = dataSource;
+        }
+        return writeDataSource;
+    }
+
+    /**
+     * @modifies DbConnect.writeDataSource, DbConnect.readDataSource, the database schema
+     * @effects create the pools and migrate the schema, if not done yet; throw SQLException if the database cannot be
+     * opened or migrated, in which case the application must not go on
+     */
+    public static void open() throws SQLException {
+        getReadDataSource();
+    }
+
+    /**
+     * @modifies DbConnect.readDataSource
+     * @effects create the read-only pool on the first call, then return it
+     */
+    private static synchronized DataSource getReadDataSource() throws SQLException {
+        if (readDataSource == null) {
+            // the writer opens the database first, so that it is already in WAL mode (and migrated) when the readers
+            // open it
+            getWriteDataSource();
+            readDataSource = dialect.createDataSource(profile, true);
+        }
+        return readDataSource;
+    }
+
+    /**
+     * Return a new read-only connection to the database from the read pool. Any write attempt on it fails, except with
+     * H2, for which read-only is a hint only.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getReadDataSource().getConnection();
+    }
+
+    /**
+     * Return a new read-write connection to the database from the write pool. Prefer WriteQueue for writing.
+     */
+    public static Connection getWriteConnection() throws SQLException {
+        return getWriteDataSource().getConnection();
+    }
+
+    /**
+     * Return a new read-write connection to the database from the write pool.
      */
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        return getWriteConnection();
+    }
+
+    private static void close(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
     }
 }
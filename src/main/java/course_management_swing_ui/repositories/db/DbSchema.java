@@ -1,9 +1,15 @@
 package course_management_swing_ui.repositories.db;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
 /**
  * @author Phan Quang Tuan
- * @version 1.0
- * @Overview a class that provides details about the database's tables and each column within every table
+ * @version 1.7
+ * @Overview a class that provides details about the database's tables and each column within every table, and the
+ * migrations that create and evolve them (applied by SchemaMigrator): MIGRATIONS for SQLite, H2_MIGRATIONS for H2 (see
+ * Dialect)
  */
 public class DbSchema {
     public static final class StudentTable {
@@ -15,6 +21,7 @@ public class DbSchema {
             public static final String DOB = "dob";
             public static final String ADDRESS = "address";
             public static final String EMAIL = "email";
+            public static final String VERSION = "version";
         }
     }
 
@@ -28,6 +35,7 @@ public class DbSchema {
             public static final String CREDITS = "credits";
             public static final String MODULE_TYPE = "module_type";
             public static final String DEPARTMENT = "department";
+            public static final String VERSION = "version";
         }
     }
 
@@ -40,6 +48,305 @@ public class DbSchema {
             public static final String MODULE_CODE = "module_code";
             public static final String INTERNAL_MARK = "internal_mark";
             public static final String EXAMINATION_MARK = "examination_mark";
+            public static final String VERSION = "version";
+        }
+    }
+
+    public static final class SchemaVersionTable {
+        public static final String NAME = "schema_version";
+
+        public static final class Cols {
+            public static final String VERSION = "version";
+            public static final String DESCRIPTION = "description";
+            public static final String APPLIED_AT = "applied_at";
+        }
+    }
+
+    public static final class DataStampTable {
+        public static final String NAME = "data_stamp";
+
+        public static final class Cols {
+            public static final String ID = "id";
+            public static final String VERSION = "version";
         }
     }
+
+    public static final class ChangeLogTable {
+        public static final String NAME = "change_log";
+
+        public static final class Cols {
+            public static final String SEQ = "seq";
+            public static final String TABLE_NAME = "table_name";
+            public static final String ROW_KEY = "row_key";
+            public static final String OP = "op";
+        }
+    }
+
+    /**
+     * The enrollments removed by migration 2 because their student or their module no longer exists, with the columns
+     * of EnrollmentTable at that version. Kept so that they can be reviewed, and enrolled again if need be.
+     */
+    public static final class OrphanEnrollmentTable {
+        public static final String NAME = "orphan_enrollment";
+    }
+
+    /**
+     * The enrollments removed by migration 3 because an enrollment of the same student in the same module (the one with
+     * the lowest id) was kept, with the columns of EnrollmentTable at that version.
+     */
+    public static final class DuplicateEnrollmentTable {
+        public static final String NAME = "duplicate_enrollment";
+    }
+
+    /**
+     * The columns that hold personal data, which must not be written to the logs (see SlowQueryLog). Columns are named
+     * without their table, so a column of another table with the same name is treated as personal too.
+     */
+    public static final Set<String> PERSONAL_COLUMNS = Set.of(StudentTable.Cols.NAME, StudentTable.Cols.DOB,
+            StudentTable.Cols.ADDRESS, StudentTable.Cols.EMAIL);
+
+    public static final String ENROLLMENT_MODULE_INDEX = "idx_enrollment_module_code";
+    public static final String ENROLLMENT_STUDENT_MODULE_INDEX = "idx_enrollment_student_module";
+
+    // the enrollments whose student or module does not exist
+    private static final String ORPHAN_ENROLLMENT = EnrollmentTable.Cols.STUDENT_ID + " NOT IN (SELECT " + StudentTable.Cols.ID + " FROM " + StudentTable.NAME + ")"
+            + " OR " + EnrollmentTable.Cols.MODULE_CODE + " NOT IN (SELECT " + ModuleTable.Cols.CODE + " FROM " + ModuleTable.NAME + ")";
+
+    // the enrollments of a student in a module but the one with the lowest id
+    private static final String DUPLICATE_ENROLLMENT = EnrollmentTable.Cols.ID + " NOT IN (SELECT MIN(" + EnrollmentTable.Cols.ID + ") FROM " + EnrollmentTable.NAME
+            + " GROUP BY " + EnrollmentTable.Cols.STUDENT_ID + ", " + EnrollmentTable.Cols.MODULE_CODE + ")";
+
+    /**
+     * The migrations of the schema, in ascending order of version. A migration that has been released must never be
+     * changed: add a new one instead.
+     */
+    public static final List<Migration> MIGRATIONS = List.of(
+            // the schema of the shipped database.sqlite3, so that a new database file gets the same tables
+            new Migration(1, "create the tables",
+                    "CREATE TABLE IF NOT EXISTS " + StudentTable.NAME + " ("
+                            + StudentTable.Cols.ID + " INTEGER NOT NULL UNIQUE, "
+                            + StudentTable.Cols.NAME + " TEXT NOT NULL, "
+                            + StudentTable.Cols.DOB + " TEXT NOT NULL, "
+                            + StudentTable.Cols.ADDRESS + " TEXT NOT NULL, "
+                            + StudentTable.Cols.EMAIL + " TEXT NOT NULL, "
+                            + "PRIMARY KEY(" + StudentTable.Cols.ID + " AUTOINCREMENT))",
+                    "CREATE TABLE IF NOT EXISTS " + ModuleTable.NAME + " ("
+                            + ModuleTable.Cols.CODE + " TEXT NOT NULL UNIQUE, "
+                            + ModuleTable.Cols.NAME + " TEXT NOT NULL, "
+                            + ModuleTable.Cols.SEMESTER + " INTEGER NOT NULL, "
+                            + ModuleTable.Cols.CREDITS + " INTEGER NOT NULL, "
+                            + ModuleTable.Cols.MODULE_TYPE + " TEXT NOT NULL, "
+                            + ModuleTable.Cols.DEPARTMENT + " TEXT, "
+                            + "PRIMARY KEY(" + ModuleTable.Cols.CODE + "))",
+                    "CREATE TABLE IF NOT EXISTS " + EnrollmentTable.NAME + " ("
+                            + EnrollmentTable.Cols.ID + " INTEGER NOT NULL UNIQUE, "
+                            + EnrollmentTable.Cols.STUDENT_ID + " INTEGER NOT NULL, "
+                            + EnrollmentTable.Cols.MODULE_CODE + " TEXT NOT NULL, "
+                            + EnrollmentTable.Cols.INTERNAL_MARK + " REAL NOT NULL, "
+                            + EnrollmentTable.Cols.EXAMINATION_MARK + " REAL NOT NULL, "
+                            + "FOREIGN KEY(" + EnrollmentTable.Cols.MODULE_CODE + ") REFERENCES " + ModuleTable.NAME + "(" + ModuleTable.Cols.CODE + "), "
+                            + "FOREIGN KEY(" + EnrollmentTable.Cols.STUDENT_ID + ") REFERENCES " + StudentTable.NAME + "(" + StudentTable.Cols.ID + "), "
+                            + "PRIMARY KEY(" + EnrollmentTable.Cols.ID + " AUTOINCREMENT))"),
+
+            // the foreign keys are declared since version 1 but were never enforced (PRAGMA foreign_keys is now on for
+            // every connection): the enrollments left behind by deleted students and modules would violate them. They
+            // are removed from the enrollments, hence from the application, but copied to OrphanEnrollmentTable first
+            new Migration(2, "move the enrollments that violate the foreign keys to " + OrphanEnrollmentTable.NAME,
+                    createRemovedEnrollmentTable(OrphanEnrollmentTable.NAME, "TEXT", "REAL"),
+                    "INSERT INTO " + OrphanEnrollmentTable.NAME + " SELECT * FROM " + EnrollmentTable.NAME + " WHERE " + ORPHAN_ENROLLMENT,
+                    "DELETE FROM " + EnrollmentTable.NAME + " WHERE " + ORPHAN_ENROLLMENT),
+
+            // a student enrolls in a module at most once. The unique index starts with student_id, hence it also serves
+            // the lookups by student; module_code needs its own index. The index cannot be created while a student is
+            // enrolled twice in a module: the enrollment with the lowest id is kept, the others are moved to
+            // DuplicateEnrollmentTable
+            new Migration(3, "index the enrollments by student and by module, moving the duplicates to " + DuplicateEnrollmentTable.NAME,
+                    createRemovedEnrollmentTable(DuplicateEnrollmentTable.NAME, "TEXT", "REAL"),
+                    "INSERT INTO " + DuplicateEnrollmentTable.NAME + " SELECT * FROM " + EnrollmentTable.NAME + " WHERE " + DUPLICATE_ENROLLMENT,
+                    "DELETE FROM " + EnrollmentTable.NAME + " WHERE " + DUPLICATE_ENROLLMENT,
+                    "CREATE UNIQUE INDEX IF NOT EXISTS " + ENROLLMENT_STUDENT_MODULE_INDEX + " ON " + EnrollmentTable.NAME
+                            + " (" + EnrollmentTable.Cols.STUDENT_ID + ", " + EnrollmentTable.Cols.MODULE_CODE + ")",
+                    "CREATE INDEX IF NOT EXISTS " + ENROLLMENT_MODULE_INDEX + " ON " + EnrollmentTable.NAME
+                            + " (" + EnrollmentTable.Cols.MODULE_CODE + ")"),
+
+            // the data stamp identifies the contents of the data tables across connections and launches, which
+            // PRAGMA data_version cannot do (it is local to a connection): a copy of the data that was taken at the same
+            // stamp is still up to date (see DbContextSnapshot)
+            new Migration(4, "stamp every change of the data",
+                    "CREATE TABLE IF NOT EXISTS " + DataStampTable.NAME + " ("
+                            + DataStampTable.Cols.ID + " INTEGER NOT NULL PRIMARY KEY CHECK (" + DataStampTable.Cols.ID + " = 1), "
+                            + DataStampTable.Cols.VERSION + " INTEGER NOT NULL)",
+                    "INSERT OR IGNORE INTO " + DataStampTable.NAME + " VALUES (1, 0)",
+                    stampTrigger(StudentTable.NAME, "INSERT"),
+                    stampTrigger(StudentTable.NAME, "UPDATE"),
+                    stampTrigger(StudentTable.NAME, "DELETE"),
+                    stampTrigger(ModuleTable.NAME, "INSERT"),
+                    stampTrigger(ModuleTable.NAME, "UPDATE"),
+                    stampTrigger(ModuleTable.NAME, "DELETE"),
+                    stampTrigger(EnrollmentTable.NAME, "INSERT"),
+                    stampTrigger(EnrollmentTable.NAME, "UPDATE"),
+                    stampTrigger(EnrollmentTable.NAME, "DELETE")),
+
+            // every update of a row increments its version, and is made only if the row still has the version that was
+            // read (optimistic concurrency): two instances on the same database no longer overwrite each other's changes
+            new Migration(5, "version every row",
+                    "ALTER TABLE " + StudentTable.NAME + " ADD COLUMN " + StudentTable.Cols.VERSION + " INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE " + ModuleTable.NAME + " ADD COLUMN " + ModuleTable.Cols.VERSION + " INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE " + EnrollmentTable.NAME + " ADD COLUMN " + EnrollmentTable.Cols.VERSION + " INTEGER NOT NULL DEFAULT 0"),
+
+            // every row that is inserted, updated or deleted is logged with an ever increasing sequence number, so that
+            // DbContext can be brought up to date with the rows changed since the last sequence number it has seen
+            // (see ChangeSync) instead of being read again. AUTOINCREMENT never reuses a sequence number
+            new Migration(6, "log every change of a row",
+                    "CREATE TABLE IF NOT EXISTS " + ChangeLogTable.NAME + " ("
+                            + ChangeLogTable.Cols.SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + ChangeLogTable.Cols.TABLE_NAME + " TEXT NOT NULL, "
+                            + ChangeLogTable.Cols.ROW_KEY + " TEXT NOT NULL, "
+                            + ChangeLogTable.Cols.OP + " TEXT NOT NULL)",
+                    changeTrigger(StudentTable.NAME, StudentTable.Cols.ID, "INSERT"),
+                    changeTrigger(StudentTable.NAME, StudentTable.Cols.ID, "UPDATE"),
+                    changeTrigger(StudentTable.NAME, StudentTable.Cols.ID, "DELETE"),
+                    changeTrigger(ModuleTable.NAME, ModuleTable.Cols.CODE, "INSERT"),
+                    changeTrigger(ModuleTable.NAME, ModuleTable.Cols.CODE, "UPDATE"),
+                    changeTrigger(ModuleTable.NAME, ModuleTable.Cols.CODE, "DELETE"),
+                    changeTrigger(EnrollmentTable.NAME, EnrollmentTable.Cols.ID, "INSERT"),
+                    changeTrigger(EnrollmentTable.NAME, EnrollmentTable.Cols.ID, "UPDATE"),
+                    changeTrigger(EnrollmentTable.NAME, EnrollmentTable.Cols.ID, "DELETE"))
+    );
+
+    /**
+     * The migrations of MIGRATIONS in the types and the syntax of H2, version by version: a new migration is added to
+     * both lists. Dates are DATE, and the data stamp is incremented by H2DataStampTrigger.
+     */
+    public static final List<Migration> H2_MIGRATIONS = List.of(
+            new Migration(1, "create the tables",
+                    "CREATE TABLE IF NOT EXISTS " + StudentTable.NAME + " ("
+                            + StudentTable.Cols.ID + " INTEGER NOT NULL PRIMARY KEY, "
+                            + StudentTable.Cols.NAME + " VARCHAR NOT NULL, "
+                            + StudentTable.Cols.DOB + " DATE NOT NULL, "
+                            + StudentTable.Cols.ADDRESS + " VARCHAR NOT NULL, "
+                            + StudentTable.Cols.EMAIL + " VARCHAR NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS " + ModuleTable.NAME + " ("
+                            + ModuleTable.Cols.CODE + " VARCHAR NOT NULL PRIMARY KEY, "
+                            + ModuleTable.Cols.NAME + " VARCHAR NOT NULL, "
+                            + ModuleTable.Cols.SEMESTER + " INTEGER NOT NULL, "
+                            + ModuleTable.Cols.CREDITS + " INTEGER NOT NULL, "
+                            + ModuleTable.Cols.MODULE_TYPE + " VARCHAR NOT NULL, "
+                            + ModuleTable.Cols.DEPARTMENT + " VARCHAR)",
+                    "CREATE TABLE IF NOT EXISTS " + EnrollmentTable.NAME + " ("
+                            + EnrollmentTable.Cols.ID + " INTEGER NOT NULL PRIMARY KEY, "
+                            + EnrollmentTable.Cols.STUDENT_ID + " INTEGER NOT NULL, "
+                            + EnrollmentTable.Cols.MODULE_CODE + " VARCHAR NOT NULL, "
+                            + EnrollmentTable.Cols.INTERNAL_MARK + " DOUBLE PRECISION NOT NULL, "
+                            + EnrollmentTable.Cols.EXAMINATION_MARK + " DOUBLE PRECISION NOT NULL, "
+                            + "FOREIGN KEY(" + EnrollmentTable.Cols.MODULE_CODE + ") REFERENCES " + ModuleTable.NAME + "(" + ModuleTable.Cols.CODE + "), "
+                            + "FOREIGN KEY(" + EnrollmentTable.Cols.STUDENT_ID + ") REFERENCES " + StudentTable.NAME + "(" + StudentTable.Cols.ID + "))"),
+
+            // nothing to move in a new H2 database, kept so that both dialects have the same versions and tables
+            new Migration(2, "move the enrollments that violate the foreign keys to " + OrphanEnrollmentTable.NAME,
+                    createRemovedEnrollmentTable(OrphanEnrollmentTable.NAME, "VARCHAR", "DOUBLE PRECISION"),
+                    "INSERT INTO " + OrphanEnrollmentTable.NAME + " SELECT * FROM " + EnrollmentTable.NAME + " WHERE " + ORPHAN_ENROLLMENT,
+                    "DELETE FROM " + EnrollmentTable.NAME + " WHERE " + ORPHAN_ENROLLMENT),
+
+            new Migration(3, "index the enrollments by student and by module, moving the duplicates to " + DuplicateEnrollmentTable.NAME,
+                    createRemovedEnrollmentTable(DuplicateEnrollmentTable.NAME, "VARCHAR", "DOUBLE PRECISION"),
+                    "INSERT INTO " + DuplicateEnrollmentTable.NAME + " SELECT * FROM " + EnrollmentTable.NAME + " WHERE " + DUPLICATE_ENROLLMENT,
+                    "DELETE FROM " + EnrollmentTable.NAME + " WHERE " + DUPLICATE_ENROLLMENT,
+                    "CREATE UNIQUE INDEX IF NOT EXISTS " + ENROLLMENT_STUDENT_MODULE_INDEX + " ON " + EnrollmentTable.NAME
+                            + " (" + EnrollmentTable.Cols.STUDENT_ID + ", " + EnrollmentTable.Cols.MODULE_CODE + ")",
+                    "CREATE INDEX IF NOT EXISTS " + ENROLLMENT_MODULE_INDEX + " ON " + EnrollmentTable.NAME
+                            + " (" + EnrollmentTable.Cols.MODULE_CODE + ")"),
+
+            new Migration(4, "stamp every change of the data",
+                    "CREATE TABLE IF NOT EXISTS " + DataStampTable.NAME + " ("
+                            + DataStampTable.Cols.ID + " INTEGER NOT NULL PRIMARY KEY CHECK (" + DataStampTable.Cols.ID + " = 1), "
+                            + DataStampTable.Cols.VERSION + " BIGINT NOT NULL)",
+                    "MERGE INTO " + DataStampTable.NAME + " KEY (" + DataStampTable.Cols.ID + ") VALUES (1, 0)",
+                    h2StampTrigger(StudentTable.NAME, "INSERT"),
+                    h2StampTrigger(StudentTable.NAME, "UPDATE"),
+                    h2StampTrigger(StudentTable.NAME, "DELETE"),
+                    h2StampTrigger(ModuleTable.NAME, "INSERT"),
+                    h2StampTrigger(ModuleTable.NAME, "UPDATE"),
+                    h2StampTrigger(ModuleTable.NAME, "DELETE"),
+                    h2StampTrigger(EnrollmentTable.NAME, "INSERT"),
+                    h2StampTrigger(EnrollmentTable.NAME, "UPDATE"),
+                    h2StampTrigger(EnrollmentTable.NAME, "DELETE")),
+
+            new Migration(5, "version every row",
+                    "ALTER TABLE " + StudentTable.NAME + " ADD COLUMN IF NOT EXISTS " + StudentTable.Cols.VERSION + " INTEGER DEFAULT 0 NOT NULL",
+                    "ALTER TABLE " + ModuleTable.NAME + " ADD COLUMN IF NOT EXISTS " + ModuleTable.Cols.VERSION + " INTEGER DEFAULT 0 NOT NULL",
+                    "ALTER TABLE " + EnrollmentTable.NAME + " ADD COLUMN IF NOT EXISTS " + EnrollmentTable.Cols.VERSION + " INTEGER DEFAULT 0 NOT NULL"),
+
+            // the rows are logged by H2ChangeLogTrigger, a row trigger; an identity column never reuses a value either
+            new Migration(6, "log every change of a row",
+                    "CREATE TABLE IF NOT EXISTS " + ChangeLogTable.NAME + " ("
+                            + ChangeLogTable.Cols.SEQ + " BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                            + ChangeLogTable.Cols.TABLE_NAME + " VARCHAR NOT NULL, "
+                            + ChangeLogTable.Cols.ROW_KEY + " VARCHAR NOT NULL, "
+                            + ChangeLogTable.Cols.OP + " VARCHAR NOT NULL)",
+                    h2ChangeTrigger(StudentTable.NAME, "INSERT"),
+                    h2ChangeTrigger(StudentTable.NAME, "UPDATE"),
+                    h2ChangeTrigger(StudentTable.NAME, "DELETE"),
+                    h2ChangeTrigger(ModuleTable.NAME, "INSERT"),
+                    h2ChangeTrigger(ModuleTable.NAME, "UPDATE"),
+                    h2ChangeTrigger(ModuleTable.NAME, "DELETE"),
+                    h2ChangeTrigger(EnrollmentTable.NAME, "INSERT"),
+                    h2ChangeTrigger(EnrollmentTable.NAME, "UPDATE"),
+                    h2ChangeTrigger(EnrollmentTable.NAME, "DELETE"))
+    );
+
+    public static final String READ_DATA_STAMP_STMT = "SELECT " + DataStampTable.Cols.VERSION + " FROM " + DataStampTable.NAME
+            + " WHERE " + DataStampTable.Cols.ID + " = 1";
+
+    /**
+     * @effects return the statement that creates table, with the columns of EnrollmentTable of version 1 (but the keys),
+     * in the given types of text and of real numbers
+     */
+    private static String createRemovedEnrollmentTable(String table, String text, String real) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " ("
+                + EnrollmentTable.Cols.ID + " INTEGER NOT NULL, "
+                + EnrollmentTable.Cols.STUDENT_ID + " INTEGER NOT NULL, "
+                + EnrollmentTable.Cols.MODULE_CODE + " " + text + " NOT NULL, "
+                + EnrollmentTable.Cols.INTERNAL_MARK + " " + real + " NOT NULL, "
+                + EnrollmentTable.Cols.EXAMINATION_MARK + " " + real + " NOT NULL)";
+    }
+
+    /**
+     * @effects return the statement that creates the trigger which increments the data stamp after every event (INSERT,
+     * UPDATE or DELETE) of a row of table
+     */
+    private static String stampTrigger(String table, String event) {
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_" + event.toLowerCase(Locale.ROOT) + "_stamp AFTER " + event + " ON " + table
+                + " BEGIN UPDATE " + DataStampTable.NAME + " SET " + DataStampTable.Cols.VERSION + " = " + DataStampTable.Cols.VERSION + " + 1"
+                + " WHERE " + DataStampTable.Cols.ID + " = 1; END";
+    }
+
+    /**
+     * @effects return the statement that creates the H2 trigger which increments the data stamp after every statement
+     * of event (INSERT, UPDATE or DELETE) on table
+     */
+    private static String h2StampTrigger(String table, String event) {
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_" + event.toLowerCase(Locale.ROOT) + "_stamp AFTER " + event + " ON " + table
+                + " CALL '" + H2DataStampTrigger.class.getName() + "'";
+    }
+
+    /**
+     * @effects return the statement that creates the trigger which logs the key of every row of table after event
+     * (INSERT, UPDATE or DELETE) in ChangeLogTable, with the first letter of event as its op
+     */
+    private static String changeTrigger(String table, String key, String event) {
+        String row = event.equals("DELETE") ? "OLD" : "NEW";
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_" + event.toLowerCase(Locale.ROOT) + "_log AFTER " + event + " ON " + table
+                + " BEGIN INSERT INTO " + ChangeLogTable.NAME + " (" + ChangeLogTable.Cols.TABLE_NAME + ", " + ChangeLogTable.Cols.ROW_KEY + ", " + ChangeLogTable.Cols.OP + ")"
+                + " VALUES ('" + table + "', " + row + "." + key + ", '" + event.charAt(0) + "'); END";
+    }
+
+    /**
+     * @effects return the statement that creates the H2 row trigger which logs every row of table after event (INSERT,
+     * UPDATE or DELETE) in ChangeLogTable
+     */
+    private static String h2ChangeTrigger(String table, String event) {
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_" + event.toLowerCase(Locale.ROOT) + "_log AFTER " + event + " ON " + table
+                + " FOR EACH ROW CALL '" + H2ChangeLogTrigger.class.getName() + "'";
+    }
 }
@@ -0,0 +1,132 @@
+package course_management_swing_ui.repositories.db;
+
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview The storage engine behind DbConnect, and everything about it that is not the same for every engine: how
+ * its connections are opened, the migrations of its schema, the SQL of the statements that are not standard and the
+ * storage of dates. The DAOs only depend on this interface, so the same DAO contracts run on every dialect.
+ * <pre>
+ *   dialect    storage                                   DAOs
+ *   sqlite     database.sqlite3 (the default)            StudentDAOImpl, ModuleDAOImpl, EnrollmentDAOImpl
+ *   h2         database.mv.db, embedded H2               idem
+ *   h2-mem     an H2 database in memory                  idem
+ *   memory     concurrent maps, no SQL at all            the DAOs of MemoryStore
+ * </pre>
+ * The dialect is selected once, before the first connection is opened (see DbConnect.setDialect). The in-memory
+ * dialects start empty at every launch and disappear with the JVM: they are meant for benchmarks and large tests that
+ * must not touch the disk.
+ */
+public interface Dialect {
+    Dialect SQLITE = new SqliteDialect();
+    Dialect H2 = new H2Dialect("h2", "jdbc:h2:./database", true);
+    Dialect H2_MEMORY = new H2Dialect("h2-mem", "jdbc:h2:mem:coursemanprog;DB_CLOSE_DELAY=-1", false);
+    Dialect MEMORY = new MemoryDialect();
+
+    List<Dialect> DIALECTS = List.of(SQLITE, H2, H2_MEMORY, MEMORY);
+
+    /**
+     * @effects return the name used to select this dialect at startup
+     */
+    String getName();
+
+    /**
+     * @effects return true if the data outlives the JVM, i.e. if it can be backed up and snapshotted
+     */
+    boolean isPersistent();
+
+    /**
+     * @effects return true if the connections of this dialect execute SQL, false if the DAOs of MemoryStore must be
+     * used instead of the SQL ones
+     */
+    boolean hasSql();
+
+    /**
+     * @requires profile != null
+     * @effects return a new pool of connections to the database of this dialect, read-only if readOnly. The PRAGMAs of
+     * profile only apply to SQLite.
+     */
+    DataSource createDataSource(PerformanceProfile profile, boolean readOnly);
+
+    /**
+     * @effects return the migrations of the schema in this dialect, in ascending order of version. Every dialect has
+     * the same versions, so SchemaMigrator reports the same schema version on all of them.
+     */
+    List<Migration> getMigrations();
+
+    /**
+     * @requires columns.length >= 2 /\ columns[0] is the primary key of table /\ version is the version column of table
+     * /\ values is "(?, ...), (?, ...), ..." with one ? per column
+     * @effects return the statement that inserts the rows of values into table (with the default version), or updates
+     * the columns of the row that has their key already and increments its version, whatever it is
+     */
+    String upsertStatement(String table, String[] columns, String version, String values);
+
+    /**
+     * @requires columns.length >= 2 /\ columns[0] is the primary key of table /\ version is the version column of table
+     * /\ values is "(?, ...), (?, ...), ..." with one ? per column followed by one for the version
+     * @effects return the statement that updates the columns of the rows of table whose key and version are in values,
+     * with the values of values, and increments their version. The keys that are not in table, or whose row has
+     * another version, are ignored.
+     */
+    String updateStatement(String table, String[] columns, String version, String values);
+
+    /**
+     * @requires ps != null /\ date != null
+     * @effects bind date to the parameter index of ps, as this dialect stores dates
+     */
+    default void setDate(PreparedStatement ps, int index, LocalDate date) throws SQLException {
+        ps.setObject(index, date);
+    }
+
+    /**
+     * @requires rs is on a row /\ the column index of rs is a date stored by setDate
+     * @effects return the date of the column index of rs
+     */
+    default LocalDate getDate(ResultSet rs, int index) throws SQLException {
+        return rs.getObject(index, LocalDate.class);
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ params are the parameters of sql
+     * @effects return the lines of the query plan of sql bound to params, as this dialect explains it
+     */
+    List<String> explain(Connection conn, String sql, Object[] params) throws SQLException;
+
+    /**
+     * @requires conn != null /\ conn is not closed /\ conn is not in a transaction
+     * @effects return a counter of conn that changes whenever another connection commits a change to the database, or
+     * -1 if this dialect has none (ChangeWatcher reads the change log then)
+     */
+    default long dataVersion(Connection conn) throws SQLException {
+        return -1;
+    }
+
+    /**
+     * @requires name != null
+     * @effects <pre>
+     *     if there is a dialect whose name equals name (ignoring case)
+     *       return it
+     *     else
+     *       throw InvalidArgumentException
+     * </pre>
+     */
+    static Dialect of(String name) throws InvalidArgumentException {
+        for (Dialect d : DIALECTS) {
+            if (d.getName().equalsIgnoreCase(name.trim())) {
+                return d;
+            }
+        }
+        throw new InvalidArgumentException("Unknown database dialect: \"" + name + "\"");
+    }
+}
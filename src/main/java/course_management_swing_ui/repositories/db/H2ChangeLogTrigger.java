@@ -0,0 +1,43 @@
+package course_management_swing_ui.repositories.db;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The H2 counterpart of the SQLite triggers of DbSchema.ChangeLogTable: a row trigger that logs the key of
+ * every row inserted, updated or deleted in a data table (see DbSchema.H2_MIGRATIONS). The key is the first column of
+ * every data table (id, code, id).
+ */
+public class H2ChangeLogTrigger implements Trigger {
+    public static final String INSERT_STMT = "INSERT INTO " + DbSchema.ChangeLogTable.NAME + " ("
+            + DbSchema.ChangeLogTable.Cols.TABLE_NAME + ", "
+            + DbSchema.ChangeLogTable.Cols.ROW_KEY + ", "
+            + DbSchema.ChangeLogTable.Cols.OP
+            + ") VALUES (?, ?, ?)";
+
+    private String table;
+    private String op;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) {
+        this.table = tableName.toLowerCase(Locale.ROOT);
+        this.op = type == INSERT ? "I" : type == UPDATE ? "U" : "D";
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        Object[] row = newRow != null ? newRow : oldRow;
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_STMT)) {
+            ps.setString(1, table);
+            ps.setString(2, String.valueOf(row[0]));
+            ps.setString(3, op);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package course_management_swing_ui.repositories.db;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The H2 counterpart of the SQLite triggers of DbSchema.DataStampTable: it increments the data stamp after
+ * every statement that inserts, updates or deletes rows of a data table (see DbSchema.H2_MIGRATIONS). It is a statement
+ * trigger, so a multi-row statement increments the stamp once, which is all DbContextSnapshot needs: the stamp changes
+ * with every change of the data.
+ * <p>
+ * H2 cannot commit inside a trigger, hence the statement must run in a transaction (autocommit off), as every write of
+ * WriteQueue and SchemaMigrator does. A statement in autocommit mode is refused instead of leaving the stamp behind.
+ */
+public class H2DataStampTrigger implements Trigger {
+    public static final String INCREMENT_STMT = "UPDATE " + DbSchema.DataStampTable.NAME + " SET "
+            + DbSchema.DataStampTable.Cols.VERSION + " = " + DbSchema.DataStampTable.Cols.VERSION + " + 1"
+            + " WHERE " + DbSchema.DataStampTable.Cols.ID + " = 1";
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (conn.getAutoCommit()) {
+            throw new SQLException("h2: the data tables can only be written in a transaction (autocommit off), e.g. through WriteQueue");
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INCREMENT_STMT)) {
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package course_management_swing_ui.repositories.db;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview The dialects of embedded H2, on a file or in memory. Dates are stored as DATE and bound as LocalDate.
+ * <pre>
+ *     upsert:  MERGE INTO t USING (VALUES (?, ?, ?), ...) AS v (column1, column2, column3) ON t.k = v.column1
+ *              WHEN MATCHED THEN UPDATE SET a = v.column2, b = v.column3, version = t.version + 1
+ *              WHEN NOT MATCHED THEN INSERT (k, a, b) VALUES (v.column1, v.column2, v.column3)
+ *     update:  MERGE INTO t USING (VALUES (?, ?, ?, ?), ...) AS v (column1, column2, column3, column4)
+ *              ON t.k = v.column1 AND t.version = v.column4
+ *              WHEN MATCHED THEN UPDATE SET a = v.column2, b = v.column3, version = t.version + 1
+ *     plan:    EXPLAIN, one line per line of the plan
+ * </pre>
+ * H2 has no PRAGMAs: the PerformanceProfile is ignored. Its readers never block its writer (MVStore), and the read
+ * pool reads in REPEATABLE READ, so that a read transaction sees one state of the database, like a SQLite read
+ * transaction does (see DbContextSnapshot).
+ * <p>
+ * The data stamp is incremented by H2DataStampTrigger, which requires every write to run in a transaction: WriteQueue
+ * and SchemaMigrator always do.
+ */
+final class H2Dialect extends JdbcDialect {
+    private final boolean persistent;
+
+    /**
+     * @requires name != null /\ url is the JDBC URL of an H2 database
+     */
+    H2Dialect(String name, String url, boolean persistent) {
+        super(name, url);
+        this.persistent = persistent;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    @Override
+    void configureWritePool(HikariConfig config, PerformanceProfile profile) {
+    }
+
+    @Override
+    void configureReadPool(HikariConfig config, PerformanceProfile profile) {
+        // a hint only: H2 does not refuse the writes of a read-only connection
+        config.setReadOnly(true);
+        config.setTransactionIsolation("TRANSACTION_REPEATABLE_READ");
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return DbSchema.H2_MIGRATIONS;
+    }
+
+    @Override
+    public String upsertStatement(String table, String[] columns, String version, String values) {
+        // MERGE ... KEY cannot increment the version, MERGE ... USING can
+        StringJoiner names = new StringJoiner(", ");
+        StringJoiner set = new StringJoiner(", ");
+        StringJoiner insert = new StringJoiner(", ");
+        for (int i = 0; i < columns.length; i++) {
+            names.add("column" + (i + 1));
+            insert.add("v.column" + (i + 1));
+            if (i > 0) {
+                set.add(columns[i] + " = v.column" + (i + 1));
+            }
+        }
+        set.add(version + " = " + table + "." + version + " + 1");
+        return "MERGE INTO " + table + " USING (VALUES " + values + ") AS v (" + names + ")"
+                + " ON " + table + "." + columns[0] + " = v.column1"
+                + " WHEN MATCHED THEN UPDATE SET " + set
+                + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) + ") VALUES (" + insert + ")";
+    }
+
+    @Override
+    public String updateStatement(String table, String[] columns, String version, String values) {
+        // named column1, column2, ... like the columns of a VALUES table of SQLite
+        StringJoiner names = new StringJoiner(", ");
+        StringJoiner set = new StringJoiner(", ");
+        for (int i = 0; i < columns.length; i++) {
+            names.add("column" + (i + 1));
+            if (i > 0) {
+                set.add(columns[i] + " = v.column" + (i + 1));
+            }
+        }
+        names.add("column" + (columns.length + 1));
+        set.add(version + " = " + table + "." + version + " + 1");
+        return "MERGE INTO " + table + " USING (VALUES " + values + ") AS v (" + names + ")"
+                + " ON " + table + "." + columns[0] + " = v.column1"
+                + " AND " + table + "." + version + " = v.column" + (columns.length + 1)
+                + " WHEN MATCHED THEN UPDATE SET " + set;
+    }
+
+    @Override
+    public List<String> explain(Connection conn, String sql, Object[] params) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // the plan is one column of several lines, which are already indented
+                    lines.addAll(List.of(rs.getString(1).split("\\R")));
+                }
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,78 @@
+package course_management_swing_ui.repositories.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A Dialect whose connections come from a JDBC driver, pooled by HikariCP. Both pools of DbConnect share
+ * this configuration; the dialect adds the settings of its driver.
+ * <pre>
+ *     read pool    read-only connections, sized by the number of cores
+ *     write pool   WRITE_POOL_SIZE read-write connections: the writer thread of WriteQueue, plus one spare connection
+ * </pre>
+ */
+abstract class JdbcDialect implements Dialect {
+    private static final String USERNAME = "root";
+    private static final String PASSWORD = "root";
+
+    static final int WRITE_POOL_SIZE = 2;
+
+    private final String name;
+    private final String url;
+
+    JdbcDialect(String name, String url) {
+        this.name = name;
+        this.url = url;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean hasSql() {
+        return true;
+    }
+
+    @Override
+    public DataSource createDataSource(PerformanceProfile profile, boolean readOnly) {
+        // Create HikariCP configuration
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(readOnly ? "read-pool" : "write-pool");
+        config.setJdbcUrl(url);
+        config.setUsername(USERNAME);
+        config.setPassword(PASSWORD);
+        if (readOnly) {
+            configureReadPool(config, profile);
+            config.setMaximumPoolSize(Math.max(WRITE_POOL_SIZE * 2, Runtime.getRuntime().availableProcessors()));
+        } else {
+            configureWritePool(config, profile);
+            config.setMaximumPoolSize(WRITE_POOL_SIZE);
+        }
+
+        // Initialize the connection pool
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * @modifies config
+     * @effects add the settings of this dialect for the read-write connections to config
+     */
+    abstract void configureWritePool(HikariConfig config, PerformanceProfile profile);
+
+    /**
+     * @modifies config
+     * @effects add the settings of this dialect for the read-only connections to config
+     */
+    abstract void configureReadPool(HikariConfig config, PerformanceProfile profile);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
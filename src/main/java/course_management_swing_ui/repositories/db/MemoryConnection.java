@@ -0,0 +1,259 @@
+package course_management_swing_ui.repositories.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A connection of the memory dialect. It has no SQL: it is the handler of a Connection proxy that only
+ * implements transactions, so that WriteQueue and the services use it like any other connection, and the DAOs of
+ * MemoryStore write through it (see write).
+ * <pre>
+ *  Transactions, as in SQLite:
+ *      - one writer at a time: a transaction takes WRITE_LOCK at its first write and keeps it until its end; a write
+ *        that cannot take it within BUSY_TIMEOUT_MILLIS fails ("database is locked")
+ *      - every write records how to undo itself; rollback(), rollback(Savepoint) and a failed write undo them in
+ *        reverse order, so a statement, a savepoint and a transaction are all-or-nothing
+ *      - close() rolls back the transaction that is still open, like a pooled JDBC connection
+ *  Unlike SQLite, the writes are visible to the other connections before their commit (read uncommitted).
+ * </pre>
+ * A read-only connection refuses every write. prepareStatement, createStatement and the other methods that need SQL
+ * throw SQLFeatureNotSupportedException.
+ */
+public final class MemoryConnection implements InvocationHandler {
+    /**
+     * how long a write waits for the transaction of another connection to end, like PRAGMA busy_timeout
+     */
+    public static final long BUSY_TIMEOUT_MILLIS = 5000;
+
+    // the single writer of the memory dialect, shared by all its connections. Not a lock: a transaction may end on
+    // another thread than the one that began it
+    private static final Semaphore WRITE_LOCK = new Semaphore(1);
+
+    private final boolean readOnly;
+    private final List<Runnable> undoLog = new ArrayList<>();
+    private boolean autoCommit = true;
+    private boolean locked = false;
+    private boolean closed = false;
+
+    private MemoryConnection(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * A write of a DAO of MemoryStore, which calls undo for every change it makes.
+     */
+    @FunctionalInterface
+    public interface Write<R> {
+        R run() throws SQLException;
+    }
+
+    /**
+     * @effects return a new connection of the memory dialect, read-only if readOnly
+     */
+    static Connection open(boolean readOnly) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new MemoryConnection(readOnly));
+    }
+
+    /**
+     * @requires conn != null
+     * @effects return the MemoryConnection of conn, or throw SQLException if conn is not a connection of the memory
+     * dialect
+     */
+    public static MemoryConnection of(Connection conn) throws SQLException {
+        if (!conn.isWrapperFor(MemoryConnection.class)) {
+            throw new SQLException("not a connection of the memory dialect: " + conn);
+        }
+        return conn.unwrap(MemoryConnection.class);
+    }
+
+    /**
+     * @requires the changes made by write are reported with undo
+     * @modifies this, the data of MemoryStore
+     * @effects <pre>
+     *     if this is read-only or closed, or WRITE_LOCK is held by another transaction for BUSY_TIMEOUT_MILLIS
+     *       throw SQLException
+     *     else
+     *       take WRITE_LOCK (for the rest of the transaction if autocommit is off) and run write
+     *       if write fails, undo its changes and throw its exception
+     *       return the result of write
+     * </pre>
+     */
+    public synchronized <R> R write(Write<R> write) throws SQLException {
+        if (closed) {
+            throw new SQLException("the connection is closed");
+        }
+        if (readOnly) {
+            throw new SQLException("attempt to write a readonly database");
+        }
+        if (!locked) {
+            try {
+                if (!WRITE_LOCK.tryAcquire(BUSY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("database is locked");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("interrupted while waiting for the database", e);
+            }
+            locked = true;
+        }
+        int mark = undoLog.size();
+        try {
+            R result = write.run();
+            if (autoCommit) {
+                commit();
+            }
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            undoTo(mark);
+            if (autoCommit) {
+                unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @requires the caller is a Write of this connection
+     * @modifies this
+     * @effects record action as the undo of a change of the current write
+     */
+    public void undo(Runnable action) {
+        undoLog.add(action);
+    }
+
+    @Override
+    public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "setAutoCommit":
+                boolean on = (Boolean) args[0];
+                if (on && !autoCommit) {
+                    // JDBC: switching autocommit on commits the current transaction
+                    commit();
+                }
+                autoCommit = on;
+                return null;
+            case "getAutoCommit":
+                return autoCommit;
+            case "commit":
+                commit();
+                return null;
+            case "rollback":
+                if (args == null) {
+                    undoTo(0);
+                    unlock();
+                } else {
+                    undoTo(((MemorySavepoint) args[0]).mark);
+                }
+                return null;
+            case "setSavepoint":
+                return new MemorySavepoint(undoLog.size(), args == null ? null : (String) args[0]);
+            case "releaseSavepoint":
+                return null;
+            case "close":
+                if (!closed) {
+                    undoTo(0);
+                    unlock();
+                    closed = true;
+                }
+                return null;
+            case "isClosed":
+                return closed;
+            case "isValid":
+                return !closed;
+            case "isReadOnly":
+                return readOnly;
+            case "setReadOnly":
+            case "clearWarnings":
+                return null;
+            case "getWarnings":
+                return null;
+            case "getTransactionIsolation":
+                return Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "unwrap":
+                if (((Class<?>) args[0]).isInstance(this)) {
+                    return this;
+                }
+                if (((Class<?>) args[0]).isInstance(proxy)) {
+                    return proxy;
+                }
+                throw new SQLException("not a wrapper for " + args[0]);
+            case "isWrapperFor":
+                return ((Class<?>) args[0]).isInstance(this) || ((Class<?>) args[0]).isInstance(proxy);
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "MemoryConnection{readOnly=" + readOnly + ", autoCommit=" + autoCommit + ", closed=" + closed + "}";
+            default:
+                throw new SQLFeatureNotSupportedException("the memory dialect has no SQL: " + method.getName());
+        }
+    }
+
+    /**
+     * @modifies this
+     * @effects forget the undo log and end the transaction
+     */
+    private void commit() {
+        undoLog.clear();
+        unlock();
+    }
+
+    /**
+     * @modifies this, the data of MemoryStore
+     * @effects undo the changes recorded after mark, the latest first
+     */
+    private void undoTo(int mark) {
+        for (int i = undoLog.size() - 1; i >= mark; i--) {
+            undoLog.remove(i).run();
+        }
+    }
+
+    private void unlock() {
+        if (locked) {
+            locked = false;
+            WRITE_LOCK.release();
+        }
+    }
+
+    /**
+     * @Overview A savepoint: the size of the undo log when it was set.
+     */
+    private static final class MemorySavepoint implements Savepoint {
+        private final int mark;
+        private final String name;
+
+        private MemorySavepoint(int mark, String name) {
+            this.mark = mark;
+            this.name = name;
+        }
+
+        @Override
+        public int getSavepointId() throws SQLException {
+            if (name != null) {
+                throw new SQLException("a named savepoint has no id");
+            }
+            return mark;
+        }
+
+        @Override
+        public String getSavepointName() throws SQLException {
+            if (name == null) {
+                throw new SQLException("an unnamed savepoint has no name");
+            }
+            return name;
+        }
+    }
+}
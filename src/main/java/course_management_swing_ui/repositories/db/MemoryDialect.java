@@ -0,0 +1,123 @@
+package course_management_swing_ui.repositories.db;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview The memory dialect: no database at all. The data lives in the concurrent maps of MemoryStore, for as long as
+ * the JVM, and is read and written by the DAOs of MemoryStore instead of the SQL ones (see DaoFactory). Its
+ * connections are MemoryConnection(s), which only carry the transactions; there is no pool, as a connection costs
+ * nothing, and no schema to migrate.
+ */
+final class MemoryDialect implements Dialect {
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public boolean hasSql() {
+        return false;
+    }
+
+    @Override
+    public DataSource createDataSource(PerformanceProfile profile, boolean readOnly) {
+        return new MemoryDataSource(readOnly);
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return List.of();
+    }
+
+    @Override
+    public String upsertStatement(String table, String[] columns, String version, String values) {
+        throw new UnsupportedOperationException("the memory dialect has no SQL");
+    }
+
+    @Override
+    public String updateStatement(String table, String[] columns, String version, String values) {
+        throw new UnsupportedOperationException("the memory dialect has no SQL");
+    }
+
+    @Override
+    public List<String> explain(Connection conn, String sql, Object[] params) throws SQLException {
+        throw new SQLFeatureNotSupportedException("the memory dialect has no SQL");
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    /**
+     * @Overview The DataSource of the memory dialect: every getConnection opens a new MemoryConnection.
+     */
+    private static final class MemoryDataSource implements DataSource {
+        private final boolean readOnly;
+        private PrintWriter logWriter;
+
+        private MemoryDataSource(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public Connection getConnection() {
+            return MemoryConnection.open(readOnly);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return logWriter;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+            logWriter = out;
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(this)) {
+                return iface.cast(this);
+            }
+            throw new SQLException("not a wrapper for " + iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return iface.isInstance(this);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package course_management_swing_ui.repositories.db;
+
+import java.util.List;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview One step of the evolution of the database schema. A migration is identified by its version, which is
+ * recorded in DbSchema.SchemaVersionTable once all its statements have been executed.
+ * @attributes <pre>
+ *   version        int
+ *   description    String
+ *   statements     List<String>
+ * </pre>
+ */
+public final class Migration {
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    /**
+     * @requires version > 0 /\ description != null /\ statements != null
+     */
+    public Migration(int version, String description, String... statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = List.of(statements);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return "Migration{" +
+                "version=" + version +
+                ", description='" + description + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,107 @@
+package course_management_swing_ui.repositories.db;
+
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+import org.sqlite.SQLiteConfig;
+
+import java.util.Properties;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A named set of SQLite PRAGMAs that DbConnect applies to every connection as the pool opens it. All profiles
+ * use the WAL journal, so readers never block the writer and switching profiles never flips the journal mode of the
+ * database file (journal_mode=WAL is persistent).
+ * <pre>
+ *   profile      synchronous   cache_size   mmap_size    temp_store   busy_timeout
+ *   durable      FULL          8 MiB        0            DEFAULT      5000 ms
+ *   balanced     NORMAL        32 MiB       256 MiB      MEMORY       5000 ms
+ *   bulk-load    OFF           128 MiB      1 GiB        MEMORY       10000 ms
+ * </pre>
+ * Every profile enforces the foreign keys of DbSchema (PRAGMA foreign_keys = ON).
+ */
+public enum PerformanceProfile {
+    /**
+     * every commit is fsync-ed before it returns. Safest against power loss.
+     */
+    DURABLE("durable", SQLiteConfig.SynchronousMode.FULL, -8 * 1024, 0L, SQLiteConfig.TempStore.DEFAULT, 5000),
+
+    /**
+     * WAL + synchronous=NORMAL: a commit may be rolled back by a power loss, but the database never gets corrupted.
+     * This is the default profile.
+     */
+    BALANCED("balanced", SQLiteConfig.SynchronousMode.NORMAL, -32 * 1024, 256L * 1024 * 1024, SQLiteConfig.TempStore.MEMORY, 5000),
+
+    /**
+     * no fsync at all. Only for imports that can be repeated from the source files if the machine goes down.
+     */
+    BULK_LOAD("bulk-load", SQLiteConfig.SynchronousMode.OFF, -128 * 1024, 1024L * 1024 * 1024, SQLiteConfig.TempStore.MEMORY, 10000);
+
+    private final String profileName;
+    private final SQLiteConfig.SynchronousMode synchronous;
+    private final int cacheSize;    // negative value = size in KiB, see https://www.sqlite.org/pragma.html#pragma_cache_size
+    private final long mmapSize;
+    private final SQLiteConfig.TempStore tempStore;
+    private final int busyTimeout;
+
+    PerformanceProfile(String profileName, SQLiteConfig.SynchronousMode synchronous, int cacheSize, long mmapSize, SQLiteConfig.TempStore tempStore, int busyTimeout) {
+        this.profileName = profileName;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeout = busyTimeout;
+    }
+
+    /**
+     * @effects return the name used to select this profile at startup
+     */
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * @effects return the SQLite configuration of this profile
+     */
+    public SQLiteConfig toSQLiteConfig() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(synchronous);
+        config.setCacheSize(cacheSize);
+        config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(mmapSize));
+        config.setTempStore(tempStore);
+        config.setBusyTimeout(busyTimeout);
+        config.enforceForeignKeys(true);
+        return config;
+    }
+
+    /**
+     * @effects return the driver properties that make sqlite-jdbc execute the PRAGMAs of this profile every time it
+     * opens a connection
+     */
+    public Properties toProperties() {
+        return toSQLiteConfig().toProperties();
+    }
+
+    /**
+     * @requires name != null
+     * @effects <pre>
+     *     if there is a profile whose profileName equals name (ignoring case)
+     *       return it
+     *     else
+     *       throw InvalidArgumentException
+     * </pre>
+     */
+    public static PerformanceProfile of(String name) throws InvalidArgumentException {
+        for (PerformanceProfile p : values()) {
+            if (p.profileName.equalsIgnoreCase(name.trim())) {
+                return p;
+            }
+        }
+        throw new InvalidArgumentException("Unknown database profile: \"" + name + "\"");
+    }
+
+    @Override
+    public String toString() {
+        return profileName;
+    }
+}
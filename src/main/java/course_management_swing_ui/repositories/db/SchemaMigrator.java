@@ -0,0 +1,111 @@
+package course_management_swing_ui.repositories.db;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview Brings the database schema up to date when the application starts. The version of the schema is the
+ * highest version recorded in DbSchema.SchemaVersionTable (0 for a database that has never been migrated); every
+ * migration of the dialect (see Dialect.getMigrations) above it is executed in ascending order.
+ * <pre>
+ *  Each migration runs in its own transaction together with the insertion of its version:
+ *      - it is either fully applied and recorded, or not at all
+ *      - if it fails, it is rolled back and the later migrations are not executed (they may depend on it)
+ * </pre>
+ * A failed migration is fatal: the application must not run on a schema that it does not know. The number of rows that
+ * a migration changes is printed, statement by statement, since some migrations move data (see DbSchema.MIGRATIONS).
+ */
+public class SchemaMigrator {
+    public static final String CREATE_VERSION_TABLE_STMT = "CREATE TABLE IF NOT EXISTS " + DbSchema.SchemaVersionTable.NAME + " ("
+            + DbSchema.SchemaVersionTable.Cols.VERSION + " INTEGER NOT NULL PRIMARY KEY, "
+            + DbSchema.SchemaVersionTable.Cols.DESCRIPTION + " TEXT NOT NULL, "
+            + DbSchema.SchemaVersionTable.Cols.APPLIED_AT + " TEXT NOT NULL)";
+
+    public static final String READ_VERSION_STMT = "SELECT COALESCE(MAX(" + DbSchema.SchemaVersionTable.Cols.VERSION + "), 0) FROM "
+            + DbSchema.SchemaVersionTable.NAME;
+
+    public static final String INSERT_VERSION_STMT = "INSERT INTO " + DbSchema.SchemaVersionTable.NAME + " ("
+            + DbSchema.SchemaVersionTable.Cols.VERSION + ", "
+            + DbSchema.SchemaVersionTable.Cols.DESCRIPTION + ", "
+            + DbSchema.SchemaVersionTable.Cols.APPLIED_AT
+            + ") VALUES (?, ?, ?)";
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * @requires dataSource is a read-write data source of the database /\ migrations are in ascending order of version
+     * @modifies the database schema
+     * @effects <pre>
+     *     create DbSchema.SchemaVersionTable if it does not exist
+     *     execute the pending migrations of migrations, see the Overview
+     *     return the version of the schema afterwards
+     *     if the schema cannot be read or a migration fails
+     *       throw SQLException, with the version it stays at
+     * </pre>
+     */
+    public static int migrate(DataSource dataSource, List<Migration> migrations) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate(CREATE_VERSION_TABLE_STMT);
+            }
+            int version = currentVersion(conn);
+
+            for (Migration migration : migrations) {
+                if (migration.getVersion() <= version) continue;
+                try {
+                    apply(migration, conn);
+                } catch (SQLException e) {
+                    throw new SQLException("failed to apply " + migration + ", the schema stays at version " + version, e);
+                }
+                version = migration.getVersion();
+                System.out.println("database schema migrated to version " + version + ": " + migration.getDescription());
+            }
+            return version;
+        }
+    }
+
+    /**
+     * @requires conn != null /\ conn is not closed
+     * @effects return the version of the schema
+     */
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(READ_VERSION_STMT)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @modifies the database schema
+     * @effects execute migration and record its version in one transaction; if it fails, roll it back and throw
+     * SQLException
+     */
+    private static void apply(Migration migration, Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement();
+             PreparedStatement ps = conn.prepareStatement(INSERT_VERSION_STMT)) {
+            List<String> statements = migration.getStatements();
+            for (int i = 0; i < statements.size(); i++) {
+                int rows = st.executeUpdate(statements.get(i));
+                if (rows > 0) {
+                    System.out.println("migration " + migration.getVersion() + ", statement " + (i + 1) + ": " + rows + " row(s) changed");
+                }
+            }
+            ps.setInt(1, migration.getVersion());
+            ps.setString(2, migration.getDescription());
+            ps.setString(3, LocalDateTime.now().toString());
+            ps.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
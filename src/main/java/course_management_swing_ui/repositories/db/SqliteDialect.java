@@ -0,0 +1,133 @@
+package course_management_swing_ui.repositories.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.StringJoiner;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview The SQLite dialect, the default one: database.sqlite3 through sqlite-jdbc, opened with the PRAGMAs of the
+ * selected PerformanceProfile. Dates are stored as TEXT in ISO-8601 (yyyy-MM-dd).
+ * <pre>
+ *     upsert:  INSERT INTO t (k, a, b) VALUES (?, ?, ?), ... ON CONFLICT (k) DO UPDATE SET a = excluded.a, b = excluded.b,
+ *              version = t.version + 1
+ *     update:  UPDATE t SET a = v.column2, b = v.column3, version = t.version + 1 FROM (VALUES (?, ?, ?, ?), ...) AS v
+ *              WHERE t.k = v.column1 AND t.version = v.column4
+ *     plan:    EXPLAIN QUERY PLAN, indented by depth
+ *     version: PRAGMA data_version, which changes on a connection when any other connection, of this process or of
+ *              another one, commits to database.sqlite3
+ * </pre>
+ */
+final class SqliteDialect extends JdbcDialect {
+    SqliteDialect() {
+        super("sqlite", "jdbc:sqlite:database.sqlite3");
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    void configureWritePool(HikariConfig config, PerformanceProfile profile) {
+        // sqlite-jdbc executes these PRAGMAs every time the pool opens a new physical connection
+        config.setDataSourceProperties(profile.toProperties());
+    }
+
+    @Override
+    void configureReadPool(HikariConfig config, PerformanceProfile profile) {
+        // SQLITE_OPEN_READONLY, and the journal mode cannot (and need not) be changed by a read-only connection
+        SQLiteConfig sqLiteConfig = profile.toSQLiteConfig();
+        sqLiteConfig.setReadOnly(true);
+        Properties properties = sqLiteConfig.toProperties();
+        properties.remove(SQLiteConfig.Pragma.JOURNAL_MODE.pragmaName);
+        config.setDataSourceProperties(properties);
+        config.setReadOnly(true);
+        config.setConnectionInitSql("PRAGMA query_only = true");
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return DbSchema.MIGRATIONS;
+    }
+
+    @Override
+    public String upsertStatement(String table, String[] columns, String version, String values) {
+        StringJoiner set = new StringJoiner(", ");
+        for (int i = 1; i < columns.length; i++) {
+            set.add(columns[i] + " = excluded." + columns[i]);
+        }
+        set.add(version + " = " + table + "." + version + " + 1");
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES " + values
+                + " ON CONFLICT (" + columns[0] + ") DO UPDATE SET " + set;
+    }
+
+    @Override
+    public String updateStatement(String table, String[] columns, String version, String values) {
+        // the columns of a VALUES table are named column1, column2, ...
+        StringJoiner set = new StringJoiner(", ");
+        for (int i = 1; i < columns.length; i++) {
+            set.add(columns[i] + " = v.column" + (i + 1));
+        }
+        set.add(version + " = " + table + "." + version + " + 1");
+        return "UPDATE " + table + " SET " + set + " FROM (VALUES " + values + ") AS v"
+                + " WHERE " + table + "." + columns[0] + " = v.column1"
+                + " AND " + table + "." + version + " = v.column" + (columns.length + 1);
+    }
+
+    @Override
+    public void setDate(PreparedStatement ps, int index, LocalDate date) throws SQLException {
+        ps.setString(index, date.toString());
+    }
+
+    @Override
+    public LocalDate getDate(ResultSet rs, int index) throws SQLException {
+        return LocalDate.parse(rs.getString(index));
+    }
+
+    @Override
+    public List<String> explain(Connection conn, String sql, Object[] params) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            List<int[]> ids = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // id, parent, notused, detail
+                    int id = rs.getInt(1);
+                    int parent = rs.getInt(2);
+                    int depth = 0;
+                    for (int[] node : ids) {
+                        if (node[0] == parent) {
+                            depth = node[1] + 1;
+                        }
+                    }
+                    ids.add(new int[]{id, depth});
+                    lines.add("  ".repeat(depth) + rs.getString(4));
+                }
+            }
+        }
+        return lines;
+    }
+
+    @Override
+    public long dataVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package course_management_swing_ui.repositories.db;
+
+import java.sql.Connection;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A unit of write work that WriteQueue executes on the connection of its writer thread. A command must not
+ * commit, roll back or change the auto-commit mode of conn: the queue runs it inside a savepoint of a group
+ * transaction, so the command is atomic on its own and is committed together with the other commands of the group.
+ */
+@FunctionalInterface
+public interface WriteCommand {
+    /**
+     * @requires conn != null /\ conn is not closed /\ conn is inside a transaction
+     */
+    void execute(Connection conn) throws Exception;
+}
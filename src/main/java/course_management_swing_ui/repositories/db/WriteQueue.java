@@ -0,0 +1,345 @@
+package course_management_swing_ui.repositories.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.3
+ * @Overview The single writer of the database. SQLite allows only one writer at a time, so instead of letting every
+ * service fight over the database lock, the services queue their WriteCommand(s) here and one thread executes them.
+ * <pre>
+ *  The writer thread:
+ *      - takes the first queued command, then every command queued meanwhile (at most MAX_GROUP_SIZE)
+ *      - runs them in one transaction, each one inside its own savepoint
+ *      - a failed command is rolled back to its savepoint and its future completes exceptionally
+ *      - commits the group once (group commit), then completes the futures of the successful commands
+ * </pre>
+ * A command may submit other commands (e.g. a UnitOfWork that calls a service). These nested commands run at once, on
+ * the writer thread, each inside a savepoint of its own within the command: a nested command that fails is rolled back
+ * to its savepoint, and its future completes exceptionally at once. The future of a nested command that succeeds
+ * completes with the command that submitted it: after the commit of the group, or exceptionally if that command is
+ * rolled back. The writer thread itself does not wait for the commit in get() or join() of such a future, which return
+ * as soon as the nested command has run: it would wait for itself otherwise.
+ * <p>
+ * What must only happen once a write is committed, e.g. incrementing the version of an updated object, is registered
+ * with afterCommit by the command that writes.
+ * Reads do not go through this queue. Every future completes: a command that is still queued when the writer thread has
+ * stopped (see shutdown) completes exceptionally.
+ */
+public final class WriteQueue {
+    public static final int MAX_GROUP_SIZE = 64;
+
+    private static final WriteQueue instance = new WriteQueue();
+
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    // guards running together with the queuing of a task: no task is queued once running is false
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+
+    // connection used by the command that the writer thread is currently executing
+    private Connection current;
+    // the nested commands and the afterCommit actions of the command (or nested command) that the writer thread is
+    // currently executing
+    private Scope scope;
+
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private WriteQueue() {
+        writer = new Thread(this::run, "db-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static WriteQueue getInstance() {
+        return instance;
+    }
+
+    /**
+     * @requires command != null
+     * @effects <pre>
+     *     if the caller is the writer thread itself (a command that submits another command)
+     *       execute command at once on the current connection, inside a savepoint of the current command, and roll it
+     *       back to the savepoint if it fails (see WriteQueue)
+     *     else
+     *       queue command
+     *     return a future that completes when command has been committed, or completes exceptionally with the cause of
+     *     its failure
+     * </pre>
+     */
+    public CompletableFuture<Void> submit(WriteCommand command) {
+        if (Thread.currentThread() == writer) {
+            return executeNested(command);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (lock) {
+            if (running) {
+                queue.add(new Task(command, future));
+                return future;
+            }
+        }
+        future.completeExceptionally(new IllegalStateException("WriteQueue has been shut down"));
+        return future;
+    }
+
+    /**
+     * @requires action != null /\ the caller is a command of this, or a task it waits for (e.g. of a repository), or
+     * conn is not a connection of this
+     * @effects <pre>
+     *     if conn is the connection of the command that the writer thread is executing
+     *       run action once that command has been committed, before its future completes; never if it is rolled back
+     *     else
+     *       run action at once: conn is not in a transaction of this queue
+     * </pre>
+     */
+    public void afterCommit(Connection conn, Runnable action) {
+        Scope s = scope;
+        if (conn != null && conn == current && s != null) {
+            synchronized (s) {
+                s.actions.add(action);
+            }
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * @requires the caller is the writer thread, executing a command on current
+     * @modifies the database, this.scope
+     * @effects execute command inside a savepoint, see submit
+     */
+    private CompletableFuture<Void> executeNested(WriteCommand command) {
+        NestedFuture future = new NestedFuture();
+        Scope outer = scope;
+        scope = new Scope();
+        try {
+            Savepoint sp = current.setSavepoint();
+            try {
+                command.execute(current);
+                current.releaseSavepoint(sp);
+            } catch (Exception e) {
+                current.rollback(sp);
+                current.releaseSavepoint(sp);
+                throw e;
+            }
+            future.executed = true;
+            scope.futures.add(future);
+            outer.merge(scope);
+        } catch (Exception e) {
+            scope.fail(e);
+            future.completeExceptionally(e);
+        } finally {
+            scope = outer;
+        }
+        return future;
+    }
+
+    private void run() {
+        List<Task> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Task first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+                execute(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        abandon();
+    }
+
+    /**
+     * @modifies this
+     * @effects complete exceptionally the futures of the tasks that are still queued, and remove them
+     */
+    private void abandon() {
+        List<Task> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Task task : left) {
+            task.future.completeExceptionally(new IllegalStateException("WriteQueue has been shut down before the command ran"));
+        }
+    }
+
+    /**
+     * @modifies the database
+     * @effects execute every task of group in one transaction, see the Overview
+     */
+    private void execute(List<Task> group) {
+        List<Task> succeeded = new ArrayList<>(group.size());
+        // the nested commands of the successful commands
+        Scope committed = new Scope();
+        try (Connection conn = DbConnect.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            current = conn;
+            try {
+                for (Task task : group) {
+                    scope = new Scope();
+                    Savepoint sp = conn.setSavepoint();
+                    try {
+                        task.command.execute(conn);
+                        conn.releaseSavepoint(sp);
+                        succeeded.add(task);
+                        committed.merge(scope);
+                    } catch (Exception e) {
+                        conn.rollback(sp);
+                        conn.releaseSavepoint(sp);
+                        failures.incrementAndGet();
+                        scope.fail(e);
+                        task.future.completeExceptionally(e);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                current = null;
+                scope = null;
+                conn.setAutoCommit(true);
+            }
+            groups.incrementAndGet();
+            commands.addAndGet(group.size());
+            committed.commit();
+            succeeded.forEach(task -> task.future.complete(null));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            committed.fail(e);
+            for (Task task : group) {
+                task.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * @modifies this
+     * @effects stop accepting commands, then wait at most timeoutMillis for the queued ones to be committed; the
+     * futures of the ones that are still queued afterwards complete exceptionally
+     */
+    public void shutdown(long timeoutMillis) {
+        synchronized (lock) {
+            running = false;
+        }
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the writer thread may still be executing a group, but it takes no more tasks in time
+        if (writer.isAlive()) {
+            abandon();
+        }
+    }
+
+    /**
+     * @effects return the number of commands that have been executed by the writer thread
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * @effects return the number of group transactions that have been committed
+     */
+    public long getGroupCount() {
+        return groups.get();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "{" +
+                "queued=" + queue.size() +
+                ", commands=" + commands +
+                ", groups=" + groups +
+                ", failures=" + failures +
+                '}';
+    }
+
+    /**
+     * @Overview What waits for the outcome of a command: the futures of the nested commands that have succeeded within
+     * it, and the actions registered with afterCommit.
+     */
+    private static final class Scope {
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private final List<Runnable> actions = new ArrayList<>();
+
+        private synchronized void merge(Scope inner) {
+            synchronized (inner) {
+                futures.addAll(inner.futures);
+                actions.addAll(inner.actions);
+            }
+        }
+
+        /**
+         * @effects run the actions, then complete the futures
+         */
+        private synchronized void commit() {
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            futures.forEach(future -> future.complete(null));
+        }
+
+        private synchronized void fail(Exception e) {
+            futures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * @Overview The future of a nested command. On the writer thread, get() and join() return once the command has run
+     * (executed), since the commit they would wait for comes after the command that waits.
+     */
+    private final class NestedFuture extends CompletableFuture<Void> {
+        private boolean executed;
+
+        private boolean ranOnWriter() {
+            return executed && !isDone() && Thread.currentThread() == writer;
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            return ranOnWriter() ? null : super.get();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return ranOnWriter() ? null : super.get(timeout, unit);
+        }
+
+        @Override
+        public Void join() {
+            return ranOnWriter() ? null : super.join();
+        }
+    }
+
+    private static final class Task {
+        private final WriteCommand command;
+        private final CompletableFuture<Void> future;
+
+        private Task(WriteCommand command, CompletableFuture<Void> future) {
+            this.command = command;
+            this.future = future;
+        }
+    }
+}
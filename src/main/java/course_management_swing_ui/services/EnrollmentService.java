@@ -1,18 +1,26 @@
 package course_management_swing_ui.services;
 
 import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
 import course_management_swing_ui.repositories.EnrollmentRepository;
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.SortOrder;
 import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.exceptions.StaleObjectException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.3
+ * @version 1.8
  * @Overview Implementation of Service for Enrollment.
  */
 public class EnrollmentService implements Service<Enrollment, Integer> {
@@ -25,13 +33,33 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
      */
     @Override
     public void add(Enrollment obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            enrollmentRepository.add(obj, conn).get();
+        try {
+            WriteQueue.getInstance().submit(conn -> enrollmentRepository.add(obj, conn).get()).get();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * add to the Database a new enrollment of student in module, whose id is chosen by the writer thread in the same
+     * transaction (see EnrollmentRepository.nextId), and return it; return null if it cannot be added
+     * @requires student != null /\ module != null
+     */
+    public Enrollment add(Student student, Module module, double internalMark, double examinationMark) {
+        Enrollment[] added = new Enrollment[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                Enrollment obj = new Enrollment(enrollmentRepository.nextId(conn).get(), student, module, internalMark, examinationMark);
+                enrollmentRepository.add(obj, conn).get();
+                added[0] = obj;
+            }).get();
+            return added[0];
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * add all Objects in objs to the Database
      * @param objs
@@ -39,16 +67,9 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
      */
     @Override
     public void addAll(Collection<Enrollment> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                enrollmentRepository.addAll(objs, conn).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> enrollmentRepository.addAll(objs, conn).get()).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -60,7 +81,7 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
      */
     @Override
     public Enrollment findById(Integer id) {
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             return enrollmentRepository.findById(id, conn).get();
         } catch (Exception e) {
             e.printStackTrace();
@@ -76,7 +97,7 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
     @Override
     public List<Enrollment> findById(Collection<Integer> ids) {
         List<Enrollment> enrollments = new ArrayList<>();
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             enrollments.addAll(enrollmentRepository.findById(ids, conn).get());
         } catch (Exception e) {
             e.printStackTrace();
@@ -91,7 +112,7 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
     @Override
     public List<Enrollment> findAll() {
         List<Enrollment> enrollments = new ArrayList<>();
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             enrollments.addAll(enrollmentRepository.findAll(conn).get());
         } catch (Exception e) {
             e.printStackTrace();
@@ -100,37 +121,118 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
     }
 
     /**
-     * update the row that share the primary key with obj
+     * return a lazy Stream of all objects of T
+     * @param fetchSize
+     * @requires fetchSize >= 0
+     * @effects <pre>
+     *     borrow a connection from the read pool and return enrollmentRepository.stream on it. Closing the Stream gives the
+     *     connection back to the pool.
+     *     if the Stream cannot be opened, return an empty Stream
+     * </pre>
+     */
+    @Override
+    public Stream<Enrollment> stream(int fetchSize) {
+        Connection conn = null;
+        try {
+            conn = DbConnect.getReadConnection();
+            Connection c = conn;
+            return enrollmentRepository.stream(conn, fetchSize).onClose(() -> {
+                try {
+                    c.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * return a page of objects of T
+     * @param afterKey
+     * @param limit
+     * @param order
+     * @requires limit > 0 /\ order != null
+     */
+    @Override
+    public List<Enrollment> page(Integer afterKey, int limit, SortOrder order) {
+        List<Enrollment> enrollments = new ArrayList<>();
+        try (Connection conn = DbConnect.getReadConnection()) {
+            enrollments.addAll(enrollmentRepository.page(afterKey, limit, order, conn).get());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return enrollments;
+    }
+
+    /**
+     * update the row that share the primary key with obj, if nobody has changed or deleted it since obj was read
      * @param obj
      * @requires obj != null
+     * @effects return true if the row has been updated, false if it is in conflict or the update failed
      */
     @Override
-    public void update(Enrollment obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            enrollmentRepository.update(obj, conn).get();
+    public boolean update(Enrollment obj) {
+        boolean[] updated = new boolean[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                try {
+                    enrollmentRepository.update(obj, conn).get();
+                    updated[0] = true;
+                } catch (ExecutionException e) {
+                    // a conflict is an outcome, not a failure of the write
+                    if (!(e.getCause() instanceof StaleObjectException)) throw e;
+                }
+            }).get();
+            return updated[0];
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
         }
     }
 
     /**
-     * update all rows that share the primary key with each obj in objs
+     * update all rows that share the primary key with each obj in objs, if nobody has changed or deleted them since
+     * they were read
      * @param objs
      * @requires obj != null
+     * @effects return the outcome of each obj (UPDATED or CONFLICT), or null if the write could not be done at all
      */
     @Override
-    public void update(Collection<Enrollment> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                enrollmentRepository.update(objs, conn).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+    public BulkWriteResult update(Collection<Enrollment> objs) {
+        BulkWriteResult[] result = new BulkWriteResult[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> result[0] = enrollmentRepository.update(objs, conn).get()).get();
+            return result[0];
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * insert each obj in objs, or update its row if it shares the primary key with a row already
+     * @param objs
+     * @requires objs != null
+     */
+    @Override
+    public BulkWriteResult upsert(Collection<Enrollment> objs) {
+        BulkWriteResult[] result = new BulkWriteResult[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> result[0] = enrollmentRepository.upsert(objs, conn).get()).get();
+            return result[0];
+        } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -141,8 +243,8 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
      */
     @Override
     public void delete(Enrollment obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            enrollmentRepository.delete(obj, conn).get();
+        try {
+            WriteQueue.getInstance().submit(conn -> enrollmentRepository.delete(obj, conn).get()).get();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -155,16 +257,9 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
      */
     @Override
     public void delete(Collection<Enrollment> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                enrollmentRepository.delete(objs, conn).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> enrollmentRepository.delete(objs, conn).get()).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -175,8 +270,8 @@ public class EnrollmentService implements Service<Enrollment, Integer> {
      */
     @Override
     public void deleteAll() {
-        try (Connection conn = DbConnect.getConnection()) {
-            enrollmentRepository.deleteAll(conn).get();
+        try {
+            WriteQueue.getInstance().submit(conn -> enrollmentRepository.deleteAll(conn).get()).get();
         } catch (Exception e) {
             e.printStackTrace();
         }
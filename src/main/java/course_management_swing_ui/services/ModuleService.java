@@ -1,24 +1,26 @@
 package course_management_swing_ui.services;
 
-import course_management_swing_ui.models.Enrollment;
 import course_management_swing_ui.models.Module;
-import course_management_swing_ui.repositories.DbContext;
 import course_management_swing_ui.repositories.EnrollmentRepository;
 import course_management_swing_ui.repositories.ModuleRepository;
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.SortOrder;
 import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.exceptions.StaleObjectException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.2
+ * @version 1.8
  * @Overview Implementation of Service for Module.
  */
 public class ModuleService implements Service<Module, String> {
@@ -32,8 +34,8 @@ public class ModuleService implements Service<Module, String> {
      */
     @Override
     public void add(Module obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            moduleRepository.add(obj, conn).get();
+        try {
+            WriteQueue.getInstance().submit(conn -> moduleRepository.add(obj, conn).get()).get();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -46,16 +48,9 @@ public class ModuleService implements Service<Module, String> {
      */
     @Override
     public void addAll(Collection<Module> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                moduleRepository.addAll(objs, conn).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> moduleRepository.addAll(objs, conn).get()).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -67,7 +62,7 @@ public class ModuleService implements Service<Module, String> {
      */
     @Override
     public Module findById(String id) {
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             return moduleRepository.findById(id, conn).get();
         } catch (Exception e) {
             e.printStackTrace();
@@ -83,7 +78,7 @@ public class ModuleService implements Service<Module, String> {
     @Override
     public List<Module> findById(Collection<String> ids) {
         List<Module> modules = new ArrayList<>();
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             modules.addAll(moduleRepository.findById(ids, conn).get());
         } catch (Exception e) {
             e.printStackTrace();
@@ -98,7 +93,7 @@ public class ModuleService implements Service<Module, String> {
     @Override
     public List<Module> findAll() {
         List<Module> modules = new ArrayList<>();
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             modules.addAll(moduleRepository.findAll(conn).get());
         } catch (Exception e) {
             e.printStackTrace();
@@ -107,37 +102,118 @@ public class ModuleService implements Service<Module, String> {
     }
 
     /**
-     * update the row that share the primary key with obj
+     * return a lazy Stream of all objects of T
+     * @param fetchSize
+     * @requires fetchSize >= 0
+     * @effects <pre>
+     *     borrow a connection from the read pool and return moduleRepository.stream on it. Closing the Stream gives the
+     *     connection back to the pool.
+     *     if the Stream cannot be opened, return an empty Stream
+     * </pre>
+     */
+    @Override
+    public Stream<Module> stream(int fetchSize) {
+        Connection conn = null;
+        try {
+            conn = DbConnect.getReadConnection();
+            Connection c = conn;
+            return moduleRepository.stream(conn, fetchSize).onClose(() -> {
+                try {
+                    c.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * return a page of objects of T
+     * @param afterKey
+     * @param limit
+     * @param order
+     * @requires limit > 0 /\ order != null
+     */
+    @Override
+    public List<Module> page(String afterKey, int limit, SortOrder order) {
+        List<Module> modules = new ArrayList<>();
+        try (Connection conn = DbConnect.getReadConnection()) {
+            modules.addAll(moduleRepository.page(afterKey, limit, order, conn).get());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return modules;
+    }
+
+    /**
+     * update the row that share the primary key with obj, if nobody has changed or deleted it since obj was read
      * @param obj
      * @requires obj != null
+     * @effects return true if the row has been updated, false if it is in conflict or the update failed
      */
     @Override
-    public void update(Module obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            moduleRepository.update(obj, conn).get();
+    public boolean update(Module obj) {
+        boolean[] updated = new boolean[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                try {
+                    moduleRepository.update(obj, conn).get();
+                    updated[0] = true;
+                } catch (ExecutionException e) {
+                    // a conflict is an outcome, not a failure of the write
+                    if (!(e.getCause() instanceof StaleObjectException)) throw e;
+                }
+            }).get();
+            return updated[0];
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
         }
     }
 
     /**
-     * update all rows that share the primary key with each obj in objs
+     * update all rows that share the primary key with each obj in objs, if nobody has changed or deleted them since
+     * they were read
      * @param objs
      * @requires obj != null
+     * @effects return the outcome of each obj (UPDATED or CONFLICT), or null if the write could not be done at all
      */
     @Override
-    public void update(Collection<Module> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                moduleRepository.update(objs, conn).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+    public BulkWriteResult update(Collection<Module> objs) {
+        BulkWriteResult[] result = new BulkWriteResult[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> result[0] = moduleRepository.update(objs, conn).get()).get();
+            return result[0];
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * insert each obj in objs, or update its row if it shares the primary key with a row already
+     * @param objs
+     * @requires objs != null
+     */
+    @Override
+    public BulkWriteResult upsert(Collection<Module> objs) {
+        BulkWriteResult[] result = new BulkWriteResult[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> result[0] = moduleRepository.upsert(objs, conn).get()).get();
+            return result[0];
+        } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -148,25 +224,13 @@ public class ModuleService implements Service<Module, String> {
      */
     @Override
     public void delete(Module obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                List<CompletableFuture<Void>> tasks = new ArrayList<>();
-                CompletableFuture<Void> moduleTask = moduleRepository.delete(obj, conn);
-                tasks.add(moduleTask);
-                Optional<Enrollment> opt = DbContext.enrollmentDbContext.stream().filter(e -> e.getModule().getCode().equals(obj.getCode())).findFirst();
-                if (opt.isPresent()) {
-                    Enrollment enrollment = opt.get();
-                    CompletableFuture<Void> enTask = enrollmentRepository.delete(enrollment, conn);
-                    tasks.add(enTask);
-                }
-                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                // the enrollments first, as they reference obj
+                enrollmentRepository.deleteByModule(List.of(obj.getCode()), conn).get();
+                moduleRepository.delete(obj, conn).get();
+            }).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -178,22 +242,14 @@ public class ModuleService implements Service<Module, String> {
      */
     @Override
     public void delete(Collection<Module> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                CompletableFuture<Void> moduleTask = moduleRepository.delete(objs, conn);
-
-                // delete enrollments
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                // the enrollments first, as they reference objs
                 List<String> codes = objs.stream().map(Module::getCode).collect(Collectors.toList());
-                List<Enrollment> enrollments = DbContext.enrollmentDbContext.stream().filter(e -> codes.contains(e.getModule().getCode())).collect(Collectors.toList());
-                CompletableFuture<Void> enTask = enrollmentRepository.delete(enrollments, conn);
-                CompletableFuture.allOf(moduleTask, enTask).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+                enrollmentRepository.deleteByModule(codes, conn).get();
+                moduleRepository.delete(objs, conn).get();
+            }).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -204,18 +260,12 @@ public class ModuleService implements Service<Module, String> {
      */
     @Override
     public void deleteAll() {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                CompletableFuture<Void> moduleTask = moduleRepository.deleteAll(conn);
-                CompletableFuture<Void> enTask = enrollmentRepository.deleteAll(conn);
-                CompletableFuture.allOf(moduleTask, enTask).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                enrollmentRepository.deleteAll(conn).get();
+                moduleRepository.deleteAll(conn).get();
+            }).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -1,11 +1,15 @@
 package course_management_swing_ui.services;
 
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.SortOrder;
+
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.2
+ * @version 1.5
  * @Overview This interface represents the middle layer of architecture, between controller and repository. It
  * implements business logic and calculations This layer also validates the input conditions before calling a method
  * from the data layer. This ensures the data input is correct before proceeding, and can often ensure that the outputs
@@ -43,16 +47,41 @@ public interface Service<T, K> {
     List<T> findAll();
 
     /**
-     * update the row that share the primary key with obj
+     * return a lazy Stream of all objects of T, read with the fetch size hint fetchSize. The returned Stream holds a
+     * database connection until it is closed.
+     * @requires fetchSize >= 0
+     */
+    Stream<T> stream(int fetchSize);
+
+    /**
+     * return the page of at most limit objects of T whose keys come right after afterKey in order (the first page if
+     * afterKey is null)
+     * @requires limit > 0 /\ order != null
+     */
+    List<T> page(K afterKey, int limit, SortOrder order);
+
+    /**
+     * update the row that share the primary key with obj, if nobody has changed or deleted it since obj was read
      * @requires obj != null
+     * @effects return true if the row has been updated, false if it is in conflict (see Repository.update) or the
+     * update failed
      */
-    void update(T obj);
+    boolean update(T obj);
 
     /**
-     * update all rows that share the primary key with each obj in objs
+     * update all rows that share the primary key with each obj in objs, if nobody has changed or deleted them since
+     * they were read
      * @requires obj != null
+     * @effects return the outcome of each obj (UPDATED or CONFLICT), or null if the write could not be done at all
+     */
+    BulkWriteResult update(Collection<T> objs);
+
+    /**
+     * insert each obj in objs, or update its row if it shares the primary key with a row already
+     * @requires objs != null
+     * @effects return the outcome of each obj, or null if the write could not be done at all
      */
-    void update(Collection<T> objs);
+    BulkWriteResult upsert(Collection<T> objs);
 
     /**
      * delete the row that share the primary key with obj
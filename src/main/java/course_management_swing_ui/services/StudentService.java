@@ -1,24 +1,26 @@
 package course_management_swing_ui.services;
 
-import course_management_swing_ui.models.Enrollment;
 import course_management_swing_ui.models.Student;
-import course_management_swing_ui.repositories.DbContext;
 import course_management_swing_ui.repositories.EnrollmentRepository;
 import course_management_swing_ui.repositories.StudentRepository;
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.SortOrder;
 import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.exceptions.StaleObjectException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.3
+ * @version 1.8
  * @Overview Implementation of Service for Student.
  */
 public class StudentService implements Service<Student, Integer> {
@@ -32,8 +34,8 @@ public class StudentService implements Service<Student, Integer> {
      */
     @Override
     public void add(Student obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            studentRepository.add(obj, conn).get();
+        try {
+            WriteQueue.getInstance().submit(conn -> studentRepository.add(obj, conn).get()).get();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -46,16 +48,9 @@ public class StudentService implements Service<Student, Integer> {
      */
     @Override
     public void addAll(Collection<Student> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                studentRepository.addAll(objs, conn).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> studentRepository.addAll(objs, conn).get()).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -67,7 +62,7 @@ public class StudentService implements Service<Student, Integer> {
      */
     @Override
     public Student findById(Integer id) {
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             return studentRepository.findById(id, conn).get();
         } catch (Exception e) {
             e.printStackTrace();
@@ -83,7 +78,7 @@ public class StudentService implements Service<Student, Integer> {
     @Override
     public List<Student> findById(Collection<Integer> ids) {
         List<Student> students = new ArrayList<>();
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             students.addAll(studentRepository.findById(ids, conn).get());
         } catch (Exception e) {
             e.printStackTrace();
@@ -98,7 +93,7 @@ public class StudentService implements Service<Student, Integer> {
     @Override
     public List<Student> findAll() {
         List<Student> students = new ArrayList<>();
-        try (Connection conn = DbConnect.getConnection()) {
+        try (Connection conn = DbConnect.getReadConnection()) {
             students.addAll(studentRepository.findAll(conn).get());
         } catch (Exception e) {
             e.printStackTrace();
@@ -107,37 +102,118 @@ public class StudentService implements Service<Student, Integer> {
     }
 
     /**
-     * update the row that share the primary key with obj
+     * return a lazy Stream of all objects of T
+     * @param fetchSize
+     * @requires fetchSize >= 0
+     * @effects <pre>
+     *     borrow a connection from the read pool and return studentRepository.stream on it. Closing the Stream gives the
+     *     connection back to the pool.
+     *     if the Stream cannot be opened, return an empty Stream
+     * </pre>
+     */
+    @Override
+    public Stream<Student> stream(int fetchSize) {
+        Connection conn = null;
+        try {
+            conn = DbConnect.getReadConnection();
+            Connection c = conn;
+            return studentRepository.stream(conn, fetchSize).onClose(() -> {
+                try {
+                    c.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * return a page of objects of T
+     * @param afterKey
+     * @param limit
+     * @param order
+     * @requires limit > 0 /\ order != null
+     */
+    @Override
+    public List<Student> page(Integer afterKey, int limit, SortOrder order) {
+        List<Student> students = new ArrayList<>();
+        try (Connection conn = DbConnect.getReadConnection()) {
+            students.addAll(studentRepository.page(afterKey, limit, order, conn).get());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return students;
+    }
+
+    /**
+     * update the row that share the primary key with obj, if nobody has changed or deleted it since obj was read
      * @param obj
      * @requires obj != null
+     * @effects return true if the row has been updated, false if it is in conflict or the update failed
      */
     @Override
-    public void update(Student obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            studentRepository.update(obj, conn).get();
+    public boolean update(Student obj) {
+        boolean[] updated = new boolean[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                try {
+                    studentRepository.update(obj, conn).get();
+                    updated[0] = true;
+                } catch (ExecutionException e) {
+                    // a conflict is an outcome, not a failure of the write
+                    if (!(e.getCause() instanceof StaleObjectException)) throw e;
+                }
+            }).get();
+            return updated[0];
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
         }
     }
 
     /**
-     * update all rows that share the primary key with each obj in objs
+     * update all rows that share the primary key with each obj in objs, if nobody has changed or deleted them since
+     * they were read
      * @param objs
      * @requires obj != null
+     * @effects return the outcome of each obj (UPDATED or CONFLICT), or null if the write could not be done at all
      */
     @Override
-    public void update(Collection<Student> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                studentRepository.update(objs, conn).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+    public BulkWriteResult update(Collection<Student> objs) {
+        BulkWriteResult[] result = new BulkWriteResult[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> result[0] = studentRepository.update(objs, conn).get()).get();
+            return result[0];
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * insert each obj in objs, or update its row if it shares the primary key with a row already
+     * @param objs
+     * @requires objs != null
+     */
+    @Override
+    public BulkWriteResult upsert(Collection<Student> objs) {
+        BulkWriteResult[] result = new BulkWriteResult[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> result[0] = studentRepository.upsert(objs, conn).get()).get();
+            return result[0];
+        } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -148,25 +224,13 @@ public class StudentService implements Service<Student, Integer> {
      */
     @Override
     public void delete(Student obj) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                List<CompletableFuture<Void>> tasks = new ArrayList<>();
-                CompletableFuture<Void> studentTask = studentRepository.delete(obj, conn);
-                tasks.add(studentTask);
-                Optional<Enrollment> opt = DbContext.enrollmentDbContext.stream().filter(e -> e.getStudent().getNumericalId() == obj.getNumericalId()).findFirst();
-                if (opt.isPresent()) {
-                    Enrollment enrollment = opt.get();
-                    CompletableFuture<Void> enTask = enrollmentRepository.delete(enrollment, conn);
-                    tasks.add(enTask);
-                }
-                CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                // the enrollments first, as they reference obj
+                enrollmentRepository.deleteByStudent(List.of(obj.getNumericalId()), conn).get();
+                studentRepository.delete(obj, conn).get();
+            }).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -178,22 +242,14 @@ public class StudentService implements Service<Student, Integer> {
      */
     @Override
     public void delete(Collection<Student> objs) {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                CompletableFuture<Void> studentTask = studentRepository.delete(objs, conn);
-
-                // delete enrollments
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                // the enrollments first, as they reference objs
                 List<Integer> numId = objs.stream().map(Student::getNumericalId).collect(Collectors.toList());
-                List<Enrollment> enrollments = DbContext.enrollmentDbContext.stream().filter(e -> numId.contains(e.getStudent().getNumericalId())).collect(Collectors.toList());
-                CompletableFuture<Void> enTask = enrollmentRepository.delete(enrollments, conn);
-                CompletableFuture.allOf(studentTask, enTask).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+                enrollmentRepository.deleteByStudent(numId, conn).get();
+                studentRepository.delete(objs, conn).get();
+            }).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -204,18 +260,12 @@ public class StudentService implements Service<Student, Integer> {
      */
     @Override
     public void deleteAll() {
-        try (Connection conn = DbConnect.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
-                CompletableFuture<Void> studentTask = studentRepository.deleteAll(conn);
-                CompletableFuture<Void> enTask = enrollmentRepository.deleteAll(conn);
-                CompletableFuture.allOf(studentTask, enTask).get();
-                conn.commit();
-            } catch (Exception e) {
-                conn.rollback();
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                enrollmentRepository.deleteAll(conn).get();
+                studentRepository.deleteAll(conn).get();
+            }).get();
+        } catch (Exception e) {
             e.printStackTrace();
         }
     }
@@ -0,0 +1,347 @@
+package course_management_swing_ui.services;
+
+import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.EnrollmentRepository;
+import course_management_swing_ui.repositories.ModuleRepository;
+import course_management_swing_ui.repositories.Repository;
+import course_management_swing_ui.repositories.StudentRepository;
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.db.WriteQueue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.3
+ * @Overview One user action as one transaction. The Work of the action runs as a single WriteCommand, hence on the
+ * connection and inside the transaction of the writer thread of WriteQueue:
+ * <pre>
+ *     - its reads (students(), modules(), enrollments()) are made on that connection, and every object is read once:
+ *       the next findById of its key gives the same object back, with the changes the Work made to it
+ *     - the objects are read from the database, never taken from DbContext: the Work changes its own copies, and
+ *       DbContext stays as it was if the UnitOfWork is rolled back or an update is in conflict
+ *     - its writes are only registered (add, update, upsert, delete), then flushed with one bulk write per kind of
+ *       change and per table when the Work returns
+ *     - everything is committed once, or rolled back if the Work or the flush fails
+ * </pre>
+ * The flush writes the tables in the order of their foreign keys: the additions, upserts and updates of the students,
+ * the modules and then the enrollments, followed by the deletions of the enrollments, the students and the modules. As
+ * with StudentService and ModuleService, deleting a student or a module deletes its enrollments too. An update of a row
+ * that someone else has changed or deleted since it was read is not an error: it is left out and reported by
+ * Entities.getConflicts. DbContext is brought up to date afterwards by ChangeSync, which reads again the rows that have
+ * changed, the ones in conflict included, instead of reading the tables again.
+ * <pre>
+ *  Usage:
+ *      UnitOfWork.execute(uow -&gt; {
+ *          Student s = uow.students().findById(id);
+ *          s.setName(name);
+ *          uow.students().update(s);
+ *      });
+ * </pre>
+ * A Work may also call the services: their writes run on the same transaction (see WriteQueue.submit), their reads do
+ * not.
+ */
+public final class UnitOfWork {
+    private static final StudentRepository studentRepository = new StudentRepository();
+    private static final ModuleRepository moduleRepository = new ModuleRepository();
+    private static final EnrollmentRepository enrollmentRepository = new EnrollmentRepository();
+
+    private final Connection conn;
+    private final Entities<Student, Integer> students;
+    private final Entities<Module, String> modules;
+    private final Entities<Enrollment, Integer> enrollments;
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview The work of one user action, see UnitOfWork.
+     */
+    @FunctionalInterface
+    public interface Work {
+        /**
+         * @requires uow != null
+         */
+        void execute(UnitOfWork uow) throws Exception;
+    }
+
+    private UnitOfWork(Connection conn) {
+        this.conn = conn;
+        this.students = new Entities<>(studentRepository, Student::getNumericalId);
+        this.modules = new Entities<>(moduleRepository, Module::getCode);
+        this.enrollments = new Entities<>(enrollmentRepository, Enrollment::getId);
+    }
+
+    /**
+     * @requires work != null
+     * @modifies the database
+     * @effects <pre>
+     *     run work with a new UnitOfWork, flush its changes and commit them in one transaction
+     *     return the UnitOfWork, whose upsert results and conflicts can be read (see Entities.getUpsertResult and
+     *     Entities.getConflicts)
+     *     if work or the flush fails
+     *       roll everything back, print the cause and return null
+     * </pre>
+     */
+    public static UnitOfWork execute(Work work) {
+        UnitOfWork[] uow = new UnitOfWork[1];
+        try {
+            WriteQueue.getInstance().submit(conn -> {
+                UnitOfWork u = new UnitOfWork(conn);
+                work.execute(u);
+                u.flush();
+                uow[0] = u;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
+            return null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+        return uow[0];
+    }
+
+    public Entities<Student, Integer> students() {
+        return students;
+    }
+
+    public Entities<Module, String> modules() {
+        return modules;
+    }
+
+    public Entities<Enrollment, Integer> enrollments() {
+        return enrollments;
+    }
+
+    /**
+     * @modifies the database
+     * @effects write the registered changes, in the order of the foreign keys (see UnitOfWork)
+     */
+    private void flush() throws Exception {
+        students.write();
+        modules.write();
+        enrollments.write();
+
+        enrollments.delete();
+        if (!students.deleted.isEmpty()) {
+            await(enrollmentRepository.deleteByStudent(new ArrayList<>(students.deleted.keySet()), conn));
+            students.delete();
+        }
+        if (!modules.deleted.isEmpty()) {
+            await(enrollmentRepository.deleteByModule(new ArrayList<>(modules.deleted.keySet()), conn));
+            modules.delete();
+        }
+    }
+
+    /**
+     * @effects wait for future and return its value, or throw the cause of its failure
+     */
+    private static <V> V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.3
+     * @Overview The objects of one table in a UnitOfWork: the ones that have been read (by key), as copies of their
+     * rows that belong to the UnitOfWork, and the changes that have been registered. The last change registered for a
+     * key replaces the previous ones.
+     */
+    public final class Entities<T, K> {
+        private final Repository<T, K> repository;
+        private final Function<T, K> keyOf;
+        private final Map<K, T> read = new HashMap<>();
+        private final Map<K, T> added = new LinkedHashMap<>();
+        private final Map<K, T> updated = new LinkedHashMap<>();
+        private final Map<K, T> upserted = new LinkedHashMap<>();
+        private final Map<K, T> deleted = new LinkedHashMap<>();
+        private BulkWriteResult upsertResult;
+        private BulkWriteResult updateResult;
+
+        private Entities(Repository<T, K> repository, Function<T, K> keyOf) {
+            this.repository = repository;
+            this.keyOf = keyOf;
+        }
+
+        /**
+         * @requires id != null
+         * @effects return the object of id that this UnitOfWork has read or added already, otherwise read it from the
+         * database (null if there is none)
+         */
+        public T findById(K id) throws Exception {
+            T obj = known(id);
+            if (obj == null && !read.containsKey(id)) {
+                List<T> objs = await(repository.read(List.of(id), conn));
+                obj = objs.isEmpty() ? null : objs.get(0);
+                read.put(id, obj);
+            }
+            return obj;
+        }
+
+        /**
+         * @requires ids != null
+         * @effects same as findById(K) for every id of ids, in the order of ids, where the objects that have not been
+         * read yet are read at once; the ids without object are skipped
+         */
+        public List<T> findById(Collection<K> ids) throws Exception {
+            List<K> missing = ids.stream().filter(id -> known(id) == null && !read.containsKey(id))
+                    .distinct().collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                for (K id : missing) {
+                    read.put(id, null);
+                }
+                for (T obj : await(repository.read(missing, conn))) {
+                    if (obj != null) {
+                        read.put(keyOf.apply(obj), obj);
+                    }
+                }
+            }
+            List<T> objs = new ArrayList<>(ids.size());
+            for (K id : ids) {
+                T obj = known(id);
+                if (obj != null) {
+                    objs.add(obj);
+                }
+            }
+            return objs;
+        }
+
+        /**
+         * @requires obj != null
+         * @modifies this
+         * @effects register obj to be inserted
+         */
+        public void add(T obj) {
+            register(obj, added);
+        }
+
+        /**
+         * @requires obj != null /\ obj is in the database
+         * @modifies this
+         * @effects register obj to be updated
+         */
+        public void update(T obj) {
+            K key = keyOf.apply(obj);
+            // updating an object that is added or upserted in this unit of work changes what is written
+            if (added.containsKey(key)) {
+                added.put(key, obj);
+            } else if (upserted.containsKey(key)) {
+                upserted.put(key, obj);
+            } else {
+                register(obj, updated);
+            }
+        }
+
+        /**
+         * @requires obj != null
+         * @modifies this
+         * @effects register obj to be inserted, or to update its row if there is one (see getUpsertResult)
+         */
+        public void upsert(T obj) {
+            register(obj, upserted);
+        }
+
+        /**
+         * @requires obj != null
+         * @modifies this
+         * @effects register obj to be deleted
+         */
+        public void delete(T obj) {
+            K key = keyOf.apply(obj);
+            if (added.remove(key) == null) {
+                register(obj, deleted);
+            }
+            read.put(key, null);
+        }
+
+        /**
+         * @effects return the outcome of every upserted object, in the order of their registration, once the
+         * UnitOfWork has been committed; null if it has upserted nothing
+         */
+        public BulkWriteResult getUpsertResult() {
+            return upsertResult;
+        }
+
+        /**
+         * @effects return the keys of the updated objects whose rows had been changed or deleted by someone else, in the
+         * order of their registration, once the UnitOfWork has been committed; these objects have not been written, and
+         * the next ChangeSync.sync puts what the database holds into DbContext instead
+         */
+        public List<K> getConflicts() {
+            List<K> conflicts = new ArrayList<>();
+            if (updateResult != null) {
+                List<K> keys = new ArrayList<>(updated.keySet());
+                for (int i : updateResult.indexesOf(BulkWriteResult.Outcome.CONFLICT)) {
+                    conflicts.add(keys.get(i));
+                }
+            }
+            return conflicts;
+        }
+
+        /**
+         * @effects return the object of id that has been read, added or upserted, or null
+         */
+        private T known(K id) {
+            T obj = added.get(id);
+            if (obj == null) obj = upserted.get(id);
+            if (obj == null) obj = read.get(id);
+            return obj;
+        }
+
+        private void register(T obj, Map<K, T> changes) {
+            K key = keyOf.apply(obj);
+            added.remove(key);
+            updated.remove(key);
+            upserted.remove(key);
+            deleted.remove(key);
+            changes.put(key, obj);
+            if (changes != deleted) {
+                read.put(key, obj);
+            }
+        }
+
+        /**
+         * @modifies the database
+         * @effects insert, upsert and update the registered objects, one bulk write each
+         */
+        private void write() throws Exception {
+            if (!added.isEmpty()) {
+                await(repository.addAll(new ArrayList<>(added.values()), conn));
+            }
+            if (!upserted.isEmpty()) {
+                upsertResult = await(repository.upsert(new ArrayList<>(upserted.values()), conn));
+            }
+            if (!updated.isEmpty()) {
+                updateResult = await(repository.update(new ArrayList<>(updated.values()), conn));
+            }
+        }
+
+        /**
+         * @modifies the database
+         * @effects delete the registered objects with one bulk write
+         */
+        private void delete() throws Exception {
+            if (!deleted.isEmpty()) {
+                await(repository.delete(new ArrayList<>(deleted.values()), conn));
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package course_management_swing_ui.services.exports;
+
+import java.nio.file.Path;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The formats of an exported file. The format and the compression of a file are given by its name:
+ * <pre>
+ *     *.csv, *.csv.gz      CSV, with a header of the column names
+ *     *.json, *.json.gz    a JSON array of objects, whose keys are the column names
+ * </pre>
+ */
+public enum ExportFormat {
+    CSV(".csv"), JSON(".json");
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @requires path != null
+     * @effects return the format of the file at path: JSON if its name ends with .json or .json.gz, otherwise CSV
+     */
+    public static ExportFormat of(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        if (isGzip(path)) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        return name.endsWith(JSON.extension) ? JSON : CSV;
+    }
+
+    /**
+     * @requires path != null
+     * @effects return true if the name of the file at path ends with .gz
+     */
+    public static boolean isGzip(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(GZIP_EXTENSION);
+    }
+}
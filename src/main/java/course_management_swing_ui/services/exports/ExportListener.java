@@ -0,0 +1,31 @@
+package course_management_swing_ui.services.exports;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Follows and controls an export while it runs. Both methods are called by the thread of the export, not by
+ * the Swing thread.
+ */
+public interface ExportListener {
+    ExportListener NONE = new ExportListener() {
+        @Override
+        public void onProgress(long rows, long total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * @effects called every Exporter.PROGRESS_INTERVAL rows and at the end, with the number of rows written so far and
+     * the number of rows of the table when the export started
+     */
+    void onProgress(long rows, long total);
+
+    /**
+     * @effects return true if the export must stop, in which case the partial file is deleted
+     */
+    boolean isCancelled();
+}
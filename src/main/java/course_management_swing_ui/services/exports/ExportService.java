@@ -0,0 +1,85 @@
+package course_management_swing_ui.services.exports;
+
+import course_management_swing_ui.repositories.dao.DAO;
+import course_management_swing_ui.repositories.dao.DaoFactory;
+import course_management_swing_ui.repositories.dao.RowStream;
+import course_management_swing_ui.repositories.db.DbConnect;
+import course_management_swing_ui.services.EnrollmentService;
+import course_management_swing_ui.services.ModuleService;
+import course_management_swing_ui.services.StudentService;
+import course_management_swing_ui.util.dto.DtoGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.2
+ * @Overview The service that exports the students, the modules and the enrollment reports to CSV or JSON files, see
+ * Exporter. The rows are streamed from the database and projected by DtoGenerator.getRow_*, the projections of the
+ * views. The columns of the students, the modules and the assessment report are those of the CSV import
+ * (services.imports), so an exported file can be imported again.
+ */
+public class ExportService {
+    private static final String[] STUDENT_COLUMNS = {"id", "name", "dob", "address", "email"};
+    private static final String[] MODULE_COLUMNS = {"code", "name", "semester", "credits", "module_type", "department"};
+    private static final String[] INITIAL_REPORT_COLUMNS = {"id", "student_id", "student_name", "module_code", "module_name"};
+    private static final String[] ASSESSMENT_REPORT_COLUMNS = {"id", "student_id", "module_code", "internal_mark",
+            "examination_mark", "final_grade"};
+
+    private final StudentService studentService = new StudentService();
+    private final ModuleService moduleService = new ModuleService();
+    private final EnrollmentService enrollmentService = new EnrollmentService();
+
+    /**
+     * @requires path != null /\ listener != null
+     * @effects export every student to path, see Exporter.run, and return the number of rows written
+     */
+    public long exportStudents(Path path, ExportListener listener) throws IOException {
+        return new Exporter<>(STUDENT_COLUMNS, () -> studentService.stream(RowStream.DEFAULT_FETCH_SIZE),
+                DtoGenerator::getRow_student, () -> count(DaoFactory.createStudentDAO())).run(path, listener);
+    }
+
+    /**
+     * @requires path != null /\ listener != null
+     * @effects export every module to path, see Exporter.run, and return the number of rows written
+     */
+    public long exportModules(Path path, ExportListener listener) throws IOException {
+        return new Exporter<>(MODULE_COLUMNS, () -> moduleService.stream(RowStream.DEFAULT_FETCH_SIZE),
+                DtoGenerator::getRow_module, () -> count(DaoFactory.createModuleDAO())).run(path, listener);
+    }
+
+    /**
+     * @requires path != null /\ listener != null
+     * @effects export the initial report of every enrollment to path, see Exporter.run, and return the number of rows
+     * written
+     */
+    public long exportInitialReport(Path path, ExportListener listener) throws IOException {
+        return new Exporter<>(INITIAL_REPORT_COLUMNS, () -> enrollmentService.stream(RowStream.DEFAULT_FETCH_SIZE),
+                DtoGenerator::getRow_initialReport, () -> count(DaoFactory.createEnrollmentDAO())).run(path, listener);
+    }
+
+    /**
+     * @requires path != null /\ listener != null
+     * @effects export the assessment report of every enrollment to path, see Exporter.run, and return the number of
+     * rows written
+     */
+    public long exportAssessmentReport(Path path, ExportListener listener) throws IOException {
+        return new Exporter<>(ASSESSMENT_REPORT_COLUMNS, () -> enrollmentService.stream(RowStream.DEFAULT_FETCH_SIZE),
+                DtoGenerator::getRow_assessmentReport, () -> count(DaoFactory.createEnrollmentDAO())).run(path, listener);
+    }
+
+    /**
+     * @effects return the number of rows of the table of dao, or -1 if it cannot be read
+     */
+    private static long count(DAO<?, ?> dao) {
+        try (Connection conn = DbConnect.getReadConnection()) {
+            return dao.count(conn);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package course_management_swing_ui.services.exports;
+
+import course_management_swing_ui.util.exceptions.UncheckedSQLException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Exports a table, or a report, to a file with constant memory: the rows are pulled one at a time from a lazy
+ * Stream (Service.stream, i.e. a RowStream over the database), projected to their values and written through a
+ * buffered writer over a FileChannel, gzip-compressed if the name of the file ends with .gz. No row is kept after it
+ * has been written, and DbContext is not used.
+ */
+public class Exporter<T> {
+    public static final int PROGRESS_INTERVAL = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String[] columns;
+    private final Supplier<Stream<T>> rows;
+    private final Function<T, Object[]> projection;
+    private final LongSupplier count;
+
+    /**
+     * @requires columns != null /\ rows != null /\ projection != null /\ count != null /\ projection returns
+     * columns.length values
+     * @effects initialize this as the export of the rows of rows.get(), where count returns their number, or -1 if it
+     * is not known
+     */
+    Exporter(String[] columns, Supplier<Stream<T>> rows, Function<T, Object[]> projection, LongSupplier count) {
+        this.columns = columns.clone();
+        this.rows = rows;
+        this.projection = projection;
+        this.count = count;
+    }
+
+    /**
+     * @requires path != null /\ listener != null
+     * @modifies the file at path
+     * @effects <pre>
+     *     write every row to path, in the ExportFormat of path, and report the progress to listener
+     *     return the number of rows written
+     *     if listener is cancelled, or the export fails
+     *       delete the partial file
+     *       throw CancellationException, or IOException
+     * </pre>
+     */
+    public long run(Path path, ExportListener listener) throws IOException {
+        long total = count.getAsLong();
+        long written = 0;
+        boolean done = false;
+        try (Stream<T> stream = rows.get();
+             RowWriter out = RowWriter.of(ExportFormat.of(path), open(path), columns)) {
+            out.begin();
+            Iterator<T> it = stream.iterator();
+            while (it.hasNext()) {
+                out.write(projection.apply(it.next()));
+                if (++written % PROGRESS_INTERVAL == 0) {
+                    if (listener.isCancelled()) {
+                        throw new CancellationException("export of " + path.getFileName() + " cancelled");
+                    }
+                    listener.onProgress(written, Math.max(total, written));
+                }
+            }
+            out.end();
+            done = true;
+        } catch (UncheckedSQLException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            if (!done) {
+                Files.deleteIfExists(path);
+            }
+        }
+        listener.onProgress(written, written);
+        return written;
+    }
+
+    /**
+     * @effects return a buffered UTF-8 writer over a new FileChannel of path, through gzip if its name ends with .gz
+     */
+    private static Writer open(Path path) throws IOException {
+        OutputStream out = Channels.newOutputStream(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        if (ExportFormat.isGzip(path)) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+}
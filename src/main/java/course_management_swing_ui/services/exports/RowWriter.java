@@ -0,0 +1,156 @@
+package course_management_swing_ui.services.exports;
+
+import course_management_swing_ui.util.csv.CsvWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Writes the rows of an export in an ExportFormat, one at a time.
+ */
+abstract class RowWriter implements Closeable {
+    /**
+     * @requires format != null /\ out != null /\ columns != null
+     * @effects return a new RowWriter of format, which writes rows of columns to out
+     */
+    static RowWriter of(ExportFormat format, Writer out, String[] columns) {
+        return format == ExportFormat.JSON ? new Json(out, columns) : new Csv(out, columns);
+    }
+
+    /**
+     * @modifies this
+     * @effects write the beginning of the file
+     */
+    abstract void begin() throws IOException;
+
+    /**
+     * @requires values.length == columns.length
+     * @modifies this
+     */
+    abstract void write(Object[] values) throws IOException;
+
+    /**
+     * @modifies this
+     * @effects write the end of the file
+     */
+    abstract void end() throws IOException;
+
+    private static final class Csv extends RowWriter {
+        private final CsvWriter out;
+        private final String[] columns;
+
+        Csv(Writer out, String[] columns) {
+            this.out = new CsvWriter(out);
+            this.columns = columns;
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.writeRow(columns);
+        }
+
+        @Override
+        void write(Object[] values) throws IOException {
+            String[] fields = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                fields[i] = values[i] == null ? null : values[i].toString();
+            }
+            out.writeRow(fields);
+        }
+
+        @Override
+        void end() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class Json extends RowWriter {
+        private final Writer out;
+        private final String[] keys;
+        private boolean first = true;
+
+        Json(Writer out, String[] columns) {
+            this.out = out;
+            this.keys = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                keys[i] = quote(columns[i]) + ":";
+            }
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write('[');
+        }
+
+        @Override
+        void write(Object[] values) throws IOException {
+            out.write(first ? "\n{" : ",\n{");
+            first = false;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(keys[i]);
+                Object v = values[i];
+                if (v == null) {
+                    out.write("null");
+                } else if (v instanceof Number || v instanceof Boolean) {
+                    out.write(v.toString());
+                } else {
+                    out.write(quote(v.toString()));
+                }
+            }
+            out.write('}');
+        }
+
+        @Override
+        void end() throws IOException {
+            out.write("\n]\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private static String quote(String s) {
+            StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                        sb.append("\\\"");
+                        break;
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+}
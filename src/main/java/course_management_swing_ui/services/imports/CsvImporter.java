@@ -0,0 +1,279 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.repositories.dao.BulkWriteResult;
+import course_management_swing_ui.repositories.dao.DAO;
+import course_management_swing_ui.repositories.db.WriteQueue;
+import course_management_swing_ui.util.ThreadPool;
+import course_management_swing_ui.util.csv.CsvReader;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview The pipeline that imports a CSV file into one table:
+ * <pre>
+ *     read     the records of the file are streamed by CsvReader, BATCH_SIZE at a time
+ *     parse    the records of a batch are validated by the ImportSchema, in parallel slices on ThreadPool.cpu if
+ *              the schema is thread-safe
+ *     write    the valid rows of a batch are written by one WriteQueue command, i.e. in one transaction, with the
+ *              multi-row statements of DAO.createEach (INSERT) or DAO.upsert (UPSERT)
+ * </pre>
+ * While a batch is written by the writer thread, the next one is read and parsed, and at most two batches are in memory
+ * at a time. A row that cannot be parsed or written is rejected alone, with its line and its reason, in the
+ * ImportReport.
+ */
+public class CsvImporter<T> {
+    public static final int BATCH_SIZE = 2048;
+
+    // the smallest slice worth a task of its own
+    private static final int MIN_SLICE = 256;
+
+    private final ImportSchema<T> schema;
+    private final DAO<T, ?> dao;
+    private final ImportMode mode;
+
+    /**
+     * The records of a batch, and what became of them.
+     */
+    private static final class Batch {
+        final long[] lines;
+        final String[][] fields;
+        final String[][] values;
+        final Object[] parsed;
+        final String[] errors;
+
+        Batch(int size) {
+            lines = new long[size];
+            fields = new String[size][];
+            values = new String[size][];
+            parsed = new Object[size];
+            errors = new String[size];
+        }
+    }
+
+    /**
+     * @requires schema != null /\ dao != null /\ mode != null
+     */
+    CsvImporter(ImportSchema<T> schema, DAO<T, ?> dao, ImportMode mode) {
+        this.schema = schema;
+        this.dao = dao;
+        this.mode = mode;
+    }
+
+    /**
+     * @requires path != null /\ the caller is not a thread of ThreadPool.cpu
+     * @modifies the database
+     * @effects <pre>
+     *     if the first record of the file (its header) has every column of schema
+     *       import every other record of the file, see CsvImporter
+     *       return the ImportReport of the import
+     *     else
+     *       throw InvalidArgumentException
+     * </pre>
+     */
+    public ImportReport run(Path path) throws IOException, InvalidArgumentException {
+        long start = System.nanoTime();
+        try (CsvReader reader = CsvReader.open(path)) {
+            String[] header = reader.next();
+            if (header == null) {
+                throw new InvalidArgumentException(path.getFileName() + " is empty");
+            }
+            int[] positions = positions(header);
+            ImportReport report = new ImportReport(path, header);
+
+            Batch written = null;
+            CompletableFuture<BulkWriteResult> writing = null;
+            Batch batch;
+            while ((batch = read(reader, header.length, positions, report)) != null) {
+                parse(batch);
+                if (writing != null) {
+                    collect(written, writing, report);
+                }
+                written = batch;
+                writing = write(batch);
+            }
+            if (writing != null) {
+                collect(written, writing, report);
+            }
+            report.setElapsedNanos(System.nanoTime() - start);
+            return report;
+        }
+    }
+
+    /**
+     * @effects return the position in header of every column of schema, where the names are compared trimmed and
+     * ignoring case, or throw InvalidArgumentException if one of them is missing
+     */
+    private int[] positions(String[] header) throws InvalidArgumentException {
+        String[] columns = schema.getColumns();
+        int[] positions = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            positions[i] = -1;
+            for (int j = 0; j < header.length; j++) {
+                if (header[j].trim().toLowerCase(Locale.ROOT).equals(columns[i])) {
+                    positions[i] = j;
+                    break;
+                }
+            }
+            if (positions[i] < 0) {
+                throw new InvalidArgumentException("missing column \"" + columns[i] + "\", the columns are: "
+                        + String.join(", ", columns));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * @modifies reader, report
+     * @effects return the next BATCH_SIZE (or fewer) valid-sized records of reader, with the values of the columns of
+     * schema, or null if there are no more records. A record that has not as many fields as the header is rejected at
+     * once.
+     */
+    private Batch read(CsvReader reader, int width, int[] positions, ImportReport report) throws IOException {
+        Batch batch = new Batch(BATCH_SIZE);
+        int n = 0;
+        String[] fields;
+        while (n < BATCH_SIZE && (fields = reader.next()) != null) {
+            report.addRowsRead(1);
+            if (fields.length != width) {
+                report.reject(reader.getLineNumber(), "expected " + width + " fields, found " + fields.length, fields);
+                continue;
+            }
+            String[] values = new String[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                values[i] = fields[positions[i]].trim();
+            }
+            batch.lines[n] = reader.getLineNumber();
+            batch.fields[n] = fields;
+            batch.values[n] = values;
+            n++;
+        }
+        if (n == 0) {
+            // the loop stops only when the batch is full or the file has ended
+            return null;
+        }
+        return n == BATCH_SIZE ? batch : trim(batch, n);
+    }
+
+    private static Batch trim(Batch batch, int n) {
+        Batch trimmed = new Batch(n);
+        System.arraycopy(batch.lines, 0, trimmed.lines, 0, n);
+        System.arraycopy(batch.fields, 0, trimmed.fields, 0, n);
+        System.arraycopy(batch.values, 0, trimmed.values, 0, n);
+        return trimmed;
+    }
+
+    /**
+     * @modifies batch
+     * @effects parse every record of batch with schema: set batch.parsed[i] to its object, or batch.errors[i] to the
+     * reason why it is not valid
+     */
+    private void parse(Batch batch) throws IOException {
+        int n = batch.lines.length;
+        int slices = schema.isThreadSafe() ? Math.min(Runtime.getRuntime().availableProcessors(), n / MIN_SLICE) : 1;
+        if (slices <= 1) {
+            parse(batch, 0, n);
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(slices);
+        for (int s = 0; s < slices; s++) {
+            int from = n * s / slices, to = n * (s + 1) / slices;
+            tasks.add(() -> {
+                parse(batch, from, to);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : ThreadPool.cpu.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void parse(Batch batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                batch.parsed[i] = schema.parse(batch.values[i]);
+            } catch (InvalidArgumentException e) {
+                batch.errors[i] = e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * @effects submit the valid rows of batch to WriteQueue, as one command, and return the future of their outcomes
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<BulkWriteResult> write(Batch batch) {
+        List<T> rows = new ArrayList<>(batch.parsed.length);
+        for (Object o : batch.parsed) {
+            if (o != null) {
+                rows.add((T) o);
+            }
+        }
+        if (rows.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        BulkWriteResult[] result = new BulkWriteResult[1];
+        return WriteQueue.getInstance()
+                .submit(conn -> result[0] = mode == ImportMode.UPSERT ? dao.upsert(rows, conn) : dao.createEach(rows, conn))
+                .thenApply(v -> result[0]);
+    }
+
+    /**
+     * @modifies report
+     * @effects wait until batch is written, then count its rows in report: a row that could not be parsed, or could not
+     * be written, is rejected. If the whole command failed, every valid row of batch is rejected with its cause.
+     */
+    private void collect(Batch batch, CompletableFuture<BulkWriteResult> writing, ImportReport report) throws IOException {
+        BulkWriteResult result = null;
+        String failure = null;
+        try {
+            result = writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("import interrupted", e);
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            failure = String.valueOf(e.getCause().getMessage());
+        }
+        int row = 0;
+        for (int i = 0; i < batch.lines.length; i++) {
+            if (batch.parsed[i] == null) {
+                report.reject(batch.lines[i], batch.errors[i], batch.fields[i]);
+                continue;
+            }
+            int index = row++;
+            if (failure != null) {
+                report.reject(batch.lines[i], failure, batch.fields[i]);
+                continue;
+            }
+            switch (result.getOutcome(index)) {
+                case INSERTED:
+                    report.addInserted();
+                    break;
+                case UPDATED:
+                    report.addUpdated();
+                    break;
+                default:
+                    report.reject(batch.lines[i], String.valueOf(result.getError(index).getMessage()), batch.fields[i]);
+                    break;
+            }
+        }
+    }
+}
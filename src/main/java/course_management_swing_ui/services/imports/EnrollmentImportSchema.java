@@ -0,0 +1,58 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.models.Enrollment;
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.models.Student;
+import course_management_swing_ui.repositories.dao.EnrollmentRow;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The ImportSchema of enrollments: id, student_id (S2022 or 2022), module_code, internal_mark,
+ * examination_mark. A row is validated with Enrollment.validateId, Student.validateId, Module.validateCode and
+ * Enrollment.validateMark, and becomes an EnrollmentRow: the student and the module are not loaded, the foreign keys of
+ * the enrollment table reject a row whose student or module does not exist when it is written.
+ */
+class EnrollmentImportSchema implements ImportSchema<EnrollmentRow> {
+    private static final String[] COLUMNS = {"id", "student_id", "module_code", "internal_mark", "examination_mark"};
+
+    @Override
+    public String[] getColumns() {
+        return COLUMNS.clone();
+    }
+
+    @Override
+    public EnrollmentRow parse(String[] values) throws InvalidArgumentException {
+        int id = Fields.toInt(values[0], COLUMNS[0]);
+        if (!Enrollment.validateId(id)) {
+            throw invalid(COLUMNS[0], values[0]);
+        }
+        int studentId = Fields.toStudentId(values[1], COLUMNS[1]);
+        if (!Student.validateId("S" + studentId)) {
+            throw invalid(COLUMNS[1], values[1]);
+        }
+        String moduleCode = Fields.require(values[2], COLUMNS[2]);
+        if (!Module.validateCode(moduleCode)) {
+            throw invalid(COLUMNS[2], moduleCode);
+        }
+        double internalMark = Fields.toDouble(values[3], COLUMNS[3]);
+        if (!Enrollment.validateMark(internalMark)) {
+            throw invalid(COLUMNS[3], values[3]);
+        }
+        double examinationMark = Fields.toDouble(values[4], COLUMNS[4]);
+        if (!Enrollment.validateMark(examinationMark)) {
+            throw invalid(COLUMNS[4], values[4]);
+        }
+        return new EnrollmentRow(id, studentId, moduleCode, internalMark, examinationMark);
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    private static InvalidArgumentException invalid(String column, String value) {
+        return new InvalidArgumentException("invalid " + column + ": \"" + value + "\"");
+    }
+}
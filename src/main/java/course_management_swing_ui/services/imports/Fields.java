@@ -0,0 +1,62 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview Conversions of the text of a CSV field, shared by the import schemas. Every method throws
+ * InvalidArgumentException with a readable reason if the text is not valid.
+ */
+final class Fields {
+    private Fields() {
+    }
+
+    /**
+     * @effects return value if it is not empty, otherwise throw InvalidArgumentException
+     */
+    static String require(String value, String column) throws InvalidArgumentException {
+        if (value == null || value.isEmpty()) {
+            throw new InvalidArgumentException("missing " + column);
+        }
+        return value;
+    }
+
+    static int toInt(String value, String column) throws InvalidArgumentException {
+        try {
+            return Integer.parseInt(require(value, column));
+        } catch (NumberFormatException e) {
+            throw new InvalidArgumentException("invalid " + column + ": \"" + value + "\"");
+        }
+    }
+
+    static double toDouble(String value, String column) throws InvalidArgumentException {
+        try {
+            return Double.parseDouble(require(value, column));
+        } catch (NumberFormatException e) {
+            throw new InvalidArgumentException("invalid " + column + ": \"" + value + "\"");
+        }
+    }
+
+    /**
+     * @effects return the date of value, written as yyyy-MM-dd
+     */
+    static LocalDate toDate(String value, String column) throws InvalidArgumentException {
+        try {
+            return LocalDate.parse(require(value, column));
+        } catch (DateTimeParseException e) {
+            throw new InvalidArgumentException("invalid " + column + ": \"" + value + "\"");
+        }
+    }
+
+    /**
+     * @effects return the numerical id of a student, written as S2022 or 2022
+     */
+    static int toStudentId(String value, String column) throws InvalidArgumentException {
+        String id = require(value, column);
+        return toInt(id.charAt(0) == 'S' || id.charAt(0) == 's' ? id.substring(1) : id, column);
+    }
+}
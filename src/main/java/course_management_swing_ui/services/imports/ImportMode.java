@@ -0,0 +1,11 @@
+package course_management_swing_ui.services.imports;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview How the rows of an imported file are written: INSERT creates new rows only, and a row whose key is in the
+ * database already is rejected; UPSERT creates new rows and updates the existing ones.
+ */
+public enum ImportMode {
+    INSERT, UPSERT
+}
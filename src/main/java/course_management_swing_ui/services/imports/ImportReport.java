@@ -0,0 +1,168 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.util.csv.CsvWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The result of the import of a CSV file: how many rows were read, inserted, updated and rejected, every
+ * rejected row with its line and its reason, and the throughput of the import.
+ * @attributes <pre>
+ *   file           Path
+ *   header         String[]
+ *   rowsRead       long
+ *   inserted       long
+ *   updated        long
+ *   rejected       List<RejectedRow>
+ *   elapsedNanos   long
+ * </pre>
+ */
+public class ImportReport {
+    private final Path file;
+    private final String[] header;
+    private long rowsRead;
+    private long inserted;
+    private long updated;
+    private final List<RejectedRow> rejected = new ArrayList<>();
+    private long elapsedNanos;
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview A row of the file that was not imported.
+     */
+    public static final class RejectedRow {
+        private final long line;
+        private final String reason;
+        private final String[] fields;
+
+        RejectedRow(long line, String reason, String[] fields) {
+            this.line = line;
+            this.reason = reason;
+            this.fields = fields;
+        }
+
+        /**
+         * @effects return the line of the file where the row starts
+         */
+        public long getLine() {
+            return line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * @effects return the fields of the row, as they are in the file
+         */
+        public String[] getFields() {
+            return fields.clone();
+        }
+    }
+
+    ImportReport(Path file, String[] header) {
+        this.file = file;
+        this.header = header.clone();
+    }
+
+    void addRowsRead(int rows) {
+        rowsRead += rows;
+    }
+
+    void addInserted() {
+        inserted++;
+    }
+
+    void addUpdated() {
+        updated++;
+    }
+
+    void reject(long line, String reason, String[] fields) {
+        rejected.add(new RejectedRow(line, reason, fields));
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getRejectedCount() {
+        return rejected.size();
+    }
+
+    /**
+     * @effects return the rejected rows, in the order of their lines
+     */
+    public List<RejectedRow> getRejectedRows() {
+        List<RejectedRow> rows = new ArrayList<>(rejected);
+        rows.sort(Comparator.comparingLong(RejectedRow::getLine));
+        return rows;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @effects return the number of rows read per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsRead * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @requires path != null
+     * @modifies the file at path
+     * @effects <pre>
+     *     write the rejected rows to path as CSV, in the order of their lines: the columns are line, reason and the
+     *     columns of the imported file. Once its rows are corrected, the file can be imported again as it is, because
+     *     the columns line and reason are ignored.
+     * </pre>
+     */
+    public void writeRejectedRows(Path path) throws IOException {
+        try (CsvWriter out = new CsvWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            String[] row = new String[header.length + 2];
+            row[0] = "line";
+            row[1] = "reason";
+            System.arraycopy(header, 0, row, 2, header.length);
+            out.writeRow(row);
+            for (RejectedRow r : getRejectedRows()) {
+                row = new String[Math.max(header.length, r.fields.length) + 2];
+                row[0] = String.valueOf(r.line);
+                row[1] = r.reason;
+                System.arraycopy(r.fields, 0, row, 2, r.fields.length);
+                out.writeRow(row);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rows read, %d inserted, %d updated, %d rejected in %.2f s (%.0f rows/s)",
+                file.getFileName(), rowsRead, inserted, updated, rejected.size(), elapsedNanos / 1e9, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,32 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The columns of an imported CSV file and how one of its rows becomes an object of T. The columns are found
+ * by the header of the file, in any order; other columns of the file are ignored.
+ */
+interface ImportSchema<T> {
+    /**
+     * @effects return the names of the columns that a file must have, in lower case
+     */
+    String[] getColumns();
+
+    /**
+     * @requires values.length == getColumns().length /\ values[i] is the trimmed value of getColumns()[i]
+     * @effects <pre>
+     *     if values are valid
+     *       return the object of T that they describe
+     *     else
+     *       throw InvalidArgumentException, whose message is the reason
+     * </pre>
+     */
+    T parse(String[] values) throws InvalidArgumentException;
+
+    /**
+     * @effects return true if parse can be called by several threads at the same time
+     */
+    boolean isThreadSafe();
+}
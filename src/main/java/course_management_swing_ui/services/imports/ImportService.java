@@ -0,0 +1,48 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.repositories.dao.DaoFactory;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.3
+ * @Overview The service that imports CSV files of students, modules and enrollments, see CsvImporter. The rows are
+ * written to the database only: the callers reload DbContext (e.g. with fetchData()) once an import is done.
+ * <p>
+ * Every method must not be called by a thread of ThreadPool.cpu, which parses the rows.
+ */
+public class ImportService {
+    /**
+     * @requires path != null /\ mode != null
+     * @modifies the student table
+     * @effects import the students of the CSV file at path, whose columns are id, name, dob, address, email, and return
+     * the ImportReport
+     */
+    public ImportReport importStudents(Path path, ImportMode mode) throws IOException, InvalidArgumentException {
+        return new CsvImporter<>(new StudentImportSchema(), DaoFactory.createStudentDAO(), mode).run(path);
+    }
+
+    /**
+     * @requires path != null /\ mode != null
+     * @modifies the module table, Module.suffixes
+     * @effects import the modules of the CSV file at path, whose columns are code, name, semester, credits,
+     * module_type, department, and return the ImportReport
+     */
+    public ImportReport importModules(Path path, ImportMode mode) throws IOException, InvalidArgumentException {
+        return new CsvImporter<>(new ModuleImportSchema(), DaoFactory.createModuleDAO(), mode).run(path);
+    }
+
+    /**
+     * @requires path != null /\ mode != null
+     * @modifies the enrollment table
+     * @effects import the enrollments of the CSV file at path, whose columns are id, student_id, module_code,
+     * internal_mark, examination_mark, and return the ImportReport. A row whose student or module is not in the
+     * database is rejected.
+     */
+    public ImportReport importEnrollments(Path path, ImportMode mode) throws IOException, InvalidArgumentException {
+        return new CsvImporter<>(new EnrollmentImportSchema(), DaoFactory.createEnrollmentDAO(), mode).run(path);
+    }
+}
@@ -0,0 +1,61 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.factories.ModuleFactory;
+import course_management_swing_ui.models.ElectiveModule;
+import course_management_swing_ui.models.Module;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The ImportSchema of Module: code, name, semester, credits, module_type (COMPULSORY or ELECTIVE),
+ * department (required by ELECTIVE only). A row is validated by the @Safe constructors of ModuleFactory, i.e. by
+ * Module.validate*, and by ElectiveModule.validateDepartment for an elective module.
+ * <p>
+ * These constructors register the suffix of the code in Module.suffixes, a map shared by every Module, hence rows
+ * are parsed by one thread only.
+ */
+class ModuleImportSchema implements ImportSchema<Module> {
+    private static final String[] COLUMNS = {"code", "name", "semester", "credits", "module_type", "department"};
+
+    @Override
+    public String[] getColumns() {
+        return COLUMNS.clone();
+    }
+
+    @Override
+    public Module parse(String[] values) throws InvalidArgumentException {
+        String code = Fields.require(values[0], COLUMNS[0]);
+        if (!Module.validateCode(code)) {
+            throw new InvalidArgumentException("invalid " + COLUMNS[0] + ": \"" + code + "\"");
+        }
+        String name = Fields.require(values[1], COLUMNS[1]);
+        int semester = Fields.toInt(values[2], COLUMNS[2]);
+        int credits = Fields.toInt(values[3], COLUMNS[3]);
+        Module.ModuleType moduleType;
+        try {
+            moduleType = Module.ModuleType.valueOf(Fields.require(values[4], COLUMNS[4]).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidArgumentException("invalid " + COLUMNS[4] + ": \"" + values[4] + "\"");
+        }
+        String department = values[5].isEmpty() ? null : values[5];
+        if (moduleType == Module.ModuleType.ELECTIVE && !ElectiveModule.validateDepartment(department)) {
+            throw new InvalidArgumentException("missing " + COLUMNS[5] + " of an elective module");
+        }
+
+        // the code comes from the file, like a code fetched from the database: it may be known already, and the row
+        // then updates (or duplicates) that module
+        Module.suffixes.remove(code.substring(1));
+        try {
+            return ModuleFactory.getInstance().createModule(code, name, semester, credits, moduleType, department);
+        } catch (NotPossibleException e) {
+            throw new InvalidArgumentException(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return false;
+    }
+}
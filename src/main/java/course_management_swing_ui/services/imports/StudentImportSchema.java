@@ -0,0 +1,37 @@
+package course_management_swing_ui.services.imports;
+
+import course_management_swing_ui.models.Student;
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+import course_management_swing_ui.util.exceptions.NotPossibleException;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The ImportSchema of Student: id (S2022 or 2022), name, dob (yyyy-MM-dd), address, email. A row is validated
+ * by the @Safe constructor of Student, i.e. by Student.validate*, which uses no shared state, so rows can be parsed in
+ * parallel.
+ */
+class StudentImportSchema implements ImportSchema<Student> {
+    private static final String[] COLUMNS = {"id", "name", "dob", "address", "email"};
+
+    @Override
+    public String[] getColumns() {
+        return COLUMNS.clone();
+    }
+
+    @Override
+    public Student parse(String[] values) throws InvalidArgumentException {
+        int id = Fields.toStudentId(values[0], COLUMNS[0]);
+        try {
+            return new Student(id, Fields.require(values[1], COLUMNS[1]), Fields.toDate(values[2], COLUMNS[2]),
+                    Fields.require(values[3], COLUMNS[3]), Fields.require(values[4], COLUMNS[4]));
+        } catch (NotPossibleException e) {
+            throw new InvalidArgumentException(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+}
@@ -0,0 +1,229 @@
+package course_management_swing_ui.util;
+
+import course_management_swing_ui.util.exceptions.InvalidArgumentException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview A bulkhead: a fixed number of daemon threads, named after the executor ("db-io-1", "db-io-2", ...), taking
+ * their tasks from a queue of bounded capacity. A task that finds the queue full is rejected, as its Rejection says.
+ * The executor records the depth of its queue and the tasks it runs (the current and the highest numbers since the
+ * last reset), the tasks it has completed and the tasks it has rejected, see MeteredExecutor.
+ * <pre>
+ *   rejection      a task that finds the queue full
+ *   caller-runs    runs on the thread that submits it, which slows the submitter down to the pace of the executor
+ *   abort          throws RejectedExecutionException to the submitter
+ * </pre>
+ * The size, the capacity and the rejection of an executor can be given by system properties, e.g.
+ * -Dcoursemanprog.pool.db-io.threads=16 -Dcoursemanprog.pool.db-io.queue=4096 -Dcoursemanprog.pool.db-io.rejection=abort
+ */
+public final class BoundedExecutor extends ThreadPoolExecutor implements MeteredExecutor {
+    /**
+     * prefix of the system properties of an executor, followed by its name and by threads, queue or rejection
+     */
+    public static final String PROPERTY_PREFIX = "coursemanprog.pool.";
+
+    private final String name;
+    private final int capacity;
+    private final Rejection rejection;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @author Phan Quang Tuan
+     * @version 1.0
+     * @Overview What a BoundedExecutor does with a task that finds its queue full.
+     */
+    public enum Rejection {
+        CALLER_RUNS("caller-runs"),
+        ABORT("abort");
+
+        private final String rejectionName;
+
+        Rejection(String rejectionName) {
+            this.rejectionName = rejectionName;
+        }
+
+        /**
+         * @requires name != null
+         * @effects <pre>
+         *     if there is a rejection whose name equals name (ignoring case)
+         *       return it
+         *     else
+         *       throw InvalidArgumentException
+         * </pre>
+         */
+        public static Rejection of(String name) throws InvalidArgumentException {
+            for (Rejection r : values()) {
+                if (r.rejectionName.equalsIgnoreCase(name.trim())) {
+                    return r;
+                }
+            }
+            throw new InvalidArgumentException("Unknown rejection policy: \"" + name + "\"");
+        }
+
+        @Override
+        public String toString() {
+            return rejectionName;
+        }
+    }
+
+    /**
+     * @requires name != null /\ threads > 0 /\ capacity > 0 /\ rejection != null
+     * @effects initialise this as an executor of threads threads named after name, with a queue of capacity tasks
+     */
+    public BoundedExecutor(String name, int threads, int capacity, Rejection rejection) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), threadFactory(name),
+                new Rejector());
+        this.name = name;
+        this.capacity = capacity;
+        this.rejection = rejection;
+    }
+
+    /**
+     * @requires name != null /\ threads > 0 /\ capacity > 0 /\ rejection != null
+     * @effects return a new BoundedExecutor named name, whose threads, capacity and rejection are given by the system
+     * properties of name (see BoundedExecutor), or are the ones given here; an invalid property is reported and ignored
+     */
+    public static BoundedExecutor fromProperties(String name, int threads, int capacity, Rejection rejection) {
+        String prefix = PROPERTY_PREFIX + name + ".";
+        threads = intProperty(prefix + "threads", threads);
+        capacity = intProperty(prefix + "queue", capacity);
+        String value = System.getProperty(prefix + "rejection");
+        if (value != null) {
+            try {
+                rejection = Rejection.of(value);
+            } catch (InvalidArgumentException e) {
+                System.err.println(e.getMessage() + ", fall back to: " + rejection);
+            }
+        }
+        return new BoundedExecutor(name, threads, capacity, rejection);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(command);
+        int depth = getQueue().size();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        super.beforeExecute(t, r);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        active.decrementAndGet();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getThreads() {
+        return getMaximumPoolSize();
+    }
+
+    @Override
+    public int getMaxActiveCount() {
+        return maxActive.get();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @effects return the rejection of this
+     */
+    public Rejection getRejection() {
+        return rejection;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    @Override
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void reset() {
+        maxQueueDepth.set(getQueue().size());
+        maxActive.set(active.get());
+        rejected.reset();
+    }
+
+    @Override
+    public String toString() {
+        return name + "{threads=" + getMaximumPoolSize() + ", queue=" + capacity + ", rejection=" + rejection + "}";
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int i = Integer.parseInt(value.trim());
+            if (i > 0) {
+                return i;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println("Invalid " + key + ": \"" + value + "\", fall back to: " + defaultValue);
+        return defaultValue;
+    }
+
+    /**
+     * @Overview Counts the rejected tasks, then applies the Rejection of their executor. A caller-runs executor runs
+     * the task even after it has been shut down: a CompletableFuture of the task would never complete otherwise.
+     */
+    private static final class Rejector implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            BoundedExecutor e = (BoundedExecutor) executor;
+            e.rejected.increment();
+            if (e.rejection == Rejection.CALLER_RUNS) {
+                r.run();
+            } else {
+                throw new RejectedExecutionException(e.name + " is full (" + e.capacity + " tasks waiting)");
+            }
+        }
+    }
+}
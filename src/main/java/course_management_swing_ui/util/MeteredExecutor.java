@@ -0,0 +1,62 @@
+package course_management_swing_ui.util;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview An executor of ThreadPool, named, that records how busy it is since the start (or the last reset), see
+ * ThreadPool.report.
+ */
+public interface MeteredExecutor extends ExecutorService {
+    /**
+     * @effects return the name of this, which prefixes the names of its threads
+     */
+    String getName();
+
+    /**
+     * @effects return the number of threads of this: fixed for a pool, one per running task for a thread per task
+     */
+    int getThreads();
+
+    /**
+     * @effects return the number of tasks running
+     */
+    int getActiveCount();
+
+    /**
+     * @effects return the highest number of tasks that have run at once
+     */
+    int getMaxActiveCount();
+
+    /**
+     * @effects return the number of tasks waiting in the queue, 0 if this has none
+     */
+    int getQueueDepth();
+
+    /**
+     * @effects return the highest number of tasks that have waited in the queue
+     */
+    int getMaxQueueDepth();
+
+    /**
+     * @effects return the number of tasks the queue can hold, 0 if this has no queue
+     */
+    int getCapacity();
+
+    /**
+     * @effects return the number of tasks that have completed
+     */
+    long getCompletedTaskCount();
+
+    /**
+     * @effects return the number of tasks that have been rejected
+     */
+    long getRejected();
+
+    /**
+     * @modifies this
+     * @effects forget the highest counts and the rejected tasks
+     */
+    void reset();
+}
@@ -0,0 +1,145 @@
+package course_management_swing_ui.util;
+
+import course_management_swing_ui.repositories.dao.SortOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview The position of a list view in a keyset paginated table. Instead of an offset, it remembers the last key
+ * before every page that has been visited, so that the next page is read with Service.page(afterKey, limit, order) and
+ * the previous one is simply the afterKey before.
+ * <pre>
+ *  Usage:
+ *      List<T> rows = service.page(pager.getAfterKey(), pager.getLimit(), pager.getSortOrder());
+ *      List<T> page = pager.accept(rows, keyOf);
+ *      ...
+ *      pager.next() / pager.previous(), then read the page again
+ * </pre>
+ */
+public class Pager<K> {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final int pageSize;
+    private final SortOrder order;
+
+    // afterKeys.get(i) is the afterKey of page i + 1, the first page has none (null)
+    private final List<K> afterKeys = new ArrayList<>();
+    private K lastKey;
+    private boolean hasNext;
+
+    public Pager() {
+        this(DEFAULT_PAGE_SIZE, SortOrder.ASC);
+    }
+
+    /**
+     * @requires pageSize > 0 /\ order != null
+     * @effects initialize this as the first page of pageSize rows in order
+     */
+    public Pager(int pageSize, SortOrder order) {
+        this.pageSize = pageSize;
+        this.order = order;
+        afterKeys.add(null);
+    }
+
+    /**
+     * @effects return the afterKey of the current page, null for the first page
+     */
+    public synchronized K getAfterKey() {
+        return afterKeys.get(afterKeys.size() - 1);
+    }
+
+    /**
+     * @effects return the number of rows to read: one more than the page size tells whether there is a next page
+     */
+    public int getLimit() {
+        return pageSize + 1;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public SortOrder getSortOrder() {
+        return order;
+    }
+
+    /**
+     * @requires rows is the result of reading getLimit() rows after getAfterKey()
+     * @modifies this
+     * @effects remember whether there is a next page and the last key of the current page, then return the rows of the
+     * current page
+     */
+    public synchronized <T> List<T> accept(List<T> rows, Function<T, K> keyOf) {
+        hasNext = rows.size() > pageSize;
+        List<T> page = new ArrayList<>(hasNext ? rows.subList(0, pageSize) : rows);
+        lastKey = page.isEmpty() ? getAfterKey() : keyOf.apply(page.get(page.size() - 1));
+        return page;
+    }
+
+    /**
+     * @modifies this
+     * @effects if there is a next page, move to it and return true, else return false
+     */
+    public synchronized boolean next() {
+        if (!hasNext) {
+            return false;
+        }
+        afterKeys.add(lastKey);
+        hasNext = false;
+        return true;
+    }
+
+    /**
+     * @modifies this
+     * @effects if there is a previous page, move to it and return true, else return false
+     */
+    public synchronized boolean previous() {
+        if (afterKeys.size() == 1) {
+            return false;
+        }
+        afterKeys.remove(afterKeys.size() - 1);
+        return true;
+    }
+
+    /**
+     * @modifies this
+     * @effects move to the first page
+     */
+    public synchronized void reset() {
+        afterKeys.clear();
+        afterKeys.add(null);
+        lastKey = null;
+        hasNext = false;
+    }
+
+    public synchronized boolean hasPrevious() {
+        return afterKeys.size() > 1;
+    }
+
+    public synchronized boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * @effects return true if the current page is the whole table, i.e. there is neither a previous nor a next page
+     */
+    public synchronized boolean isSinglePage() {
+        return !hasPrevious() && !hasNext;
+    }
+
+    /**
+     * @effects return the number of the current page, starting from 1
+     */
+    public synchronized int getPageNumber() {
+        return afterKeys.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Page " + getPageNumber();
+    }
+}
@@ -1,17 +1,134 @@
 package course_management_swing_ui.util;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
- * @Overview A class contains the thread pool that reuses a fixed number of threads operating off a shared unbounded
- * queue
+ * @version 1.3
+ * @Overview The executors of the application, one bulkhead per kind of work, so that one kind cannot starve the others
+ * (e.g. a large report load cannot hold the threads of the single-row reads). Each one is a BoundedExecutor, but db-io
+ * in the virtual mode:
+ * <pre>
+ *   executor      threads                       queue   rejection     work
+ *   db-io         one per pooled connection     1024    caller-runs   the DAO calls of the repositories, blocked on JDBC
+ *   cpu           one per core                  256     caller-runs   DTO and report generation, parsing, decoding
+ *   loader        2                             16      caller-runs   the loads of the controllers (fetchData, fetchPage,
+ *                                                                     syncChanges), which fill DbContext and the pages
+ *   maintenance   2                             32      abort         imports, exports, backups and snapshot writes
+ * </pre>
+ * No task may wait for a task of its own executor: a load that needs other loads first (e.g. the enrollments need the
+ * students and the modules) chains its own work after theirs instead of waiting for them. The tasks of the parallel streams stay on the common ForkJoinPool,
+ * which no blocking task uses any more.
+ * <pre>
+ *   mode        db-io
+ *   platform    the pool above (the default)
+ *   virtual     a virtual thread per task (see VirtualThreadExecutor): the pools of DbConnect alone bound the database
+ *               work, and a fan-out of reads needs no pool to be sized for it
+ * </pre>
+ * The mode is selected by the system property MODE_PROPERTY, before this class is first used.
  */
 public class ThreadPool {
-    public static final ExecutorService executor = Executors.newFixedThreadPool(8);
+    /**
+     * name of the system property that selects the mode, e.g. -Dcoursemanprog.pool.mode=virtual
+     */
+    public static final String MODE_PROPERTY = "coursemanprog.pool.mode";
+    public static final String PLATFORM_MODE = "platform";
+    public static final String VIRTUAL_MODE = "virtual";
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * the blocking database calls: as many threads as the read and write pools of DbConnect have connections, or a
+     * virtual thread per call
+     */
+    public static final MeteredExecutor dbIo = createDbIo();
+
+    /**
+     * the work that only needs a core
+     */
+    public static final BoundedExecutor cpu = BoundedExecutor.fromProperties("cpu", CORES, 256,
+            BoundedExecutor.Rejection.CALLER_RUNS);
+
+    /**
+     * the loads of the controllers, so that the pages never wait behind the parallel streams of the common ForkJoinPool
+     */
+    public static final BoundedExecutor loader = BoundedExecutor.fromProperties("loader", 2, 16,
+            BoundedExecutor.Rejection.CALLER_RUNS);
+
+    /**
+     * the long background jobs started by the user or by the application
+     */
+    public static final BoundedExecutor maintenance = BoundedExecutor.fromProperties("maintenance", 2, 32,
+            BoundedExecutor.Rejection.ABORT);
+
+    private static final List<MeteredExecutor> EXECUTORS = List.of(dbIo, cpu, loader, maintenance);
 
     private ThreadPool() {
     }
+
+    /**
+     * @effects return true if the virtual mode has been selected
+     */
+    public static boolean isVirtual() {
+        return dbIo instanceof VirtualThreadExecutor;
+    }
+
+    private static MeteredExecutor createDbIo() {
+        String mode = System.getProperty(MODE_PROPERTY, PLATFORM_MODE).trim();
+        if (mode.equalsIgnoreCase(VIRTUAL_MODE)) {
+            return new VirtualThreadExecutor("db-io");
+        }
+        if (!mode.equalsIgnoreCase(PLATFORM_MODE)) {
+            System.err.println("Unknown thread mode: \"" + mode + "\", fall back to: " + PLATFORM_MODE);
+        }
+        return BoundedExecutor.fromProperties("db-io", Math.max(4, CORES) + 2, 1024,
+                BoundedExecutor.Rejection.CALLER_RUNS);
+    }
+
+    /**
+     * @effects return the executors, in the order of ThreadPool
+     */
+    public static List<MeteredExecutor> getExecutors() {
+        return EXECUTORS;
+    }
+
+    /**
+     * @effects return a table of the threads, the running tasks and the queue depth (current and highest) and the tasks
+     * of every executor
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder(String.format("%-12s %7s %6s %10s %7s %9s %9s %11s %8s%n",
+                "executor", "threads", "active", "max active", "queued", "max queue", "capacity", "completed", "rejected"));
+        for (MeteredExecutor e : EXECUTORS) {
+            sb.append(String.format("%-12s %7d %6d %10d %7d %9d %9d %11d %8d%n", e.getName(), e.getThreads(),
+                    e.getActiveCount(), e.getMaxActiveCount(), e.getQueueDepth(), e.getMaxQueueDepth(), e.getCapacity(),
+                    e.getCompletedTaskCount(), e.getRejected()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @modifies the executors
+     * @effects forget the highest queue depths and the rejected tasks of every executor
+     */
+    public static void reset() {
+        EXECUTORS.forEach(MeteredExecutor::reset);
+    }
+
+    /**
+     * @modifies the executors
+     * @effects stop every executor once the tasks it has accepted are done, or after at most timeoutMillis each
+     */
+    public static void shutdown(long timeoutMillis) {
+        EXECUTORS.forEach(MeteredExecutor::shutdown);
+        for (MeteredExecutor e : EXECUTORS) {
+            try {
+                e.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
 }
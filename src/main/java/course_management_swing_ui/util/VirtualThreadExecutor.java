@@ -0,0 +1,142 @@
+package course_management_swing_ui.util;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A MeteredExecutor that runs every task on a virtual thread of its own ("db-io-v1", "db-io-v2", ...): there
+ * is no queue and no pool size to tune. A task that blocks, e.g. on a lock or on a socket, unmounts from its carrier
+ * thread, which runs another task meanwhile. Nothing bounds the number of tasks but the resources they wait for: the
+ * tasks of the repositories hold connections taken from the pools of DbConnect, so these pools remain the limit of the
+ * database work.
+ * <pre>
+ *  On JDK 21 a task pins its carrier while it is in a native call (e.g. the SQLite engine behind sqlite-jdbc) or in a
+ *  synchronized block: such tasks run at most as many at once as there are carriers, as they would on a pool.
+ * </pre>
+ * As BoundedExecutor with caller-runs, a task submitted after shutdown runs on the calling thread.
+ */
+public final class VirtualThreadExecutor extends AbstractExecutorService implements MeteredExecutor {
+    private final String name;
+    private final ExecutorService delegate;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @requires name != null
+     * @effects initialise this as an executor of a virtual thread per task, named after name
+     */
+    public VirtualThreadExecutor(String name) {
+        this.name = name;
+        this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-v", 1).factory());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Runnable task = () -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                command.run();
+            } finally {
+                active.decrementAndGet();
+                completed.increment();
+            }
+        };
+        try {
+            delegate.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            task.run();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getThreads() {
+        return active.get();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public int getMaxActiveCount() {
+        return maxActive.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return 0;
+    }
+
+    @Override
+    public int getMaxQueueDepth() {
+        return 0;
+    }
+
+    @Override
+    public int getCapacity() {
+        return 0;
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void reset() {
+        maxActive.set(active.get());
+        rejected.reset();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return name + "{threads=virtual}";
+    }
+}
@@ -0,0 +1,163 @@
+package course_management_swing_ui.util.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A forward-only reader of the records of a CSV file (RFC 4180): fields are separated by commas, a field may be
+ * quoted, and a quoted field may contain commas, line breaks and doubled quotes (""). Records end with LF or CRLF. Blank
+ * lines and a UTF-8 byte order mark are skipped.
+ * <p>
+ * Only one record is held at a time, so a file of any size is read with constant memory.
+ */
+public class CsvReader implements Closeable {
+    private static final int NONE = -2;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int len;
+    private int pushedBack = NONE;
+    private boolean started;
+
+    // the line of the next character, and the line where the last record starts
+    private long line = 1;
+    private long recordLine;
+
+    /**
+     * @requires in != null
+     */
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @requires path != null
+     * @effects return a new CsvReader over the UTF-8 file at path
+     */
+    public static CsvReader open(Path path) throws IOException {
+        return new CsvReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @modifies this
+     * @effects <pre>
+     *     if there is another record
+     *       return its fields
+     *     else
+     *       return null
+     * </pre>
+     */
+    public String[] next() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    // unterminated quote: the rest of the file is the field
+                    break;
+                }
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                        c = read();
+                    } else {
+                        quoted = false;
+                        c = n;
+                    }
+                    continue;
+                }
+                field.append((char) c);
+                c = read();
+                continue;
+            }
+            if (c == -1 || c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                int n = read();
+                if (n != '\n') {
+                    pushedBack = n;
+                }
+                break;
+            }
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * @effects return the line of the file where the record last returned by next() starts (the first line is 1)
+     */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * @modifies this
+     * @effects return the next character, or -1 at the end of the file
+     */
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        if (pos == len) {
+            len = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (len <= 0) {
+                len = 0;
+                return -1;
+            }
+            if (!started) {
+                started = true;
+                if (buffer[0] == '\uFEFF') {
+                    pos = 1;
+                    return read();
+                }
+            }
+        }
+        char c = buffer[pos++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+}
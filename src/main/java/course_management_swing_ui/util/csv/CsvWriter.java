@@ -0,0 +1,66 @@
+package course_management_swing_ui.util.csv;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A writer of CSV records (RFC 4180), the counterpart of CsvReader. A field is quoted only if it contains a
+ * comma, a quote or a line break; quotes inside it are doubled. Records end with CRLF.
+ */
+public class CsvWriter implements Closeable, Flushable {
+    private final Writer out;
+
+    /**
+     * @requires out != null
+     */
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * @requires fields != null
+     * @modifies this
+     * @effects write fields as one record, where a null field is written as an empty one
+     */
+    public void writeRow(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeField(fields[i]);
+        }
+        out.write("\r\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.write(field);
+            return;
+        }
+        out.write('"');
+        out.write(field.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
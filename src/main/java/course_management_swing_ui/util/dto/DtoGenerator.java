@@ -15,10 +15,13 @@ import java.util.stream.Collectors;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.2
  * @Overview This helper class generates Vector of Object's Field as Data Transfer Object (DTO). This help us to build
  * different views from our domain models, allowing us to create other representations of the same domain but optimizing
  * them to the clients' needs without affecting our domain design
+ * <p>
+ * The getRow_* methods return the values of one row of a report without the check box column, so that the same
+ * projection can be streamed to a file (see services.exports) without building the DTO of every row.
  */
 public class DtoGenerator {
     /**
@@ -92,7 +95,7 @@ public class DtoGenerator {
         objs.forEach(o -> tasks.add(() -> getDto(o)));
 
         try {
-            ThreadPool.executor.invokeAll(tasks).forEach(f -> {
+            ThreadPool.cpu.invokeAll(tasks).forEach(f -> {
                 try {
                     results.add(f.get());
                 } catch (InterruptedException | ExecutionException e) {
@@ -105,16 +108,29 @@ public class DtoGenerator {
         return results;
     }
 
+    /**
+     * @requires s!=null
+     * @effects return the values of the row of Student s: id, name, dob, address, email
+     */
+    public static Object[] getRow_student(Student s) {
+        return new Object[]{s.getId(), s.getName(), s.getDob(), s.getAddress(), s.getEmail()};
+    }
+
+    /**
+     * @requires m!=null
+     * @effects return the values of the row of Module m: code, name, semester, credits, module type, department
+     */
+    public static Object[] getRow_module(Module m) {
+        String department = m.getModuleType() == Module.ModuleType.COMPULSORY ? "" : ((ElectiveModule) m).getDepartment();
+        return new Object[]{m.getCode(), m.getName(), m.getSemester(), m.getCredits(), m.getModuleType(), department};
+    }
+
     /**
      * @requires m!=null
      * @effects return the DTO(s) of Module m
      */
     private static Vector<?> getDto_module(Module m) {
-        if (m.getModuleType() == Module.ModuleType.COMPULSORY) {
-            return new Vector<>(List.of(new Object[]{m.getCode(), m.getName(), m.getSemester(), m.getCredits(), m.getModuleType(), "", false}));
-        } else {
-            return new Vector<>(List.of(new Object[]{m.getCode(), m.getName(), m.getSemester(), m.getCredits(), m.getModuleType(), ((ElectiveModule) m).getDepartment(), false}));
-        }
+        return withCheckBox(getRow_module(m));
     }
 
     /**
@@ -129,12 +145,20 @@ public class DtoGenerator {
 
     /**
      * @requires e!=null
-     * @effects return the DTO(s) or initial Report View
+     * @effects return the values of the row of Enrollment e in initial Report View
      */
-    private static Vector<?> getDto_initialReport(Enrollment e) {
+    public static Object[] getRow_initialReport(Enrollment e) {
         Student s = e.getStudent();
         Module m = e.getModule();
-        return new Vector<>(List.of(new Object[]{e.getId(), s.getId(), s.getName(), m.getCode(), m.getName(), false}));
+        return new Object[]{e.getId(), s.getId(), s.getName(), m.getCode(), m.getName()};
+    }
+
+    /**
+     * @requires e!=null
+     * @effects return the DTO(s) or initial Report View
+     */
+    private static Vector<?> getDto_initialReport(Enrollment e) {
+        return withCheckBox(getRow_initialReport(e));
     }
 
     /**
@@ -147,15 +171,31 @@ public class DtoGenerator {
         return results;
     }
 
+    /**
+     * @requires e!=null
+     * @effects return the values of the row of Enrollment e in Assessment Report View
+     */
+    public static Object[] getRow_assessmentReport(Enrollment e) {
+        return new Object[]{e.getId(), e.getStudent().getId(), e.getModule().getCode(),
+                e.getInternalMark(), e.getExaminationMark(), e.getFinalGrade()};
+    }
+
     /**
      * @requires e!=null
      * @effects return the DTO(s) or Assessment Report View
      */
     private static Vector<?> getDto_assessmentReport(Enrollment e) {
-        Student s = e.getStudent();
-        Module m = e.getModule();
-        return new Vector<>(List.of(new Object[]{e.getId(), s.getId(), m.getCode(),
-                e.getInternalMark(), e.getExaminationMark(), e.getFinalGrade(), false}));
+        return withCheckBox(getRow_assessmentReport(e));
+    }
+
+    /**
+     * @effects return the DTO of the values of a row, followed by the (unchecked) check box column
+     */
+    private static Vector<?> withCheckBox(Object[] values) {
+        Vector<Object> dto = new Vector<>(values.length + 1);
+        dto.addAll(Arrays.asList(values));
+        dto.add(false);
+        return dto;
     }
 
     /**
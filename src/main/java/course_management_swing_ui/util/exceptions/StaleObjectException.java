@@ -0,0 +1,15 @@
+package course_management_swing_ui.util.exceptions;
+
+import java.sql.SQLException;
+
+/**
+ * @Overview A class denoting an update that was not made because the row has been changed or deleted by someone else
+ * since the object was read: its version is no longer the version of the object (optimistic concurrency).
+ * @version 1.0
+ * @author Phan Quang Tuan
+ */
+public class StaleObjectException extends SQLException {
+    public StaleObjectException(String message) {
+        super(message);
+    }
+}
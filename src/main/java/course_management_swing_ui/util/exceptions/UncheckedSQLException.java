@@ -0,0 +1,20 @@
+package course_management_swing_ui.util.exceptions;
+
+import java.sql.SQLException;
+
+/**
+ * @Overview A class wrapping an SQLException that happens while a lazily read Stream of rows is being consumed, where a
+ * checked exception cannot be thrown.
+ * @version 1.0
+ * @author Phan Quang Tuan
+ */
+public class UncheckedSQLException extends RuntimeException {
+    public UncheckedSQLException(SQLException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,118 @@
+package course_management_swing_ui.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.0
+ * @Overview A histogram of latencies in nanoseconds, which any number of threads can record into without locking.
+ * <pre>
+ *  The buckets are log-linear: every power of 2 is split into SUB_BUCKETS buckets of the same width, so that
+ *      - a latency is counted with a relative error of at most 1 / SUB_BUCKETS (6.25%), whatever its magnitude
+ *      - recording is one increment of an AtomicLongArray, at an index computed with a few shifts
+ *  Latencies above MAX_NANOS (about 18 minutes) are counted as MAX_NANOS.
+ * </pre>
+ * A percentile read while latencies are recorded may miss the latest ones, but never blocks them.
+ */
+public class LatencyHistogram {
+    public static final int SUB_BUCKETS = 16;
+    public static final long MAX_NANOS = (1L << 40) - 1;
+
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_NANOS) + 1);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @requires nanos >= 0
+     * @modifies this
+     * @effects count one latency of nanos
+     */
+    public void record(long nanos) {
+        long v = Math.min(Math.max(nanos, 0), MAX_NANOS);
+        counts.incrementAndGet(indexOf(v));
+        max.accumulate(v);
+    }
+
+    /**
+     * @effects return the number of latencies recorded
+     */
+    public long getCount() {
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    /**
+     * @effects return the highest latency recorded, or 0 if there is none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @requires 0 < percentile <= 100
+     * @effects return the latency below which percentile % of the recorded latencies are (the upper bound of its
+     * bucket, at most getMax()), or 0 if there is none
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @modifies this
+     * @effects forget every latency recorded. Latencies recorded meanwhile may be kept or not.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        max.reset();
+    }
+
+    /**
+     * @requires 0 <= v <= MAX_NANOS
+     * @effects return the index of the bucket of v: v itself below SUB_BUCKETS, otherwise SUB_BUCKETS buckets per power
+     * of 2, indexed by the bits that follow the highest one
+     */
+    private static int indexOf(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @effects return the highest value of the bucket at index
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -11,7 +11,7 @@ import java.io.IOException;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.4
  * @Overview This class represents the views when the program begins. It is also a singleton class to prevent JFrame
  * window spamming
  */
@@ -55,8 +55,38 @@ public class MainWindowView implements View {
         // menu bar
         JMenuBar menuBar = new JMenuBar();
         JMenu file = new JMenu("File");
+        JMenuItem importStudents = new JMenuItem("Import students...");
+        importStudents.addActionListener(ctrl);
+        JMenuItem importModules = new JMenuItem("Import modules...");
+        importModules.addActionListener(ctrl);
+        JMenuItem importEnrollments = new JMenuItem("Import enrollments...");
+        importEnrollments.addActionListener(ctrl);
+        JMenuItem exportStudents = new JMenuItem("Export students...");
+        exportStudents.addActionListener(ctrl);
+        JMenuItem exportModules = new JMenuItem("Export modules...");
+        exportModules.addActionListener(ctrl);
+        JMenuItem exportInitialReport = new JMenuItem("Export initial report...");
+        exportInitialReport.addActionListener(ctrl);
+        JMenuItem exportAssessmentReport = new JMenuItem("Export assessment report...");
+        exportAssessmentReport.addActionListener(ctrl);
+        JMenuItem backup = new JMenuItem("Back up database...");
+        backup.addActionListener(ctrl);
+        JMenuItem statistics = new JMenuItem("Database statistics...");
+        statistics.addActionListener(ctrl);
         JMenuItem exit = new JMenuItem("Exit");
         exit.addActionListener(ctrl);
+        file.add(importStudents);
+        file.add(importModules);
+        file.add(importEnrollments);
+        file.addSeparator();
+        file.add(exportStudents);
+        file.add(exportModules);
+        file.add(exportInitialReport);
+        file.add(exportAssessmentReport);
+        file.addSeparator();
+        file.add(backup);
+        file.add(statistics);
+        file.addSeparator();
         file.add(exit);
 
         JMenu studentMenu = new JMenu("Student");
@@ -0,0 +1,93 @@
+package course_management_swing_ui.views;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * @author Phan Quang Tuan
+ * @version 1.1
+ * @Overview A modeless dialog that shows the progress of a long task running in the background, with a Cancel button if the
+ * task can be cancelled.
+ * Its methods can be called by any thread: the components are updated on the Swing thread.
+ */
+public class ProgressDialog {
+    private final JDialog dialog;
+    private final JProgressBar bar;
+    private final JLabel label;
+    private final String unit;
+    private volatile boolean cancelled;
+
+    /**
+     * @requires owner != null /\ title != null
+     * @effects initialise the dialog of a task that counts rows and can be cancelled, without showing it
+     */
+    public ProgressDialog(JFrame owner, String title) {
+        this(owner, title, "rows", true);
+    }
+
+    /**
+     * @requires owner != null /\ title != null /\ unit != null
+     * @effects initialise the dialog of a task that counts its work in unit, without showing it. The Cancel button is
+     * shown only if the task can be cancelled.
+     */
+    public ProgressDialog(JFrame owner, String title, String unit, boolean cancellable) {
+        this.unit = unit;
+        dialog = new JDialog(owner, title, false);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+
+        label = new JLabel("Starting...");
+        bar = new JProgressBar(0, 100);
+        bar.setIndeterminate(true);
+        bar.setStringPainted(true);
+        JButton cancel = new JButton("Cancel");
+        cancel.addActionListener(e -> {
+            cancelled = true;
+            cancel.setEnabled(false);
+            label.setText("Cancelling...");
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        panel.add(label, BorderLayout.NORTH);
+        panel.add(bar, BorderLayout.CENTER);
+        JPanel south = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        if (cancellable) {
+            south.add(cancel);
+        }
+        panel.add(south, BorderLayout.SOUTH);
+
+        dialog.add(panel);
+        dialog.setSize(360, 140);
+        dialog.setLocationRelativeTo(owner);
+    }
+
+    public void display() {
+        SwingUtilities.invokeLater(() -> dialog.setVisible(true));
+    }
+
+    /**
+     * @effects show that done of total units of work are done
+     */
+    public void setProgress(long done, long total) {
+        SwingUtilities.invokeLater(() -> {
+            if (!cancelled) {
+                label.setText(done + " / " + total + " " + unit);
+            }
+            if (total > 0) {
+                bar.setIndeterminate(false);
+                bar.setValue((int) (done * 100 / total));
+            }
+        });
+    }
+
+    /**
+     * @effects return true if the Cancel button has been clicked
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void close() {
+        SwingUtilities.invokeLater(dialog::dispose);
+    }
+}
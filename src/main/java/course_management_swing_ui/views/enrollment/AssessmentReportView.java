@@ -20,7 +20,7 @@ import static course_management_swing_ui.repositories.DbContext.studentDbContext
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.1
  * @Overview This class represents the views for Assessment Report. It is also a singleton class to prevent JFrame
  * window spamming
  */
@@ -32,6 +32,9 @@ public class AssessmentReportView implements View {
     private JFrame parentGui;
     private JTable tblEnrollment;
     public JButton btnCheckAll;
+    private JButton btnPrevious;
+    private JButton btnNext;
+    private JLabel lblPage;
 
     private AssessmentReportView() {
 
@@ -122,6 +125,18 @@ public class AssessmentReportView implements View {
         btnDelete.addActionListener(ctrl);
         pnlBottom.add(btnDelete);
 
+        btnPrevious = new JButton("< Prev");
+        btnPrevious.addActionListener(ctrl);
+        pnlBottom.add(btnPrevious);
+
+        lblPage = new JLabel();
+        pnlBottom.add(lblPage);
+
+        btnNext = new JButton("Next >");
+        btnNext.addActionListener(ctrl);
+        pnlBottom.add(btnNext);
+        resetPager();
+
         JButton btnRefresh = new JButton("Refresh Data");
         btnRefresh.addActionListener(ctrl);
         pnlBottom.add(btnRefresh);
@@ -178,6 +193,15 @@ public class AssessmentReportView implements View {
         tblEnrollment.getColumnModel().getColumn(6).setMaxWidth(70);
     }
 
+    /**
+     * @effects show the number of the current page, and enable the buttons of the pages that exist
+     */
+    private void resetPager() {
+        lblPage.setText(EnrollmentController.pager.toString());
+        btnPrevious.setEnabled(EnrollmentController.pager.hasPrevious());
+        btnNext.setEnabled(EnrollmentController.pager.hasNext());
+    }
+
     /**
      * this method notify the views that data in the logic models has been changed
      */
@@ -190,6 +214,7 @@ public class AssessmentReportView implements View {
         DefaultTableModel tm = new DefaultTableModel(data, headers);
         tblEnrollment.setModel(tm);
         resetTableDimension();
+        resetPager();
 
         TableColumn stuCol = tblEnrollment.getColumnModel().getColumn(1);
         stuCol.setCellEditor(new DefaultCellEditor(makeStudentComboBox()));
@@ -16,7 +16,7 @@ import java.util.Vector;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.1
  * @Overview This class represents the views for "List module". It is also a singleton class to prevent JFrame
  * window spamming
  */
@@ -28,6 +28,9 @@ public class ListModuleView implements View {
     private JFrame parentGui;
     private JTable tblModules;
     public JButton btnCheckAll;
+    private JButton btnPrevious;
+    private JButton btnNext;
+    private JLabel lblPage;
 
     private ListModuleView() {
 
@@ -116,6 +119,18 @@ public class ListModuleView implements View {
         btnDelete.addActionListener(ctrl);
         pnlBottom.add(btnDelete);
 
+        btnPrevious = new JButton("< Prev");
+        btnPrevious.addActionListener(ctrl);
+        pnlBottom.add(btnPrevious);
+
+        lblPage = new JLabel();
+        pnlBottom.add(lblPage);
+
+        btnNext = new JButton("Next >");
+        btnNext.addActionListener(ctrl);
+        pnlBottom.add(btnNext);
+        resetPager();
+
         JButton btnRefresh = new JButton("Refresh Data");
         btnRefresh.addActionListener(ctrl);
         pnlBottom.add(btnRefresh);
@@ -174,6 +189,15 @@ public class ListModuleView implements View {
         tblModules.getColumnModel().getColumn(6).setMaxWidth(70);
     }
 
+    /**
+     * @effects show the number of the current page, and enable the buttons of the pages that exist
+     */
+    private void resetPager() {
+        lblPage.setText(ModuleController.pager.toString());
+        btnPrevious.setEnabled(ModuleController.pager.hasPrevious());
+        btnNext.setEnabled(ModuleController.pager.hasNext());
+    }
+
     /**
      * this method notify the views that data in the logic models has been changed
      */
@@ -186,6 +210,7 @@ public class ListModuleView implements View {
         DefaultTableModel tm = new DefaultTableModel(data, headers);
         tblModules.setModel(tm);
         resetTableDimension();
+        resetPager();
 
         for (int i = 0; i < tm.getRowCount(); i++) {
             ((MyJTable) tblModules).setEditableCell(tm.getValueAt(i, 4) == Module.ModuleType.ELECTIVE, i, 5);
@@ -12,7 +12,7 @@ import java.util.Vector;
 
 /**
  * @author Phan Quang Tuan
- * @version 1.0
+ * @version 1.1
  * @Overview This class represents the views for "List student". It is also a singleton class to prevent JFrame
  * window spamming
  */
@@ -24,6 +24,9 @@ public class ListStudentView implements View {
     private JFrame parentGui;
     private JTable tblStudents;
     public JButton btnCheckAll;
+    private JButton btnPrevious;
+    private JButton btnNext;
+    private JLabel lblPage;
 
     private ListStudentView() {
 
@@ -120,6 +123,18 @@ public class ListStudentView implements View {
         btnDelete.addActionListener(ctrl);
         pnlBottom.add(btnDelete);
 
+        btnPrevious = new JButton("< Prev");
+        btnPrevious.addActionListener(ctrl);
+        pnlBottom.add(btnPrevious);
+
+        lblPage = new JLabel();
+        pnlBottom.add(lblPage);
+
+        btnNext = new JButton("Next >");
+        btnNext.addActionListener(ctrl);
+        pnlBottom.add(btnNext);
+        resetPager();
+
         JButton btnRefresh = new JButton("Refresh Data");
         btnRefresh.addActionListener(ctrl);
         pnlBottom.add(btnRefresh);
@@ -162,6 +177,15 @@ public class ListStudentView implements View {
         tblStudents.getColumnModel().getColumn(5).setMaxWidth(70);
     }
 
+    /**
+     * @effects show the number of the current page, and enable the buttons of the pages that exist
+     */
+    private void resetPager() {
+        lblPage.setText(StudentController.pager.toString());
+        btnPrevious.setEnabled(StudentController.pager.hasPrevious());
+        btnNext.setEnabled(StudentController.pager.hasNext());
+    }
+
     /**
      * this method notify the views that data in the logic models has been changed
      */
@@ -174,5 +198,6 @@ public class ListStudentView implements View {
         DefaultTableModel tm = new DefaultTableModel(data, headers);
         tblStudents.setModel(tm);
         resetTableDimension();
+        resetPager();
     }
 }